@@ -0,0 +1,79 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.benchmarks;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+
+/**
+ * Embedded Jetty serving the synthetic pages used by the benchmarks, started on a free port. The server is shared by all
+ * the benchmarks of a JVM.
+ */
+public class BenchmarkServer {
+
+    /**
+     * Context path of the application.
+     */
+    public static final String CONTEXT_PATH = "/jwebunit";
+
+    private static Server jettyServer;
+
+    private static int users;
+
+    private static String baseUrl;
+
+    /**
+     * Start the server if needed.
+     *
+     * @return the base URL of the application, ending with a slash.
+     * @throws Exception if the server can't be started.
+     */
+    public static synchronized String start() throws Exception {
+        if (jettyServer == null) {
+            Server server = new Server();
+            ServerConnector connector = new ServerConnector(server);
+            connector.setPort(0);
+            server.addConnector(connector);
+            ServletContextHandler context = new ServletContextHandler();
+            context.setContextPath(CONTEXT_PATH);
+            context.addServlet(SyntheticPageServlet.class, "/page");
+            server.setHandler(context);
+            server.start();
+            jettyServer = server;
+            baseUrl = "http://localhost:" + connector.getLocalPort() + CONTEXT_PATH + "/";
+        }
+        users++;
+        return baseUrl;
+    }
+
+    /**
+     * Stop the server when it is not used anymore.
+     *
+     * @throws Exception if the server can't be stopped.
+     */
+    public static synchronized void stop() throws Exception {
+        users--;
+        if (users == 0 && jettyServer != null) {
+            jettyServer.stop();
+            jettyServer = null;
+        }
+    }
+
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import net.sourceforge.jwebunit.junit.WebTester;
+import net.sourceforge.jwebunit.util.TestingEngineRegistry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the lookup of form fields on pages with many forms: the working form is the first one and the field
+ * is in the last form of the page, or missing, so the engine has to look through all the forms.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormLookupBenchmark {
+
+    @Param({ TestingEngineRegistry.TESTING_ENGINE_HTMLUNIT, TestingEngineRegistry.TESTING_ENGINE_WEBDRIVER,
+            TestingEngineRegistry.TESTING_ENGINE_HTTPCLIENT })
+    public String engine;
+
+    /**
+     * Number of forms before the form of the looked up fields.
+     */
+    @Param({ "1", "25" })
+    public int forms;
+
+    private WebTester tester;
+
+    @Setup(Level.Trial)
+    public void startServer() throws Exception {
+        tester = new WebTester();
+        tester.setTestingEngineKey(engine);
+        tester.setBaseUrl(BenchmarkServer.start());
+        tester.beginAt("page?size=10&forms=" + forms);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServer() throws Exception {
+        tester.closeBrowser();
+        BenchmarkServer.stop();
+    }
+
+    @Setup(Level.Invocation)
+    public void resetWorkingForm() {
+        // the lookup sets the working form to the form of the field
+        tester.getTestingEngine().setWorkingForm(0);
+    }
+
+    @Benchmark
+    public void assertTextFieldEquals() {
+        tester.assertTextFieldEquals("field9", "value 9");
+    }
+
+    @Benchmark
+    public void assertFormElementNotPresent() {
+        tester.assertFormElementNotPresent("missing");
+    }
+
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.benchmarks;
+
+import static net.sourceforge.jwebunit.junit.JWebUnit.assertTitleEquals;
+import static net.sourceforge.jwebunit.junit.JWebUnit.beginAt;
+import static net.sourceforge.jwebunit.junit.JWebUnit.clickLinkWithText;
+import static net.sourceforge.jwebunit.junit.JWebUnit.setBaseUrl;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import net.sourceforge.jwebunit.junit.SimulatedUsers;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Scaling of {@link SimulatedUsers} with the number of concurrent users per core. Each operation is the run of
+ * <code>usersPerCore</code> users per available processor, each one on its own thread, visiting two pages. The score
+ * multiplied by <code>usersPerCore</code> gives the number of users served per second and per core: it keeps growing as
+ * long as the threads are mostly waiting for HTTP responses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SimulatedUsersBenchmark {
+
+    @Param({ "1", "4", "16", "64" })
+    public int usersPerCore;
+
+    private ExecutorService executor;
+
+    private String baseUrl;
+
+    private int users;
+
+    @Setup(Level.Trial)
+    public void startServer() throws Exception {
+        baseUrl = BenchmarkServer.start();
+        users = usersPerCore * Runtime.getRuntime().availableProcessors();
+        // one thread per user, as blocking on HTTP is what limits the number of users
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServer() throws Exception {
+        executor.shutdownNow();
+        BenchmarkServer.stop();
+    }
+
+    @Benchmark
+    public SimulatedUsers.Result users() throws InterruptedException {
+        SimulatedUsers.Result result = new SimulatedUsers(executor).run(users, new SimulatedUsers.Session() {
+            public void run(int user) {
+                setBaseUrl(baseUrl);
+                beginAt("page?size=10");
+                clickLinkWithText("Link " + (user % 10));
+                assertTitleEquals(SyntheticPageServlet.TITLE);
+            }
+        });
+        if (!result.getFailures().isEmpty()) {
+            throw new IllegalStateException("Simulated users failed", result.getFailures().get(0));
+        }
+        return result;
+    }
+
+}
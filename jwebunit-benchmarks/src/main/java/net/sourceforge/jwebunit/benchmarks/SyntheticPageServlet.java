@@ -0,0 +1,107 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.benchmarks;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Generate a page whose size is given by the <code>size</code> request parameter: <code>size</code> paragraphs,
+ * table rows, links and text fields. The optional <code>forms</code> parameter adds small forms before the form of
+ * the text fields.
+ */
+public class SyntheticPageServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Title of the generated pages.
+     */
+    public static final String TITLE = "Synthetic page";
+
+    /**
+     * Id of the generated table.
+     */
+    public static final String TABLE_ID = "data";
+
+    protected void doGet(HttpServletRequest request,
+            HttpServletResponse response) throws ServletException, IOException {
+        int size = Integer.parseInt(request.getParameter("size"));
+        String forms = request.getParameter("forms");
+        response.setContentType("text/html");
+        PrintWriter out = response.getWriter();
+        out.write(getPage(size, forms == null ? 0 : Integer.parseInt(forms)));
+    }
+
+    /**
+     * @param size number of paragraphs, table rows, links and text fields.
+     * @return the HTML of the page.
+     */
+    public static String getPage(int size) {
+        return getPage(size, 0);
+    }
+
+    /**
+     * @param size number of paragraphs, table rows, links and text fields.
+     * @param forms number of forms added before the form of the text fields, each with a text field and a submit
+     *            button.
+     * @return the HTML of the page.
+     */
+    public static String getPage(int size, int forms) {
+        StringBuilder sb = new StringBuilder(size * 400);
+        sb.append("<html><head><title>").append(TITLE).append("</title></head><body>\n");
+        sb.append("<h1>").append(TITLE).append("</h1>\n");
+        for (int i = 0; i < size; i++) {
+            sb.append("<p id=\"p").append(i).append("\">Paragraph ").append(i)
+                    .append(" lorem ipsum dolor sit amet, consectetur adipiscing elit.</p>\n");
+        }
+        sb.append("<table id=\"").append(TABLE_ID).append("\">\n");
+        for (int i = 0; i < size; i++) {
+            sb.append("<tr><td>Row ").append(i).append("</td><td>").append(i * 7).append("</td><td>Value ")
+                    .append(i).append("</td></tr>\n");
+        }
+        sb.append("</table>\n");
+        for (int i = 0; i < size; i++) {
+            sb.append("<a id=\"link").append(i).append("\" href=\"page?size=").append(size).append("&amp;from=")
+                    .append(i).append("\">Link ").append(i).append("</a>\n");
+        }
+        for (int i = 0; i < forms; i++) {
+            sb.append("<form name=\"form").append(i).append("\" method=\"get\" action=\"page\">\n");
+            sb.append("<input type=\"text\" name=\"other").append(i).append("\" value=\"other ").append(i)
+                    .append("\"/>\n");
+            sb.append("<input type=\"submit\" name=\"submit").append(i).append("\" value=\"Submit\"/>\n");
+            sb.append("</form>\n");
+        }
+        sb.append("<form name=\"form\" method=\"get\" action=\"page\">\n");
+        sb.append("<input type=\"hidden\" name=\"size\" value=\"").append(size).append("\"/>\n");
+        for (int i = 0; i < size; i++) {
+            sb.append("<input type=\"text\" name=\"field").append(i).append("\" value=\"value ").append(i)
+                    .append("\"/>\n");
+        }
+        sb.append("<input type=\"submit\" name=\"submit\" value=\"Submit\"/>\n");
+        sb.append("</form>\n</body></html>\n");
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import net.sourceforge.jwebunit.html.Table;
+import net.sourceforge.jwebunit.junit.WebTester;
+import net.sourceforge.jwebunit.util.TestingEngineRegistry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the most used {@link WebTester} methods, on pages of increasing size. The testing engine is given by
+ * the Maven profile: only the engine of the active profile is on the classpath.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WebTesterBenchmark {
+
+    @Param({ TestingEngineRegistry.TESTING_ENGINE_HTMLUNIT, TestingEngineRegistry.TESTING_ENGINE_WEBDRIVER,
+            TestingEngineRegistry.TESTING_ENGINE_HTTPCLIENT })
+    public String engine;
+
+    /**
+     * Number of paragraphs, table rows, links and text fields of the page.
+     */
+    @Param({ "10", "100", "1000" })
+    public int size;
+
+    private WebTester tester;
+
+    private String page;
+
+    private String lastText;
+
+    @Setup(Level.Trial)
+    public void startServer() throws Exception {
+        tester = new WebTester();
+        tester.setTestingEngineKey(engine);
+        tester.setBaseUrl(BenchmarkServer.start());
+        page = "page?size=" + size;
+        lastText = "Paragraph " + (size - 1);
+        tester.beginAt(page);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServer() throws Exception {
+        tester.closeBrowser();
+        BenchmarkServer.stop();
+    }
+
+    @Benchmark
+    public void beginAt() {
+        tester.beginAt(page);
+    }
+
+    @Benchmark
+    public void assertTextPresent() {
+        tester.assertTextPresent(lastText);
+    }
+
+    @Benchmark
+    public void assertMatch() {
+        tester.assertMatch("Paragraph [0-9]+ lorem");
+    }
+
+    @Benchmark
+    public Table getTable() {
+        return tester.getTable(SyntheticPageServlet.TABLE_ID);
+    }
+
+    @Benchmark
+    public void assertTextFieldEquals() {
+        tester.assertTextFieldEquals("field" + (size - 1), "value " + (size - 1));
+    }
+
+    @Benchmark
+    public void clickLinkWithText() {
+        // the link leads to a page of the same size
+        tester.clickLinkWithText("Link " + (size - 1));
+    }
+
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.tests;
+
+import static net.sourceforge.jwebunit.junit.JWebUnit.assertTextPresent;
+import static net.sourceforge.jwebunit.junit.JWebUnit.assertTitleEquals;
+import static net.sourceforge.jwebunit.junit.JWebUnit.beginAt;
+import static net.sourceforge.jwebunit.junit.JWebUnit.closeBrowser;
+import static net.sourceforge.jwebunit.junit.JWebUnit.getTestContext;
+import static net.sourceforge.jwebunit.junit.JWebUnit.gotoPage;
+import static net.sourceforge.jwebunit.junit.JWebUnit.restoreCheckpoint;
+import static net.sourceforge.jwebunit.junit.JWebUnit.saveCheckpoint;
+import static net.sourceforge.jwebunit.junit.JWebUnit.setTestContext;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import net.sourceforge.jwebunit.util.Checkpoint;
+import net.sourceforge.jwebunit.util.CheckpointRegistry;
+import net.sourceforge.jwebunit.util.TestContext;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test starting a conversation from a checkpoint instead of replaying the steps leading to it.
+ */
+public class CheckpointTest extends JWebUnitAPITestCase {
+
+    private TestContext previousContext;
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        previousContext = getTestContext();
+        // the checkpoint is restored in a fresh context, to check it doesn't rely on the one it was saved from
+        TestContext context = new TestContext();
+        context.setBaseUrl(HOST_PATH);
+        context.setAuthorization("admin", "admin");
+        setTestContext(context);
+    }
+
+    @After
+    public void restoreContext() {
+        setTestContext(previousContext);
+        CheckpointRegistry.removeCheckpoint("cookies");
+    }
+
+    @Test
+    public void testRestoreCheckpoint() {
+        getTestContext().addRequestHeader("X-Checkpoint", "saved");
+        beginAt("/cookies.jsp?dont_set=1");
+        // the server sets its cookie on this page
+        gotoPage("/cookies.jsp");
+        saveCheckpoint("cookies");
+        closeBrowser();
+
+        setTestContext(new TestContext());
+        restoreCheckpoint("cookies");
+        assertTitleEquals("Submitted cookies");
+        assertTextPresent("serveurCookie=foo");
+        assertTrue(getTestContext().hasAuthorization());
+        gotoPage(HOST_PATH + "/headers.jsp");
+        assertTextPresent("X-Checkpoint=[saved]");
+    }
+
+    @Test
+    public void testStoreAndRestoreCheckpoint() throws Exception {
+        beginAt("/cookies.jsp");
+        File file = File.createTempFile("checkpoint", ".properties");
+        try {
+            saveCheckpoint("cookies").store(file);
+            closeBrowser();
+
+            setTestContext(new TestContext());
+            Checkpoint checkpoint = Checkpoint.load(file);
+            assertEquals("cookies", checkpoint.getName());
+            restoreCheckpoint(checkpoint);
+            assertTextPresent("serveurCookie=foo");
+        } finally {
+            file.delete();
+        }
+    }
+
+}
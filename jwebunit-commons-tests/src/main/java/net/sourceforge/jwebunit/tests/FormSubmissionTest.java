@@ -26,8 +26,10 @@ import java.io.FileWriter;
 import java.io.IOException;
 
 import net.sourceforge.jwebunit.exception.TestingEngineResponseException;
+import net.sourceforge.jwebunit.tests.util.RequiresJavascript;
 
 import org.junit.Test;
+import org.junit.experimental.categories.Category;
 
 import static net.sourceforge.jwebunit.junit.JWebUnit.*;
 import static org.junit.Assert.*;
@@ -339,6 +341,7 @@ public class FormSubmissionTest extends JWebUnitAPITestCase {
     }
 
     @Test
+    @Category(RequiresJavascript.class)
     public void testCachedForm() {
         beginAt("/Submit1.html");
         assertTextPresent("Page 1");
@@ -23,7 +23,10 @@ import static org.junit.Assert.*;
 
 import static org.hamcrest.Matchers.containsString;
 
+import net.sourceforge.jwebunit.tests.util.RequiresJavascript;
+
 import org.junit.Test;
+import org.junit.experimental.categories.Category;
 
 /**
  * User: djoiner
@@ -48,12 +51,13 @@ public class FramesAndWindowsTest extends JWebUnitAPITestCase {
     
     // ------------ windows test ------------    
     
-    @Test public void testOpenWindow() throws Throwable {
+    @Test @Category(RequiresJavascript.class) public void testOpenWindow() throws Throwable {
         gotoRootAndOpenChild("ChildPage1");
         assertPassFail("assertWindowPresent", new Object[]{"ChildPage1"}, new Object[]{"NoSuchChild"});
     }   
 
     @Test
+    @Category(RequiresJavascript.class)
     public void testGotoWindow() {
         gotoRootAndOpenChild("ChildPage1");
         gotoWindow("ChildPage1");
@@ -61,18 +65,20 @@ public class FramesAndWindowsTest extends JWebUnitAPITestCase {
     }
     
     @Test
+    @Category(RequiresJavascript.class)
     public void testGotoWindowByTitle() {
         gotoRootAndOpenChild("ChildPage2");
         gotoWindowByTitle("Child Page 2");
         assertTextPresent("This is child 2");
     }
     
-    @Test public void testAssertWindowWithTitle() throws Throwable {
+    @Test @Category(RequiresJavascript.class) public void testAssertWindowWithTitle() throws Throwable {
         gotoRootAndOpenChild("ChildPage2");
         assertPassFail("assertWindowPresentWithTitle", new Object[]{"Child Page 2"}, new Object[]{"NoSuchTitle"});
     }
 
     @Test
+    @Category(RequiresJavascript.class)
     public void testCloseWindow() {
         beginAt("RootPage.html");
         assertTitleEquals("This is the Root");
@@ -84,7 +90,7 @@ public class FramesAndWindowsTest extends JWebUnitAPITestCase {
         assertTitleEquals("This is the Root");
     }
 
-    @Test public void testAssertWindowCountEquals() {
+    @Test @Category(RequiresJavascript.class) public void testAssertWindowCountEquals() {
         beginAt("RootPage.html");
         assertWindowCountEquals(1);
         clickLink("ChildPage1");
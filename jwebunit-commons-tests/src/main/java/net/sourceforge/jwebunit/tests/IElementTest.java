@@ -25,8 +25,10 @@ import java.util.Date;
 import java.util.List;
 
 import net.sourceforge.jwebunit.api.IElement;
+import net.sourceforge.jwebunit.tests.util.RequiresJavascript;
 
 import org.junit.Test;
+import org.junit.experimental.categories.Category;
 
 /**
  * Test the IElement interface
@@ -207,6 +209,7 @@ public class IElementTest extends JWebUnitAPITestCase {
      * properly calls any attached Javascript.
      */
     @Test
+    @Category(RequiresJavascript.class)
     public void testAttributeJavascript() {
     	String testingText = new Date().toString();
     	
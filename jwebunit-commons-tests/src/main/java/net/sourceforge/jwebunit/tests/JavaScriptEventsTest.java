@@ -35,7 +35,10 @@ import static net.sourceforge.jwebunit.junit.JWebUnit.setScriptingEnabled;
 import static net.sourceforge.jwebunit.junit.JWebUnit.setWorkingForm;
 import static net.sourceforge.jwebunit.junit.JWebUnit.submit;
 
+import net.sourceforge.jwebunit.tests.util.RequiresJavascript;
+
 import org.junit.Test;
+import org.junit.experimental.categories.Category;
 
 /**
  * User: djoiner
@@ -43,6 +46,7 @@ import org.junit.Test;
  * Time: 10:24:54 AM
  */
 
+@Category(RequiresJavascript.class)
 public class JavaScriptEventsTest  extends JWebUnitAPITestCase {
 
     public void setUp() throws Exception {
@@ -30,12 +30,16 @@ import static net.sourceforge.jwebunit.junit.JWebUnit.setExpectedJavaScriptConfi
 import static net.sourceforge.jwebunit.junit.JWebUnit.setExpectedJavaScriptPrompt;
 import static org.junit.Assert.fail;
 
+import net.sourceforge.jwebunit.tests.util.RequiresJavascript;
+
 import org.junit.Test;
+import org.junit.experimental.categories.Category;
 
 /**
  * @author henryju
  */
 
+@Category(RequiresJavascript.class)
 public class JavaScriptTest  extends JWebUnitAPITestCase {
 
     public void setUp() throws Exception {
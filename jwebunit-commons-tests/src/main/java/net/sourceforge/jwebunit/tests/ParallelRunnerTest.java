@@ -0,0 +1,93 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.tests;
+
+import static net.sourceforge.jwebunit.junit.JWebUnit.assertTitleEquals;
+import static net.sourceforge.jwebunit.junit.JWebUnit.beginAt;
+import static net.sourceforge.jwebunit.junit.JWebUnit.clickLinkWithText;
+import static net.sourceforge.jwebunit.junit.JWebUnit.getTestContext;
+import static net.sourceforge.jwebunit.junit.JWebUnit.getTester;
+import static net.sourceforge.jwebunit.junit.JWebUnit.setBaseUrl;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import net.sourceforge.jwebunit.junit.Parallel;
+import net.sourceforge.jwebunit.junit.ParallelRunner;
+import net.sourceforge.jwebunit.junit.WebTester;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Test parallel execution of test methods with {@link ParallelRunner}.
+ */
+@RunWith(ParallelRunner.class)
+@Parallel(threads = 3)
+public class ParallelRunnerTest extends JWebUnitAPITestCase {
+
+    private static WebTester mainTester;
+
+    @BeforeClass
+    public static void rememberMainTester() {
+        mainTester = getTester();
+    }
+
+    public void setUp() throws Exception {
+        super.setUp();
+        setBaseUrl(HOST_PATH + "/NavigationTest");
+    }
+
+    private void checkWorker() {
+        assertTrue(Thread.currentThread().getName().startsWith("jwebunit-parallel-"));
+        assertNotSame(mainTester, getTester());
+        assertNotSame(mainTester.getTestContext(), getTestContext());
+    }
+
+    @Test
+    public void testClickLink1() {
+        checkWorker();
+        beginAt("/pageWithLink.html");
+        clickLinkWithText("an active link", 0);
+        assertTitleEquals("targetPage");
+    }
+
+    @Test
+    public void testClickLink2() {
+        checkWorker();
+        beginAt("/pageWithLink.html");
+        clickLinkWithText("an active link", 1);
+        assertTitleEquals("targetPage2");
+    }
+
+    @Test
+    public void testBeginAt1() {
+        checkWorker();
+        beginAt("/pageWithLink.html");
+        assertTitleEquals("pageWithLink");
+    }
+
+    @Test
+    public void testBeginAt2() {
+        checkWorker();
+        beginAt("/targetPage.html");
+        assertTitleEquals("targetPage");
+    }
+
+}
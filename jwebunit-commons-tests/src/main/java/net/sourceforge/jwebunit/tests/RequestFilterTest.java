@@ -0,0 +1,141 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.tests;
+
+import static net.sourceforge.jwebunit.junit.JWebUnit.assertTextInElement;
+import static net.sourceforge.jwebunit.junit.JWebUnit.assertTextNotInElement;
+import static net.sourceforge.jwebunit.junit.JWebUnit.assertTextNotPresent;
+import static net.sourceforge.jwebunit.junit.JWebUnit.assertTextPresent;
+import static net.sourceforge.jwebunit.junit.JWebUnit.beginAt;
+import static net.sourceforge.jwebunit.junit.JWebUnit.getTestContext;
+import static net.sourceforge.jwebunit.junit.JWebUnit.getTestingEngine;
+import static net.sourceforge.jwebunit.junit.JWebUnit.setBaseUrl;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import net.sourceforge.jwebunit.api.IRequestFilteringEngine;
+import net.sourceforge.jwebunit.tests.util.RequiresJavascript;
+import net.sourceforge.jwebunit.util.BlockedRequestCounter;
+import net.sourceforge.jwebunit.util.RequestFilter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Test that the engines don't send the requests blocked by the {@link RequestFilter} of the test context.
+ */
+public class RequestFilterTest extends JWebUnitAPITestCase {
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        setBaseUrl(HOST_PATH + "/RequestFilterTest");
+    }
+
+    @After
+    public void resetRequestFilter() {
+        getTestContext().setRequestFilter(null);
+    }
+
+    @Test
+    public void testNoFilter() {
+        BlockedRequestCounter blocked = getBlockedRequests();
+        beginAt("/page.html");
+        assertTextPresent("Static text");
+        assertEquals(0, blocked.getCount());
+    }
+
+    @Test
+    @Category(RequiresJavascript.class)
+    public void testNoFilterLoadsScripts() {
+        beginAt("/page.html");
+        assertTextInElement("result", "Script loaded");
+    }
+
+    @Test
+    public void testDenyPageUrl() {
+        getTestContext().setRequestFilter(new RequestFilter().denyUrl("/page\\.html$"));
+        BlockedRequestCounter blocked = getBlockedRequests();
+        beginAt("/page.html");
+        assertTextNotPresent("Static text");
+        assertEquals(1, blocked.getCount());
+    }
+
+    @Test
+    public void testDenyPageContentType() {
+        getTestContext().setRequestFilter(new RequestFilter().denyContentType("text/html"));
+        BlockedRequestCounter blocked = getBlockedRequests();
+        beginAt("/page.html");
+        assertTextNotPresent("Static text");
+        assertEquals(1, blocked.getCount());
+        assertEquals(Integer.valueOf(1), blocked.getCountsByContentType().get("text/html"));
+    }
+
+    @Test
+    public void testAllowedPageIsLoaded() {
+        getTestContext().setRequestFilter(new RequestFilter().allowUrl("/RequestFilterTest/").denyHost("*"));
+        BlockedRequestCounter blocked = getBlockedRequests();
+        beginAt("/page.html");
+        assertTextPresent("Static text");
+        assertEquals(0, blocked.getCount());
+    }
+
+    @Test
+    @Category(RequiresJavascript.class)
+    public void testDenyContentType() {
+        getTestContext().setRequestFilter(new RequestFilter().denyContentType("application/javascript"));
+        BlockedRequestCounter blocked = getBlockedRequests();
+        beginAt("/page.html");
+        assertTextPresent("Static text");
+        assertTextNotInElement("result", "Script loaded");
+        assertEquals(1, blocked.getCount());
+        assertEquals(Integer.valueOf(1), blocked.getCountsByContentType().get("application/javascript"));
+    }
+
+    @Test
+    @Category(RequiresJavascript.class)
+    public void testDenyUrl() {
+        getTestContext().setRequestFilter(new RequestFilter().denyUrl("/script\\.js$"));
+        BlockedRequestCounter blocked = getBlockedRequests();
+        beginAt("/page.html");
+        assertTextNotInElement("result", "Script loaded");
+        assertEquals(1, blocked.getCount());
+    }
+
+    @Test
+    @Category(RequiresJavascript.class)
+    public void testFirstMatchingRuleDecides() {
+        getTestContext().setRequestFilter(
+                new RequestFilter().allowUrl("/RequestFilterTest/").denyHost("*").denyContentType("text/css"));
+        BlockedRequestCounter blocked = getBlockedRequests();
+        beginAt("/page.html");
+        assertTextInElement("result", "Script loaded");
+        assertEquals(0, blocked.getCount());
+    }
+
+    private BlockedRequestCounter getBlockedRequests() {
+        assertTrue(getTestingEngine() instanceof IRequestFilteringEngine);
+        BlockedRequestCounter blocked = ((IRequestFilteringEngine) getTestingEngine()).getBlockedRequests();
+        blocked.reset();
+        return blocked;
+    }
+
+}
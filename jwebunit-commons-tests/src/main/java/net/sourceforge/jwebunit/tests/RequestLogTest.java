@@ -0,0 +1,88 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.tests;
+
+import static net.sourceforge.jwebunit.junit.JWebUnit.beginAt;
+import static net.sourceforge.jwebunit.junit.JWebUnit.getTestContext;
+import static net.sourceforge.jwebunit.junit.JWebUnit.setBaseUrl;
+import static net.sourceforge.jwebunit.junit.JWebUnit.storeHar;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.List;
+
+import net.sourceforge.jwebunit.util.LoggedRequest;
+import net.sourceforge.jwebunit.util.RequestLog;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test that the engines log their requests in the {@link RequestLog} of the test context.
+ */
+public class RequestLogTest extends JWebUnitAPITestCase {
+
+    private RequestLog log;
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        setBaseUrl(HOST_PATH);
+        log = new RequestLog();
+        getTestContext().setRequestLog(log);
+    }
+
+    @After
+    public void resetRequestLog() {
+        getTestContext().setRequestLog(null);
+    }
+
+    @Test
+    public void testRequestLogged() {
+        beginAt("/helloworld.html");
+        List<LoggedRequest> requests = log.getRequests();
+        assertEquals(requests.toString(), 1, requests.size());
+        LoggedRequest request = requests.get(0);
+        assertEquals("GET", request.getMethod());
+        // the proxy of WebDriver logs the resolved address of the host
+        assertTrue(request.getUrl(), request.getUrl().endsWith("/jwebunit/helloworld.html"));
+        assertEquals(200, request.getStatus());
+        assertTrue(request.getMimeType(), request.getMimeType().startsWith("text/html"));
+        assertTrue(request.getWait() >= 0);
+        assertTrue(request.getResponseBodySize() > 0);
+    }
+
+    @Test
+    public void testStoreHar() throws Exception {
+        beginAt("/helloworld.html");
+        File har = File.createTempFile("jwebunit", ".har");
+        try {
+            storeHar(har);
+            String content = FileUtils.readFileToString(har, "UTF-8");
+            assertTrue(content, content.contains("/jwebunit/helloworld.html\""));
+            assertTrue(content, content.contains("\"status\":200"));
+        } finally {
+            har.delete();
+        }
+    }
+
+}
@@ -18,6 +18,7 @@
  */
 package net.sourceforge.jwebunit.tests;
 
+import net.sourceforge.jwebunit.junit.WebTester;
 import org.junit.Test;
 
 import java.net.SocketTimeoutException;
@@ -31,6 +32,8 @@ import static net.sourceforge.jwebunit.junit.JWebUnit.assertResponseCodeBetween;
 import static net.sourceforge.jwebunit.junit.JWebUnit.assertTextPresent;
 import static net.sourceforge.jwebunit.junit.JWebUnit.assertTitleEquals;
 import static net.sourceforge.jwebunit.junit.JWebUnit.beginAt;
+import static net.sourceforge.jwebunit.junit.JWebUnit.getTestingEngineKey;
+import static net.sourceforge.jwebunit.junit.JWebUnit.gotoPage;
 import static net.sourceforge.jwebunit.junit.JWebUnit.setBaseUrl;
 import static net.sourceforge.jwebunit.junit.JWebUnit.setIgnoreFailingStatusCodes;
 import static net.sourceforge.jwebunit.junit.JWebUnit.setTextField;
@@ -104,6 +107,32 @@ public class ResponseServletTest extends JWebUnitAPITestCase {
     assertResponseCode(501);
   }
 
+  /**
+   * Test that each session gets the response code of its own pages, when the codes of two sessions alternate.
+   */
+  @Test
+  public void testResponseCodesAcrossSessions() {
+    int[] codes = {404, 501, 200};
+    beginAt("/SimpleForm.html");
+    WebTester other = new WebTester();
+    other.setTestingEngineKey(getTestingEngineKey());
+    other.setIgnoreFailingStatusCodes(true);
+    other.setBaseUrl(HOST_PATH + "/ResponseServletTest");
+    try {
+      other.beginAt("/SimpleForm.html");
+      for (int i = 0; i < 3 * codes.length; i++) {
+        int code = codes[i % codes.length];
+        int otherCode = codes[(i + 1) % codes.length];
+        gotoPage(HOST_PATH + "/response.jsp?status=" + code);
+        other.gotoPage(HOST_PATH + "/response.jsp?status=" + otherCode);
+        assertResponseCode(code);
+        other.assertResponseCode(otherCode);
+      }
+    } finally {
+      other.closeBrowser();
+    }
+  }
+
   /**
    * Issue 1674646: add support for specifying the timeout of pages
    */
@@ -0,0 +1,104 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.tests;
+
+import static net.sourceforge.jwebunit.junit.JWebUnit.assertTitleEquals;
+import static net.sourceforge.jwebunit.junit.JWebUnit.beginAt;
+import static net.sourceforge.jwebunit.junit.JWebUnit.clickLinkWithText;
+import static net.sourceforge.jwebunit.junit.JWebUnit.getTestContext;
+import static net.sourceforge.jwebunit.junit.JWebUnit.getTester;
+import static net.sourceforge.jwebunit.junit.JWebUnit.setBaseUrl;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.sourceforge.jwebunit.junit.SimulatedUsers;
+import net.sourceforge.jwebunit.junit.WebTester;
+import net.sourceforge.jwebunit.junit.WebTesterScope;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Test simulated users, each one with a tester bound by {@link WebTesterScope}.
+ */
+public class SimulatedUsersTest extends JWebUnitAPITestCase {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @After
+    public void shutdownExecutor() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testScopeRestoresPreviousTester() {
+        final WebTester threadTester = getTester();
+        final WebTester scopedTester = new WebTester();
+        WebTesterScope.run(scopedTester, new Runnable() {
+            public void run() {
+                assertSame(scopedTester, getTester());
+            }
+        });
+        assertSame(threadTester, getTester());
+        assertNull(WebTesterScope.current());
+    }
+
+    @Test
+    public void testUsers() throws Exception {
+        final Set<WebTester> testers = Collections.synchronizedSet(
+                Collections.newSetFromMap(new IdentityHashMap<WebTester, Boolean>()));
+        final WebTester threadTester = getTester();
+        SimulatedUsers.Result result = new SimulatedUsers(executor).run(12, new SimulatedUsers.Session() {
+            public void run(int user) {
+                testers.add(getTester());
+                assertNotSame(threadTester.getTestContext(), getTestContext());
+                getTestContext().setAuthorization("admin", "admin");
+                setBaseUrl(HOST_PATH + "/NavigationTest");
+                beginAt("/pageWithLink.html");
+                clickLinkWithText("an active link", user % 2);
+                assertTitleEquals(user % 2 == 0 ? "targetPage" : "targetPage2");
+            }
+        });
+        assertEquals(String.valueOf(result.getFailures()), 0, result.getFailures().size());
+        assertEquals(12, result.getUsers());
+        assertEquals(12, testers.size());
+    }
+
+    @Test
+    public void testFailuresAreCollected() throws Exception {
+        SimulatedUsers.Result result = new SimulatedUsers(executor).run(3, new SimulatedUsers.Session() {
+            public void run(int user) {
+                if (user == 1) {
+                    throw new IllegalStateException("user " + user);
+                }
+            }
+        });
+        assertEquals(1, result.getFailures().size());
+        assertEquals("user 1", result.getFailures().get(0).getMessage());
+    }
+
+}
@@ -30,9 +30,11 @@ import java.util.Locale;
 
 import javax.servlet.http.Cookie;
 
+import net.sourceforge.jwebunit.tests.util.RequiresJavascript;
 import net.sourceforge.jwebunit.util.TestContext;
 
 import org.junit.Test;
+import org.junit.experimental.categories.Category;
 
 public class TestContextTest extends JWebUnitAPITestCase {
     private TestContext context;
@@ -78,6 +80,7 @@ public class TestContextTest extends JWebUnitAPITestCase {
     }
 
     @Test
+    @Category(RequiresJavascript.class)
     public void testClientSideUserAgentOverride() {
         getTestContext().setBaseUrl(HOST_PATH + "/TestContextTest");
         String userAgent = "Mozilla/5.0 (X11; U; Linux i686; en-US; rv:1.8.0.3) Gecko/20060426 Firefox/1.5.0.3";
@@ -0,0 +1,93 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.tests;
+
+import static net.sourceforge.jwebunit.junit.JWebUnit.assertTextNotPresent;
+import static net.sourceforge.jwebunit.junit.JWebUnit.beginAt;
+import static net.sourceforge.jwebunit.junit.JWebUnit.setBaseUrl;
+import static net.sourceforge.jwebunit.junit.JWebUnit.waitForCondition;
+import static net.sourceforge.jwebunit.junit.JWebUnit.waitForElementByXPath;
+import static net.sourceforge.jwebunit.junit.JWebUnit.waitForText;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import net.sourceforge.jwebunit.api.Condition;
+import net.sourceforge.jwebunit.api.ITestingEngine;
+import net.sourceforge.jwebunit.tests.util.RequiresJavascript;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Test waiting for content added by JavaScript after the page is loaded.
+ */
+@Category(RequiresJavascript.class)
+public class WaitForTest extends JWebUnitAPITestCase {
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        setBaseUrl(HOST_PATH + "/WaitForTest");
+    }
+
+    @Test
+    public void testWaitForText() {
+        beginAt("/delayed.html");
+        assertTextNotPresent("Delayed text");
+        long waited = waitForText("Delayed text", 10000);
+        assertTrue("Waited " + waited + " ms", waited >= 0 && waited < 10000);
+    }
+
+    @Test
+    public void testWaitForElementByXPath() {
+        beginAt("/delayed.html");
+        long waited = waitForElementByXPath("//span[@id='delayed']", 10000);
+        assertTrue("Waited " + waited + " ms", waited >= 0 && waited < 10000);
+    }
+
+    @Test
+    public void testWaitForCondition() {
+        beginAt("/delayed.html");
+        waitForCondition(new Condition() {
+            public boolean isSatisfied(ITestingEngine engine) {
+                return engine.hasElement("delayed");
+            }
+        }, 10000);
+    }
+
+    @Test
+    public void testAlreadyPresent() {
+        beginAt("/delayed.html");
+        assertEquals(0, waitForText("Static text", 10000), 100);
+    }
+
+    @Test
+    public void testTimeout() {
+        beginAt("/delayed.html");
+        try {
+            waitForText("Never shown", 200);
+        } catch (AssertionError e) {
+            return;
+        }
+        fail("Expected the wait to time out");
+    }
+
+}
@@ -32,7 +32,10 @@ import static net.sourceforge.jwebunit.junit.JWebUnit.assertTextInElement;
 import static net.sourceforge.jwebunit.junit.JWebUnit.assertTextNotInElement;
 import static net.sourceforge.jwebunit.junit.JWebUnit.assertTextNotPresent;
 import static net.sourceforge.jwebunit.junit.JWebUnit.beginAt;
+import static net.sourceforge.jwebunit.junit.JWebUnit.expect;
 import static net.sourceforge.jwebunit.junit.JWebUnit.setBaseUrl;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import org.junit.Test;
@@ -223,5 +226,29 @@ public class WebAssertionsTest extends JWebUnitAPITestCase {
         assertFail("assertSelectedOptionMatches", new Object[] {"testSelect", "Another[Vv]alue"});
     }
 
+    @Test public void testExpect() {
+        expect().title("testPage").text("This is a test.").noText("no such text").match("This (is)* a .* test.")
+                .link("test_link_id").linkWithText("test link").element("span_id")
+                .textInElement("outer_id", "Inner Text").formElement("testInputElement")
+                .field("testInputElement", "testValue").verify();
+    }
+
+    @Test public void testExpectReportsAllFailures() {
+        try {
+            expect().text("This is a test.").text("no such text").link("no_such_link")
+                    .textInElement("span_id", "Inner Text").field("testInputElement", "AnotherValue").verify();
+        } catch (AssertionError e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("4 of 5 expectations not met:"));
+            assertTrue(e.getMessage(), e.getMessage().contains("[no such text]"));
+            assertTrue(e.getMessage(), e.getMessage().contains("[no_such_link]"));
+            return;
+        }
+        fail("Expected failures");
+    }
+
+    @Test public void testExpectCheck() {
+        assertEquals(1, expect().element("span_id").element("no_such_element").check().size());
+    }
+
 
 }
@@ -20,6 +20,7 @@ package net.sourceforge.jwebunit.tests;
 
 import java.util.List;
 import net.sourceforge.jwebunit.api.HttpHeader;
+import net.sourceforge.jwebunit.junit.WebTester;
 import org.junit.Test;
 
 import static net.sourceforge.jwebunit.junit.JWebUnit.assertCookiePresent;
@@ -29,6 +30,7 @@ import static net.sourceforge.jwebunit.junit.JWebUnit.assertTextPresent;
 import static net.sourceforge.jwebunit.junit.JWebUnit.beginAt;
 import static net.sourceforge.jwebunit.junit.JWebUnit.getResponseHeaders;
 import static net.sourceforge.jwebunit.junit.JWebUnit.getTestContext;
+import static net.sourceforge.jwebunit.junit.JWebUnit.getTestingEngineKey;
 import static net.sourceforge.jwebunit.junit.JWebUnit.gotoPage;
 import static net.sourceforge.jwebunit.junit.JWebUnit.setBaseUrl;
 import static org.junit.Assert.assertTrue;
@@ -108,6 +110,24 @@ public class WebCookieTest extends JWebUnitAPITestCase {
     	assertCookieValueEquals("serveurCookie", "foo");	// should still be there
     }
     
+    /**
+     * Test that the cookies received by a browser are not sent by another one, even when both share a proxy.
+     */
+    @Test
+    public void testCookiesAreNotSharedBetweenSessions() {
+        beginAt("/cookies.jsp");
+        assertCookieValueEquals("serveurCookie", "foo");
+        WebTester other = new WebTester();
+        other.setTestingEngineKey(getTestingEngineKey());
+        other.setBaseUrl(HOST_PATH);
+        try {
+            other.beginAt("/cookies.jsp?dont_set=1");
+            other.assertTextNotPresent("serveurCookie");
+        } finally {
+            other.closeBrowser();
+        }
+    }
+
     /**
      * Tests if all cookies are received when the server sets several cookies 
      * with same domain, path and name.<p>
@@ -0,0 +1,36 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.api;
+
+/**
+ * A condition on the current page, for example a text or an element that appears once an AJAX call is done.
+ *
+ * @see ITestingEngine#waitForCondition(Condition, long)
+ */
+public interface Condition {
+
+    /**
+     * Check the condition. This may be called several times while waiting, from the thread of the test.
+     *
+     * @param engine the testing engine, to inspect the current page.
+     * @return true if the condition is met.
+     */
+    boolean isSatisfied(ITestingEngine engine);
+
+}
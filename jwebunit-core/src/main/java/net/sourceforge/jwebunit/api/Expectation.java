@@ -0,0 +1,173 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.api;
+
+import net.sourceforge.jwebunit.util.RegexpCache;
+
+/**
+ * A single check on the current page, part of a batch of expectations evaluated together.
+ *
+ * @see IBatchTestingEngine
+ */
+public class Expectation {
+
+    /**
+     * The kinds of checks that can be part of a batch.
+     */
+    public enum Type {
+        /** Title of the page equals the value. */
+        TITLE_EQUALS,
+        /** Text of the page contains the value. */
+        TEXT_PRESENT,
+        /** Text of the page doesn't contain the value. */
+        TEXT_NOT_PRESENT,
+        /** Text of the page matches the value, a regexp. */
+        MATCH,
+        /** A link with the name as id is present. */
+        LINK_PRESENT,
+        /** A link containing the value in its text is present. */
+        LINK_PRESENT_WITH_TEXT,
+        /** An element with the name as id is present. */
+        ELEMENT_PRESENT,
+        /** Text of the element with the name as id contains the value. */
+        TEXT_IN_ELEMENT,
+        /** A form element with the name is present. */
+        FORM_ELEMENT_PRESENT,
+        /** The text field with the name has the value. */
+        TEXT_FIELD_EQUALS
+    }
+
+    private final Type type;
+
+    private final String name;
+
+    private final String value;
+
+    /**
+     * Create an expectation.
+     *
+     * @param type kind of check
+     * @param name id or name of the checked element, null when the check is on the whole page
+     * @param value expected text, title or regexp, null when the check is only on the presence of an element
+     */
+    public Expectation(Type type, String name, String value) {
+        if (type == null) {
+            throw new IllegalArgumentException("Type can't be null");
+        }
+        this.type = type;
+        this.name = name;
+        this.value = value;
+    }
+
+    /**
+     * @return the kind of check.
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return the id or name of the checked element, or null.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the expected text, title or regexp, or null.
+     */
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * Evaluate this expectation through the regular methods of a testing engine. This is what is done for engines that
+     * don't implement {@link IBatchTestingEngine}, and what these engines can do for the kinds of checks they don't
+     * optimize.
+     *
+     * @param engine the testing engine
+     * @return true if the expectation is met.
+     */
+    public boolean evaluate(ITestingEngine engine) {
+        switch (type) {
+        case TITLE_EQUALS:
+            return value.equals(engine.getPageTitle());
+        case TEXT_PRESENT:
+            return engine.getPageText().contains(value);
+        case TEXT_NOT_PRESENT:
+            return !engine.getPageText().contains(value);
+        case MATCH:
+            return RegexpCache.match(value, engine.getPageText());
+        case LINK_PRESENT:
+            return engine.hasLink(name);
+        case LINK_PRESENT_WITH_TEXT:
+            return engine.hasLinkWithText(value, 0);
+        case ELEMENT_PRESENT:
+            return engine.hasElement(name);
+        case TEXT_IN_ELEMENT:
+            return engine.hasElement(name) && engine.isTextInElement(name, value);
+        case FORM_ELEMENT_PRESENT:
+            return engine.hasFormParameterNamed(name);
+        case TEXT_FIELD_EQUALS:
+            return engine.hasFormParameterNamed(name) && value.equals(engine.getTextFieldValue(name));
+        default:
+            throw new IllegalStateException("Unknown expectation type " + type);
+        }
+    }
+
+    /**
+     * @return the message reported when this expectation is not met.
+     */
+    public String getFailureMessage() {
+        switch (type) {
+        case TITLE_EQUALS:
+            return "Expected title [" + value + "]";
+        case TEXT_PRESENT:
+            return "Expected text not found in current page: [" + value + "]";
+        case TEXT_NOT_PRESENT:
+            return "Text found in response when not expected: [" + value + "]";
+        case MATCH:
+            return "Expected rexexp not matched in response: [" + value + "]";
+        case LINK_PRESENT:
+            return "Unable to find link with id [" + name + "]";
+        case LINK_PRESENT_WITH_TEXT:
+            return "Link with text [" + value + "] not found in response.";
+        case ELEMENT_PRESENT:
+            return "Unable to locate element with id \"" + name + "\"";
+        case TEXT_IN_ELEMENT:
+            return "Unable to locate [" + value + "] in element \"" + name + "\"";
+        case FORM_ELEMENT_PRESENT:
+            return "Did not find form element with name [" + name + "].";
+        case TEXT_FIELD_EQUALS:
+            return "Expected value [" + value + "] in text field [" + name + "]";
+        default:
+            throw new IllegalStateException("Unknown expectation type " + type);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return type + "(" + (name == null ? "" : name) + (name != null && value != null ? ", " : "")
+                + (value == null ? "" : value) + ")";
+    }
+
+}
@@ -0,0 +1,40 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.api;
+
+import java.util.List;
+
+/**
+ * Optional interface for testing engines able to evaluate many expectations on the current page at once, for example
+ * in a single traversal of the DOM. Engines that don't implement it get each expectation evaluated through
+ * {@link Expectation#evaluate(ITestingEngine)}.
+ *
+ * @see net.sourceforge.jwebunit.junit.WebTester#expect()
+ */
+public interface IBatchTestingEngine {
+
+    /**
+     * Evaluate expectations on the current page.
+     *
+     * @param expectations the expectations to evaluate.
+     * @return for each expectation, in the same order, true if it is met.
+     */
+    List<Boolean> evaluate(List<Expectation> expectations);
+
+}
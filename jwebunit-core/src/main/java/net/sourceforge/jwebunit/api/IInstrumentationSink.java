@@ -0,0 +1,37 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.api;
+
+import java.util.Collection;
+
+import net.sourceforge.jwebunit.util.MethodStats;
+
+/**
+ * Destination of the statistics collected by {@link net.sourceforge.jwebunit.util.EngineInstrumentation}.
+ */
+public interface IInstrumentationSink {
+
+    /**
+     * Export statistics.
+     *
+     * @param stats a snapshot of the statistics of each called testing engine method.
+     */
+    void export(Collection<MethodStats> stats);
+
+}
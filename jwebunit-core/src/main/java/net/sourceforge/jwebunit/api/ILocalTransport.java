@@ -0,0 +1,44 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.api;
+
+import java.io.IOException;
+
+/**
+ * Transport of HTTP exchanges to a server running in the same JVM, without sockets nor port allocation. When set on
+ * the {@link net.sourceforge.jwebunit.util.TestContext}, testing engines supporting it (HtmlUnit) send every request
+ * through the transport instead of the network, whatever the host of the URL. Other engines ignore it.
+ *
+ * @see net.sourceforge.jwebunit.util.TestContext#setLocalTransport(ILocalTransport)
+ */
+public interface ILocalTransport {
+
+    /**
+     * Send a raw HTTP/1.1 request and wait for the response. The request asks the server to close the connection
+     * after the response, so that the returned bytes contain exactly one response.
+     *
+     * @param request head and body of the request.
+     * @param timeout time to wait for the server in milliseconds, 0 for the default of the transport.
+     * @return head and body of the response.
+     * @throws java.net.SocketTimeoutException if the server doesn't respond in time.
+     * @throws IOException if the request can't be handled by the server.
+     */
+    byte[] exchange(byte[] request, int timeout) throws IOException;
+
+}
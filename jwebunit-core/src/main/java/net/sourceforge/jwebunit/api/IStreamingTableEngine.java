@@ -0,0 +1,40 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.api;
+
+import net.sourceforge.jwebunit.html.StreamingTable;
+
+/**
+ * Optional interface for testing engines able to give a lazy view of an html table, building each row only when it
+ * is read. Table assertions use it to avoid reading the text of all the cells of large tables. Engines that don't
+ * implement it get their tables from {@link ITestingEngine#getTable(String)}.
+ *
+ * @see StreamingTable
+ */
+public interface IStreamingTableEngine {
+
+    /**
+     * Get a lazy view of a table of the current page.
+     *
+     * @param tableSummaryNameOrId summary, name or id attribute value of the table.
+     * @return the view of the table, reading the page on demand.
+     */
+    StreamingTable getStreamingTable(String tableSummaryNameOrId);
+
+}
@@ -959,4 +959,42 @@ public interface ITestingEngine {
      */
     public void setTimeout(int milliseconds);
 
+    /**
+     * Wait until a condition is met on the current page, typically after an AJAX call. Instead of checking at fixed
+     * intervals, engines check the condition again when the page may have changed.
+     *
+     * @param condition the condition to wait for.
+     * @param timeout maximum time to wait, in milliseconds.
+     * @return the time spent waiting in milliseconds, or -1 if the condition was still not met after the timeout.
+     */
+    long waitForCondition(Condition condition, long timeout);
+
+    /**
+     * Wait until a text is present in the current page.
+     *
+     * @param text the text to wait for.
+     * @param timeout maximum time to wait, in milliseconds.
+     * @return the time spent waiting in milliseconds, or -1 if the text was still not present after the timeout.
+     */
+    long waitForText(String text, long timeout);
+
+    /**
+     * Wait until an element matching an xpath is present in the current page.
+     *
+     * @param xpath xpath of the element to wait for.
+     * @param timeout maximum time to wait, in milliseconds.
+     * @return the time spent waiting in milliseconds, or -1 if the element was still not present after the timeout.
+     */
+    long waitForElementByXPath(String xpath, long timeout);
+
+    /**
+     * Clone the state of the current conversation into a new testing engine: cookies, open windows, current page with
+     * the values entered in its forms, and working form. The new engine then goes on independently of this one.
+     *
+     * @param testContext test context of the new engine, usually a copy of the current one.
+     * @return the new testing engine.
+     * @throws UnsupportedOperationException if the engine can't clone its state.
+     */
+    ITestingEngine fork(TestContext testContext);
+
 }
@@ -18,8 +18,8 @@
  */
 package net.sourceforge.jwebunit.html;
 
-import org.apache.regexp.RE;
-import org.apache.regexp.RESyntaxException;
+import net.sourceforge.jwebunit.util.CompiledRegexp;
+import net.sourceforge.jwebunit.util.RegexpCache;
 import org.junit.Assert;
 
 /**
@@ -101,7 +101,7 @@ public class Cell {
    * @param c given cell
    */
   public void assertMatch(Cell c) {
-    RE re = getRE(c.getValue());
+    CompiledRegexp re = getRE(c.getValue());
     Assert.assertTrue(c.getValue() + " do not match " + this.getValue(), re
       .match(this.getValue()));
     Assert.assertTrue("Expected colspan was " + c.getColspan()
@@ -129,7 +129,7 @@ public class Cell {
    * @return true if the current cell matches given text.
    */
   public boolean match(String regexp) {
-    RE re = getRE(regexp);
+    CompiledRegexp re = getRE(regexp);
     return re.match(this.getValue());
   }
 
@@ -139,12 +139,12 @@ public class Cell {
    * @param regexp regexp pattern
    * @return regexp object
    */
-  private RE getRE(String regexp) {
-    RE re = null;
+  private CompiledRegexp getRE(String regexp) {
+    CompiledRegexp re = null;
     try {
-      re = new RE(regexp, RE.MATCH_SINGLELINE);
-    } catch (RESyntaxException e) {
-      Assert.fail(e.toString());
+      re = RegexpCache.compile(regexp);
+    } catch (IllegalArgumentException e) {
+      Assert.fail(e.getMessage());
     }
     return re;
   }
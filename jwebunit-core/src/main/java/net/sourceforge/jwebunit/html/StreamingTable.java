@@ -0,0 +1,103 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.html;
+
+import org.junit.Assert;
+
+/**
+ * A table whose rows are obtained one at a time, on demand. Checks stop as soon as their result is known, so rows
+ * after the first hit or the first difference are never built. Testing engines return such a view of an html table
+ * from {@link net.sourceforge.jwebunit.api.IStreamingTableEngine#getStreamingTable(String)} without reading the text
+ * of all its cells, and {@link Table} is the implementation holding all its rows in memory.
+ */
+public abstract class StreamingTable {
+
+  /**
+   * @return the number of rows of the table.
+   */
+  public abstract int getRowCount();
+
+  /**
+   * Get a row of the table. Implementations may build the row on each call.
+   *
+   * @param index index of the row, from 0 to {@link #getRowCount()} excluded.
+   * @return the row.
+   */
+  public abstract Row getRow(int index);
+
+  public boolean hasText(String text) {
+    int count = getRowCount();
+    for (int i = 0; i < count; i++) {
+      if (getRow(i).hasText(text))
+        return true;
+    }
+    return false;
+  }
+
+  public boolean hasMatch(String regexp) {
+    int count = getRowCount();
+    for (int i = 0; i < count; i++) {
+      if (getRow(i).hasMatch(regexp))
+        return true;
+    }
+    return false;
+  }
+
+  public void assertEquals(Table t) {
+    Assert.assertTrue("Row count are not equal", this.getRowCount() == t
+      .getRowCount());
+    assertRowsEqual(0, t);
+  }
+
+  public void assertSubTableEquals(int startRow, Table t) {
+    checkSubTableSize(startRow, t);
+    assertRowsEqual(startRow, t);
+  }
+
+  public void assertMatch(Table t) {
+    Assert.assertTrue("Row count are not equal", this.getRowCount() == t
+      .getRowCount());
+    assertRowsMatch(0, t);
+  }
+
+  public void assertSubTableMatch(int startRow, Table t) {
+    checkSubTableSize(startRow, t);
+    assertRowsMatch(startRow, t);
+  }
+
+  private void checkSubTableSize(int startRow, Table t) {
+    if (startRow + t.getRowCount() > this.getRowCount())
+      Assert.fail("Expected rows [" + t.getRowCount()
+        + "] larger than actual rows in range being compared"
+        + " [" + (this.getRowCount() - startRow) + "].");
+  }
+
+  private void assertRowsEqual(int startRow, Table t) {
+    for (int i = 0; i < t.getRowCount(); i++) {
+      this.getRow(startRow + i).assertEquals(t.getRow(i));
+    }
+  }
+
+  private void assertRowsMatch(int startRow, Table t) {
+    for (int i = 0; i < t.getRowCount(); i++) {
+      this.getRow(startRow + i).assertMatch(t.getRow(i));
+    }
+  }
+
+}
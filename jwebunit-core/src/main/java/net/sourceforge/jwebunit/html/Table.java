@@ -18,8 +18,6 @@
  */
 package net.sourceforge.jwebunit.html;
 
-import org.junit.Assert;
-
 import java.util.ArrayList;
 import java.util.List;
 
@@ -29,7 +27,7 @@ import java.util.List;
  * @author Jim Weaver
  * @author Julien Henry
  */
-public class Table {
+public class Table extends StreamingTable {
 
   private List<Row> rows = new ArrayList<Row>();
 
@@ -81,71 +79,18 @@ public class Table {
     rows.add(row);
   }
 
+  @Override
   public int getRowCount() {
     return getRows().size();
   }
 
-  public List<Row> getRows() {
-    return rows;
-  }
-
-  public boolean hasText(String text) {
-    for (int i = 0; i < getRowCount(); i++) {
-      Row row = (Row) getRows().get(i);
-      if (row.hasText(text))
-        return true;
-    }
-    return false;
+  @Override
+  public Row getRow(int index) {
+    return getRows().get(index);
   }
 
-  public boolean hasMatch(String regexp) {
-    for (int i = 0; i < getRowCount(); i++) {
-      Row row = (Row) getRows().get(i);
-      if (row.hasMatch(regexp))
-        return true;
-    }
-    return false;
-  }
-
-  public void assertEquals(Table t) {
-    Assert.assertTrue("Row count are not equal", this.getRows().size() == t
-      .getRows().size());
-    for (int i = 0; i < this.getRows().size(); i++) {
-      ((Row) this.getRows().get(i))
-        .assertEquals((Row) t.getRows().get(i));
-    }
-  }
-
-  public void assertSubTableEquals(int startRow, Table t) {
-    Table sub = new Table();
-    if (startRow + t.getRowCount() > this.getRowCount())
-      Assert.fail("Expected rows [" + t.getRowCount()
-        + "] larger than actual rows in range being compared"
-        + " [" + (this.getRowCount() - startRow) + "].");
-    for (int i = startRow; i < startRow + t.getRowCount(); i++) {
-      sub.appendRow((Row) this.getRows().get(i));
-    }
-    sub.assertEquals(t);
-  }
-
-  public void assertMatch(Table t) {
-    Assert.assertTrue("Row count are not equal", this.getRows().size() == t
-      .getRows().size());
-    for (int i = 0; i < this.getRows().size(); i++) {
-      ((Row) this.getRows().get(i)).assertMatch((Row) t.getRows().get(i));
-    }
-  }
-
-  public void assertSubTableMatch(int startRow, Table t) {
-    Table sub = new Table();
-    if (startRow + t.getRowCount() > this.getRowCount())
-      Assert.fail("Expected rows [" + t.getRowCount()
-        + "] larger than actual rows in range being compared"
-        + " [" + (this.getRowCount() - startRow) + "].");
-    for (int i = startRow; i < startRow + t.getRowCount(); i++) {
-      sub.appendRow((Row) this.getRows().get(i));
-    }
-    sub.assertMatch(t);
+  public List<Row> getRows() {
+    return rows;
   }
 
 }
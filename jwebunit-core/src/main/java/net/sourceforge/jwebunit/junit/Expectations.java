@@ -0,0 +1,221 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.junit;
+
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sourceforge.jwebunit.api.Expectation;
+import net.sourceforge.jwebunit.api.IBatchTestingEngine;
+import net.sourceforge.jwebunit.api.ITestingEngine;
+
+/**
+ * A batch of expectations on the current page, evaluated together by {@link #verify()}. All the failures are reported
+ * at once instead of stopping at the first one:
+ *
+ * <pre>
+ * expect().title(&quot;Home&quot;).text(&quot;Welcome&quot;).link(&quot;logout&quot;).field(&quot;login&quot;, &quot;&quot;).verify();
+ * </pre>
+ *
+ * When the testing engine implements {@link IBatchTestingEngine}, the whole batch is given to the engine, otherwise
+ * each expectation is evaluated through the regular engine methods.
+ *
+ * @see WebTester#expect()
+ */
+public class Expectations {
+
+    private final WebTester tester;
+
+    private final List<Expectation> expectations = new ArrayList<Expectation>();
+
+    /**
+     * Create an empty batch.
+     *
+     * @param tester the tester giving access to the current page.
+     */
+    public Expectations(WebTester tester) {
+        this.tester = tester;
+    }
+
+    /**
+     * Expect the title of the page to be equal to a value.
+     *
+     * @param title expected title
+     * @return this batch
+     */
+    public Expectations title(String title) {
+        return add(Expectation.Type.TITLE_EQUALS, null, title);
+    }
+
+    /**
+     * Expect a text to be present.
+     *
+     * @param text expected text
+     * @return this batch
+     */
+    public Expectations text(String text) {
+        return add(Expectation.Type.TEXT_PRESENT, null, text);
+    }
+
+    /**
+     * Expect a text not to be present.
+     *
+     * @param text unexpected text
+     * @return this batch
+     */
+    public Expectations noText(String text) {
+        return add(Expectation.Type.TEXT_NOT_PRESENT, null, text);
+    }
+
+    /**
+     * Expect a regexp to be matched in the text of the page.
+     *
+     * @param regexp expected regexp
+     * @return this batch
+     */
+    public Expectations match(String regexp) {
+        return add(Expectation.Type.MATCH, null, regexp);
+    }
+
+    /**
+     * Expect a link with a given id to be present.
+     *
+     * @param linkId id of the link
+     * @return this batch
+     */
+    public Expectations link(String linkId) {
+        return add(Expectation.Type.LINK_PRESENT, linkId, null);
+    }
+
+    /**
+     * Expect a link containing a given text to be present.
+     *
+     * @param linkText text of the link
+     * @return this batch
+     */
+    public Expectations linkWithText(String linkText) {
+        return add(Expectation.Type.LINK_PRESENT_WITH_TEXT, null, linkText);
+    }
+
+    /**
+     * Expect an element with a given id to be present.
+     *
+     * @param elementId id of the element
+     * @return this batch
+     */
+    public Expectations element(String elementId) {
+        return add(Expectation.Type.ELEMENT_PRESENT, elementId, null);
+    }
+
+    /**
+     * Expect an element with a given id to contain a text.
+     *
+     * @param elementId id of the element
+     * @param text expected text
+     * @return this batch
+     */
+    public Expectations textInElement(String elementId, String text) {
+        return add(Expectation.Type.TEXT_IN_ELEMENT, elementId, text);
+    }
+
+    /**
+     * Expect a form element with a given name to be present.
+     *
+     * @param formElementName name of the form element
+     * @return this batch
+     */
+    public Expectations formElement(String formElementName) {
+        return add(Expectation.Type.FORM_ELEMENT_PRESENT, formElementName, null);
+    }
+
+    /**
+     * Expect a text field to have a given value.
+     *
+     * @param formElementName name of the text field
+     * @param expectedValue expected value
+     * @return this batch
+     */
+    public Expectations field(String formElementName, String expectedValue) {
+        return add(Expectation.Type.TEXT_FIELD_EQUALS, formElementName, expectedValue);
+    }
+
+    /**
+     * @return the expectations of this batch, in the order they were added.
+     */
+    public List<Expectation> getExpectations() {
+        return expectations;
+    }
+
+    /**
+     * Evaluate all the expectations of this batch on the current page.
+     *
+     * @return the messages of the expectations that are not met, empty if all are met.
+     */
+    public List<String> check() {
+        ITestingEngine engine = tester.getTestingEngine();
+        List<String> failures = new ArrayList<String>();
+        if (expectations.isEmpty()) {
+            return failures;
+        }
+        if (engine instanceof IBatchTestingEngine) {
+            List<Boolean> results = ((IBatchTestingEngine) engine).evaluate(expectations);
+            for (int i = 0; i < expectations.size(); i++) {
+                if (!results.get(i)) {
+                    failures.add(expectations.get(i).getFailureMessage());
+                }
+            }
+        } else {
+            for (Expectation expectation : expectations) {
+                try {
+                    if (!expectation.evaluate(engine)) {
+                        failures.add(expectation.getFailureMessage());
+                    }
+                } catch (RuntimeException e) {
+                    failures.add(expectation.getFailureMessage() + " (" + e + ")");
+                }
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Evaluate all the expectations of this batch on the current page, and fail if any of them is not met. The failure
+     * message lists all the expectations that are not met.
+     */
+    public void verify() {
+        List<String> failures = check();
+        if (!failures.isEmpty()) {
+            StringBuilder message = new StringBuilder();
+            message.append(failures.size()).append(" of ").append(expectations.size())
+                    .append(" expectations not met:");
+            for (String failure : failures) {
+                message.append("\n  ").append(failure);
+            }
+            fail(message.toString());
+        }
+    }
+
+    private Expectations add(Expectation.Type type, String name, String value) {
+        expectations.add(new Expectation(type, name, value));
+        return this;
+    }
+
+}
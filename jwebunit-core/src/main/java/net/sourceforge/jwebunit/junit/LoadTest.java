@@ -0,0 +1,233 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.junit;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Run a scenario written against {@link WebTester} as a load test: virtual users are started progressively during the
+ * ramp-up, then each one runs the scenario again and again until the end of the run. Each iteration of a user gets a
+ * fresh {@link WebTester}, so its own testing engine and {@link net.sourceforge.jwebunit.util.TestContext}, bound to
+ * {@link JWebUnit} through {@link WebTesterScope}.
+ * <p>
+ * The scenario is cut into named steps with {@link #step(String)}: a step lasts until the next one starts or the
+ * iteration ends. The latencies of each step, and of whole iterations, are gathered in a {@link LoadTestReport}.
+ * </p>
+ * <p>
+ * Like {@link SimulatedUsers}, the threads are provided by the caller and one task is submitted per user, so the
+ * executor must be able to run all the users at the same time, for example
+ * <code>Executors.newCachedThreadPool()</code> or a virtual thread executor.
+ * </p>
+ *
+ * <pre>
+ * LoadTestReport report = new LoadTest(executor).users(100).rampUp(30, TimeUnit.SECONDS)
+ *         .duration(5, TimeUnit.MINUTES).run(new SimulatedUsers.Session() {
+ *             public void run(int user) {
+ *                 LoadTest.step(&quot;home&quot;);
+ *                 beginAt(&quot;/&quot;);
+ *                 LoadTest.step(&quot;login&quot;);
+ *                 setTextField(&quot;user&quot;, &quot;user&quot; + user);
+ *                 submit();
+ *             }
+ *         });
+ * report.export(new CsvInstrumentationSink(new File(&quot;target/load.csv&quot;)));
+ * </pre>
+ */
+public class LoadTest {
+
+    /**
+     * Current iteration of the virtual user of the thread, <code>null</code> outside of a load test.
+     */
+    private static final ThreadLocal<Iteration> CURRENT = new ThreadLocal<Iteration>();
+
+    private final Executor executor;
+
+    private int users = 1;
+
+    private long rampUp;
+
+    private long duration;
+
+    /**
+     * Create a load test of one user running the scenario once.
+     *
+     * @param executor executor running the virtual users, one task per user.
+     */
+    public LoadTest(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Set the number of virtual users.
+     *
+     * @param count number of users, at least 1.
+     * @return this load test.
+     */
+    public LoadTest users(int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("At least one user is needed");
+        }
+        this.users = count;
+        return this;
+    }
+
+    /**
+     * Set the time during which the users are started, at regular intervals. By default all the users start at once.
+     *
+     * @param time the ramp-up time.
+     * @param unit unit of the time.
+     * @return this load test.
+     */
+    public LoadTest rampUp(long time, TimeUnit unit) {
+        this.rampUp = unit.toNanos(time);
+        return this;
+    }
+
+    /**
+     * Set the duration of the run, ramp-up included. Users don't start a new iteration after it, but finish the
+     * current one. By default each user runs the scenario once.
+     *
+     * @param time the duration.
+     * @param unit unit of the time.
+     * @return this load test.
+     */
+    public LoadTest duration(long time, TimeUnit unit) {
+        this.duration = unit.toNanos(time);
+        return this;
+    }
+
+    /**
+     * Start a new step of the scenario, which ends the current step if any. Does nothing when the scenario is not run
+     * by a load test, so that it can also be used as a plain test.
+     *
+     * @param name name of the step.
+     */
+    public static void step(String name) {
+        Iteration iteration = CURRENT.get();
+        if (iteration != null) {
+            iteration.step(name);
+        }
+    }
+
+    /**
+     * Run the load test and wait for all the users to finish.
+     *
+     * @param scenario conversation of each user, given the number of the user from 0.
+     * @return the statistics of the run.
+     * @throws InterruptedException if interrupted while waiting for the users.
+     */
+    public LoadTestReport run(final SimulatedUsers.Session scenario) throws InterruptedException {
+        final LoadTestReport report = new LoadTestReport(users);
+        final CountDownLatch done = new CountDownLatch(users);
+        final long start = System.nanoTime();
+        final long end = start + duration;
+        for (int i = 0; i < users; i++) {
+            final int user = i;
+            final long userStart = start + rampUp * i / users;
+            executor.execute(new Runnable() {
+                public void run() {
+                    try {
+                        long wait = userStart - System.nanoTime();
+                        if (wait > 0) {
+                            TimeUnit.NANOSECONDS.sleep(wait);
+                        }
+                        do {
+                            runIteration(scenario, user, report);
+                        } while (System.nanoTime() < end && !Thread.currentThread().isInterrupted());
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            });
+        }
+        done.await();
+        report.finished();
+        return report;
+    }
+
+    private static void runIteration(final SimulatedUsers.Session scenario, final int user,
+            final LoadTestReport report) {
+        final Iteration iteration = new Iteration(report);
+        CURRENT.set(iteration);
+        try {
+            WebTesterScope.run(new WebTester(), new Runnable() {
+                public void run() {
+                    try {
+                        scenario.run(user);
+                        iteration.finish(null);
+                    } catch (Throwable t) {
+                        iteration.finish(t);
+                    } finally {
+                        // the scenario may have replaced the tester with setCustomTester()
+                        WebTesterScope.current().closeBrowser();
+                    }
+                }
+            });
+        } catch (Throwable t) {
+            // closing the browser failed
+            report.failed(t);
+        } finally {
+            CURRENT.remove();
+        }
+    }
+
+    /**
+     * Timings of one iteration of a user.
+     */
+    private static class Iteration {
+
+        private final LoadTestReport report;
+
+        private final long start = System.nanoTime();
+
+        private String step;
+
+        private long stepStart;
+
+        Iteration(LoadTestReport report) {
+            this.report = report;
+        }
+
+        void step(String name) {
+            long now = System.nanoTime();
+            if (step != null) {
+                report.recordStep(step, now - stepStart, false);
+            }
+            step = name;
+            stepStart = now;
+        }
+
+        void finish(Throwable failure) {
+            long now = System.nanoTime();
+            if (step != null) {
+                report.recordStep(step, now - stepStart, failure != null);
+                step = null;
+            }
+            report.recordIteration(now - start, failure != null);
+            if (failure != null) {
+                report.failed(failure);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,191 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.junit;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.sourceforge.jwebunit.api.IInstrumentationSink;
+import net.sourceforge.jwebunit.util.LatencyHistogram;
+import net.sourceforge.jwebunit.util.MethodStats;
+
+/**
+ * Statistics of a run of {@link LoadTest}: for each step of the scenario, and for whole iterations, the number of
+ * runs, failures and a histogram of the latencies. It is thread safe.
+ */
+public class LoadTestReport {
+
+    /**
+     * Name of the statistics of whole iterations.
+     */
+    public static final String ITERATION = "iteration";
+
+    /**
+     * Maximum number of failures kept, the other ones are only counted.
+     */
+    private static final int MAX_FAILURES = 100;
+
+    private final int users;
+
+    private final long start = System.nanoTime();
+
+    private long end;
+
+    private final MethodStats iterations = new MethodStats(ITERATION);
+
+    private final Map<String, MethodStats> steps = new LinkedHashMap<String, MethodStats>();
+
+    private final List<Throwable> failures = new ArrayList<Throwable>();
+
+    LoadTestReport(int users) {
+        this.users = users;
+    }
+
+    void recordStep(String step, long nanos, boolean failed) {
+        MethodStats stats;
+        synchronized (steps) {
+            stats = steps.get(step);
+            if (stats == null) {
+                stats = new MethodStats(step);
+                steps.put(step, stats);
+            }
+        }
+        stats.record(nanos, 0, failed);
+    }
+
+    void recordIteration(long nanos, boolean failed) {
+        iterations.record(nanos, 0, failed);
+    }
+
+    void failed(Throwable t) {
+        synchronized (failures) {
+            if (failures.size() < MAX_FAILURES) {
+                failures.add(t);
+            }
+        }
+    }
+
+    synchronized void finished() {
+        end = System.nanoTime();
+    }
+
+    /**
+     * @return the number of virtual users.
+     */
+    public int getUsers() {
+        return users;
+    }
+
+    /**
+     * @return the elapsed time of the run, in milliseconds.
+     */
+    public synchronized long getElapsedTime() {
+        return ((end == 0 ? System.nanoTime() : end) - start) / 1000000;
+    }
+
+    /**
+     * @return the statistics of whole iterations of the scenario.
+     */
+    public MethodStats getIterations() {
+        return iterations;
+    }
+
+    /**
+     * @return the statistics of each step, in the order the steps were first run.
+     */
+    public List<MethodStats> getSteps() {
+        synchronized (steps) {
+            return new ArrayList<MethodStats>(steps.values());
+        }
+    }
+
+    /**
+     * @param step name of a step.
+     * @return the statistics of the step, <code>null</code> if it was never run.
+     */
+    public MethodStats getStep(String step) {
+        synchronized (steps) {
+            return steps.get(step);
+        }
+    }
+
+    /**
+     * @return the first errors thrown by the iterations that failed, at most 100.
+     */
+    public List<Throwable> getFailures() {
+        synchronized (failures) {
+            return Collections.unmodifiableList(new ArrayList<Throwable>(failures));
+        }
+    }
+
+    /**
+     * @param stats statistics of a step or of the iterations.
+     * @return the number of runs per second over the whole run.
+     */
+    public double getThroughput(MethodStats stats) {
+        long elapsed = getElapsedTime();
+        return elapsed == 0 ? 0 : stats.getCount() * 1000.0 / elapsed;
+    }
+
+    /**
+     * Export the statistics of the steps, then of the iterations, for example to a CSV file with
+     * {@link net.sourceforge.jwebunit.util.CsvInstrumentationSink}.
+     *
+     * @param sink destination of the statistics.
+     */
+    public void export(IInstrumentationSink sink) {
+        List<MethodStats> stats = new ArrayList<MethodStats>();
+        for (MethodStats step : getSteps()) {
+            stats.add(step.copy());
+        }
+        stats.add(iterations.copy());
+        sink.export(stats);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(users).append(" users, ").append(iterations.getCount()).append(" iterations, ")
+                .append(iterations.getErrorCount()).append(" failures, ").append(getElapsedTime())
+                .append(" ms elapsed\n");
+        for (MethodStats step : getSteps()) {
+            append(sb, step);
+        }
+        append(sb, iterations);
+        return sb.toString();
+    }
+
+    private void append(StringBuilder sb, MethodStats stats) {
+        LatencyHistogram latencies = stats.getLatencies();
+        sb.append("  ").append(stats.getMethod()).append(": ").append(stats.getCount()).append(" runs, ")
+                .append(stats.getErrorCount()).append(" errors, ")
+                .append(String.format("%.1f", getThroughput(stats))).append("/s, p50=")
+                .append(latencies.getPercentile(50) / 1000000).append(" ms, p95=")
+                .append(latencies.getPercentile(95) / 1000000).append(" ms, p99=")
+                .append(latencies.getPercentile(99) / 1000000).append(" ms, max=")
+                .append(latencies.getMax() / 1000000).append(" ms\n");
+    }
+
+}
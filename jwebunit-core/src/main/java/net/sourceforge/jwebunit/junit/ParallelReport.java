@@ -0,0 +1,182 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.junit;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.runner.Description;
+
+/**
+ * Timings of a run of {@link ParallelRunner}, merged from all the workers. It is thread safe.
+ */
+public class ParallelReport {
+
+    private final String name;
+
+    private final int threads;
+
+    private final long start = System.nanoTime();
+
+    private long end;
+
+    private final Map<Description, Long> startTimes = new HashMap<Description, Long>();
+
+    private final Map<Description, Boolean> failures = new HashMap<Description, Boolean>();
+
+    private final Map<String, WorkerStats> workers = new TreeMap<String, WorkerStats>();
+
+    /**
+     * Create an empty report.
+     *
+     * @param name name of the run.
+     * @param threads number of workers.
+     */
+    public ParallelReport(String name, int threads) {
+        this.name = name;
+        this.threads = threads;
+    }
+
+    synchronized void testStarted(Description description) {
+        startTimes.put(description, System.nanoTime());
+    }
+
+    synchronized void testFailed(Description description) {
+        failures.put(description, Boolean.TRUE);
+    }
+
+    synchronized void testFinished(Description description) {
+        Long started = startTimes.remove(description);
+        if (started == null) {
+            return;
+        }
+        String worker = Thread.currentThread().getName();
+        WorkerStats stats = workers.get(worker);
+        if (stats == null) {
+            stats = new WorkerStats();
+            workers.put(worker, stats);
+        }
+        stats.add(description, System.nanoTime() - started, failures.remove(description) != null);
+    }
+
+    synchronized void finished() {
+        end = System.nanoTime();
+    }
+
+    /**
+     * @return the number of tests run.
+     */
+    public synchronized int getTestCount() {
+        int count = 0;
+        for (WorkerStats stats : workers.values()) {
+            count += stats.tests.size();
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of tests that failed.
+     */
+    public synchronized int getFailureCount() {
+        int count = 0;
+        for (WorkerStats stats : workers.values()) {
+            count += stats.failures;
+        }
+        return count;
+    }
+
+    /**
+     * @return the names of the workers that ran at least one test.
+     */
+    public synchronized List<String> getWorkers() {
+        return new ArrayList<String>(workers.keySet());
+    }
+
+    /**
+     * @param worker name of a worker thread.
+     * @return the total time spent running tests by the worker, in milliseconds.
+     */
+    public synchronized long getWorkerTime(String worker) {
+        WorkerStats stats = workers.get(worker);
+        return stats == null ? 0 : stats.nanos / 1000000;
+    }
+
+    /**
+     * @return the total time spent running tests by all the workers, in milliseconds.
+     */
+    public synchronized long getTotalTime() {
+        long nanos = 0;
+        for (WorkerStats stats : workers.values()) {
+            nanos += stats.nanos;
+        }
+        return nanos / 1000000;
+    }
+
+    /**
+     * @return the elapsed time of the run, in milliseconds.
+     */
+    public synchronized long getElapsedTime() {
+        return ((end == 0 ? System.nanoTime() : end) - start) / 1000000;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(name).append(": ").append(getTestCount()).append(" tests, ").append(getFailureCount())
+                .append(" failures, ").append(threads).append(" threads, ").append(getElapsedTime())
+                .append(" ms elapsed, ").append(getTotalTime()).append(" ms in tests\n");
+        for (Map.Entry<String, WorkerStats> entry : workers.entrySet()) {
+            WorkerStats stats = entry.getValue();
+            sb.append("  ").append(entry.getKey()).append(": ").append(stats.tests.size()).append(" tests, ")
+                    .append(stats.failures).append(" failures, ").append(stats.nanos / 1000000).append(" ms\n");
+            for (int i = 0; i < stats.tests.size(); i++) {
+                sb.append("    ").append(stats.tests.get(i).getMethodName()).append(": ")
+                        .append(stats.times.get(i) / 1000000).append(" ms\n");
+            }
+        }
+        return sb.toString();
+    }
+
+    private static class WorkerStats {
+
+        private final List<Description> tests = new ArrayList<Description>();
+
+        private final List<Long> times = new ArrayList<Long>();
+
+        private int failures;
+
+        private long nanos;
+
+        void add(Description test, long time, boolean failed) {
+            tests.add(test);
+            times.add(time);
+            nanos += time;
+            if (failed) {
+                failures++;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,196 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.junit;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.runner.Description;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
+import org.junit.runner.notification.RunNotifier;
+import org.junit.runners.BlockJUnit4ClassRunner;
+import org.junit.runners.model.InitializationError;
+import org.junit.runners.model.RunnerScheduler;
+
+/**
+ * JUnit runner executing the test methods of a class concurrently on a bounded pool of worker threads.
+ * <p>
+ * Each worker has its own {@link WebTester}, bound with {@link JWebUnit#setCustomTester(WebTester)}, and so its own
+ * {@link net.sourceforge.jwebunit.util.TestContext} and testing engine. The tester is kept for all the tests run by the
+ * worker, so the testing engine is reused. Tests must use the static methods of {@link JWebUnit} and set up their test
+ * context in a <code>@Before</code> method:
+ * </p>
+ *
+ * <pre>
+ * &#064;RunWith(ParallelRunner.class)
+ * &#064;Parallel(threads = 4)
+ * public class MyTest {
+ *     &#064;Before
+ *     public void prepare() {
+ *         setBaseUrl(&quot;http://localhost:8080/test&quot;);
+ *     }
+ *
+ *     &#064;Test
+ *     public void test1() {
+ *         beginAt(&quot;home.xhtml&quot;);
+ *         ...
+ *     }
+ * }
+ * </pre>
+ * <p>
+ * The time spent by each worker is collected in a {@link ParallelReport}.
+ * </p>
+ *
+ * @see Parallel
+ */
+public class ParallelRunner extends BlockJUnit4ClassRunner {
+
+    /**
+     * System property overriding the number of worker threads.
+     */
+    public static final String THREADS_PROPERTY = "jwebunit.parallel.threads";
+
+    /**
+     * System property enabling the printing of the report.
+     */
+    public static final String REPORT_PROPERTY = "jwebunit.parallel.report";
+
+    private static final AtomicInteger runnerCount = new AtomicInteger();
+
+    private final int threads;
+
+    private final boolean printReport;
+
+    private ParallelReport report;
+
+    /**
+     * Creates a runner for a test class.
+     *
+     * @param klass the test class.
+     * @throws InitializationError if the test class is malformed.
+     */
+    public ParallelRunner(Class<?> klass) throws InitializationError {
+        super(klass);
+        Parallel parallel = klass.getAnnotation(Parallel.class);
+        int count = parallel != null ? parallel.threads() : 0;
+        count = Integer.getInteger(THREADS_PROPERTY, count);
+        if (count <= 0) {
+            count = Runtime.getRuntime().availableProcessors();
+        }
+        threads = count;
+        printReport = (parallel != null && parallel.report()) || Boolean.getBoolean(REPORT_PROPERTY);
+    }
+
+    /**
+     * @return the number of worker threads.
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * @return the report of the last run, or null if the runner was not run yet.
+     */
+    public ParallelReport getReport() {
+        return report;
+    }
+
+    @Override
+    public void run(RunNotifier notifier) {
+        final ParallelReport currentReport = new ParallelReport(getDescription().getDisplayName(), threads);
+        report = currentReport;
+        RunListener listener = new RunListener() {
+            @Override
+            public void testStarted(Description description) {
+                currentReport.testStarted(description);
+            }
+
+            @Override
+            public void testFailure(Failure failure) {
+                currentReport.testFailed(failure.getDescription());
+            }
+
+            @Override
+            public void testAssumptionFailure(Failure failure) {
+                currentReport.testFailed(failure.getDescription());
+            }
+
+            @Override
+            public void testFinished(Description description) {
+                currentReport.testFinished(description);
+            }
+        };
+        setScheduler(new WorkerScheduler(threads, runnerCount.incrementAndGet()));
+        notifier.addListener(listener);
+        try {
+            super.run(notifier);
+        } finally {
+            notifier.removeListener(listener);
+            currentReport.finished();
+        }
+        if (printReport) {
+            System.out.println(currentReport);
+        }
+    }
+
+    /**
+     * Schedule the tests on a fixed pool of workers, each one with its own {@link WebTester}.
+     */
+    private static class WorkerScheduler implements RunnerScheduler {
+
+        private final ExecutorService executor;
+
+        WorkerScheduler(int threads, final int runnerId) {
+            executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                private final AtomicInteger workerCount = new AtomicInteger();
+
+                public Thread newThread(final Runnable r) {
+                    Thread t = new Thread(new Runnable() {
+                        public void run() {
+                            // don't share the WebTester or the TestContext of the thread that started the run
+                            JWebUnit.setCustomTester(new WebTester());
+                            r.run();
+                        }
+                    }, "jwebunit-parallel-" + runnerId + "-" + workerCount.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+
+        public void schedule(Runnable childStatement) {
+            executor.execute(childStatement);
+        }
+
+        public void finished() {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+}
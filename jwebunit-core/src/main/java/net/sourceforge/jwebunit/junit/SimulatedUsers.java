@@ -0,0 +1,162 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.junit;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+
+/**
+ * Run many simulated users concurrently, each one with its own {@link WebTester} bound through
+ * {@link WebTesterScope}, so that sessions can use the static methods of {@link JWebUnit}.
+ * <p>
+ * The threads are provided by the caller, which makes it possible to use virtual threads when the JVM supports them,
+ * for example <code>new SimulatedUsers(Executors.newVirtualThreadPerTaskExecutor())</code>. Since sessions spend most of
+ * their time waiting for HTTP responses, this allows many more users than platform threads.
+ * </p>
+ *
+ * <pre>
+ * SimulatedUsers.Result result = new SimulatedUsers(executor).run(500, new SimulatedUsers.Session() {
+ *     public void run(int user) {
+ *         setBaseUrl(&quot;http://localhost:8080/app&quot;);
+ *         beginAt(&quot;/login.html&quot;);
+ *         ...
+ *     }
+ * });
+ * </pre>
+ */
+public class SimulatedUsers {
+
+    /**
+     * The conversation of a simulated user.
+     */
+    public interface Session {
+
+        /**
+         * Run the conversation of a user, with a fresh {@link WebTester} bound to {@link JWebUnit}. The browser is
+         * closed afterwards.
+         *
+         * @param user the number of the user, from 0.
+         * @throws Exception if the conversation fails.
+         */
+        void run(int user) throws Exception;
+    }
+
+    /**
+     * The outcome of a run.
+     */
+    public static class Result {
+
+        private final int users;
+
+        private final List<Throwable> failures;
+
+        private final long elapsedTime;
+
+        Result(int users, List<Throwable> failures, long elapsedTime) {
+            this.users = users;
+            this.failures = Collections.unmodifiableList(failures);
+            this.elapsedTime = elapsedTime;
+        }
+
+        /**
+         * @return the number of simulated users.
+         */
+        public int getUsers() {
+            return users;
+        }
+
+        /**
+         * @return the errors thrown by the sessions that failed.
+         */
+        public List<Throwable> getFailures() {
+            return failures;
+        }
+
+        /**
+         * @return the elapsed time of the run, in milliseconds.
+         */
+        public long getElapsedTime() {
+            return elapsedTime;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            return users + " users, " + failures.size() + " failures, " + elapsedTime + " ms";
+        }
+    }
+
+    private final Executor executor;
+
+    /**
+     * Create a runner of simulated users.
+     *
+     * @param executor executor running the sessions, one task per user.
+     */
+    public SimulatedUsers(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Run simulated users and wait for all of them to finish.
+     *
+     * @param users number of users.
+     * @param session conversation of each user.
+     * @return the outcome of the run.
+     * @throws InterruptedException if interrupted while waiting for the users.
+     */
+    public Result run(int users, final Session session) throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(users);
+        final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+        long start = System.nanoTime();
+        for (int i = 0; i < users; i++) {
+            final int user = i;
+            executor.execute(new Runnable() {
+                public void run() {
+                    try {
+                        WebTesterScope.run(new WebTester(), new Runnable() {
+                            public void run() {
+                                try {
+                                    session.run(user);
+                                } catch (Throwable t) {
+                                    failures.add(t);
+                                } finally {
+                                    // the session may have replaced the tester with setCustomTester()
+                                    WebTesterScope.current().closeBrowser();
+                                }
+                            }
+                        });
+                    } catch (Throwable t) {
+                        failures.add(t);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            });
+        }
+        done.await();
+        return new Result(users, new ArrayList<Throwable>(failures), (System.nanoTime() - start) / 1000000);
+    }
+
+}
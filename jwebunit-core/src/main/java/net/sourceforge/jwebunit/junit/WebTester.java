@@ -39,6 +39,7 @@ import java.io.PrintStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
@@ -48,23 +49,30 @@ import java.util.ResourceBundle;
 import javax.imageio.ImageIO;
 import javax.servlet.http.Cookie;
 
+import net.sourceforge.jwebunit.api.Condition;
 import net.sourceforge.jwebunit.api.HttpHeader;
 import net.sourceforge.jwebunit.api.IElement;
+import net.sourceforge.jwebunit.api.IStreamingTableEngine;
 import net.sourceforge.jwebunit.api.ITestingEngine;
 import net.sourceforge.jwebunit.exception.ExpectedJavascriptAlertException;
 import net.sourceforge.jwebunit.exception.ExpectedJavascriptConfirmException;
 import net.sourceforge.jwebunit.exception.ExpectedJavascriptPromptException;
 import net.sourceforge.jwebunit.exception.TestingEngineResponseException;
 import net.sourceforge.jwebunit.exception.UnableToSetFormException;
+import net.sourceforge.jwebunit.html.StreamingTable;
 import net.sourceforge.jwebunit.html.Table;
 import net.sourceforge.jwebunit.javascript.JavascriptAlert;
 import net.sourceforge.jwebunit.javascript.JavascriptConfirm;
 import net.sourceforge.jwebunit.javascript.JavascriptPrompt;
+import net.sourceforge.jwebunit.util.Checkpoint;
+import net.sourceforge.jwebunit.util.CheckpointRegistry;
+import net.sourceforge.jwebunit.util.CompiledRegexp;
+import net.sourceforge.jwebunit.util.EngineInstrumentation;
+import net.sourceforge.jwebunit.util.RegexpCache;
+import net.sourceforge.jwebunit.util.RequestLog;
 import net.sourceforge.jwebunit.util.TestContext;
 import net.sourceforge.jwebunit.util.TestingEngineRegistry;
 
-import org.apache.regexp.RE;
-import org.apache.regexp.RESyntaxException;
 
 /**
  * Provides a high-level API for basic web application navigation and validation by providing
@@ -129,6 +137,16 @@ public class WebTester {
         return testingEngine;
     }
 
+    /**
+     * Get the testing engine itself, to call the methods of its class. Unlike {@link #getTestingEngine()}, it is never
+     * the proxy added when {@link EngineInstrumentation} is enabled, so it can be cast to the engine class.
+     *
+     * @return the testing engine.
+     */
+    public ITestingEngine getUnwrappedTestingEngine() {
+        return EngineInstrumentation.unwrap(getTestingEngine());
+    }
+
     /**
      * Initializes the IJWebUnitDialog when the testing engine is null. This will construct a new instance of the testing engine based
      * on the specified testing engine key.
@@ -156,6 +174,9 @@ public class WebTester {
                     + theClass + "] with key [" + theTestingEngineKey + "].", e);
         }
 
+        if (EngineInstrumentation.isEnabled()) {
+            theIJWebUnitDialog = EngineInstrumentation.instrument(theIJWebUnitDialog);
+        }
         return theIJWebUnitDialog;
     }
 
@@ -238,6 +259,74 @@ public class WebTester {
 
     }
 
+    /**
+     * Save the state of the current conversation: the cookies of the browser, the authorization and the request
+     * headers of the test context, and the current URL. The checkpoint is registered in {@link CheckpointRegistry},
+     * so that later tests can start from it with {@link #restoreCheckpoint(String)}.
+     *
+     * @param name name of the checkpoint, replacing any previous checkpoint with this name.
+     * @return the checkpoint, that can also be stored in a file with {@link Checkpoint#store(File)}.
+     */
+    public Checkpoint saveCheckpoint(String name) {
+        List<Cookie> cookies = new ArrayList<Cookie>();
+        for (Object cookie : getTestingEngine().getCookies()) {
+            cookies.add((Cookie) cookie);
+        }
+        Checkpoint checkpoint = new Checkpoint(name, getTestingEngine().getPageURL(), cookies, getTestContext());
+        CheckpointRegistry.register(checkpoint);
+        return checkpoint;
+    }
+
+    /**
+     * Begin conversation from a checkpoint saved by {@link #saveCheckpoint(String)}, like {@link #beginAt(String)}
+     * does from a URL.
+     *
+     * @param name name of the checkpoint.
+     * @throws TestingEngineResponseException If something bad happend (404)
+     */
+    public void restoreCheckpoint(String name) throws TestingEngineResponseException {
+        Checkpoint checkpoint = CheckpointRegistry.getCheckpoint(name);
+        assertNotNull("No checkpoint saved with name [" + name + "]", checkpoint);
+        restoreCheckpoint(checkpoint);
+    }
+
+    /**
+     * Begin conversation from a checkpoint: the test context is seeded with its cookies, authorization and request
+     * headers, then its URL is loaded.
+     *
+     * @param checkpoint a checkpoint, for example loaded with {@link Checkpoint#load(File)}.
+     * @throws TestingEngineResponseException If something bad happend (404)
+     */
+    public void restoreCheckpoint(Checkpoint checkpoint) throws TestingEngineResponseException {
+        getTestContext().applyCheckpoint(checkpoint);
+        getTestingEngine().beginAt(checkpoint.getUrl(), getTestContext());
+    }
+
+    /**
+     * Fork the current conversation: the returned tester starts on a clone of the current state (cookies, windows,
+     * current page with the values entered in its forms, working form) with a copy of the test context, and then goes
+     * on independently of this one. It allows trying different inputs from a page deep in a scenario without
+     * navigating to it again. Testers are not thread safe, but each fork can be used from its own thread.
+     * <p>
+     * Forking is supported by the HtmlUnit and HttpClient engines. The WebDriver engine can't read the state of its
+     * browser (open windows, DOM, form values) and always throws an {@link UnsupportedOperationException}.
+     * </p>
+     *
+     * @return a new tester for the forked conversation.
+     * @throws UnsupportedOperationException if the testing engine can't clone its state.
+     */
+    public WebTester fork() {
+        WebTester fork = new WebTester();
+        fork.setTestingEngineKey(getTestingEngineKey());
+        fork.setTestContext(new TestContext(getTestContext()));
+        ITestingEngine engine = getTestingEngine().fork(fork.getTestContext());
+        if (EngineInstrumentation.isEnabled()) {
+            engine = EngineInstrumentation.instrument(engine);
+        }
+        fork.setDialog(engine);
+        return fork;
+    }
+
     /**
      * This way of creating URL is not standard as absolute path are not correctly handled. We have to keep this
      * non standard method for {@link #beginAt(String)} that advertise a bad usage for a long time.
@@ -420,6 +509,18 @@ public class WebTester {
         return getTestingEngine().getResponseHeaders();
     }
 
+    /**
+     * Start a batch of expectations on the current page, evaluated together and reporting all failures at once.
+     * <p>
+     * Example: <code>expect().text("Welcome").link("logout").field("login", "").verify();</code>
+     * </p>
+     *
+     * @return an empty batch of expectations
+     */
+    public Expectations expect() {
+        return new Expectations(this);
+    }
+
     /**
      * Assert title of current html page in conversation matches an expected
      * value.
@@ -523,7 +624,7 @@ public class WebTester {
      * @param regexp
      */
     public void assertMatch(String regexp) {
-        RE re = getRE(regexp);
+        CompiledRegexp re = getRE(regexp);
         if (!re.match(getTestingEngine().getPageText()))
             fail("Expected rexexp not matched in response: [" + regexp
                     + "]");
@@ -557,7 +658,7 @@ public class WebTester {
      * @param text
      */
     public void assertMatch(String message, String regexp, String text) {
-        RE re = getRE(regexp);
+        CompiledRegexp re = getRE(regexp);
         if (!re.match(text))
             fail(message);
     }
@@ -569,7 +670,7 @@ public class WebTester {
      * @param text
      */
     public void assertNotMatch(String message, String regexp, String text) {
-        RE re = getRE(regexp);
+        CompiledRegexp re = getRE(regexp);
         if (re.match(text))
             fail(message);
     }
@@ -624,6 +725,21 @@ public class WebTester {
         return getTestingEngine().getTable(tableSummaryNameOrId);
     }
 
+    /**
+     * Get a view of a table reading its rows on demand when the testing engine supports it, so that table assertions
+     * don't read all the cells of a large table.
+     *
+     * @param tableSummaryNameOrId summary, name or id attribute value of table
+     * @return the view of the table
+     */
+    private StreamingTable getStreamingTable(String tableSummaryNameOrId) {
+        ITestingEngine engine = getTestingEngine();
+        if (engine instanceof IStreamingTableEngine) {
+            return ((IStreamingTableEngine) engine).getStreamingTable(tableSummaryNameOrId);
+        }
+        return engine.getTable(tableSummaryNameOrId);
+    }
+
     /**
      * Assert that a table with a given summary or id value is present.
      *
@@ -678,7 +794,7 @@ public class WebTester {
     public void assertTextInTable(String tableSummaryNameOrId, String text) {
         assertTablePresent(tableSummaryNameOrId);
         assertTrue("Could not find: [" + text + "]" + "in table ["
-                + tableSummaryNameOrId + "]", getTestingEngine().getTable(
+                + tableSummaryNameOrId + "]", getStreamingTable(
                 tableSummaryNameOrId).hasText(text));
     }
 
@@ -691,7 +807,7 @@ public class WebTester {
     public void assertMatchInTable(String tableSummaryNameOrId, String regexp) {
         assertTablePresent(tableSummaryNameOrId);
         assertTrue("Could not match: [" + regexp + "]" + "in table ["
-                + tableSummaryNameOrId + "]", getTestingEngine().getTable(
+                + tableSummaryNameOrId + "]", getStreamingTable(
                 tableSummaryNameOrId).hasMatch(regexp));
     }
 
@@ -767,7 +883,7 @@ public class WebTester {
     public void assertTextNotInTable(String tableSummaryNameOrId, String text) {
         assertTablePresent(tableSummaryNameOrId);
         assertTrue("Found text: [" + text + "] in table ["
-                + tableSummaryNameOrId + "]", !getTestingEngine().getTable(
+                + tableSummaryNameOrId + "]", !getStreamingTable(
                 tableSummaryNameOrId).hasText(text));
     }
 
@@ -792,7 +908,7 @@ public class WebTester {
     public void assertNoMatchInTable(String tableSummaryNameOrId, String regexp) {
         assertTablePresent(tableSummaryNameOrId);
         assertTrue("Found regexp: [" + regexp + "] in table ["
-                + tableSummaryNameOrId + "]", !getTestingEngine().getTable(
+                + tableSummaryNameOrId + "]", !getStreamingTable(
                 tableSummaryNameOrId).hasMatch(regexp));
     }
 
@@ -818,7 +934,7 @@ public class WebTester {
     public void assertTableEquals(String tableSummaryNameOrId,
             Table expectedTable) {
         assertTablePresent(tableSummaryNameOrId);
-        getTestingEngine().getTable(tableSummaryNameOrId).assertEquals(
+        getStreamingTable(tableSummaryNameOrId).assertEquals(
                 expectedTable);
     }
 
@@ -831,7 +947,7 @@ public class WebTester {
     public void assertTableEquals(String tableSummaryNameOrId,
             String[][] expectedCellValues) {
         assertTablePresent(tableSummaryNameOrId);
-        getTestingEngine().getTable(tableSummaryNameOrId).assertEquals(
+        getStreamingTable(tableSummaryNameOrId).assertEquals(
                 new Table(expectedCellValues));
     }
 
@@ -845,7 +961,7 @@ public class WebTester {
     public void assertTableRowsEqual(String tableSummaryNameOrId, int startRow,
             Table expectedTable) {
         assertTablePresent(tableSummaryNameOrId);
-        getTestingEngine().getTable(tableSummaryNameOrId).assertSubTableEquals(
+        getStreamingTable(tableSummaryNameOrId).assertSubTableEquals(
                 startRow, expectedTable);
     }
 
@@ -859,7 +975,7 @@ public class WebTester {
     public void assertTableRowsEqual(String tableSummaryNameOrId, int startRow,
             String[][] expectedTable) {
         assertTablePresent(tableSummaryNameOrId);
-        getTestingEngine().getTable(tableSummaryNameOrId).assertSubTableEquals(
+        getStreamingTable(tableSummaryNameOrId).assertSubTableEquals(
                 startRow, new Table(expectedTable));
     }
 
@@ -872,7 +988,7 @@ public class WebTester {
     public void assertTableRowCountEquals(String tableSummaryNameOrId,
             int expectedRowCount) {
         assertTablePresent(tableSummaryNameOrId);
-        int actualRowCount = getTestingEngine().getTable(tableSummaryNameOrId)
+        int actualRowCount = getStreamingTable(tableSummaryNameOrId)
                 .getRowCount();
         assertTrue("Expected row count was " + expectedRowCount
                 + " but actual row count is " + actualRowCount,
@@ -887,7 +1003,7 @@ public class WebTester {
      */
     public void assertTableMatch(String tableSummaryOrId, Table expectedTable) {
         assertTablePresent(tableSummaryOrId);
-        getTestingEngine().getTable(tableSummaryOrId)
+        getStreamingTable(tableSummaryOrId)
                 .assertMatch(expectedTable);
     }
 
@@ -900,7 +1016,7 @@ public class WebTester {
     public void assertTableMatch(String tableSummaryOrId,
             String[][] expectedCellValues) {
         assertTablePresent(tableSummaryOrId);
-        getTestingEngine().getTable(tableSummaryOrId).assertMatch(
+        getStreamingTable(tableSummaryOrId).assertMatch(
                 new Table(expectedCellValues));
     }
 
@@ -914,7 +1030,7 @@ public class WebTester {
     public void assertTableRowsMatch(String tableSummaryOrId, int startRow,
             Table expectedTable) {
         assertTablePresent(tableSummaryOrId);
-        getTestingEngine().getTable(tableSummaryOrId).assertSubTableMatch(
+        getStreamingTable(tableSummaryOrId).assertSubTableMatch(
                 startRow, expectedTable);
     }
 
@@ -928,7 +1044,7 @@ public class WebTester {
     public void assertTableRowsMatch(String tableSummaryOrId, int startRow,
             String[][] expectedTable) {
         assertTablePresent(tableSummaryOrId);
-        getTestingEngine().getTable(tableSummaryOrId).assertSubTableMatch(
+        getStreamingTable(tableSummaryOrId).assertSubTableMatch(
                 startRow, new Table(expectedTable));
     }
 
@@ -1081,12 +1197,7 @@ public class WebTester {
     public void assertFormElementMatch(String formElementName, String regexp) {
       // how can we @deprecate this if there is no available alternative?
         assertFormElementPresent(formElementName);
-        RE re = null;
-        try {
-            re = new RE(regexp, RE.MATCH_SINGLELINE);
-        } catch (RESyntaxException e) {
-            fail(e.toString());
-        }
+        CompiledRegexp re = getRE(regexp);
         assertTrue("Unable to match [" + regexp + "] in form element \""
                 + formElementName + "\"", re.match(getTestingEngine()
                 .getElementAttributByXPath(
@@ -1702,7 +1813,7 @@ public class WebTester {
         assertEquals(regexps.length, getTestingEngine()
                 .getSelectedOptions(selectName).length);
         for (int i = 0; i < regexps.length; i++) {
-            RE re = getRE(regexps[i]);
+            CompiledRegexp re = getRE(regexps[i]);
             assertTrue("Unable to match [" + regexps[i]
                     + "] in option \""
                     + getTestingEngine().getSelectedOptions(selectName)[i]
@@ -1724,7 +1835,7 @@ public class WebTester {
         assertEquals(regexps.length, getTestingEngine()
                 .getSelectedOptions(selectName, index).length);
         for (int i = 0; i < regexps.length; i++) {
-            RE re = getRE(regexps[i]);
+            CompiledRegexp re = getRE(regexps[i]);
             assertTrue("Unable to match [" + regexps[i]
                     + "] in option \""
                     + getTestingEngine().getSelectedOptions(selectName, index)[i]
@@ -2319,12 +2430,7 @@ public class WebTester {
      */
     public void assertCookieValueMatch(String cookieName, String regexp) {
         assertCookiePresent(cookieName);
-        RE re = null;
-        try {
-            re = new RE(regexp, RE.MATCH_SINGLELINE);
-        } catch (RESyntaxException e) {
-            fail(e.getMessage());
-        }
+        CompiledRegexp re = getRE(regexp);
         List<?> cookies = getTestingEngine().getCookies();
         for (Iterator<?> i = cookies.iterator(); i.hasNext();) {
             Cookie c = (Cookie) i.next();
@@ -2843,12 +2949,7 @@ public class WebTester {
      */
     public void assertLabelMatches(String regexp) {
       // get regexp
-        RE re = null;
-        try {
-            re = new RE(regexp, RE.MATCH_SINGLELINE);
-        } catch (RESyntaxException e) {
-            fail(e.toString());
-        }
+        CompiledRegexp re = getRE(regexp);
 
         // get all labels
       for (IElement e : getTestingEngine().getElementsByXPath("//label")) {
@@ -3163,6 +3264,22 @@ public class WebTester {
 
     }
 
+    /**
+     * Write the requests logged since the start of the test, with their timings, as a HAR file. A
+     * {@link RequestLog} must have been set on the test context before the conversation began.
+     *
+     * @param f The file name.
+     */
+    public void storeHar(File f) {
+        RequestLog log = getTestContext().getRequestLog();
+        assertNotNull("No request log set in the test context", log);
+        try {
+            log.storeHar(f);
+        } catch (IOException e) {
+            throw new RuntimeException("Error when writing to file", e);
+        }
+    }
+
     /**
      * Download the current page (or file) and compare it with the given file.
      *
@@ -3274,12 +3391,12 @@ public class WebTester {
         return testingEngineKey;
     }
 
-    private RE getRE(String regexp) {
-        RE re = null;
+    private CompiledRegexp getRE(String regexp) {
+        CompiledRegexp re = null;
         try {
-            re = new RE(regexp, RE.MATCH_SINGLELINE);
-        } catch (RESyntaxException e) {
-            fail(e.toString());
+            re = RegexpCache.compile(regexp);
+        } catch (IllegalArgumentException e) {
+            fail(e.getMessage());
         }
         return re;
     }
@@ -3576,6 +3693,49 @@ public class WebTester {
       getTestingEngine().setTimeout(milli);
     }
 
+    /**
+     * Wait until a text is present in the current page, for example after an AJAX call, and fail if it isn't after
+     * the timeout. The page is checked again as soon as it changes, rather than at fixed intervals.
+     *
+     * @param text the text to wait for
+     * @param timeout maximum time to wait, in milliseconds
+     * @return the time spent waiting, in milliseconds
+     */
+    public long waitForText(String text, long timeout) {
+        long waited = getTestingEngine().waitForText(text, timeout);
+        if (waited < 0) {
+            fail("Expected text not found in current page after " + timeout + " ms: [" + text
+                    + "]\n Page content was: [" + getTestingEngine().getPageText() + "]");
+        }
+        return waited;
+    }
+
+    /**
+     * Wait until an element matching an xpath is present in the current page, and fail if it isn't after the timeout.
+     *
+     * @param xpath xpath of the element to wait for
+     * @param timeout maximum time to wait, in milliseconds
+     * @return the time spent waiting, in milliseconds
+     */
+    public long waitForElementByXPath(String xpath, long timeout) {
+        long waited = getTestingEngine().waitForElementByXPath(xpath, timeout);
+        assertTrue("Unable to locate element with xpath \"" + xpath + "\" after " + timeout + " ms", waited >= 0);
+        return waited;
+    }
+
+    /**
+     * Wait until a condition is met on the current page, and fail if it isn't after the timeout.
+     *
+     * @param condition the condition to wait for
+     * @param timeout maximum time to wait, in milliseconds
+     * @return the time spent waiting, in milliseconds
+     */
+    public long waitForCondition(Condition condition, long timeout) {
+        long waited = getTestingEngine().waitForCondition(condition, timeout);
+        assertTrue("Condition " + condition + " not met after " + timeout + " ms", waited >= 0);
+        return waited;
+    }
+
     private Image validateImage(String imageSrc, String imageAlt, File out) {
         assertImagePresent(imageSrc, imageAlt);
         URL imageUrl = null;
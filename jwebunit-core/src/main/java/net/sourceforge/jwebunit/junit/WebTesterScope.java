@@ -0,0 +1,127 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.junit;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Binds a {@link WebTester} to the static methods of {@link JWebUnit} for the duration of a call, instead of for the
+ * whole life of the current thread.
+ * <p>
+ * By default {@link JWebUnit} keeps its tester in an inheritable thread local: each thread created by a thread using
+ * JWebUnit gets its own tester, sharing the test context of its parent, and keeps it until it dies. This doesn't suit
+ * threads that are pooled, or created in large numbers to simulate many users (for example virtual threads on recent
+ * JVMs), since the tester of a task would leak to the next task run by the same thread. A scoped tester is only visible
+ * during the call, is not copied to child threads, and the previous binding of the thread is restored after the call:
+ * </p>
+ *
+ * <pre>
+ * executor.submit(new Runnable() {
+ *     public void run() {
+ *         WebTesterScope.run(new WebTester(), new Runnable() {
+ *             public void run() {
+ *                 beginAt(&quot;/home.html&quot;);
+ *                 ...
+ *             }
+ *         });
+ *     }
+ * });
+ * </pre>
+ *
+ * @see SimulatedUsers
+ */
+public final class WebTesterScope {
+
+    private static final ThreadLocal<WebTester> current = new ThreadLocal<WebTester>();
+
+    private WebTesterScope() {
+        // This class should not be instanciated, but instead used statically
+    }
+
+    /**
+     * Run a task with a tester bound to {@link JWebUnit}.
+     *
+     * @param tester the tester to bind.
+     * @param task the task, using the static methods of {@link JWebUnit}.
+     */
+    public static void run(WebTester tester, Runnable task) {
+        WebTester previous = bind(tester);
+        try {
+            task.run();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    /**
+     * Call a task with a tester bound to {@link JWebUnit}.
+     *
+     * @param tester the tester to bind.
+     * @param task the task, using the static methods of {@link JWebUnit}.
+     * @return the result of the task.
+     * @throws Exception if the task fails.
+     */
+    public static <T> T call(WebTester tester, Callable<T> task) throws Exception {
+        WebTester previous = bind(tester);
+        try {
+            return task.call();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    /**
+     * @return the tester bound to the current call, or null when not called through this class.
+     */
+    public static WebTester current() {
+        return current.get();
+    }
+
+    /**
+     * Replace the tester bound to the current call, if any.
+     *
+     * @param tester the new tester.
+     * @return true if the tester was replaced, false if there is no scoped tester.
+     */
+    public static boolean replace(WebTester tester) {
+        if (current.get() == null) {
+            return false;
+        }
+        current.set(tester == null ? new WebTester() : tester);
+        return true;
+    }
+
+    private static WebTester bind(WebTester tester) {
+        if (tester == null) {
+            throw new IllegalArgumentException("Tester can't be null");
+        }
+        WebTester previous = current.get();
+        current.set(tester);
+        return previous;
+    }
+
+    private static void restore(WebTester previous) {
+        if (previous == null) {
+            current.remove();
+        } else {
+            current.set(previous);
+        }
+    }
+
+}
@@ -0,0 +1,78 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.util;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Counts the requests blocked by a {@link RequestFilter}, by content type. Engines may block requests from several
+ * threads, so the counter is thread safe.
+ */
+public class BlockedRequestCounter {
+
+    /**
+     * Key of the requests whose content type couldn't be guessed.
+     */
+    public static final String UNKNOWN_CONTENT_TYPE = "unknown";
+
+    private final Map<String, Integer> counts = new TreeMap<String, Integer>();
+
+    private int total;
+
+    /**
+     * Record a blocked request.
+     *
+     * @param contentType guessed content type of the request, or null if unknown.
+     */
+    public synchronized void record(String contentType) {
+        String key = contentType == null ? UNKNOWN_CONTENT_TYPE : contentType;
+        Integer count = counts.get(key);
+        counts.put(key, count == null ? 1 : count + 1);
+        total++;
+    }
+
+    /**
+     * @return the number of blocked requests.
+     */
+    public synchronized int getCount() {
+        return total;
+    }
+
+    /**
+     * @return the number of blocked requests by content type, sorted by content type.
+     */
+    public synchronized Map<String, Integer> getCountsByContentType() {
+        return new TreeMap<String, Integer>(counts);
+    }
+
+    /**
+     * Forget the blocked requests.
+     */
+    public synchronized void reset() {
+        counts.clear();
+        total = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "BlockedRequestCounter[total=" + total + ", byContentType=" + counts + "]";
+    }
+
+}
@@ -0,0 +1,43 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.util;
+
+/**
+ * How the responses downloaded by a testing engine are cached, see {@link TestContext#setCachePolicy(CachePolicy)}.
+ * Engines that can't share a cache between their browsers ignore the policy.
+ */
+public enum CachePolicy {
+
+    /**
+     * Each browser has its own cache, emptied when it is closed.
+     */
+    PER_BROWSER,
+
+    /**
+     * All the browsers of the JVM share a bounded cache, honouring the HTTP caching headers of the responses.
+     */
+    SHARED,
+
+    /**
+     * Like {@link #SHARED}, but stylesheets, scripts, images and fonts are considered immutable: they are cached
+     * forever whatever their caching headers.
+     */
+    SHARED_IMMUTABLE_ASSETS
+
+}
@@ -0,0 +1,268 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.servlet.http.Cookie;
+
+/**
+ * The state of a conversation, saved to start later conversations from it instead of replaying the same steps, for
+ * example a login form: the cookies of the browser, the authorization and the custom request headers of the test
+ * context, and the URL of the page.
+ *
+ * <p>A checkpoint can be stored in a properties file and loaded back in another JVM. The file contains the password
+ * and the session cookies in clear text.</p>
+ *
+ * @see net.sourceforge.jwebunit.junit.WebTester#saveCheckpoint(String)
+ * @see TestContext#applyCheckpoint(Checkpoint)
+ */
+public class Checkpoint {
+
+    private static final String HEADER_PREFIX = "header.";
+
+    private static final String COOKIE_PREFIX = "cookie.";
+
+    private final String name;
+
+    private final URL url;
+
+    private final List<Cookie> cookies = new ArrayList<Cookie>();
+
+    private final Map<String, String> requestHeaders = new HashMap<String, String>();
+
+    private String user;
+
+    private String password;
+
+    private String domain;
+
+    private boolean hasAuth;
+
+    private boolean hasNTLMAuth;
+
+    /**
+     * Create a checkpoint.
+     *
+     * @param name name of the checkpoint.
+     * @param url URL of the page to go back to.
+     * @param cookies cookies of the browser, they are copied.
+     * @param context test context to take the authorization and the request headers from.
+     */
+    public Checkpoint(String name, URL url, List<Cookie> cookies, TestContext context) {
+        this(name, url);
+        for (Cookie cookie : cookies) {
+            this.cookies.add((Cookie) cookie.clone());
+        }
+        requestHeaders.putAll(context.getRequestHeaders());
+        user = context.getUser();
+        password = context.getPassword();
+        domain = context.getDomain();
+        hasAuth = context.hasAuthorization();
+        hasNTLMAuth = context.hasNTLMAuthorization();
+    }
+
+    private Checkpoint(String name, URL url) {
+        if (name == null || url == null) {
+            throw new IllegalArgumentException("Checkpoint name and URL can't be null");
+        }
+        this.name = name;
+        this.url = url;
+    }
+
+    /**
+     * Return the name of the checkpoint.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Return the URL of the page to go back to.
+     */
+    public URL getUrl() {
+        return url;
+    }
+
+    /**
+     * Return the cookies of the browser. Restore copies of them, the checkpoint may be used again.
+     */
+    public List<Cookie> getCookies() {
+        return Collections.unmodifiableList(cookies);
+    }
+
+    /**
+     * Return the custom request headers of the test context.
+     */
+    public Map<String, String> getRequestHeaders() {
+        return Collections.unmodifiableMap(requestHeaders);
+    }
+
+    /**
+     * Return true if the test context had a basic authorization.
+     */
+    public boolean hasAuthorization() {
+        return hasAuth;
+    }
+
+    /**
+     * Return true if the test context had a NTLM authorization.
+     */
+    public boolean hasNTLMAuthorization() {
+        return hasNTLMAuth;
+    }
+
+    /**
+     * Return the user name of the authorization.
+     */
+    public String getUser() {
+        return user;
+    }
+
+    /**
+     * Return the password of the authorization.
+     */
+    public String getPassword() {
+        return password;
+    }
+
+    /**
+     * Return the domain of the NTLM authorization.
+     */
+    public String getDomain() {
+        return domain;
+    }
+
+    /**
+     * Write the checkpoint to a properties file. The expiry of the cookies is kept as a date, so that they don't live
+     * longer when the checkpoint is loaded later.
+     *
+     * @param file the file to write.
+     * @throws IOException if the file can't be written.
+     */
+    public void store(File file) throws IOException {
+        Properties props = new Properties();
+        props.setProperty("name", name);
+        props.setProperty("url", url.toString());
+        props.setProperty("auth", hasNTLMAuth ? "ntlm" : hasAuth ? "basic" : "none");
+        setIfNotNull(props, "user", user);
+        setIfNotNull(props, "password", password);
+        setIfNotNull(props, "domain", domain);
+        for (Map.Entry<String, String> header : requestHeaders.entrySet()) {
+            props.setProperty(HEADER_PREFIX + header.getKey(), header.getValue());
+        }
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < cookies.size(); i++) {
+            Cookie cookie = cookies.get(i);
+            String prefix = COOKIE_PREFIX + i + ".";
+            props.setProperty(prefix + "name", cookie.getName());
+            setIfNotNull(props, prefix + "value", cookie.getValue());
+            setIfNotNull(props, prefix + "domain", cookie.getDomain());
+            setIfNotNull(props, prefix + "path", cookie.getPath());
+            if (cookie.getMaxAge() >= 0) {
+                props.setProperty(prefix + "expires", Long.toString(now + cookie.getMaxAge() * 1000L));
+            }
+            props.setProperty(prefix + "secure", Boolean.toString(cookie.getSecure()));
+            props.setProperty(prefix + "version", Integer.toString(cookie.getVersion()));
+        }
+        OutputStream out = new FileOutputStream(file);
+        try {
+            props.store(out, "JWebUnit checkpoint " + name);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Read a checkpoint written by {@link #store(File)}. The cookies expired since are left out.
+     *
+     * @param file the file to read.
+     * @return the checkpoint.
+     * @throws IOException if the file can't be read or isn't a checkpoint.
+     */
+    public static Checkpoint load(File file) throws IOException {
+        Properties props = new Properties();
+        InputStream in = new FileInputStream(file);
+        try {
+            props.load(in);
+        } finally {
+            in.close();
+        }
+        if (props.getProperty("name") == null || props.getProperty("url") == null) {
+            throw new IOException(file + " is not a checkpoint");
+        }
+        Checkpoint checkpoint = new Checkpoint(props.getProperty("name"), new URL(props.getProperty("url")));
+        String auth = props.getProperty("auth", "none");
+        checkpoint.hasAuth = "basic".equals(auth);
+        checkpoint.hasNTLMAuth = "ntlm".equals(auth);
+        checkpoint.user = props.getProperty("user");
+        checkpoint.password = props.getProperty("password");
+        checkpoint.domain = props.getProperty("domain");
+        for (String key : props.stringPropertyNames()) {
+            if (key.startsWith(HEADER_PREFIX)) {
+                checkpoint.requestHeaders.put(key.substring(HEADER_PREFIX.length()), props.getProperty(key));
+            }
+        }
+        long now = System.currentTimeMillis();
+        for (int i = 0; props.getProperty(COOKIE_PREFIX + i + ".name") != null; i++) {
+            String prefix = COOKIE_PREFIX + i + ".";
+            Cookie cookie = new Cookie(props.getProperty(prefix + "name"), props.getProperty(prefix + "value"));
+            if (props.getProperty(prefix + "domain") != null) {
+                cookie.setDomain(props.getProperty(prefix + "domain"));
+            }
+            cookie.setPath(props.getProperty(prefix + "path"));
+            String expires = props.getProperty(prefix + "expires");
+            if (expires != null) {
+                long maxAge = (Long.parseLong(expires) - now) / 1000;
+                if (maxAge <= 0) {
+                    continue;
+                }
+                cookie.setMaxAge((int) Math.min(maxAge, Integer.MAX_VALUE));
+            }
+            cookie.setSecure(Boolean.parseBoolean(props.getProperty(prefix + "secure")));
+            cookie.setVersion(Integer.parseInt(props.getProperty(prefix + "version", "0")));
+            checkpoint.cookies.add(cookie);
+        }
+        return checkpoint;
+    }
+
+    private static void setIfNotNull(Properties props, String key, String value) {
+        if (value != null) {
+            props.setProperty(key, value);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Checkpoint[" + name + ", " + url + ", " + cookies.size() + " cookies]";
+    }
+
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.util;
+
+import java.util.Hashtable;
+
+/**
+ * This will maintain a registry of the checkpoints saved by the tests of the JVM, so that a test can restore a
+ * checkpoint saved by a previous one.
+ *
+ * @see net.sourceforge.jwebunit.junit.WebTester#saveCheckpoint(String)
+ * @see net.sourceforge.jwebunit.junit.WebTester#restoreCheckpoint(String)
+ */
+public class CheckpointRegistry {
+
+    private static Hashtable<String, Checkpoint> checkpointMap = new Hashtable<String, Checkpoint>();
+
+    /**
+     * Register a checkpoint, replacing the one with the same name if any.
+     *
+     * @param checkpoint the checkpoint.
+     */
+    public static void register(Checkpoint checkpoint) {
+        checkpointMap.put(checkpoint.getName(), checkpoint);
+    }
+
+    /**
+     * Get a checkpoint by name.
+     *
+     * @param name name of the checkpoint.
+     * @return the checkpoint, or null if there is none with this name.
+     */
+    public static Checkpoint getCheckpoint(String name) {
+        return checkpointMap.get(name);
+    }
+
+    /**
+     * Forget a checkpoint.
+     *
+     * @param name name of the checkpoint.
+     */
+    public static void removeCheckpoint(String name) {
+        checkpointMap.remove(name);
+    }
+
+    /**
+     * Forget all the checkpoints.
+     */
+    public static void clear() {
+        checkpointMap.clear();
+    }
+
+}
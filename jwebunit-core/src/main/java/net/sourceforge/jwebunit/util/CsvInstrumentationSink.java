@@ -0,0 +1,75 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.Collection;
+
+import net.sourceforge.jwebunit.api.IInstrumentationSink;
+
+/**
+ * Write the statistics of testing engine methods in a CSV file, one line per method. Latencies are in microseconds.
+ * The file is overwritten at each export.
+ */
+public class CsvInstrumentationSink implements IInstrumentationSink {
+
+    /**
+     * Header line of the file.
+     */
+    public static final String HEADER = "method,count,errors,payload,total_us,mean_us,p50_us,p90_us,p99_us,max_us";
+
+    private final File file;
+
+    /**
+     * Create a sink.
+     *
+     * @param file the file to write.
+     */
+    public CsvInstrumentationSink(File file) {
+        this.file = file;
+    }
+
+    public void export(Collection<MethodStats> stats) {
+        PrintWriter out = null;
+        try {
+            out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+            out.println(HEADER);
+            for (MethodStats methodStats : stats) {
+                LatencyHistogram latencies = methodStats.getLatencies();
+                // signatures with several parameters contain commas
+                out.println("\"" + methodStats.getMethod() + "\"," + methodStats.getCount() + ","
+                        + methodStats.getErrorCount() + "," + methodStats.getPayloadSize() + ","
+                        + latencies.getTotal() / 1000 + "," + latencies.getMean() / 1000 + ","
+                        + latencies.getPercentile(50) / 1000 + "," + latencies.getPercentile(90) / 1000 + ","
+                        + latencies.getPercentile(99) / 1000 + "," + latencies.getMax() / 1000);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to write instrumentation statistics to " + file, e);
+        } finally {
+            if (out != null) {
+                out.close();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,305 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.util;
+
+import java.io.File;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import net.sourceforge.jwebunit.api.IInstrumentationSink;
+import net.sourceforge.jwebunit.api.ITestingEngine;
+import net.sourceforge.jwebunit.html.Table;
+
+/**
+ * Opt-in instrumentation of testing engines: when enabled, the engines created by
+ * {@link net.sourceforge.jwebunit.junit.WebTester} are wrapped in a proxy recording, for each method signature, the
+ * number of calls, the errors, a histogram of the latencies and the size of the returned values. Statistics of all the
+ * engines of the JVM are merged.
+ * <p>
+ * Instrumentation is enabled with {@link #setEnabled(boolean)} or the <code>jwebunit.instrumentation</code> system
+ * property. Statistics can be read with {@link #getSnapshot()}, or exported to {@link IInstrumentationSink}s, for
+ * example {@link Slf4jInstrumentationSink} or {@link CsvInstrumentationSink}. Sinks are called by {@link #export()} and
+ * when the JVM exits. Setting the <code>jwebunit.instrumentation.csv</code> system property to a file name registers a
+ * CSV sink.
+ * </p>
+ * <p>
+ * Note that an instrumented engine is a proxy implementing the interfaces of the engine, so it can't be cast to the
+ * engine class: use {@link #unwrap(ITestingEngine)} or
+ * {@link net.sourceforge.jwebunit.junit.WebTester#getUnwrappedTestingEngine()} to get the engine itself.
+ * </p>
+ */
+public class EngineInstrumentation {
+
+    /**
+     * System property enabling the instrumentation.
+     */
+    public static final String ENABLED_PROPERTY = "jwebunit.instrumentation";
+
+    /**
+     * System property giving the file of a {@link CsvInstrumentationSink}.
+     */
+    public static final String CSV_PROPERTY = "jwebunit.instrumentation.csv";
+
+    private static volatile boolean enabled = Boolean.getBoolean(ENABLED_PROPERTY);
+
+    private static final ConcurrentMap<String, MethodStats> stats = new ConcurrentHashMap<String, MethodStats>();
+
+    /**
+     * Signature of the methods called, computed once per method.
+     */
+    private static final ConcurrentMap<Method, String> signatures = new ConcurrentHashMap<Method, String>();
+
+    private static final List<IInstrumentationSink> sinks = new CopyOnWriteArrayList<IInstrumentationSink>();
+
+    private static boolean shutdownHookInstalled;
+
+    static {
+        String csvFile = System.getProperty(CSV_PROPERTY);
+        if (csvFile != null) {
+            addSink(new CsvInstrumentationSink(new File(csvFile)));
+        }
+    }
+
+    /**
+     * @return true if new testing engines are instrumented.
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enable or disable the instrumentation of the testing engines created from now on.
+     *
+     * @param enable true to instrument testing engines.
+     */
+    public static void setEnabled(boolean enable) {
+        enabled = enable;
+    }
+
+    /**
+     * Wrap a testing engine so that its calls are recorded.
+     *
+     * @param engine the testing engine.
+     * @return a proxy implementing all the interfaces of the engine, see {@link #unwrap(ITestingEngine)} to get the
+     *         engine back.
+     */
+    public static ITestingEngine instrument(final ITestingEngine engine) {
+        Set<Class<?>> interfaces = new LinkedHashSet<Class<?>>();
+        for (Class<?> c = engine.getClass(); c != null; c = c.getSuperclass()) {
+            addInterfaces(c, interfaces);
+        }
+        return (ITestingEngine) Proxy.newProxyInstance(engine.getClass().getClassLoader(),
+                interfaces.toArray(new Class<?>[interfaces.size()]), new InstrumentationHandler(engine));
+    }
+
+    /**
+     * Get the engine wrapped by {@link #instrument(ITestingEngine)}, for example to call the methods of its class.
+     *
+     * @param engine a testing engine, instrumented or not.
+     * @return the instrumented engine, or the given engine if it isn't instrumented.
+     */
+    public static ITestingEngine unwrap(ITestingEngine engine) {
+        if (engine != null && Proxy.isProxyClass(engine.getClass())
+                && Proxy.getInvocationHandler(engine) instanceof InstrumentationHandler) {
+            return ((InstrumentationHandler) Proxy.getInvocationHandler(engine)).engine;
+        }
+        return engine;
+    }
+
+    /**
+     * @param engine a testing engine.
+     * @return true if the engine is a proxy created by {@link #instrument(ITestingEngine)}.
+     */
+    public static boolean isInstrumented(ITestingEngine engine) {
+        return unwrap(engine) != engine;
+    }
+
+    private static void addInterfaces(Class<?> c, Set<Class<?>> interfaces) {
+        for (Class<?> i : c.getInterfaces()) {
+            if (interfaces.add(i)) {
+                addInterfaces(i, interfaces);
+            }
+        }
+    }
+
+    /**
+     * @param method a method.
+     * @return the key of the statistics of the method: its name and the simple names of its parameter types, like
+     *         <code>clickLink(String)</code>, so that overloaded methods are counted apart.
+     */
+    public static String getSignature(Method method) {
+        StringBuilder signature = new StringBuilder(method.getName()).append('(');
+        Class<?>[] parameters = method.getParameterTypes();
+        for (int i = 0; i < parameters.length; i++) {
+            if (i > 0) {
+                signature.append(", ");
+            }
+            signature.append(parameters[i].getSimpleName());
+        }
+        return signature.append(')').toString();
+    }
+
+    /**
+     * Record the calls of an engine, and delegate them to the engine.
+     */
+    private static final class InstrumentationHandler implements InvocationHandler {
+
+        private final ITestingEngine engine;
+
+        InstrumentationHandler(ITestingEngine engine) {
+            this.engine = engine;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+                try {
+                    return method.invoke(engine, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getTargetException();
+                }
+            }
+            String signature = signatures.get(method);
+            if (signature == null) {
+                signature = getSignature(method);
+                signatures.put(method, signature);
+            }
+            MethodStats methodStats = getStats(signature);
+            long start = System.nanoTime();
+            try {
+                Object result = method.invoke(engine, args);
+                methodStats.record(System.nanoTime() - start, getPayloadSize(result), false);
+                return result;
+            } catch (InvocationTargetException e) {
+                methodStats.record(System.nanoTime() - start, 0, true);
+                throw e.getTargetException();
+            }
+        }
+    }
+
+    /**
+     * @return a copy of the statistics of each called method, sorted by signature.
+     */
+    public static List<MethodStats> getSnapshot() {
+        List<MethodStats> snapshot = new ArrayList<MethodStats>();
+        for (MethodStats methodStats : new TreeMap<String, MethodStats>(stats).values()) {
+            snapshot.add(methodStats.copy());
+        }
+        return snapshot;
+    }
+
+    /**
+     * Get the statistics of a method.
+     *
+     * @param method the signature of a testing engine method, see {@link #getSignature(Method)}.
+     * @return the live statistics of the method.
+     */
+    public static MethodStats getStats(String method) {
+        MethodStats methodStats = stats.get(method);
+        if (methodStats == null) {
+            methodStats = new MethodStats(method);
+            MethodStats previous = stats.putIfAbsent(method, methodStats);
+            if (previous != null) {
+                methodStats = previous;
+            }
+        }
+        return methodStats;
+    }
+
+    /**
+     * Forget all statistics.
+     */
+    public static void reset() {
+        stats.clear();
+    }
+
+    /**
+     * Register a sink. Sinks are called by {@link #export()} and when the JVM exits.
+     *
+     * @param sink the sink.
+     */
+    public static void addSink(IInstrumentationSink sink) {
+        sinks.add(sink);
+        synchronized (sinks) {
+            if (!shutdownHookInstalled) {
+                Runtime.getRuntime().addShutdownHook(new Thread("jwebunit-instrumentation-export") {
+                    @Override
+                    public void run() {
+                        export();
+                    }
+                });
+                shutdownHookInstalled = true;
+            }
+        }
+    }
+
+    /**
+     * Unregister a sink.
+     *
+     * @param sink the sink.
+     */
+    public static void removeSink(IInstrumentationSink sink) {
+        sinks.remove(sink);
+    }
+
+    /**
+     * Export the statistics to all the registered sinks, if some methods were called.
+     */
+    public static void export() {
+        List<MethodStats> snapshot = getSnapshot();
+        if (snapshot.isEmpty()) {
+            return;
+        }
+        for (IInstrumentationSink sink : sinks) {
+            sink.export(snapshot);
+        }
+    }
+
+    private static long getPayloadSize(Object result) {
+        if (result instanceof CharSequence) {
+            return ((CharSequence) result).length();
+        }
+        if (result instanceof Collection) {
+            return ((Collection<?>) result).size();
+        }
+        if (result instanceof Map) {
+            return ((Map<?, ?>) result).size();
+        }
+        if (result instanceof Table) {
+            return ((Table) result).getRowCount();
+        }
+        if (result != null && result.getClass().isArray()) {
+            return Array.getLength(result);
+        }
+        return 0;
+    }
+
+}
@@ -0,0 +1,251 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import net.sourceforge.jwebunit.api.HttpHeader;
+
+/**
+ * The responses received by testing engines, recorded to answer the same requests later without the server, see
+ * {@link TestContext#setHttpArchive(HttpArchive, HttpArchiveMode)}.
+ *
+ * <p>Requests are identified by their method, their URL and a digest of their body. When a request was recorded
+ * several times, for example a page before and after a form submission, its responses are replayed in the recorded
+ * order, and the last one again once they have all been replayed. Each browser replays from the first response, so
+ * an archive can be shared by tests running in parallel; it is thread safe.</p>
+ *
+ * <p>An archive is stored as a zip file holding an index of the responses and their bodies, each distinct body being
+ * stored once.</p>
+ */
+public class HttpArchive {
+
+    private static final String INDEX_ENTRY = "index.properties";
+
+    private static final String BODY_ENTRY_PREFIX = "bodies/";
+
+    private static final String RESPONSE_PREFIX = "response.";
+
+    private final Map<String, List<RecordedResponse>> responses = new LinkedHashMap<String, List<RecordedResponse>>();
+
+    private int size;
+
+    /**
+     * Compute the key identifying a request in the archive.
+     *
+     * @param method HTTP method of the request.
+     * @param url URL of the request, without its fragment.
+     * @param requestBody body of the request, or null if it has none.
+     * @return the key of the request.
+     */
+    public static String getKey(String method, URL url, byte[] requestBody) {
+        String key = method.toUpperCase() + " " + url.toExternalForm();
+        if (requestBody != null && requestBody.length > 0) {
+            key += " " + digest(requestBody);
+        }
+        return key;
+    }
+
+    /**
+     * Add a response at the end of the ones recorded for a request.
+     *
+     * @param method HTTP method of the request.
+     * @param url URL of the request, without its fragment.
+     * @param requestBody body of the request, or null if it has none.
+     * @param response the response.
+     */
+    public synchronized void record(String method, URL url, byte[] requestBody, RecordedResponse response) {
+        record(getKey(method, url, requestBody), response);
+    }
+
+    /**
+     * Add a response at the end of the ones recorded for a request.
+     *
+     * @param key key of the request, see {@link #getKey(String, URL, byte[])}.
+     * @param response the response.
+     */
+    public synchronized void record(String key, RecordedResponse response) {
+        List<RecordedResponse> recorded = responses.get(key);
+        if (recorded == null) {
+            recorded = new ArrayList<RecordedResponse>();
+            responses.put(key, recorded);
+        }
+        recorded.add(response);
+        size++;
+    }
+
+    /**
+     * Get a response recorded for a request.
+     *
+     * @param key key of the request, see {@link #getKey(String, URL, byte[])}.
+     * @param index how many times the request has already been replayed.
+     * @return the response with this index, the last response if fewer were recorded, or null if the request wasn't
+     *         recorded.
+     */
+    public synchronized RecordedResponse getResponse(String key, int index) {
+        List<RecordedResponse> recorded = responses.get(key);
+        if (recorded == null) {
+            return null;
+        }
+        return recorded.get(Math.min(index, recorded.size() - 1));
+    }
+
+    /**
+     * @return the number of recorded responses.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Write the archive to a file.
+     *
+     * @param file the file to write.
+     * @throws IOException if the file can't be written.
+     */
+    public synchronized void store(File file) throws IOException {
+        Properties index = new Properties();
+        Map<String, byte[]> bodies = new HashMap<String, byte[]>();
+        int i = 0;
+        for (Map.Entry<String, List<RecordedResponse>> entry : responses.entrySet()) {
+            for (RecordedResponse response : entry.getValue()) {
+                String prefix = RESPONSE_PREFIX + i + ".";
+                index.setProperty(prefix + "request", entry.getKey());
+                index.setProperty(prefix + "status", Integer.toString(response.getStatus()));
+                index.setProperty(prefix + "message", response.getStatusMessage());
+                String body = digest(response.getBody());
+                index.setProperty(prefix + "body", body);
+                bodies.put(body, response.getBody());
+                int h = 0;
+                for (HttpHeader header : response.getHeaders()) {
+                    index.setProperty(prefix + "header." + h + ".name", header.getName());
+                    index.setProperty(prefix + "header." + h + ".value", header.getValue());
+                    h++;
+                }
+                i++;
+            }
+        }
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file));
+        try {
+            out.putNextEntry(new ZipEntry(INDEX_ENTRY));
+            index.store(out, "JWebUnit HTTP archive");
+            out.closeEntry();
+            for (Map.Entry<String, byte[]> body : bodies.entrySet()) {
+                out.putNextEntry(new ZipEntry(BODY_ENTRY_PREFIX + body.getKey()));
+                out.write(body.getValue());
+                out.closeEntry();
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Read an archive written by {@link #store(File)}.
+     *
+     * @param file the file to read.
+     * @return the archive.
+     * @throws IOException if the file can't be read or isn't an archive.
+     */
+    public static HttpArchive load(File file) throws IOException {
+        Properties index = null;
+        Map<String, byte[]> bodies = new HashMap<String, byte[]>();
+        ZipInputStream in = new ZipInputStream(new FileInputStream(file));
+        try {
+            for (ZipEntry entry = in.getNextEntry(); entry != null; entry = in.getNextEntry()) {
+                if (INDEX_ENTRY.equals(entry.getName())) {
+                    index = new Properties();
+                    index.load(in);
+                } else if (entry.getName().startsWith(BODY_ENTRY_PREFIX)) {
+                    bodies.put(entry.getName().substring(BODY_ENTRY_PREFIX.length()), readFully(in));
+                }
+            }
+        } finally {
+            in.close();
+        }
+        if (index == null) {
+            throw new IOException(file + " is not an HTTP archive");
+        }
+        HttpArchive archive = new HttpArchive();
+        Set<String> missingBodies = new HashSet<String>();
+        for (int i = 0; index.getProperty(RESPONSE_PREFIX + i + ".request") != null; i++) {
+            String prefix = RESPONSE_PREFIX + i + ".";
+            List<HttpHeader> headers = new ArrayList<HttpHeader>();
+            for (int h = 0; index.getProperty(prefix + "header." + h + ".name") != null; h++) {
+                headers.add(new HttpHeader(index.getProperty(prefix + "header." + h + ".name"),
+                        index.getProperty(prefix + "header." + h + ".value")));
+            }
+            byte[] body = bodies.get(index.getProperty(prefix + "body"));
+            if (body == null) {
+                missingBodies.add(index.getProperty(prefix + "body"));
+            }
+            archive.record(index.getProperty(prefix + "request"), new RecordedResponse(
+                    Integer.parseInt(index.getProperty(prefix + "status")), index.getProperty(prefix + "message"),
+                    headers, body));
+        }
+        if (!missingBodies.isEmpty()) {
+            throw new IOException(file + " is missing the bodies " + missingBodies);
+        }
+        return archive;
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private static String digest(byte[] bytes) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-1").digest(bytes);
+            StringBuilder sb = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-1 is required on every Java platform
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
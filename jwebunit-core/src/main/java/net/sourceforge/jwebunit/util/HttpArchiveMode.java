@@ -0,0 +1,37 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.util;
+
+/**
+ * What a testing engine does with the {@link HttpArchive} of its test context, see
+ * {@link TestContext#setHttpArchive(HttpArchive, HttpArchiveMode)}.
+ */
+public enum HttpArchiveMode {
+
+    /**
+     * The requests are sent to the server, and the responses are added to the archive.
+     */
+    RECORD,
+
+    /**
+     * The requests are answered with the responses of the archive, nothing is sent to the server.
+     */
+    REPLAY
+
+}
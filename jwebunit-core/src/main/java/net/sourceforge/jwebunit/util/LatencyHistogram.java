@@ -0,0 +1,196 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of latencies in microseconds, in the style of HdrHistogram: each range from 2<sup>n</sup> to
+ * 2<sup>n+1</sup> microseconds is split into 16 buckets of equal size, and values under 16 microseconds are exact.
+ * Percentiles are approximated by the upper bound of their bucket, so they are at most 1/16 (6.25%) over the real
+ * value. Recording a value is lock free and cheap, and the histogram is thread safe.
+ */
+public class LatencyHistogram {
+
+    /**
+     * Number of bits of the buckets inside each power of two.
+     */
+    private static final int SUB_BUCKET_BITS = 4;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * Enough buckets for latencies up to 2<sup>48</sup> microseconds, about 9 years.
+     */
+    private static final int BUCKETS = SUB_BUCKETS * (48 - SUB_BUCKET_BITS + 1);
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+    private final AtomicLong count = new AtomicLong();
+
+    private final AtomicLong sum = new AtomicLong();
+
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Record a latency.
+     *
+     * @param nanos the latency, in nanoseconds.
+     */
+    public void record(long nanos) {
+        buckets.incrementAndGet(Math.min(getBucket(Math.max(0, nanos / 1000)), BUCKETS - 1));
+        count.incrementAndGet();
+        sum.addAndGet(nanos);
+        long currentMax = max.get();
+        while (nanos > currentMax && !max.compareAndSet(currentMax, nanos)) {
+            currentMax = max.get();
+        }
+    }
+
+    /**
+     * @param micros a latency, in microseconds.
+     * @return the index of its bucket.
+     */
+    private static int getBucket(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        // position of the highest bit, at least SUB_BUCKET_BITS
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int shift = exponent - SUB_BUCKET_BITS;
+        // the highest bit is always set, so this is between SUB_BUCKETS and 2 * SUB_BUCKETS - 1
+        int subBucket = (int) (micros >>> shift);
+        return shift * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @param bucket index of a bucket.
+     * @return the first latency above the bucket, in microseconds.
+     */
+    private static long getUpperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket + 1;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long subBucket = bucket % SUB_BUCKETS + SUB_BUCKETS;
+        return (subBucket + 1) << shift;
+    }
+
+    /**
+     * @return the number of recorded latencies.
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * @return the sum of the recorded latencies, in nanoseconds.
+     */
+    public long getTotal() {
+        return sum.get();
+    }
+
+    /**
+     * @return the mean of the recorded latencies, in nanoseconds, 0 if none was recorded.
+     */
+    public long getMean() {
+        long n = count.get();
+        return n == 0 ? 0 : sum.get() / n;
+    }
+
+    /**
+     * @return the highest recorded latency, in nanoseconds.
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Get an approximation of a percentile of the recorded latencies.
+     *
+     * @param percentile the percentile, between 0 and 100.
+     * @return the upper bound of the bucket of the percentile, in nanoseconds, 0 if no latency was recorded.
+     */
+    public long getPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100");
+        }
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = buckets.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= Math.max(rank, 1)) {
+                // never report more than the real maximum
+                return Math.min(getUpperBound(i) * 1000, getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Add the latencies recorded by another histogram to this one.
+     *
+     * @param other the other histogram.
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.addAndGet(i, other.buckets.get(i));
+        }
+        count.addAndGet(other.count.get());
+        sum.addAndGet(other.sum.get());
+        long otherMax = other.max.get();
+        long currentMax = max.get();
+        while (otherMax > currentMax && !max.compareAndSet(currentMax, otherMax)) {
+            currentMax = max.get();
+        }
+    }
+
+    /**
+     * Forget all the recorded latencies.
+     */
+    public void clear() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "count=" + getCount() + ", mean=" + getMean() / 1000 + "us, p50=" + getPercentile(50) / 1000
+                + "us, p90=" + getPercentile(90) / 1000 + "us, p99=" + getPercentile(99) / 1000 + "us, max="
+                + getMax() / 1000 + "us";
+    }
+
+}
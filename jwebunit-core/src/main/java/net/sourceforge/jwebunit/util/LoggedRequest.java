@@ -0,0 +1,168 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.util;
+
+import java.util.Date;
+
+/**
+ * A request sent by a testing engine and the timings of its response, kept in a {@link RequestLog}. Timings are in
+ * milliseconds, -1 when the engine can't measure them, with the meaning they have in a HAR file:
+ * <ul>
+ * <li>dns: resolution of the host name;</li>
+ * <li>connect: opening of the connection, DNS excluded;</li>
+ * <li>send: sending of the request;</li>
+ * <li>wait: waiting for the first byte of the response (time to first byte);</li>
+ * <li>receive: download of the response.</li>
+ * </ul>
+ * When an engine can't tell the connection apart from the wait, it is counted in the wait.
+ */
+public class LoggedRequest {
+
+    private final long startedTime;
+
+    private final String method;
+
+    private final String url;
+
+    private final int status;
+
+    private final String statusText;
+
+    private final String mimeType;
+
+    private final long requestBodySize;
+
+    private final long responseBodySize;
+
+    private final long dns;
+
+    private final long connect;
+
+    private final long send;
+
+    private final long wait;
+
+    private final long receive;
+
+    /**
+     * @param startedTime time the request started, in milliseconds since the epoch.
+     * @param method HTTP method.
+     * @param url requested URL.
+     * @param status status code of the response, 0 if there was none.
+     * @param statusText status message of the response.
+     * @param mimeType content type of the response, null if unknown.
+     * @param requestBodySize size of the request body in bytes, -1 if unknown.
+     * @param responseBodySize size of the response body in bytes, -1 if unknown.
+     * @param dns time of the DNS resolution.
+     * @param connect time to open the connection.
+     * @param send time to send the request.
+     * @param wait time to the first byte of the response.
+     * @param receive time to download the response.
+     */
+    public LoggedRequest(long startedTime, String method, String url, int status, String statusText,
+            String mimeType, long requestBodySize, long responseBodySize, long dns, long connect, long send,
+            long wait, long receive) {
+        this.startedTime = startedTime;
+        this.method = method;
+        this.url = url;
+        this.status = status;
+        this.statusText = statusText == null ? "" : statusText;
+        this.mimeType = mimeType;
+        this.requestBodySize = requestBodySize;
+        this.responseBodySize = responseBodySize;
+        this.dns = dns;
+        this.connect = connect;
+        this.send = send;
+        this.wait = wait;
+        this.receive = receive;
+    }
+
+    public Date getStartedDateTime() {
+        return new Date(startedTime);
+    }
+
+    public long getStartedTime() {
+        return startedTime;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public String getStatusText() {
+        return statusText;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    public long getRequestBodySize() {
+        return requestBodySize;
+    }
+
+    public long getResponseBodySize() {
+        return responseBodySize;
+    }
+
+    public long getDns() {
+        return dns;
+    }
+
+    public long getConnect() {
+        return connect;
+    }
+
+    public long getSend() {
+        return send;
+    }
+
+    public long getWait() {
+        return wait;
+    }
+
+    public long getReceive() {
+        return receive;
+    }
+
+    /**
+     * @return the total time of the request, the sum of the known timings, in milliseconds.
+     */
+    public long getTime() {
+        return Math.max(0, dns) + Math.max(0, connect) + Math.max(0, send) + Math.max(0, wait) + Math.max(0, receive);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return method + " " + url + " " + status + " " + getTime() + " ms (wait " + wait + " ms, receive " + receive
+                + " ms, " + responseBodySize + " bytes)";
+    }
+
+}
@@ -0,0 +1,117 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Statistics of the calls of a testing engine method, collected by {@link EngineInstrumentation}.
+ */
+public class MethodStats {
+
+    private final String method;
+
+    private final LatencyHistogram latencies = new LatencyHistogram();
+
+    private final AtomicLong errors = new AtomicLong();
+
+    private final AtomicLong payload = new AtomicLong();
+
+    /**
+     * Create empty statistics.
+     *
+     * @param method signature of the method, or name of the measured step.
+     */
+    public MethodStats(String method) {
+        this.method = method;
+    }
+
+    /**
+     * Record a call.
+     *
+     * @param nanos duration of the call, in nanoseconds.
+     * @param payloadSize size of the returned value (characters, elements...), 0 if not relevant.
+     * @param failed true if the call threw an exception.
+     */
+    public void record(long nanos, long payloadSize, boolean failed) {
+        latencies.record(nanos);
+        if (payloadSize > 0) {
+            payload.addAndGet(payloadSize);
+        }
+        if (failed) {
+            errors.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return the signature of the method, like <code>clickLink(String)</code>.
+     */
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * @return the number of calls.
+     */
+    public long getCount() {
+        return latencies.getCount();
+    }
+
+    /**
+     * @return the number of calls that threw an exception.
+     */
+    public long getErrorCount() {
+        return errors.get();
+    }
+
+    /**
+     * @return the total size of the returned values: characters for strings, elements for collections and arrays, rows
+     *         for tables.
+     */
+    public long getPayloadSize() {
+        return payload.get();
+    }
+
+    /**
+     * @return the latencies of the calls.
+     */
+    public LatencyHistogram getLatencies() {
+        return latencies;
+    }
+
+    /**
+     * @return a copy of these statistics.
+     */
+    public MethodStats copy() {
+        MethodStats copy = new MethodStats(method);
+        copy.latencies.add(latencies);
+        copy.errors.set(errors.get());
+        copy.payload.set(payload.get());
+        return copy;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return method + ": " + latencies + ", errors=" + getErrorCount() + ", payload=" + getPayloadSize();
+    }
+
+}
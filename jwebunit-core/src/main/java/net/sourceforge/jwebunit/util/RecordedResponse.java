@@ -0,0 +1,92 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import net.sourceforge.jwebunit.api.HttpHeader;
+
+/**
+ * A response kept in an {@link HttpArchive}. The body is stored decoded, so the headers describing how it was
+ * transferred (<code>Content-Encoding</code>, <code>Content-Length</code>, <code>Transfer-Encoding</code>) are left
+ * out.
+ */
+public class RecordedResponse {
+
+    private final int status;
+
+    private final String statusMessage;
+
+    private final List<HttpHeader> headers = new ArrayList<HttpHeader>();
+
+    private final byte[] body;
+
+    /**
+     * @param status status code.
+     * @param statusMessage status message.
+     * @param headers response headers.
+     * @param body decoded response body.
+     */
+    public RecordedResponse(int status, String statusMessage, List<HttpHeader> headers, byte[] body) {
+        this.status = status;
+        this.statusMessage = statusMessage == null ? "" : statusMessage;
+        for (HttpHeader header : headers) {
+            if (!isTransferHeader(header.getName())) {
+                this.headers.add(header);
+            }
+        }
+        this.body = body == null ? new byte[0] : body;
+    }
+
+    private static boolean isTransferHeader(String name) {
+        return "Content-Encoding".equalsIgnoreCase(name) || "Content-Length".equalsIgnoreCase(name)
+                || "Transfer-Encoding".equalsIgnoreCase(name);
+    }
+
+    /**
+     * @return the status code.
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the status message.
+     */
+    public String getStatusMessage() {
+        return statusMessage;
+    }
+
+    /**
+     * @return the response headers.
+     */
+    public List<HttpHeader> getHeaders() {
+        return Collections.unmodifiableList(headers);
+    }
+
+    /**
+     * @return the decoded response body, not to be modified.
+     */
+    public byte[] getBody() {
+        return body;
+    }
+
+}
@@ -0,0 +1,88 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.util;
+
+import java.util.regex.Pattern;
+
+import org.apache.regexp.RE;
+import org.apache.regexp.RECompiler;
+import org.apache.regexp.REProgram;
+import org.apache.regexp.RESyntaxException;
+
+/**
+ * Regular expression implementations that can be used by {@link RegexpCache}. In both cases, a regexp matches if it is
+ * found anywhere in the text, and <code>.</code> also matches line terminators.
+ */
+public enum RegexpBackend {
+
+    /**
+     * Jakarta Regexp, the historical syntax of JWebUnit assertions (supports POSIX classes like
+     * <code>[:punct:]</code>).
+     */
+    JAKARTA_REGEXP {
+        @Override
+        CompiledRegexp compile(final String pattern) {
+            final REProgram program;
+            try {
+                program = new RECompiler().compile(pattern);
+            } catch (RESyntaxException e) {
+                throw new IllegalArgumentException(e.toString(), e);
+            }
+            return new CompiledRegexp() {
+                public String getPattern() {
+                    return pattern;
+                }
+
+                public boolean match(String text) {
+                    // RE instances hold the state of the last match, so they can't be shared
+                    return new RE(program, RE.MATCH_SINGLELINE).match(text);
+                }
+            };
+        }
+    },
+
+    /**
+     * <code>java.util.regex</code>, usually faster, but using the JDK syntax.
+     */
+    JAVA_UTIL_REGEX {
+        @Override
+        CompiledRegexp compile(final String pattern) {
+            final Pattern p = Pattern.compile(pattern, Pattern.DOTALL);
+            return new CompiledRegexp() {
+                public String getPattern() {
+                    return pattern;
+                }
+
+                public boolean match(String text) {
+                    return p.matcher(text).find();
+                }
+            };
+        }
+    };
+
+    /**
+     * Compile a regexp.
+     *
+     * @param pattern the regexp.
+     * @return the compiled regexp.
+     * @throws IllegalArgumentException if the regexp is not valid.
+     */
+    abstract CompiledRegexp compile(String pattern);
+
+}
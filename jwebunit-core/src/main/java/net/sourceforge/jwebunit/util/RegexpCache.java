@@ -0,0 +1,208 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * JVM wide cache of compiled regular expressions, used by all regexp based assertions so that the same pattern is not
+ * compiled again for each assertion or each table cell.
+ * <p>
+ * The cache is bounded: when it is full, the least recently used regexp is evicted. It is thread safe.
+ * </p>
+ */
+public class RegexpCache {
+
+    /**
+     * Default maximum number of regexps kept in the cache.
+     */
+    public final static int DEFAULT_MAX_SIZE = 512;
+
+    private static int maxSize = DEFAULT_MAX_SIZE;
+
+    private static RegexpBackend backend = RegexpBackend.JAKARTA_REGEXP;
+
+    private static long hitCount;
+
+    private static long missCount;
+
+    private static long evictionCount;
+
+    private static final Map<String, CompiledRegexp> cache = new LinkedHashMap<String, CompiledRegexp>(16, 0.75f, true) {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CompiledRegexp> eldest) {
+            if (size() > maxSize) {
+                evictionCount++;
+                return true;
+            }
+            return false;
+        }
+    };
+
+    /**
+     * Get a compiled regexp from the cache, compiling it with the current backend if needed.
+     *
+     * @param pattern the regexp.
+     * @return the compiled regexp.
+     * @throws IllegalArgumentException if the regexp is not valid.
+     */
+    public static CompiledRegexp compile(String pattern) {
+        RegexpBackend currentBackend;
+        synchronized (cache) {
+            CompiledRegexp re = cache.get(pattern);
+            if (re != null) {
+                hitCount++;
+                return re;
+            }
+            missCount++;
+            currentBackend = backend;
+        }
+        // compile outside of the lock, a concurrent compilation of the same regexp is harmless
+        CompiledRegexp re = currentBackend.compile(pattern);
+        synchronized (cache) {
+            if (currentBackend == backend) {
+                cache.put(pattern, re);
+            }
+        }
+        return re;
+    }
+
+    /**
+     * Check if a regexp matches somewhere in a text.
+     *
+     * @param pattern the regexp.
+     * @param text text to search in.
+     * @return true if the regexp matches.
+     * @throws IllegalArgumentException if the regexp is not valid.
+     */
+    public static boolean match(String pattern, String text) {
+        return compile(pattern).match(text);
+    }
+
+    /**
+     * @return the regexp implementation currently used.
+     */
+    public static RegexpBackend getBackend() {
+        synchronized (cache) {
+            return backend;
+        }
+    }
+
+    /**
+     * Change the regexp implementation. Default is {@link RegexpBackend#JAKARTA_REGEXP}. The cache is cleared.
+     *
+     * @param regexpBackend the regexp implementation to use.
+     */
+    public static void setBackend(RegexpBackend regexpBackend) {
+        if (regexpBackend == null) {
+            throw new IllegalArgumentException("Backend can't be null");
+        }
+        synchronized (cache) {
+            backend = regexpBackend;
+            cache.clear();
+        }
+    }
+
+    /**
+     * @return the maximum number of regexps kept in the cache.
+     */
+    public static int getMaxSize() {
+        synchronized (cache) {
+            return maxSize;
+        }
+    }
+
+    /**
+     * Change the maximum number of regexps kept in the cache. Default is {@link #DEFAULT_MAX_SIZE}.
+     *
+     * @param size the maximum number of regexps, 0 to disable the cache.
+     */
+    public static void setMaxSize(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Size can't be negative");
+        }
+        synchronized (cache) {
+            maxSize = size;
+            cache.clear();
+        }
+    }
+
+    /**
+     * @return the number of regexps currently in the cache.
+     */
+    public static int getSize() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * @return the number of lookups that found the regexp in the cache.
+     */
+    public static long getHitCount() {
+        synchronized (cache) {
+            return hitCount;
+        }
+    }
+
+    /**
+     * @return the number of lookups that had to compile the regexp.
+     */
+    public static long getMissCount() {
+        synchronized (cache) {
+            return missCount;
+        }
+    }
+
+    /**
+     * @return the number of regexps evicted because the cache was full.
+     */
+    public static long getEvictionCount() {
+        synchronized (cache) {
+            return evictionCount;
+        }
+    }
+
+    /**
+     * @return the ratio of lookups that found the regexp in the cache, between 0 and 1.
+     */
+    public static double getHitRate() {
+        synchronized (cache) {
+            long total = hitCount + missCount;
+            return total == 0 ? 0 : (double) hitCount / total;
+        }
+    }
+
+    /**
+     * Remove all regexps from the cache and reset statistics.
+     */
+    public static void clear() {
+        synchronized (cache) {
+            cache.clear();
+            hitCount = 0;
+            missCount = 0;
+            evictionCount = 0;
+        }
+    }
+
+}
@@ -0,0 +1,247 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.util;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Rules deciding which requests a testing engine sends, for example to skip the images, fonts, stylesheets or
+ * analytics scripts of pages when a test only checks their text:
+ *
+ * <pre>
+ * getTestContext().setRequestFilter(new RequestFilter().allowHost(&quot;localhost&quot;).denyHost(&quot;*&quot;)
+ *         .denyContentType(&quot;image/&quot;).denyContentType(&quot;text/css&quot;));
+ * </pre>
+ *
+ * The rules are checked in the order they were added, the first matching rule decides. Requests matching no rule are
+ * allowed. The content type of a request is guessed from the extension of its URL, or else from its
+ * <code>Accept</code> header, see {@link #guessContentType(URL, String)}. Blocked requests are answered by the engine
+ * with an empty response and counted in a {@link BlockedRequestCounter}.
+ *
+ * @see TestContext#setRequestFilter(RequestFilter)
+ */
+public class RequestFilter {
+
+    private static final Map<String, String> CONTENT_TYPES = new HashMap<String, String>();
+
+    static {
+        CONTENT_TYPES.put("html", "text/html");
+        CONTENT_TYPES.put("htm", "text/html");
+        CONTENT_TYPES.put("jsp", "text/html");
+        CONTENT_TYPES.put("xml", "text/xml");
+        CONTENT_TYPES.put("txt", "text/plain");
+        CONTENT_TYPES.put("css", "text/css");
+        CONTENT_TYPES.put("js", "application/javascript");
+        CONTENT_TYPES.put("json", "application/json");
+        CONTENT_TYPES.put("png", "image/png");
+        CONTENT_TYPES.put("gif", "image/gif");
+        CONTENT_TYPES.put("jpg", "image/jpeg");
+        CONTENT_TYPES.put("jpeg", "image/jpeg");
+        CONTENT_TYPES.put("svg", "image/svg+xml");
+        CONTENT_TYPES.put("ico", "image/x-icon");
+        CONTENT_TYPES.put("webp", "image/webp");
+        CONTENT_TYPES.put("woff", "font/woff");
+        CONTENT_TYPES.put("woff2", "font/woff2");
+        CONTENT_TYPES.put("ttf", "font/ttf");
+        CONTENT_TYPES.put("otf", "font/otf");
+        CONTENT_TYPES.put("eot", "application/vnd.ms-fontobject");
+    }
+
+    private enum Target {
+        URL, HOST, CONTENT_TYPE
+    }
+
+    private static class Rule {
+
+        private final boolean allow;
+
+        private final Target target;
+
+        private final String value;
+
+        private final Pattern pattern;
+
+        Rule(boolean allow, Target target, String value) {
+            this.allow = allow;
+            this.target = target;
+            this.value = target == Target.URL ? value : value.toLowerCase(Locale.ENGLISH);
+            this.pattern = target == Target.URL ? Pattern.compile(value) : null;
+        }
+
+        boolean matches(URL url, String contentType) {
+            switch (target) {
+            case URL:
+                return pattern.matcher(url.toExternalForm()).find();
+            case HOST:
+                String host = url.getHost().toLowerCase(Locale.ENGLISH);
+                if (value.equals("*")) {
+                    return true;
+                }
+                if (value.startsWith("*.")) {
+                    return host.endsWith(value.substring(1)) || host.equals(value.substring(2));
+                }
+                return host.equals(value);
+            default:
+                if (contentType == null) {
+                    return false;
+                }
+                return value.endsWith("/") ? contentType.startsWith(value) : contentType.equals(value);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return (allow ? "allow " : "deny ") + target.name().toLowerCase(Locale.ENGLISH) + " " + value;
+        }
+    }
+
+    private final List<Rule> rules = new ArrayList<Rule>();
+
+    /**
+     * Allow the requests whose URL contains a match of a regexp.
+     *
+     * @param regexp a {@link Pattern} regexp, searched in the whole URL.
+     * @return this filter
+     */
+    public RequestFilter allowUrl(String regexp) {
+        return add(true, Target.URL, regexp);
+    }
+
+    /**
+     * Block the requests whose URL contains a match of a regexp.
+     *
+     * @param regexp a {@link Pattern} regexp, searched in the whole URL.
+     * @return this filter
+     */
+    public RequestFilter denyUrl(String regexp) {
+        return add(false, Target.URL, regexp);
+    }
+
+    /**
+     * Allow the requests to a host.
+     *
+     * @param host a host name, <code>*.example.com</code> for a domain and its sub-domains, or <code>*</code> for all
+     *            hosts.
+     * @return this filter
+     */
+    public RequestFilter allowHost(String host) {
+        return add(true, Target.HOST, host);
+    }
+
+    /**
+     * Block the requests to a host.
+     *
+     * @param host a host name, <code>*.example.com</code> for a domain and its sub-domains, or <code>*</code> for all
+     *            hosts.
+     * @return this filter
+     */
+    public RequestFilter denyHost(String host) {
+        return add(false, Target.HOST, host);
+    }
+
+    /**
+     * Allow the requests for a content type.
+     *
+     * @param contentType a content type like <code>text/css</code>, or a prefix ending with a slash like
+     *            <code>image/</code>.
+     * @return this filter
+     */
+    public RequestFilter allowContentType(String contentType) {
+        return add(true, Target.CONTENT_TYPE, contentType);
+    }
+
+    /**
+     * Block the requests for a content type.
+     *
+     * @param contentType a content type like <code>text/css</code>, or a prefix ending with a slash like
+     *            <code>image/</code>.
+     * @return this filter
+     */
+    public RequestFilter denyContentType(String contentType) {
+        return add(false, Target.CONTENT_TYPE, contentType);
+    }
+
+    /**
+     * Decide if a request is sent.
+     *
+     * @param url URL of the request.
+     * @param contentType expected content type of the response, or null if unknown.
+     * @return true if the request is allowed.
+     */
+    public boolean isAllowed(URL url, String contentType) {
+        String type = contentType == null ? null : contentType.toLowerCase(Locale.ENGLISH);
+        for (Rule rule : rules) {
+            if (rule.matches(url, type)) {
+                return rule.allow;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Guess the content type of the response to a request, before sending it.
+     *
+     * @param url URL of the request.
+     * @param accept value of the <code>Accept</code> header of the request, or null.
+     * @return the content type matching the extension of the URL, or else the first type of the <code>Accept</code>
+     *         header, or null if neither tells it.
+     */
+    public static String guessContentType(URL url, String accept) {
+        String path = url.getPath();
+        int dot = path.lastIndexOf('.');
+        if (dot > path.lastIndexOf('/')) {
+            String type = CONTENT_TYPES.get(path.substring(dot + 1).toLowerCase(Locale.ENGLISH));
+            if (type != null) {
+                return type;
+            }
+        }
+        if (accept != null) {
+            String first = accept.split(",")[0];
+            int semicolon = first.indexOf(';');
+            if (semicolon >= 0) {
+                first = first.substring(0, semicolon);
+            }
+            first = first.trim().toLowerCase(Locale.ENGLISH);
+            if (first.length() > 0 && !first.startsWith("*")) {
+                return first;
+            }
+        }
+        return null;
+    }
+
+    private RequestFilter add(boolean allow, Target target, String value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Request filter rule can't be null");
+        }
+        rules.add(new Rule(allow, target, value));
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "RequestFilter" + rules;
+    }
+
+}
@@ -0,0 +1,226 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The last requests sent by the testing engines of a test, with their timings and sizes, see
+ * {@link TestContext#setRequestLog(RequestLog)}. It can be written as a HAR file, to see which backend calls made a
+ * test slow in any HAR viewer.
+ *
+ * <p>The log is a ring buffer: once full, each new request replaces the oldest one. It is thread safe, so it can be
+ * shared by tests running in parallel.</p>
+ */
+public class RequestLog {
+
+    /**
+     * Number of requests kept by default.
+     */
+    public static final int DEFAULT_CAPACITY = 1000;
+
+    private final LoggedRequest[] requests;
+
+    /**
+     * Index of the next request to write.
+     */
+    private int next;
+
+    private long count;
+
+    /**
+     * Create a log keeping the last {@value #DEFAULT_CAPACITY} requests.
+     */
+    public RequestLog() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity number of requests kept.
+     */
+    public RequestLog(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        requests = new LoggedRequest[capacity];
+    }
+
+    /**
+     * Add a request, replacing the oldest one if the log is full.
+     *
+     * @param request the request.
+     */
+    public synchronized void record(LoggedRequest request) {
+        requests[next] = request;
+        next = (next + 1) % requests.length;
+        count++;
+    }
+
+    /**
+     * @return the requests kept, oldest first.
+     */
+    public synchronized List<LoggedRequest> getRequests() {
+        int size = size();
+        List<LoggedRequest> result = new ArrayList<LoggedRequest>(size);
+        int first = (next - size + requests.length) % requests.length;
+        for (int i = 0; i < size; i++) {
+            result.add(requests[(first + i) % requests.length]);
+        }
+        return result;
+    }
+
+    /**
+     * @param max maximum number of requests returned.
+     * @return the slowest requests kept, slowest first.
+     */
+    public List<LoggedRequest> getSlowest(int max) {
+        List<LoggedRequest> result = getRequests();
+        Collections.sort(result, new Comparator<LoggedRequest>() {
+            public int compare(LoggedRequest r1, LoggedRequest r2) {
+                long t1 = r1.getTime();
+                long t2 = r2.getTime();
+                return t1 < t2 ? 1 : (t1 == t2 ? 0 : -1);
+            }
+        });
+        return result.size() > max ? new ArrayList<LoggedRequest>(result.subList(0, max)) : result;
+    }
+
+    /**
+     * @return the number of requests kept.
+     */
+    public synchronized int size() {
+        return (int) Math.min(count, requests.length);
+    }
+
+    /**
+     * @return the number of requests replaced by newer ones.
+     */
+    public synchronized long getDroppedCount() {
+        return Math.max(0, count - requests.length);
+    }
+
+    /**
+     * Remove all the requests, for example between two tests sharing a log.
+     */
+    public synchronized void clear() {
+        for (int i = 0; i < requests.length; i++) {
+            requests[i] = null;
+        }
+        next = 0;
+        count = 0;
+    }
+
+    /**
+     * Write the requests kept as a HAR 1.2 file.
+     *
+     * @param file the file to write.
+     * @throws IOException if the file can't be written.
+     */
+    public void storeHar(File file) throws IOException {
+        Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writeHar(out);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Write the requests kept in the HAR 1.2 format. Headers and contents are not logged, so they are left empty.
+     *
+     * @param out destination of the JSON document.
+     * @throws IOException if it can't be written.
+     */
+    public void writeHar(Writer out) throws IOException {
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSXXX");
+        out.write("{\"log\":{\"version\":\"1.2\",\"creator\":{\"name\":\"JWebUnit\",\"version\":");
+        String version = RequestLog.class.getPackage().getImplementationVersion();
+        writeString(out, version == null ? "" : version);
+        out.write("},\"pages\":[],\"entries\":[");
+        boolean first = true;
+        for (LoggedRequest request : getRequests()) {
+            if (!first) {
+                out.write(',');
+            }
+            first = false;
+            out.write("\n{\"startedDateTime\":");
+            writeString(out, dateFormat.format(request.getStartedDateTime()));
+            out.write(",\"time\":" + request.getTime());
+            out.write(",\"request\":{\"method\":");
+            writeString(out, request.getMethod());
+            out.write(",\"url\":");
+            writeString(out, request.getUrl());
+            out.write(",\"httpVersion\":\"HTTP/1.1\",\"cookies\":[],\"headers\":[],\"queryString\":[]"
+                    + ",\"headersSize\":-1,\"bodySize\":" + request.getRequestBodySize() + "}");
+            out.write(",\"response\":{\"status\":" + request.getStatus() + ",\"statusText\":");
+            writeString(out, request.getStatusText());
+            out.write(",\"httpVersion\":\"HTTP/1.1\",\"cookies\":[],\"headers\":[],\"content\":{\"size\":"
+                    + Math.max(0, request.getResponseBodySize()) + ",\"mimeType\":");
+            writeString(out, request.getMimeType() == null ? "" : request.getMimeType());
+            out.write("},\"redirectURL\":\"\",\"headersSize\":-1,\"bodySize\":" + request.getResponseBodySize() + "}");
+            // send, wait and receive can't be -1 in a HAR file
+            out.write(",\"cache\":{},\"timings\":{\"blocked\":-1,\"dns\":" + request.getDns() + ",\"connect\":"
+                    + request.getConnect() + ",\"send\":" + Math.max(0, request.getSend()) + ",\"wait\":"
+                    + Math.max(0, request.getWait()) + ",\"receive\":" + Math.max(0, request.getReceive()) + "}}");
+        }
+        out.write("\n]}}\n");
+        out.flush();
+    }
+
+    private static void writeString(Writer out, String s) throws IOException {
+        out.write('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+            case '"':
+                out.write("\\\"");
+                break;
+            case '\\':
+                out.write("\\\\");
+                break;
+            case '\n':
+                out.write("\\n");
+                break;
+            case '\r':
+                out.write("\\r");
+                break;
+            case '\t':
+                out.write("\\t");
+                break;
+            default:
+                if (c < 0x20) {
+                    out.write(String.format("\\u%04x", (int) c));
+                } else {
+                    out.write(c);
+                }
+            }
+        }
+        out.write('"');
+    }
+
+}
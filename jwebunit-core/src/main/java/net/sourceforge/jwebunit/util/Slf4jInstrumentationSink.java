@@ -0,0 +1,41 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.util;
+
+import java.util.Collection;
+
+import net.sourceforge.jwebunit.api.IInstrumentationSink;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Log the statistics of testing engine methods at info level, one line per method.
+ */
+public class Slf4jInstrumentationSink implements IInstrumentationSink {
+
+    private static final Logger logger = LoggerFactory.getLogger(Slf4jInstrumentationSink.class);
+
+    public void export(Collection<MethodStats> stats) {
+        for (MethodStats methodStats : stats) {
+            logger.info("{}", methodStats);
+        }
+    }
+
+}
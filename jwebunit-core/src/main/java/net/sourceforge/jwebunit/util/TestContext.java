@@ -20,10 +20,13 @@ package net.sourceforge.jwebunit.util;
 
 import javax.servlet.http.Cookie;
 
+import net.sourceforge.jwebunit.api.ILocalTransport;
+
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -70,6 +73,18 @@ public class TestContext {
 
     private boolean hasProxyAuth = false;
 
+    private ILocalTransport localTransport = null;
+
+    private CachePolicy cachePolicy = CachePolicy.PER_BROWSER;
+
+    private RequestFilter requestFilter = null;
+
+    private HttpArchive httpArchive = null;
+
+    private HttpArchiveMode httpArchiveMode = null;
+
+    private RequestLog requestLog = null;
+
     /**
      * Construct a test client context.
      */
@@ -83,6 +98,40 @@ public class TestContext {
         }
     }
 
+    /**
+     * Construct a copy of a test client context. The cookies and the request headers are copied, so that changing them
+     * on one context doesn't change the other.
+     *
+     * @param context the context to copy.
+     */
+    public TestContext(TestContext context) {
+        cookies = new ArrayList<javax.servlet.http.Cookie>();
+        for (Cookie cookie : context.cookies) {
+            cookies.add((Cookie) cookie.clone());
+        }
+        user = context.user;
+        passwd = context.passwd;
+        domain = context.domain;
+        hasAuth = context.hasAuth;
+        hasNTLMAuth = context.hasNTLMAuth;
+        locale = context.locale;
+        resourceBundleName = context.resourceBundleName;
+        baseUrl = context.baseUrl;
+        userAgent = context.userAgent;
+        requestHeaders.putAll(context.requestHeaders);
+        proxyUser = context.proxyUser;
+        proxyPasswd = context.proxyPasswd;
+        proxyHost = context.proxyHost;
+        proxyPort = context.proxyPort;
+        hasProxyAuth = context.hasProxyAuth;
+        localTransport = context.localTransport;
+        cachePolicy = context.cachePolicy;
+        requestFilter = context.requestFilter;
+        httpArchive = context.httpArchive;
+        httpArchiveMode = context.httpArchiveMode;
+        requestLog = context.requestLog;
+    }
+
     /**
      * Clear all authorizations (basic, digest, ntlm, proxy).
      * 
@@ -240,6 +289,134 @@ public class TestContext {
         return userAgent != null;
     }
 
+    /**
+     * Send the requests to a server running in the same JVM instead of the network. Only the engines supporting it use
+     * the transport (HtmlUnit), the base URL is still used to build the requests.
+     *
+     * @param localTransport transport to the in-process server, or null to use the network.
+     */
+    public void setLocalTransport(ILocalTransport localTransport) {
+        this.localTransport = localTransport;
+    }
+
+    /**
+     * Return the transport to the in-process server, or null if the requests go through the network.
+     */
+    public ILocalTransport getLocalTransport() {
+        return localTransport;
+    }
+
+    /**
+     * Return true if a transport to an in-process server has been set via {@link #setLocalTransport}.
+     */
+    public boolean hasLocalTransport() {
+        return localTransport != null;
+    }
+
+    /**
+     * Set how downloaded responses are cached. The default is {@link CachePolicy#PER_BROWSER}.
+     *
+     * @param cachePolicy the cache policy, must be set before the browser is started.
+     */
+    public void setCachePolicy(CachePolicy cachePolicy) {
+        if (cachePolicy == null) {
+            throw new IllegalArgumentException("Cache policy can't be null");
+        }
+        this.cachePolicy = cachePolicy;
+    }
+
+    /**
+     * Return how downloaded responses are cached.
+     */
+    public CachePolicy getCachePolicy() {
+        return cachePolicy;
+    }
+
+    /**
+     * Set the rules deciding which requests are sent. Blocked requests are answered with an empty response by the
+     * engines supporting it.
+     *
+     * @param requestFilter the request filter, or null to send all the requests.
+     */
+    public void setRequestFilter(RequestFilter requestFilter) {
+        this.requestFilter = requestFilter;
+    }
+
+    /**
+     * Return the rules deciding which requests are sent, or null if all the requests are sent.
+     */
+    public RequestFilter getRequestFilter() {
+        return requestFilter;
+    }
+
+    /**
+     * Return true if a request filter has been set via {@link #setRequestFilter}.
+     */
+    public boolean hasRequestFilter() {
+        return requestFilter != null;
+    }
+
+    /**
+     * Record the responses received by the engine into an archive, or answer the requests with the responses of an
+     * archive instead of the server. Only the engines supporting it use the archive (HtmlUnit, and WebDriver for
+     * recording).
+     *
+     * @param httpArchive the archive, or null to neither record nor replay.
+     * @param mode what to do with the archive, must be set with the archive.
+     */
+    public void setHttpArchive(HttpArchive httpArchive, HttpArchiveMode mode) {
+        if (httpArchive != null && mode == null) {
+            throw new IllegalArgumentException("HTTP archive mode can't be null");
+        }
+        this.httpArchive = httpArchive;
+        this.httpArchiveMode = httpArchive == null ? null : mode;
+    }
+
+    /**
+     * Return the archive the responses are recorded into or replayed from, or null if there is none.
+     */
+    public HttpArchive getHttpArchive() {
+        return httpArchive;
+    }
+
+    /**
+     * Return what is done with the archive, or null if there is none.
+     */
+    public HttpArchiveMode getHttpArchiveMode() {
+        return httpArchiveMode;
+    }
+
+    /**
+     * Return true if an archive has been set via {@link #setHttpArchive}.
+     */
+    public boolean hasHttpArchive() {
+        return httpArchive != null;
+    }
+
+    /**
+     * Log the requests sent by the engine with their timings, to be exported as a HAR file. Only the engines
+     * supporting it fill the log (HtmlUnit, WebDriver and HttpClient).
+     *
+     * @param requestLog the log, or null to log nothing.
+     */
+    public void setRequestLog(RequestLog requestLog) {
+        this.requestLog = requestLog;
+    }
+
+    /**
+     * Return the log of the requests, or null if there is none.
+     */
+    public RequestLog getRequestLog() {
+        return requestLog;
+    }
+
+    /**
+     * Return true if a request log has been set via {@link #setRequestLog}.
+     */
+    public boolean hasRequestLog() {
+        return requestLog != null;
+    }
+
     /**
      * Return the locale established for the test context. If the locale has not been explicitly set,
      * Locale.getDefault() will be returned.
@@ -362,4 +539,33 @@ public class TestContext {
         requestHeaders = new HashMap<String, String>();
     }
 
+    /**
+     * Seed the test context from a checkpoint: its cookies replace the cookies of the context with the same name,
+     * domain and path, and its authorization and request headers are added.
+     *
+     * @param checkpoint the checkpoint.
+     */
+    public void applyCheckpoint(Checkpoint checkpoint) {
+        for (Cookie cookie : checkpoint.getCookies()) {
+            for (Iterator<Cookie> i = cookies.iterator(); i.hasNext();) {
+                Cookie c = i.next();
+                if (c.getName().equals(cookie.getName()) && equal(c.getDomain(), cookie.getDomain())
+                        && equal(c.getPath(), cookie.getPath())) {
+                    i.remove();
+                }
+            }
+            addCookie((Cookie) cookie.clone());
+        }
+        if (checkpoint.hasNTLMAuthorization()) {
+            setNTLMAuthorization(checkpoint.getUser(), checkpoint.getPassword(), checkpoint.getDomain());
+        } else if (checkpoint.hasAuthorization()) {
+            setAuthorization(checkpoint.getUser(), checkpoint.getPassword());
+        }
+        requestHeaders.putAll(checkpoint.getRequestHeaders());
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
 }
@@ -40,6 +40,11 @@ public class TestingEngineRegistry {
      */
     public final static String TESTING_ENGINE_WEBDRIVER = "TestingEngineWebdriver";
 
+    /**
+     * Key of HttpClient testing engine, which does not support JavaScript.
+     */
+    public final static String TESTING_ENGINE_HTTPCLIENT = "TestingEngineHttpClient";
+
     private static Hashtable<String,Class<?>> testingEngineMap = new Hashtable<String,Class<?>>();
 
     static {
@@ -57,6 +62,13 @@ public class TestingEngineRegistry {
         } catch (ClassNotFoundException e) {
             // Webdriver Testing Engine is not present in the classpath. Nothing to do.
         }
+        cp = "net.sourceforge.jwebunit.httpclient.HttpClientTestingEngineImpl";
+        // Try to load HttpClient Testing Engine to check if it is present.
+        try {
+            addTestingEngine(TESTING_ENGINE_HTTPCLIENT, cp);
+        } catch (ClassNotFoundException e) {
+            // HttpClient Testing Engine is not present in the classpath. Nothing to do.
+        }
     }
 
     /**
@@ -0,0 +1,122 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit;
+
+import junit.framework.TestCase;
+import net.sourceforge.jwebunit.html.Row;
+import net.sourceforge.jwebunit.html.StreamingTable;
+import net.sourceforge.jwebunit.html.Table;
+
+/**
+ * Test that the checks of StreamingTable only build the rows they need.
+ */
+public class StreamingTableTest extends TestCase {
+
+    /**
+     * Table of 1000 rows "row i", "i", counting the rows built.
+     */
+    private CountingTable table;
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setUp() throws Exception {
+        super.setUp();
+        table = new CountingTable(1000);
+    }
+
+    public final void testHasTextStopsAtFirstHit() {
+        assertTrue(table.hasText("row 9"));
+        assertEquals(10, table.built);
+    }
+
+    public final void testHasTextReadsAllRowsWhenAbsent() {
+        assertFalse(table.hasText("row 1000"));
+        assertEquals(1000, table.built);
+    }
+
+    public final void testHasMatchStopsAtFirstHit() {
+        assertTrue(table.hasMatch("row 4\\d"));
+        assertEquals(41, table.built);
+    }
+
+    public final void testAssertSubTableEqualsOnlyBuildsComparedRows() {
+        Table expected = new Table(new String[][] {{"row 500", "500"}, {"row 501", "501"}});
+        table.assertSubTableEquals(500, expected);
+        assertEquals(2, table.built);
+    }
+
+    public final void testAssertSubTableEqualsTooManyRows() {
+        Table expected = new Table(new String[][] {{"row 999", "999"}, {"row 1000", "1000"}});
+        try {
+            table.assertSubTableEquals(999, expected);
+            fail("Expected rows don't fit in the table");
+        } catch (AssertionError e) {
+            assertEquals(0, table.built);
+        }
+    }
+
+    public final void testAssertEqualsStopsAtFirstDifference() {
+        Object[][] values = new Object[1000][];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = new String[] {"row " + i, i == 2 ? "two" : String.valueOf(i)};
+        }
+        try {
+            table.assertEquals(new Table(values));
+            fail("Row 2 is different");
+        } catch (AssertionError e) {
+            assertEquals(3, table.built);
+        }
+    }
+
+    public final void testAssertEqualsRowCount() {
+        try {
+            table.assertEquals(new Table(new String[][] {{"row 0", "0"}}));
+            fail("Row count is different");
+        } catch (AssertionError e) {
+            assertEquals("Row count are not equal", e.getMessage());
+            assertEquals(0, table.built);
+        }
+    }
+
+    /**
+     * A streaming table counting the rows it builds.
+     */
+    private static class CountingTable extends StreamingTable {
+
+        private final int rowCount;
+
+        private int built;
+
+        CountingTable(int rowCount) {
+            this.rowCount = rowCount;
+        }
+
+        @Override
+        public int getRowCount() {
+            return rowCount;
+        }
+
+        @Override
+        public Row getRow(int index) {
+            built++;
+            return new Row(new String[] {"row " + index, String.valueOf(index)});
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.junit;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+import net.sourceforge.jwebunit.api.IInstrumentationSink;
+import net.sourceforge.jwebunit.api.ITestingEngine;
+import net.sourceforge.jwebunit.util.MethodStats;
+
+public class LoadTestTest extends TestCase {
+
+    private ExecutorService executor;
+
+    private final Map<WebTester, Boolean> testers = Collections.synchronizedMap(new IdentityHashMap<WebTester, Boolean>());
+
+    @Override
+    protected void setUp() throws Exception {
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Give the tester of the current iteration an engine doing nothing, as no real engine is available here.
+     */
+    private void useFakeEngine() {
+        WebTester tester = WebTesterScope.current();
+        testers.put(tester, Boolean.TRUE);
+        tester.setDialog((ITestingEngine) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { ITestingEngine.class }, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        return null;
+                    }
+                }));
+    }
+
+    public void testStepsOfEachUser() throws Exception {
+        LoadTestReport report = new LoadTest(executor).users(4).run(new SimulatedUsers.Session() {
+            public void run(int user) throws Exception {
+                useFakeEngine();
+                LoadTest.step("home");
+                Thread.sleep(5);
+                LoadTest.step("login");
+                Thread.sleep(5);
+            }
+        });
+        assertEquals(4, report.getUsers());
+        assertEquals(4, report.getIterations().getCount());
+        assertEquals(0, report.getIterations().getErrorCount());
+        assertEquals(4, testers.size());
+        List<MethodStats> steps = report.getSteps();
+        assertEquals(2, steps.size());
+        assertEquals("home", steps.get(0).getMethod());
+        assertEquals("login", steps.get(1).getMethod());
+        assertEquals(4, report.getStep("login").getCount());
+        assertTrue(report.getStep("home").getLatencies().getPercentile(95) >= 5000000L);
+        assertTrue(report.toString(), report.toString().contains("login: 4 runs, 0 errors"));
+    }
+
+    public void testFailureIsRecordedOnCurrentStep() throws Exception {
+        LoadTestReport report = new LoadTest(executor).users(3).run(new SimulatedUsers.Session() {
+            public void run(int user) {
+                useFakeEngine();
+                LoadTest.step("home");
+                LoadTest.step("login");
+                if (user == 1) {
+                    throw new IllegalStateException("login failed");
+                }
+            }
+        });
+        assertEquals(0, report.getStep("home").getErrorCount());
+        assertEquals(1, report.getStep("login").getErrorCount());
+        assertEquals(1, report.getIterations().getErrorCount());
+        assertEquals(1, report.getFailures().size());
+        assertEquals("login failed", report.getFailures().get(0).getMessage());
+    }
+
+    public void testUsersIterateUntilTheEndOfTheRun() throws Exception {
+        LoadTestReport report = new LoadTest(executor).users(2).rampUp(50, TimeUnit.MILLISECONDS)
+                .duration(200, TimeUnit.MILLISECONDS).run(new SimulatedUsers.Session() {
+                    public void run(int user) throws Exception {
+                        useFakeEngine();
+                        LoadTest.step("page");
+                        Thread.sleep(10);
+                    }
+                });
+        assertTrue(report.getElapsedTime() >= 200);
+        assertTrue(String.valueOf(report.getIterations().getCount()), report.getIterations().getCount() > 4);
+        assertEquals(report.getIterations().getCount(), report.getStep("page").getCount());
+        assertTrue(report.getThroughput(report.getIterations()) > 0);
+    }
+
+    public void testExport() throws Exception {
+        LoadTestReport report = new LoadTest(executor).run(new SimulatedUsers.Session() {
+            public void run(int user) {
+                useFakeEngine();
+                LoadTest.step("home");
+            }
+        });
+        final List<String> exported = new ArrayList<String>();
+        report.export(new IInstrumentationSink() {
+            public void export(Collection<MethodStats> stats) {
+                for (MethodStats methodStats : stats) {
+                    exported.add(methodStats.getMethod() + "=" + methodStats.getCount());
+                }
+            }
+        });
+        assertEquals("[home=1, iteration=1]", exported.toString());
+    }
+
+    public void testStepOutsideOfLoadTestDoesNothing() {
+        LoadTest.step("home");
+    }
+
+}
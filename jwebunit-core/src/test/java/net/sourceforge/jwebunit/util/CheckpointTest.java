@@ -0,0 +1,104 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.util;
+
+import java.io.File;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.servlet.http.Cookie;
+
+import junit.framework.TestCase;
+
+public class CheckpointTest extends TestCase {
+
+    private Checkpoint checkpoint() throws Exception {
+        TestContext context = new TestContext();
+        context.setAuthorization("admin", "secret");
+        context.addRequestHeader("X-Tenant", "acme");
+        List<Cookie> cookies = new ArrayList<Cookie>();
+        Cookie session = new Cookie("JSESSIONID", "1234");
+        session.setDomain("localhost");
+        session.setPath("/app");
+        cookies.add(session);
+        Cookie remember = new Cookie("remember", "yes");
+        remember.setMaxAge(3600);
+        cookies.add(remember);
+        Cookie expired = new Cookie("expired", "no");
+        expired.setMaxAge(0);
+        cookies.add(expired);
+        return new Checkpoint("login", new URL("http://localhost/app/home"), cookies, context);
+    }
+
+    public void testStoreAndLoad() throws Exception {
+        File file = File.createTempFile("checkpoint", ".properties");
+        try {
+            checkpoint().store(file);
+            Checkpoint loaded = Checkpoint.load(file);
+            assertEquals("login", loaded.getName());
+            assertEquals(new URL("http://localhost/app/home"), loaded.getUrl());
+            assertTrue(loaded.hasAuthorization());
+            assertFalse(loaded.hasNTLMAuthorization());
+            assertEquals("admin", loaded.getUser());
+            assertEquals("secret", loaded.getPassword());
+            assertEquals("acme", loaded.getRequestHeaders().get("X-Tenant"));
+            // the expired cookie is left out
+            assertEquals(2, loaded.getCookies().size());
+            Cookie session = loaded.getCookies().get(0);
+            assertEquals("JSESSIONID", session.getName());
+            assertEquals("1234", session.getValue());
+            assertEquals("localhost", session.getDomain());
+            assertEquals("/app", session.getPath());
+            assertEquals(-1, session.getMaxAge());
+            int maxAge = loaded.getCookies().get(1).getMaxAge();
+            assertTrue("maxAge " + maxAge, maxAge > 3590 && maxAge <= 3600);
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void testApplyCheckpoint() throws Exception {
+        TestContext context = new TestContext();
+        context.addCookie("JSESSIONID", "old", "localhost");
+        context.getCookies().get(0).setPath("/app");
+        context.addCookie("other", "kept", "localhost");
+        context.applyCheckpoint(checkpoint());
+        assertTrue(context.hasAuthorization());
+        assertEquals("secret", context.getPassword());
+        assertEquals("acme", context.getRequestHeaders().get("X-Tenant"));
+        assertEquals(4, context.getCookies().size());
+        for (Cookie c : context.getCookies()) {
+            assertFalse("old".equals(c.getValue()));
+        }
+    }
+
+    public void testLoadNotACheckpoint() throws Exception {
+        File file = File.createTempFile("checkpoint", ".properties");
+        try {
+            Checkpoint.load(file);
+            fail("Expected an IOException");
+        } catch (java.io.IOException e) {
+            // expected
+        } finally {
+            file.delete();
+        }
+    }
+
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.List;
+
+import junit.framework.TestCase;
+import net.sourceforge.jwebunit.api.IInstrumentationSink;
+import net.sourceforge.jwebunit.api.IStreamingTableEngine;
+import net.sourceforge.jwebunit.api.ITestingEngine;
+
+public class EngineInstrumentationTest extends TestCase {
+
+    private ITestingEngine fake;
+
+    private ITestingEngine engine;
+
+    @Override
+    protected void setUp() throws Exception {
+        EngineInstrumentation.reset();
+        fake = (ITestingEngine) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { ITestingEngine.class, IStreamingTableEngine.class }, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("getPageText")) {
+                            return "0123456789";
+                        }
+                        if (method.getName().equals("clickLink")) {
+                            throw new IllegalStateException("no link");
+                        }
+                        if (method.getReturnType() == boolean.class) {
+                            return Boolean.TRUE;
+                        }
+                        return null;
+                    }
+                });
+        engine = EngineInstrumentation.instrument(fake);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        EngineInstrumentation.reset();
+    }
+
+    public void testCallsAreRecorded() {
+        engine.getPageText();
+        engine.getPageText();
+        try {
+            engine.clickLink("missing");
+            fail();
+        } catch (IllegalStateException expected) {
+            // the exception of the engine is not wrapped
+        }
+        MethodStats pageText = EngineInstrumentation.getStats("getPageText()");
+        assertEquals(2, pageText.getCount());
+        assertEquals(20, pageText.getPayloadSize());
+        assertEquals(0, pageText.getErrorCount());
+        assertEquals(1, EngineInstrumentation.getStats("clickLink(String)").getErrorCount());
+    }
+
+    public void testOverloadedMethodsAreCountedApart() {
+        engine.hasForm();
+        engine.hasForm("form1");
+        engine.hasForm("form1", 0);
+        engine.hasForm("form2", 1);
+        assertEquals(1, EngineInstrumentation.getStats("hasForm()").getCount());
+        assertEquals(1, EngineInstrumentation.getStats("hasForm(String)").getCount());
+        assertEquals(2, EngineInstrumentation.getStats("hasForm(String, int)").getCount());
+    }
+
+    public void testAllInterfacesAreKept() {
+        assertTrue(engine instanceof IStreamingTableEngine);
+        assertTrue(EngineInstrumentation.isInstrumented(engine));
+        assertSame(fake, EngineInstrumentation.unwrap(engine));
+        assertFalse(EngineInstrumentation.isInstrumented(fake));
+        assertSame(fake, EngineInstrumentation.unwrap(fake));
+    }
+
+    public void testSinksGetASnapshot() {
+        final StringBuilder exported = new StringBuilder();
+        IInstrumentationSink sink = new IInstrumentationSink() {
+            public void export(Collection<MethodStats> stats) {
+                for (MethodStats methodStats : stats) {
+                    exported.append(methodStats.getMethod()).append('=').append(methodStats.getCount()).append(';');
+                }
+            }
+        };
+        EngineInstrumentation.addSink(sink);
+        try {
+            engine.getPageTitle();
+            engine.getPageText();
+            EngineInstrumentation.export();
+        } finally {
+            EngineInstrumentation.removeSink(sink);
+        }
+        assertEquals("getPageText()=1;getPageTitle()=1;", exported.toString());
+        List<MethodStats> snapshot = EngineInstrumentation.getSnapshot();
+        engine.getPageText();
+        assertEquals(1, snapshot.get(0).getCount());
+    }
+
+    public void testHistogramPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentile(50));
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 1000000L);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(100000000L, histogram.getMax());
+        long median = histogram.getPercentile(50);
+        assertTrue(String.valueOf(median), median >= 50000000L && median <= 50000000L * 17 / 16);
+        long p95 = histogram.getPercentile(95);
+        assertTrue(String.valueOf(p95), p95 >= 95000000L && p95 <= 95000000L * 17 / 16);
+        assertEquals(histogram.getMax(), histogram.getPercentile(100));
+    }
+
+    public void testHistogramSmallLatenciesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 16; i++) {
+            histogram.record(i * 1000L);
+        }
+        assertEquals(8000L, histogram.getPercentile(50));
+    }
+
+}
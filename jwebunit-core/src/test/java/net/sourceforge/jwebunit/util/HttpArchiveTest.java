@@ -0,0 +1,99 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.util;
+
+import java.io.File;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+
+import junit.framework.TestCase;
+import net.sourceforge.jwebunit.api.HttpHeader;
+
+public class HttpArchiveTest extends TestCase {
+
+    private static RecordedResponse response(String body) throws Exception {
+        return new RecordedResponse(200, "OK", Arrays.asList(new HttpHeader("Content-Type", "text/html"),
+                new HttpHeader("Content-Length", "42"), new HttpHeader("Set-Cookie", "a=b")), body.getBytes("UTF-8"));
+    }
+
+    public void testResponsesReplayedInOrder() throws Exception {
+        HttpArchive archive = new HttpArchive();
+        URL url = new URL("http://localhost/app/page");
+        archive.record("GET", url, null, response("first"));
+        archive.record("GET", url, null, response("second"));
+        String key = HttpArchive.getKey("GET", url, null);
+        assertEquals("first", new String(archive.getResponse(key, 0).getBody(), "UTF-8"));
+        assertEquals("second", new String(archive.getResponse(key, 1).getBody(), "UTF-8"));
+        assertEquals("second", new String(archive.getResponse(key, 2).getBody(), "UTF-8"));
+        assertNull(archive.getResponse(HttpArchive.getKey("POST", url, null), 0));
+    }
+
+    public void testRequestBodyIsPartOfTheKey() throws Exception {
+        URL url = new URL("http://localhost/app/form");
+        assertFalse(HttpArchive.getKey("POST", url, "a=1".getBytes("UTF-8"))
+                .equals(HttpArchive.getKey("POST", url, "a=2".getBytes("UTF-8"))));
+        assertEquals(HttpArchive.getKey("POST", url, null), HttpArchive.getKey("post", url, new byte[0]));
+    }
+
+    public void testTransferHeadersLeftOut() throws Exception {
+        RecordedResponse response = response("body");
+        assertEquals(2, response.getHeaders().size());
+        assertEquals("Content-Type", response.getHeaders().get(0).getName());
+        assertEquals("Set-Cookie", response.getHeaders().get(1).getName());
+    }
+
+    public void testStoreAndLoad() throws Exception {
+        HttpArchive archive = new HttpArchive();
+        URL url = new URL("http://localhost/app/page");
+        archive.record("GET", url, null, response("same"));
+        archive.record("GET", new URL("http://localhost/app/other"), null, response("same"));
+        archive.record("POST", url, "a=1".getBytes("UTF-8"),
+                new RecordedResponse(302, "Found", Collections.singletonList(new HttpHeader("Location", "/")), null));
+        File file = File.createTempFile("archive", ".zip");
+        try {
+            archive.store(file);
+            HttpArchive loaded = HttpArchive.load(file);
+            assertEquals(3, loaded.size());
+            RecordedResponse page = loaded.getResponse(HttpArchive.getKey("GET", url, null), 0);
+            assertEquals(200, page.getStatus());
+            assertEquals("same", new String(page.getBody(), "UTF-8"));
+            assertEquals("a=b", page.getHeaders().get(1).getValue());
+            RecordedResponse redirect = loaded.getResponse(HttpArchive.getKey("POST", url, "a=1".getBytes("UTF-8")), 0);
+            assertEquals(302, redirect.getStatus());
+            assertEquals("Found", redirect.getStatusMessage());
+            assertEquals(0, redirect.getBody().length);
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void testLoadNotAnArchive() throws Exception {
+        File file = File.createTempFile("archive", ".zip");
+        try {
+            HttpArchive.load(file);
+            fail("Expected an IOException");
+        } catch (java.io.IOException e) {
+            // expected
+        } finally {
+            file.delete();
+        }
+    }
+
+}
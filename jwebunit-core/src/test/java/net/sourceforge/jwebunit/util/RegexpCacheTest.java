@@ -0,0 +1,78 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.util;
+
+import junit.framework.TestCase;
+
+public class RegexpCacheTest extends TestCase {
+
+    @Override
+    protected void setUp() throws Exception {
+        RegexpCache.clear();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        RegexpCache.setBackend(RegexpBackend.JAKARTA_REGEXP);
+        RegexpCache.setMaxSize(RegexpCache.DEFAULT_MAX_SIZE);
+        RegexpCache.clear();
+    }
+
+    public void testCompiledRegexpIsReused() {
+        CompiledRegexp re = RegexpCache.compile("fo+");
+        assertSame(re, RegexpCache.compile("fo+"));
+        assertEquals(1, RegexpCache.getHitCount());
+        assertEquals(1, RegexpCache.getMissCount());
+        assertEquals(0.5, RegexpCache.getHitRate(), 0.001);
+    }
+
+    public void testLeastRecentlyUsedIsEvicted() {
+        RegexpCache.setMaxSize(2);
+        CompiledRegexp a = RegexpCache.compile("a");
+        RegexpCache.compile("b");
+        RegexpCache.compile("a");
+        RegexpCache.compile("c");
+        assertEquals(2, RegexpCache.getSize());
+        assertEquals(1, RegexpCache.getEvictionCount());
+        assertSame(a, RegexpCache.compile("a"));
+    }
+
+    public void testJakartaBackend() {
+        assertTrue(RegexpCache.match("0[:punct:]002", "0.002"));
+        assertTrue(RegexpCache.match("a.b", "a\nb"));
+        assertFalse(RegexpCache.match("^b", "ab"));
+    }
+
+    public void testJavaUtilRegexBackend() {
+        RegexpCache.setBackend(RegexpBackend.JAVA_UTIL_REGEX);
+        assertTrue(RegexpCache.match("0\\p{Punct}002", "0.002"));
+        assertTrue(RegexpCache.match("a.b", "a\nb"));
+        assertFalse(RegexpCache.match("^b", "ab"));
+    }
+
+    public void testInvalidRegexp() {
+        try {
+            RegexpCache.compile("(");
+            fail("Invalid regexp should be rejected");
+        } catch (IllegalArgumentException e) {
+            assertEquals(0, RegexpCache.getSize());
+        }
+    }
+
+}
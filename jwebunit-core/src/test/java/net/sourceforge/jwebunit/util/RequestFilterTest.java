@@ -0,0 +1,67 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.util;
+
+import java.net.URL;
+
+import junit.framework.TestCase;
+
+public class RequestFilterTest extends TestCase {
+
+    public void testEverythingAllowedWithoutRules() throws Exception {
+        assertTrue(new RequestFilter().isAllowed(new URL("http://localhost/a.png"), "image/png"));
+    }
+
+    public void testFirstMatchingRuleDecides() throws Exception {
+        RequestFilter filter = new RequestFilter().allowHost("localhost").denyHost("*");
+        assertTrue(filter.isAllowed(new URL("http://localhost/app.js"), null));
+        assertFalse(filter.isAllowed(new URL("http://www.google-analytics.com/ga.js"), null));
+    }
+
+    public void testHostWildcard() throws Exception {
+        RequestFilter filter = new RequestFilter().denyHost("*.example.com");
+        assertFalse(filter.isAllowed(new URL("http://example.com/"), null));
+        assertFalse(filter.isAllowed(new URL("http://cdn.Example.com/"), null));
+        assertTrue(filter.isAllowed(new URL("http://notexample.com/"), null));
+    }
+
+    public void testContentTypePrefix() throws Exception {
+        RequestFilter filter = new RequestFilter().denyContentType("image/").denyContentType("text/css");
+        assertFalse(filter.isAllowed(new URL("http://localhost/a"), "image/gif"));
+        assertFalse(filter.isAllowed(new URL("http://localhost/a"), "Text/CSS"));
+        assertTrue(filter.isAllowed(new URL("http://localhost/a"), "text/cssx"));
+        assertTrue(filter.isAllowed(new URL("http://localhost/a"), null));
+    }
+
+    public void testUrlPattern() throws Exception {
+        RequestFilter filter = new RequestFilter().denyUrl("/analytics/");
+        assertFalse(filter.isAllowed(new URL("http://localhost/analytics/track?x=1"), null));
+        assertTrue(filter.isAllowed(new URL("http://localhost/page.html"), null));
+    }
+
+    public void testGuessContentType() throws Exception {
+        assertEquals("text/css", RequestFilter.guessContentType(new URL("http://localhost/style.CSS?v=2"), null));
+        assertEquals("font/woff2", RequestFilter.guessContentType(new URL("http://localhost/f.woff2"), "*/*"));
+        assertEquals("image/png",
+                RequestFilter.guessContentType(new URL("http://localhost/img"), "image/png,image/*;q=0.8,*/*;q=0.5"));
+        assertNull(RequestFilter.guessContentType(new URL("http://localhost/dir.v1/img"), "*/*"));
+        assertNull(RequestFilter.guessContentType(new URL("http://localhost/"), null));
+    }
+
+}
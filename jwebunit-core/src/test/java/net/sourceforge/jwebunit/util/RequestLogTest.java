@@ -0,0 +1,74 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.util;
+
+import java.io.StringWriter;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class RequestLogTest extends TestCase {
+
+    private static LoggedRequest request(String path, long wait) {
+        return new LoggedRequest(1000000000000L, "GET", "http://localhost/app" + path, 200, "OK", "text/html", 0, 42,
+                -1, -1, -1, wait, 1);
+    }
+
+    public void testOldestRequestsDropped() {
+        RequestLog log = new RequestLog(3);
+        for (int i = 0; i < 5; i++) {
+            log.record(request("/" + i, i));
+        }
+        List<LoggedRequest> requests = log.getRequests();
+        assertEquals(3, requests.size());
+        assertEquals("http://localhost/app/2", requests.get(0).getUrl());
+        assertEquals("http://localhost/app/4", requests.get(2).getUrl());
+        assertEquals(2, log.getDroppedCount());
+        log.clear();
+        assertEquals(0, log.size());
+        assertEquals(0, log.getDroppedCount());
+    }
+
+    public void testSlowest() {
+        RequestLog log = new RequestLog();
+        log.record(request("/fast", 5));
+        log.record(request("/slow", 500));
+        log.record(request("/medium", 50));
+        List<LoggedRequest> slowest = log.getSlowest(2);
+        assertEquals(2, slowest.size());
+        assertEquals("http://localhost/app/slow", slowest.get(0).getUrl());
+        assertEquals(501, slowest.get(0).getTime());
+        assertEquals("http://localhost/app/medium", slowest.get(1).getUrl());
+    }
+
+    public void testHar() throws Exception {
+        RequestLog log = new RequestLog();
+        log.record(request("/page?q=\"a\"", 10));
+        StringWriter out = new StringWriter();
+        log.writeHar(out);
+        String har = out.toString();
+        assertTrue(har, har.startsWith("{\"log\":{\"version\":\"1.2\""));
+        assertTrue(har, har.contains("\"url\":\"http://localhost/app/page?q=\\\"a\\\"\""));
+        assertTrue(har, har.contains("\"time\":11,"));
+        assertTrue(har, har.contains("\"timings\":{\"blocked\":-1,\"dns\":-1,\"connect\":-1,\"send\":0,\"wait\":10,"
+                + "\"receive\":1}"));
+        assertTrue(har, har.contains("\"content\":{\"size\":42,\"mimeType\":\"text/html\"}"));
+    }
+
+}
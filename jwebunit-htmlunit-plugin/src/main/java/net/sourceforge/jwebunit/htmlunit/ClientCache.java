@@ -0,0 +1,79 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.htmlunit;
+
+import com.gargoylesoftware.htmlunit.Cache;
+import com.gargoylesoftware.htmlunit.WebRequest;
+import com.gargoylesoftware.htmlunit.WebResponse;
+
+/**
+ * The {@link Cache} of a single web client using a {@link SharedResponseCache}: downloaded responses are read from
+ * and added to the shared cache, while the stylesheets parsed and the scripts compiled from them stay in this cache.
+ * These objects can be modified by the pages (<code>insertRule</code>...) and depend on the browser version, so they
+ * must not be seen by the other web clients.
+ *
+ * <p>A parsed or compiled object is only used while the response it comes from is fresh in the shared cache.
+ * Clearing this cache, for example when the web client is closed, doesn't clear the shared one.</p>
+ */
+public class ClientCache extends Cache {
+
+  private static final long serialVersionUID = 1L;
+
+  private final transient SharedResponseCache sharedCache;
+
+  /**
+   * @param sharedCache the cache of the responses shared with the other web clients
+   */
+  public ClientCache(SharedResponseCache sharedCache) {
+    this.sharedCache = sharedCache;
+  }
+
+  /**
+   * @return the cache of the responses shared with the other web clients
+   */
+  public SharedResponseCache getSharedCache() {
+    return sharedCache;
+  }
+
+  @Override
+  public boolean cacheIfPossible(WebRequest request, WebResponse response, Object toCache) {
+    boolean shared = sharedCache.cacheIfPossible(request, response);
+    if (shared && toCache != null) {
+      super.cacheIfPossible(request, response, toCache);
+    }
+    return shared;
+  }
+
+  @Override
+  protected boolean isCacheable(WebRequest request, WebResponse response) {
+    // called for the objects of responses already accepted by the shared cache
+    return true;
+  }
+
+  @Override
+  public WebResponse getCachedResponse(WebRequest request) {
+    return sharedCache.getCachedResponse(request);
+  }
+
+  @Override
+  public Object getCachedObject(WebRequest request) {
+    return sharedCache.isFresh(request) ? super.getCachedObject(request) : null;
+  }
+
+}
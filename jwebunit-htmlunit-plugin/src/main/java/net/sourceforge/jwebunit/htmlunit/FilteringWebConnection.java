@@ -0,0 +1,74 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.htmlunit;
+
+import com.gargoylesoftware.htmlunit.WebConnection;
+import com.gargoylesoftware.htmlunit.WebRequest;
+import com.gargoylesoftware.htmlunit.WebResponse;
+import com.gargoylesoftware.htmlunit.WebResponseData;
+import com.gargoylesoftware.htmlunit.util.NameValuePair;
+import com.gargoylesoftware.htmlunit.util.WebConnectionWrapper;
+import java.io.IOException;
+import java.util.Collections;
+import net.sourceforge.jwebunit.util.BlockedRequestCounter;
+import net.sourceforge.jwebunit.util.RequestFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link WebConnection} enforcing a {@link RequestFilter}: allowed requests go to the wrapped connection, blocked
+ * ones are answered with an empty response without leaving the JVM.
+ *
+ * @see net.sourceforge.jwebunit.util.TestContext#setRequestFilter(RequestFilter)
+ */
+public class FilteringWebConnection extends WebConnectionWrapper {
+
+  private static final Logger logger = LoggerFactory.getLogger(FilteringWebConnection.class);
+
+  private final RequestFilter filter;
+
+  private final BlockedRequestCounter blockedRequests;
+
+  /**
+   * @param connection connection sending the allowed requests
+   * @param filter rules deciding which requests are sent
+   * @param blockedRequests counter of the blocked requests
+   */
+  public FilteringWebConnection(WebConnection connection, RequestFilter filter,
+    BlockedRequestCounter blockedRequests) {
+    super(connection);
+    this.filter = filter;
+    this.blockedRequests = blockedRequests;
+  }
+
+  @Override
+  public WebResponse getResponse(WebRequest request) throws IOException {
+    String contentType = RequestFilter.guessContentType(request.getUrl(),
+      request.getAdditionalHeaders().get("Accept"));
+    if (filter.isAllowed(request.getUrl(), contentType)) {
+      return super.getResponse(request);
+    }
+    logger.debug("Request to {} blocked", request.getUrl());
+    blockedRequests.record(contentType);
+    WebResponseData data = new WebResponseData(new byte[0], 200, "OK",
+      Collections.singletonList(new NameValuePair("Content-Type", contentType == null ? "text/plain" : contentType)));
+    return new WebResponse(data, request, 0);
+  }
+
+}
@@ -0,0 +1,204 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.htmlunit;
+
+import com.gargoylesoftware.htmlunit.html.DomChangeEvent;
+import com.gargoylesoftware.htmlunit.html.DomChangeListener;
+import com.gargoylesoftware.htmlunit.html.HtmlAttributeChangeEvent;
+import com.gargoylesoftware.htmlunit.html.HtmlAttributeChangeListener;
+import com.gargoylesoftware.htmlunit.html.HtmlElement;
+import com.gargoylesoftware.htmlunit.html.HtmlPage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of the elements of an {@link HtmlPage} by tag name and by id, name and type attributes, so that looking up
+ * form fields and buttons doesn't require a scan of the whole DOM.
+ *
+ * <p>The index is built lazily on first lookup, and dropped as soon as an element is added to or removed from the page,
+ * or one of the indexed attributes is changed.</p>
+ */
+class HtmlElementIndex implements DomChangeListener, HtmlAttributeChangeListener {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Attributes that are indexed.
+   */
+  private static final List<String> INDEXED_ATTRIBUTES = Arrays.asList("id", "name", "type");
+
+  private final HtmlPage page;
+
+  /**
+   * Elements in document order, by attribute name and value. <code>null</code> when the index must be rebuilt.
+   */
+  private Map<String, List<HtmlElement>> elements;
+
+  /**
+   * Create an index and start listening for changes of the page.
+   *
+   * @param page the page to index
+   */
+  HtmlElementIndex(HtmlPage page) {
+    this.page = page;
+    page.addDomChangeListener(this);
+    page.addHtmlAttributeChangeListener(this);
+  }
+
+  /**
+   * @return the indexed page
+   */
+  HtmlPage getPage() {
+    return page;
+  }
+
+  /**
+   * Stop listening for changes of the page. The index can't be used anymore.
+   */
+  void dispose() {
+    page.removeDomChangeListener(this);
+    page.removeHtmlAttributeChangeListener(this);
+    invalidate();
+  }
+
+  /**
+   * Get the elements having a given attribute value.
+   *
+   * @param attributeName attribute name to search for
+   * @param value value to search for
+   * @return the elements found, in document order
+   */
+  List<HtmlElement> getElements(String attributeName, String value) {
+    if (!INDEXED_ATTRIBUTES.contains(attributeName) || value.length() == 0) {
+      // an empty value also matches elements without the attribute
+      List<HtmlElement> result = new ArrayList<>();
+      for (HtmlElement e : page.getHtmlElementDescendants()) {
+        if (e.getAttribute(attributeName).equals(value)) {
+          result.add(e);
+        }
+      }
+      return result;
+    }
+    List<HtmlElement> result = getElements().get(getKey(attributeName, value));
+    if (result == null) {
+      return Collections.emptyList();
+    }
+    return result;
+  }
+
+  /**
+   * Get the elements with a given tag name.
+   *
+   * @param tagName tag name to search for
+   * @return the elements found, in document order
+   */
+  List<HtmlElement> getElementsByTagName(String tagName) {
+    List<HtmlElement> result = getElements().get(getKey(tagName));
+    if (result == null) {
+      return Collections.emptyList();
+    }
+    return result;
+  }
+
+  /**
+   * Get the first element having a given attribute value.
+   *
+   * @param attributeName attribute name to search for
+   * @param value value to search for
+   * @return the first element found in document order, or null
+   */
+  HtmlElement getElement(String attributeName, String value) {
+    List<HtmlElement> result = getElements(attributeName, value);
+    return result.isEmpty() ? null : result.get(0);
+  }
+
+  private synchronized Map<String, List<HtmlElement>> getElements() {
+    if (elements == null) {
+      Map<String, List<HtmlElement>> index = new HashMap<>();
+      for (HtmlElement e : page.getHtmlElementDescendants()) {
+        add(index, getKey(e.getTagName()), e);
+        for (String attributeName : INDEXED_ATTRIBUTES) {
+          String value = e.getAttribute(attributeName);
+          if (value.length() > 0) {
+            add(index, getKey(attributeName, value), e);
+          }
+        }
+      }
+      elements = index;
+    }
+    return elements;
+  }
+
+  private static void add(Map<String, List<HtmlElement>> index, String key, HtmlElement e) {
+    List<HtmlElement> list = index.get(key);
+    if (list == null) {
+      list = new ArrayList<>(1);
+      index.put(key, list);
+    }
+    list.add(e);
+  }
+
+  private static String getKey(String attributeName, String value) {
+    return attributeName + '=' + value;
+  }
+
+  private static String getKey(String tagName) {
+    return '<' + tagName;
+  }
+
+  private synchronized void invalidate() {
+    elements = null;
+  }
+
+  private void invalidate(HtmlAttributeChangeEvent event) {
+    if (INDEXED_ATTRIBUTES.contains(event.getName())) {
+      invalidate();
+    }
+  }
+
+  @Override
+  public void nodeAdded(DomChangeEvent event) {
+    invalidate();
+  }
+
+  @Override
+  public void nodeDeleted(DomChangeEvent event) {
+    invalidate();
+  }
+
+  @Override
+  public void attributeAdded(HtmlAttributeChangeEvent event) {
+    invalidate(event);
+  }
+
+  @Override
+  public void attributeRemoved(HtmlAttributeChangeEvent event) {
+    invalidate(event);
+  }
+
+  @Override
+  public void attributeReplaced(HtmlAttributeChangeEvent event) {
+    invalidate(event);
+  }
+
+}
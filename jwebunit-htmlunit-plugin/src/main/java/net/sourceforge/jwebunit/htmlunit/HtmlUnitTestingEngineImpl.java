@@ -20,6 +20,7 @@ package net.sourceforge.jwebunit.htmlunit;
 
 import com.gargoylesoftware.htmlunit.AlertHandler;
 import com.gargoylesoftware.htmlunit.BrowserVersion;
+import com.gargoylesoftware.htmlunit.Cache;
 import com.gargoylesoftware.htmlunit.ConfirmHandler;
 import com.gargoylesoftware.htmlunit.DefaultCredentialsProvider;
 import com.gargoylesoftware.htmlunit.ElementNotFoundException;
@@ -33,6 +34,7 @@ import com.gargoylesoftware.htmlunit.TextPage;
 import com.gargoylesoftware.htmlunit.TopLevelWindow;
 import com.gargoylesoftware.htmlunit.UnexpectedPage;
 import com.gargoylesoftware.htmlunit.WebClient;
+import com.gargoylesoftware.htmlunit.WebConnection;
 import com.gargoylesoftware.htmlunit.WebResponse;
 import com.gargoylesoftware.htmlunit.WebWindow;
 import com.gargoylesoftware.htmlunit.WebWindowEvent;
@@ -73,12 +75,19 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import net.sourceforge.jwebunit.api.Condition;
+import net.sourceforge.jwebunit.api.Expectation;
 import net.sourceforge.jwebunit.api.HttpHeader;
+import net.sourceforge.jwebunit.api.IBatchTestingEngine;
 import net.sourceforge.jwebunit.api.IElement;
+import net.sourceforge.jwebunit.api.IRequestFilteringEngine;
+import net.sourceforge.jwebunit.api.IStreamingTableEngine;
 import net.sourceforge.jwebunit.api.ITestingEngine;
 import net.sourceforge.jwebunit.exception.ExpectedJavascriptAlertException;
 import net.sourceforge.jwebunit.exception.ExpectedJavascriptConfirmException;
@@ -90,14 +99,17 @@ import net.sourceforge.jwebunit.exception.UnexpectedJavascriptConfirmException;
 import net.sourceforge.jwebunit.exception.UnexpectedJavascriptPromptException;
 import net.sourceforge.jwebunit.html.Cell;
 import net.sourceforge.jwebunit.html.Row;
+import net.sourceforge.jwebunit.html.StreamingTable;
 import net.sourceforge.jwebunit.html.Table;
 import net.sourceforge.jwebunit.javascript.JavascriptAlert;
 import net.sourceforge.jwebunit.javascript.JavascriptConfirm;
 import net.sourceforge.jwebunit.javascript.JavascriptPrompt;
+import net.sourceforge.jwebunit.util.BlockedRequestCounter;
+import net.sourceforge.jwebunit.util.CachePolicy;
+import net.sourceforge.jwebunit.util.HttpArchiveMode;
+import net.sourceforge.jwebunit.util.RegexpCache;
 import net.sourceforge.jwebunit.util.TestContext;
 import org.apache.http.auth.AuthScope;
-import org.apache.regexp.RE;
-import org.apache.regexp.RESyntaxException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.w3c.dom.Node;
@@ -110,7 +122,8 @@ import org.w3c.dom.NodeList;
  * @author Julien Henry
  *
  */
-public class HtmlUnitTestingEngineImpl implements ITestingEngine {
+public class HtmlUnitTestingEngineImpl implements ITestingEngine, IBatchTestingEngine, IStreamingTableEngine,
+  IRequestFilteringEngine {
   /**
    * Logger for this class.
    */
@@ -180,6 +193,64 @@ public class HtmlUnitTestingEngineImpl implements ITestingEngine {
   */
   private int timeout = 0;
 
+  /**
+   * Optional pool the web client is leased from. When <code>null</code>, a new web client is created for each dialog.
+   */
+  private WebClientPool webClientPool;
+
+  /**
+   * Connection of the web client replaced by a {@link LocalWebConnection} or wrapped by a
+   * {@link FilteringWebConnection}, restored when the client is closed or goes back to the pool.
+   */
+  private WebConnection baseWebConnection;
+
+  /**
+   * Connection replacing the one of the web client to time the responses of a {@link TimingWebConnection}, closed
+   * when the client is closed or goes back to the pool.
+   */
+  private TimingWebConnection.FirstByteWebConnection firstByteWebConnection;
+
+  /**
+   * Requests blocked by the request filter of the test context.
+   */
+  private final BlockedRequestCounter blockedRequests = new BlockedRequestCounter();
+
+  /**
+   * Cache of the web client replaced by a {@link ClientCache} using a {@link SharedResponseCache}, restored before the
+   * client is closed or goes back to the pool.
+   */
+  private Cache baseCache;
+
+  /**
+   * Run the JavaScript timers and the delayed refreshes in virtual time.
+   */
+  private boolean virtualTimeEnabled = false;
+
+  /**
+   * Clock of the current web client when virtual time is enabled.
+   */
+  private VirtualClock virtualClock;
+
+  /**
+   * Listener registered on the current web client, kept to be able to unregister it when the client is pooled.
+   */
+  private WebWindowListener webWindowListener;
+
+  /**
+   * Index of the elements of the current page, created on first lookup.
+   */
+  private HtmlElementIndex elementIndex;
+
+  /**
+   * Texts of the current page, created on first text assertion.
+   */
+  private PageTextCache textCache;
+
+  /**
+   * The form fields whose values are copied when the conversation is forked.
+   */
+  private static final String FORM_FIELDS_XPATH = "//input | //select | //textarea";
+
   // Implementation of IJWebUnitDialog
 
   /**
@@ -221,10 +292,16 @@ public class HtmlUnitTestingEngineImpl implements ITestingEngine {
     ExpectedJavascriptConfirmException,
     ExpectedJavascriptPromptException {
     if (wc != null) {
-      wc.close();
+      restoreWebClient();
+      if (webClientPool != null) {
+        releaseWebClient();
+      } else {
+        wc.close();
+      }
       wc = null;
     }
     form = null; // reset current form
+    resetPageCaches();
     if (this.expectedJavascriptAlerts.size() > 0) {
       throw new ExpectedJavascriptAlertException(
         (expectedJavascriptAlerts.get(0))
@@ -441,14 +518,13 @@ public class HtmlUnitTestingEngineImpl implements ITestingEngine {
 
   @Override
   public boolean hasFormParameterNamed(String paramName) {
-    for (HtmlElement e : getCurrentPage().getHtmlElementDescendants()) {
-      if (e.getAttribute("name").equals(paramName)) {
-        // set the working form if none has been set
-        if (e.getEnclosingForm() != null && getWorkingForm() == null) {
-          setWorkingForm(e.getEnclosingForm());
-        }
-        return true;
+    HtmlElement e = getHtmlElementWithAttribute("name", paramName);
+    if (e != null) {
+      // set the working form if none has been set
+      if (e.getEnclosingForm() != null && getWorkingForm() == null) {
+        setWorkingForm(e.getEnclosingForm());
       }
+      return true;
     }
     return false;
   }
@@ -463,12 +539,12 @@ public class HtmlUnitTestingEngineImpl implements ITestingEngine {
   public String getTextFieldValue(String paramName) {
     // first try the current form
     if (form != null) {
-      for (HtmlElement e : form.getHtmlElementDescendants()) {
-        if (e instanceof HtmlInput && e.getAttribute("name").equals(paramName)) {
+      for (HtmlElement e : getFormElementsByName(form, paramName)) {
+        if (e instanceof HtmlInput) {
           // we found it
           return ((HtmlInput) e).getValueAttribute();
         }
-        if (e instanceof HtmlTextArea && e.getAttribute("name").equals(paramName)) {
+        if (e instanceof HtmlTextArea) {
           // we found it
           return ((HtmlTextArea) e).getText();
         }
@@ -510,8 +586,8 @@ public class HtmlUnitTestingEngineImpl implements ITestingEngine {
   public String getHiddenFieldValue(String paramName) {
     // first try the current form
     if (form != null) {
-      for (HtmlElement e : form.getHtmlElementDescendants()) {
-        if (e instanceof HtmlHiddenInput && e.getAttribute("name").equals(paramName)) {
+      for (HtmlElement e : getFormElementsByName(form, paramName)) {
+        if (e instanceof HtmlHiddenInput) {
           // we found it
           return ((HtmlInput) e).getValueAttribute();
         }
@@ -545,13 +621,13 @@ public class HtmlUnitTestingEngineImpl implements ITestingEngine {
   public void setTextField(String paramName, String text) {
     // first try the current form
     if (form != null) {
-      for (HtmlElement e : form.getHtmlElementDescendants()) {
-        if (e instanceof HtmlInput && e.getAttribute("name").equals(paramName)) {
+      for (HtmlElement e : getFormElementsByName(form, paramName)) {
+        if (e instanceof HtmlInput) {
           // we found it
           ((HtmlInput) e).setValueAttribute(text);
           return;
         }
-        if (e instanceof HtmlTextArea && e.getAttribute("name").equals(paramName)) {
+        if (e instanceof HtmlTextArea) {
           // we found it
           ((HtmlTextArea) e).setText(text);
           return;
@@ -595,8 +671,8 @@ public class HtmlUnitTestingEngineImpl implements ITestingEngine {
   public void setHiddenField(String fieldName, String text) {
     // first try the current form
     if (form != null) {
-      for (HtmlElement e : form.getHtmlElementDescendants()) {
-        if (e instanceof HtmlHiddenInput && e.getAttribute("name").equals(fieldName)) {
+      for (HtmlElement e : getFormElementsByName(form, fieldName)) {
+        if (e instanceof HtmlHiddenInput) {
           // we found it
           ((HtmlHiddenInput) e).setValueAttribute(text);
           return;
@@ -759,7 +835,7 @@ public class HtmlUnitTestingEngineImpl implements ITestingEngine {
   public String getPageText() {
     Page page = win.getEnclosedPage();
     if (page instanceof HtmlPage) {
-      return ((HtmlPage) page).getBody().asText();
+      return getTextCache().getPageText();
     }
     if (page instanceof TextPage) {
       return ((TextPage) page).getContent();
@@ -838,6 +914,21 @@ public class HtmlUnitTestingEngineImpl implements ITestingEngine {
    * @return A newly created {@link WebClient}
    */
   protected WebClient createWebClient() {
+    BrowserVersion bv = getEffectiveBrowserVersion();
+    if (hasProxy()) {
+      // Proxy configuration
+      return new WebClient(bv, getTestContext().getProxyHost(), getTestContext().getProxyPort());
+    } else {
+      return new WebClient(bv);
+    }
+  }
+
+  /**
+   * Compute the browser version to use for the current test context.
+   *
+   * @return the browser version
+   */
+  private BrowserVersion getEffectiveBrowserVersion() {
     /*
      * The user agent string is now provided by default to new test cases.
      * It can still be overridden if testContext.getUserAgent() is not
@@ -852,12 +943,64 @@ public class HtmlUnitTestingEngineImpl implements ITestingEngine {
     } else {
       bv = defaultBrowserVersion; // use default (which includes a full UserAgent string)
     }
+    return bv;
+  }
 
-    if (getTestContext().getProxyHost() != null && getTestContext().getProxyPort() > 0) {
-      // Proxy configuration
-      return new WebClient(bv, getTestContext().getProxyHost(), getTestContext().getProxyPort());
-    } else {
-      return new WebClient(bv);
+  private boolean hasProxy() {
+    return getTestContext().getProxyHost() != null && getTestContext().getProxyPort() > 0;
+  }
+
+  /**
+   * Lease a web client from the pool, or create a new one if there is no pool or no matching idle client.
+   *
+   * @return the web client to use for this dialog
+   */
+  private WebClient leaseWebClient() {
+    WebClient client = null;
+    if (webClientPool != null) {
+      client = webClientPool.lease(getEffectiveBrowserVersion(),
+        hasProxy() ? getTestContext().getProxyHost() : null,
+        hasProxy() ? getTestContext().getProxyPort() : 0, jsEnabled);
+    }
+    if (client == null) {
+      client = createWebClient();
+    }
+    return client;
+  }
+
+  /**
+   * Give the current web client back to the pool, after having removed what this engine registered on it.
+   */
+  private void releaseWebClient() {
+    if (webWindowListener != null) {
+      wc.removeWebWindowListener(webWindowListener);
+      webWindowListener = null;
+    }
+    for (String header : getTestContext().getRequestHeaders().keySet()) {
+      wc.removeRequestHeader(header);
+    }
+    webClientPool.release(wc);
+  }
+
+  /**
+   * Put back the connection and the cache replaced on the current web client.
+   */
+  private void restoreWebClient() {
+    if (baseWebConnection != null) {
+      wc.setWebConnection(baseWebConnection);
+      baseWebConnection = null;
+    }
+    if (firstByteWebConnection != null) {
+      firstByteWebConnection.close();
+      firstByteWebConnection = null;
+    }
+    if (baseCache != null) {
+      wc.setCache(baseCache);
+      baseCache = null;
+    }
+    if (virtualClock != null) {
+      virtualClock.uninstall();
+      virtualClock = null;
     }
   }
 
@@ -866,7 +1009,33 @@ public class HtmlUnitTestingEngineImpl implements ITestingEngine {
    */
   private void initWebClient() {
 
-    wc = createWebClient();
+    wc = leaseWebClient();
+    if (getTestContext().hasLocalTransport() || getTestContext().hasRequestFilter()
+      || getTestContext().hasHttpArchive() || getTestContext().hasRequestLog()) {
+      baseWebConnection = wc.getWebConnection();
+    }
+    if (getTestContext().getHttpArchiveMode() == HttpArchiveMode.REPLAY) {
+      wc.setWebConnection(new ReplayWebConnection(wc, getTestContext().getHttpArchive()));
+    } else if (getTestContext().hasLocalTransport()) {
+      wc.setWebConnection(new LocalWebConnection(wc, getTestContext().getLocalTransport()));
+    } else if (getTestContext().hasRequestLog()) {
+      firstByteWebConnection = new TimingWebConnection.FirstByteWebConnection(wc);
+      wc.setWebConnection(firstByteWebConnection);
+    }
+    if (getTestContext().getHttpArchiveMode() == HttpArchiveMode.RECORD) {
+      wc.setWebConnection(new RecordingWebConnection(wc.getWebConnection(), getTestContext().getHttpArchive()));
+    }
+    if (getTestContext().hasRequestLog()) {
+      wc.setWebConnection(new TimingWebConnection(wc.getWebConnection(), getTestContext().getRequestLog()));
+    }
+    if (getTestContext().hasRequestFilter()) {
+      wc.setWebConnection(new FilteringWebConnection(wc.getWebConnection(), getTestContext().getRequestFilter(),
+        blockedRequests));
+    }
+    if (getTestContext().getCachePolicy() != CachePolicy.PER_BROWSER) {
+      baseCache = wc.getCache();
+      wc.setCache(new ClientCache(SharedResponseCache.getInstance(getTestContext().getCachePolicy())));
+    }
 
     wc.getOptions().setJavaScriptEnabled(jsEnabled);
     wc.getOptions().setThrowExceptionOnFailingStatusCode(!ignoreFailingStatusCodes);
@@ -878,6 +1047,10 @@ public class HtmlUnitTestingEngineImpl implements ITestingEngine {
     } else {
       wc.setRefreshHandler(refreshHandler);
     }
+    if (virtualTimeEnabled) {
+      virtualClock = new VirtualClock(wc);
+      virtualClock.install();
+    }
     wc.getOptions().setTimeout(timeout);
     DefaultCredentialsProvider creds = new DefaultCredentialsProvider();
     if (getTestContext().hasAuthorization()) {
@@ -904,7 +1077,7 @@ public class HtmlUnitTestingEngineImpl implements ITestingEngine {
         getTestContext().getProxyPort(), AuthScope.ANY_REALM);
     }
     wc.setCredentialsProvider(creds);
-    wc.addWebWindowListener(new WebWindowListener() {
+    webWindowListener = new WebWindowListener() {
       @Override
       public void webWindowClosed(WebWindowEvent event) {
         if (win == null || event.getOldPage().equals(win.getEnclosedPage())) {
@@ -923,6 +1096,7 @@ public class HtmlUnitTestingEngineImpl implements ITestingEngine {
       @Override
       public void webWindowContentChanged(WebWindowEvent event) {
         form = null;
+        resetPageCaches();
         String winName = event.getWebWindow().getName();
         Page oldPage = event.getOldPage();
         Page newPage = event.getNewPage();
@@ -947,7 +1121,8 @@ public class HtmlUnitTestingEngineImpl implements ITestingEngine {
           logger.info("Window {} opened", win);
         }
       }
-    });
+    };
+    wc.addWebWindowListener(webWindowListener);
     // Add Javascript Alert Handler
     wc.setAlertHandler(new AlertHandler() {
       @Override
@@ -1216,12 +1391,116 @@ public class HtmlUnitTestingEngineImpl implements ITestingEngine {
    * @return the element found, or null
    */
   private HtmlElement getHtmlElementWithAttribute(String attributeName, String value) {
-    for (HtmlElement e : getCurrentPage().getHtmlElementDescendants()) {
-      if (e.getAttribute(attributeName).equals(value)) {
-        return e;
+    return getElementIndex().getElement(attributeName, value);
+  }
+
+  /**
+   * Get the index of the elements of the current page, creating it if needed.
+   *
+   * @return the element index of the current page
+   */
+  private HtmlElementIndex getElementIndex() {
+    HtmlPage page = getCurrentPage();
+    if (elementIndex == null || elementIndex.getPage() != page) {
+      resetPageCaches();
+      elementIndex = new HtmlElementIndex(page);
+    }
+    return elementIndex;
+  }
+
+  /**
+   * Get the text cache of the current page, creating it if needed.
+   *
+   * @return the text cache of the current page
+   */
+  private PageTextCache getTextCache() {
+    HtmlElementIndex index = getElementIndex();
+    if (textCache == null || textCache.getPage() != index.getPage()) {
+      if (textCache != null) {
+        textCache.dispose();
       }
+      textCache = new PageTextCache(index);
     }
-    return null;
+    return textCache;
+  }
+
+  /**
+   * Drop the cached texts after a form control was changed, which fires no DOM event when JavaScript is
+   * disabled.
+   */
+  private void formControlsChanged() {
+    if (textCache != null) {
+      textCache.invalidate();
+    }
+  }
+
+  private void resetPageCaches() {
+    if (textCache != null) {
+      textCache.dispose();
+      textCache = null;
+    }
+    if (elementIndex != null) {
+      elementIndex.dispose();
+      elementIndex = null;
+    }
+  }
+
+  /**
+   * Get the elements with a given name that belong to a form, in document order.
+   *
+   * @param f the form
+   * @param name name of the elements
+   * @return the elements found
+   */
+  private List<HtmlElement> getFormElementsByName(HtmlForm f, String name) {
+    List<HtmlElement> result = new LinkedList<>();
+    for (HtmlElement e : getElementIndex().getElements("name", name)) {
+      if (e.getEnclosingForm() == f) {
+        result.add(e);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Get the inputs then the buttons with a given name that belong to a form, like
+   * {@link HtmlForm#getInputsByName(String)} and {@link HtmlForm#getButtonsByName(String)} would do.
+   *
+   * @param f the form
+   * @param name name of the buttons
+   * @return the inputs and buttons found
+   */
+  private List<HtmlElement> getInputsAndButtonsByName(HtmlForm f, String name) {
+    List<HtmlElement> inputs = new LinkedList<>();
+    List<HtmlElement> buttons = new LinkedList<>();
+    for (HtmlElement e : getFormElementsByName(f, name)) {
+      if (e instanceof HtmlInput) {
+        inputs.add(e);
+      } else if (e instanceof HtmlButton) {
+        buttons.add(e);
+      }
+    }
+    inputs.addAll(buttons);
+    return inputs;
+  }
+
+  /**
+   * Get the elements with a given tag name and type attribute that belong to a form, like
+   * {@link HtmlForm#getElementsByAttribute(String, String, Object)} would do.
+   *
+   * @param f the form
+   * @param tagName tag name of the elements
+   * @param type value of the type attribute
+   * @return the elements found
+   */
+  private List<HtmlElement> getFormElementsByType(HtmlForm f, String tagName, String type) {
+    List<HtmlElement> result = new LinkedList<>();
+    for (HtmlElement e : getElementIndex().getElements("type", type)) {
+      if (e.getTagName().equals(tagName) && e.getEnclosingForm() == f) {
+        result.add(e);
+      }
+    }
+    return result;
   }
 
   /**
@@ -1242,12 +1521,10 @@ public class HtmlUnitTestingEngineImpl implements ITestingEngine {
   public HtmlElement getSubmitButton(String buttonName) {
     List<HtmlElement> btns = new LinkedList<>();
     if (form != null) {
-      btns.addAll(getForm().getInputsByName(buttonName));
-      btns.addAll(getForm().getButtonsByName(buttonName));
+      btns.addAll(getInputsAndButtonsByName(getForm(), buttonName));
     } else {
       for (HtmlForm f : getCurrentPage().getForms()) {
-        btns.addAll(f.getInputsByName(buttonName));
-        btns.addAll(f.getButtonsByName(buttonName));
+        btns.addAll(getInputsAndButtonsByName(f, buttonName));
       }
     }
     for (HtmlElement o : btns) {
@@ -1281,12 +1558,10 @@ public class HtmlUnitTestingEngineImpl implements ITestingEngine {
   public HtmlElement getResetButton(String buttonName) {
     List<HtmlElement> btns = new LinkedList<>();
     if (form != null) {
-      btns.addAll(getForm().getInputsByName(buttonName));
-      btns.addAll(getForm().getButtonsByName(buttonName));
+      btns.addAll(getInputsAndButtonsByName(getForm(), buttonName));
     } else {
       for (HtmlForm f : getCurrentPage().getForms()) {
-        btns.addAll(f.getInputsByName(buttonName));
-        btns.addAll(f.getButtonsByName(buttonName));
+        btns.addAll(getInputsAndButtonsByName(f, buttonName));
       }
     }
     for (HtmlElement o : btns) {
@@ -1321,12 +1596,10 @@ public class HtmlUnitTestingEngineImpl implements ITestingEngine {
     String buttonValue) {
     List<HtmlElement> btns = new LinkedList<>();
     if (form != null) {
-      btns.addAll(getForm().getInputsByName(buttonName));
-      btns.addAll(getForm().getButtonsByName(buttonName));
+      btns.addAll(getInputsAndButtonsByName(getForm(), buttonName));
     } else {
       for (HtmlForm f : getCurrentPage().getForms()) {
-        btns.addAll(f.getInputsByName(buttonName));
-        btns.addAll(f.getButtonsByName(buttonName));
+        btns.addAll(getInputsAndButtonsByName(f, buttonName));
       }
     }
     for (HtmlElement o : btns) {
@@ -1365,14 +1638,14 @@ public class HtmlUnitTestingEngineImpl implements ITestingEngine {
   private HtmlElement getSubmitButton() {
     List<HtmlElement> btns = new LinkedList<>();
     if (form != null) {
-      btns.addAll(getForm().getElementsByAttribute("input", "type", "submit"));
-      btns.addAll(getForm().getElementsByAttribute("input", "type", "image"));
-      btns.addAll(getForm().getElementsByAttribute("button", "type", "submit"));
+      btns.addAll(getFormElementsByType(getForm(), "input", "submit"));
+      btns.addAll(getFormElementsByType(getForm(), "input", "image"));
+      btns.addAll(getFormElementsByType(getForm(), "button", "submit"));
     } else {
       for (HtmlForm f : getCurrentPage().getForms()) {
-        btns.addAll(f.getElementsByAttribute("input", "type", "submit"));
-        btns.addAll(f.getElementsByAttribute("input", "type", "image"));
-        btns.addAll(f.getElementsByAttribute("button", "type", "submit"));
+        btns.addAll(getFormElementsByType(f, "input", "submit"));
+        btns.addAll(getFormElementsByType(f, "input", "image"));
+        btns.addAll(getFormElementsByType(f, "button", "submit"));
       }
     }
     for (HtmlElement o : btns) {
@@ -1563,11 +1836,12 @@ public class HtmlUnitTestingEngineImpl implements ITestingEngine {
       throw new RuntimeException("No table with summary or id ["
         + tableSummaryOrId + "] found in response.");
     }
+    PageTextCache texts = getTextCache();
     for (int row = 0; row < table.getRowCount(); row++) {
       for (int col = 0; table.getCellAt(row, col) != null; col++) {
         HtmlTableCell cell = table.getCellAt(row, col);
         if (cell != null) {
-          String cellHtml = cell.asText();
+          String cellHtml = texts.getText(cell);
           if (cellHtml.indexOf(text) != -1) {
             return true;
           }
@@ -1579,22 +1853,44 @@ public class HtmlUnitTestingEngineImpl implements ITestingEngine {
 
   @Override
   public Table getTable(String tableSummaryNameOrId) {
-    HtmlTable table = getHtmlTable(tableSummaryNameOrId);
+    StreamingTable table = getStreamingTable(tableSummaryNameOrId);
     Table result = new Table();
     for (int i = 0; i < table.getRowCount(); i++) {
-      Row newRow = new Row();
-      HtmlTableRow htmlRow = table.getRow(i);
-      CellIterator cellIt = htmlRow.getCellIterator();
-      while (cellIt.hasNext()) {
-        HtmlTableCell htmlCell = cellIt.nextCell();
-        newRow.appendCell(new Cell(htmlCell.asText(), htmlCell
-          .getColumnSpan(), htmlCell.getRowSpan()));
-      }
-      result.appendRow(newRow);
+      result.appendRow(table.getRow(i));
     }
     return result;
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The rows are listed once, but the text of the cells of a row is only read when the row is.</p>
+   */
+  @Override
+  public StreamingTable getStreamingTable(String tableSummaryNameOrId) {
+    HtmlTable table = getHtmlTable(tableSummaryNameOrId);
+    final List<HtmlTableRow> rows = table.getRows();
+    final PageTextCache texts = getTextCache();
+    return new StreamingTable() {
+      @Override
+      public int getRowCount() {
+        return rows.size();
+      }
+
+      @Override
+      public Row getRow(int index) {
+        Row newRow = new Row();
+        CellIterator cellIt = rows.get(index).getCellIterator();
+        while (cellIt.hasNext()) {
+          HtmlTableCell htmlCell = cellIt.nextCell();
+          newRow.appendCell(new Cell(texts.getText(htmlCell), htmlCell
+            .getColumnSpan(), htmlCell.getRowSpan()));
+        }
+        return newRow;
+      }
+    };
+  }
+
   /**
    * Return the HtmlUnit WebTable object representing a specified table in the current response. Null is returned if a
    * parsing exception occurs looking for the table or no table with the id or summary could be found.
@@ -1642,6 +1938,7 @@ public class HtmlUnitTestingEngineImpl implements ITestingEngine {
     }
     try {
       btn.click();
+      formControlsChanged();
     } catch (FailingHttpStatusCodeException e) {
       throw new TestingEngineResponseException(
         e.getStatusCode(), e);
@@ -1667,6 +1964,7 @@ public class HtmlUnitTestingEngineImpl implements ITestingEngine {
     }
     try {
       btn.click();
+      formControlsChanged();
     } catch (FailingHttpStatusCodeException e) {
       throw new TestingEngineResponseException(
         e.getStatusCode(), e);
@@ -1685,9 +1983,7 @@ public class HtmlUnitTestingEngineImpl implements ITestingEngine {
    */
   @Override
   public void submit(String buttonName, String buttonValue) {
-    List<HtmlElement> l = new LinkedList<>();
-    l.addAll(getForm().getInputsByName(buttonName));
-    l.addAll(getForm().getButtonsByName(buttonName));
+    List<HtmlElement> l = getInputsAndButtonsByName(getForm(), buttonName);
     try {
       for (int i = 0; i < l.size(); i++) {
         Object o = l.get(i);
@@ -1695,6 +1991,7 @@ public class HtmlUnitTestingEngineImpl implements ITestingEngine {
           HtmlSubmitInput inpt = (HtmlSubmitInput) o;
           if (inpt.getValueAttribute().equals(buttonValue)) {
             inpt.click();
+            formControlsChanged();
             return;
           }
         }
@@ -1702,6 +1999,7 @@ public class HtmlUnitTestingEngineImpl implements ITestingEngine {
           HtmlImageInput inpt = (HtmlImageInput) o;
           if (inpt.getValueAttribute().equals(buttonValue)) {
             inpt.click();
+            formControlsChanged();
             return;
           }
         }
@@ -1710,6 +2008,7 @@ public class HtmlUnitTestingEngineImpl implements ITestingEngine {
           if (inpt.getTypeAttribute().equals("submit")
             && inpt.getValueAttribute().equals(buttonValue)) {
             inpt.click();
+            formControlsChanged();
             return;
           }
         }
@@ -1736,6 +2035,7 @@ public class HtmlUnitTestingEngineImpl implements ITestingEngine {
   @Override
   public void reset() {
     getForm().reset();
+    formControlsChanged();
   }
 
   /**
@@ -1839,6 +2139,7 @@ public class HtmlUnitTestingEngineImpl implements ITestingEngine {
     if (!cb.isChecked()) {
       try {
         cb.click();
+        formControlsChanged();
       } catch (IOException e) {
         throw new RuntimeException("checkCheckbox failed", e);
       }
@@ -1851,6 +2152,7 @@ public class HtmlUnitTestingEngineImpl implements ITestingEngine {
     if (!cb.isChecked()) {
       try {
         cb.click();
+        formControlsChanged();
       } catch (IOException e) {
         e.printStackTrace();
         throw new RuntimeException("checkCheckbox failed", e);
@@ -1869,6 +2171,7 @@ public class HtmlUnitTestingEngineImpl implements ITestingEngine {
     if (cb.isChecked()) {
       try {
         cb.click();
+        formControlsChanged();
       } catch (IOException e) {
         e.printStackTrace();
         throw new RuntimeException("checkCheckbox failed", e);
@@ -1882,6 +2185,7 @@ public class HtmlUnitTestingEngineImpl implements ITestingEngine {
     if (cb.isChecked()) {
       try {
         cb.click();
+        formControlsChanged();
       } catch (IOException e) {
         e.printStackTrace();
         throw new RuntimeException("uncheckCheckbox failed", e);
@@ -1913,6 +2217,7 @@ public class HtmlUnitTestingEngineImpl implements ITestingEngine {
     if (!rb.isChecked()) {
       try {
         rb.click();
+        formControlsChanged();
       } catch (IOException e) {
         e.printStackTrace();
         throw new RuntimeException("checkCheckbox failed", e);
@@ -1999,6 +2304,7 @@ public class HtmlUnitTestingEngineImpl implements ITestingEngine {
     }
     try {
       e.click();
+      formControlsChanged();
     } catch (IOException exp) {
       throw new RuntimeException("Click failed", exp);
     }
@@ -2032,6 +2338,7 @@ public class HtmlUnitTestingEngineImpl implements ITestingEngine {
     HtmlElement btn = getButton(buttonId);
     try {
       btn.click();
+      formControlsChanged();
     } catch (Exception e) {
       throw new RuntimeException(e);
     }
@@ -2049,6 +2356,7 @@ public class HtmlUnitTestingEngineImpl implements ITestingEngine {
     if (b != null) {
       try {
         b.click();
+        formControlsChanged();
       } catch (Exception e) {
         throw new RuntimeException(e);
       }
@@ -2131,6 +2439,7 @@ public class HtmlUnitTestingEngineImpl implements ITestingEngine {
       for (HtmlOption opt : sel.getOptions()) {
         if (opt.getValueAttribute().equals(option)) {
           sel.setSelectedAttribute(opt, true);
+          formControlsChanged();
           found = true;
           break;
         }
@@ -2205,6 +2514,7 @@ public class HtmlUnitTestingEngineImpl implements ITestingEngine {
       for (HtmlOption opt : sel.getOptions()) {
         if (opt.getValueAttribute().equals(option)) {
           sel.setSelectedAttribute(opt, true);
+          formControlsChanged();
           found = true;
           break;
         }
@@ -2227,6 +2537,7 @@ public class HtmlUnitTestingEngineImpl implements ITestingEngine {
       for (HtmlOption opt : sel.getOptions()) {
         if (opt.asText().equals(option)) {
           sel.setSelectedAttribute(opt, false);
+          formControlsChanged();
           found = true;
           break;
         }
@@ -2254,6 +2565,7 @@ public class HtmlUnitTestingEngineImpl implements ITestingEngine {
       for (HtmlOption opt : sel.getOptions()) {
         if (opt.asText().equals(option)) {
           sel.setSelectedAttribute(opt, false);
+          formControlsChanged();
           found = true;
           break;
         }
@@ -2265,6 +2577,74 @@ public class HtmlUnitTestingEngineImpl implements ITestingEngine {
     }
   }
 
+  /**
+   * Evaluate expectations on the current page. The text of the page and of the links is computed at most once for the
+   * whole batch, and elements are looked up through the element index.
+   */
+  @Override
+  public List<Boolean> evaluate(List<Expectation> expectations) {
+    List<Boolean> results = new ArrayList<>(expectations.size());
+    if (!(win.getEnclosedPage() instanceof HtmlPage)) {
+      for (Expectation expectation : expectations) {
+        results.add(evaluate(expectation));
+      }
+      return results;
+    }
+    PageTextCache texts = getTextCache();
+    List<String> linkTexts = null;
+    for (Expectation expectation : expectations) {
+      boolean result;
+      try {
+        switch (expectation.getType()) {
+          case TEXT_PRESENT:
+            result = texts.getPageText().contains(expectation.getValue());
+            break;
+          case TEXT_NOT_PRESENT:
+            result = !texts.getPageText().contains(expectation.getValue());
+            break;
+          case MATCH:
+            result = RegexpCache.match(expectation.getValue(), texts.getPageText());
+            break;
+          case LINK_PRESENT_WITH_TEXT:
+            if (linkTexts == null) {
+              linkTexts = new ArrayList<>();
+              for (HtmlElement a : getElementIndex().getElementsByTagName("a")) {
+                linkTexts.add(texts.getText(a));
+              }
+            }
+            result = false;
+            for (String linkText : linkTexts) {
+              if (linkText.indexOf(expectation.getValue()) >= 0) {
+                result = true;
+                break;
+              }
+            }
+            break;
+          case TEXT_IN_ELEMENT:
+            HtmlElement element = getElementIndex().getElement("id", expectation.getName());
+            result = element != null && texts.getText(element).indexOf(expectation.getValue()) >= 0;
+            break;
+          default:
+            result = expectation.evaluate(this);
+        }
+      } catch (RuntimeException e) {
+        logger.debug("Unable to evaluate " + expectation, e);
+        result = false;
+      }
+      results.add(result);
+    }
+    return results;
+  }
+
+  private boolean evaluate(Expectation expectation) {
+    try {
+      return expectation.evaluate(this);
+    } catch (RuntimeException e) {
+      logger.debug("Unable to evaluate " + expectation, e);
+      return false;
+    }
+  }
+
   @Override
   public boolean isTextInElement(String elementID, String text) {
     return isTextInElement(getHtmlElement(elementID), text);
@@ -2277,7 +2657,7 @@ public class HtmlUnitTestingEngineImpl implements ITestingEngine {
    * @param text text to check for.
    */
   private boolean isTextInElement(HtmlElement element, String text) {
-    return element.asText().indexOf(text) >= 0;
+    return getTextCache().getText(element).indexOf(text) >= 0;
   }
 
   @Override
@@ -2292,16 +2672,7 @@ public class HtmlUnitTestingEngineImpl implements ITestingEngine {
    * @param regexp regexp to match.
    */
   private boolean isMatchInElement(HtmlElement element, String regexp) {
-    RE re = getRE(regexp);
-    return re.match(element.asText());
-  }
-
-  private RE getRE(String regexp) {
-    try {
-      return new RE(regexp, RE.MATCH_SINGLELINE);
-    } catch (RESyntaxException e) {
-      throw new RuntimeException(e);
-    }
+    return RegexpCache.match(regexp, getTextCache().getText(element));
   }
 
   /**
@@ -2529,12 +2900,283 @@ public class HtmlUnitTestingEngineImpl implements ITestingEngine {
     timeout = milliseconds;
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The condition is checked again each time an element, an attribute or a text of the current page changes, a
+   * window loads another page, or a background JavaScript job finishes. With virtual time, the clock is advanced job by
+   * job instead, and the time returned is virtual.</p>
+   */
+  @Override
+  public long waitForCondition(Condition condition, long timeout) {
+    if (virtualClock != null) {
+      return waitForConditionInVirtualTime(condition, timeout);
+    }
+    long start = System.currentTimeMillis();
+    PageChangeMonitor monitor = new PageChangeMonitor(win);
+    try {
+      while (true) {
+        if (monitor.getWindow() != win) {
+          monitor.dispose();
+          monitor = new PageChangeMonitor(win);
+        }
+        monitor.mark();
+        if (condition.isSatisfied(this)) {
+          return System.currentTimeMillis() - start;
+        }
+        long remaining = start + timeout - System.currentTimeMillis();
+        if (remaining <= 0) {
+          return -1;
+        }
+        monitor.awaitChange(remaining);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while waiting for " + condition, e);
+    } finally {
+      monitor.dispose();
+    }
+  }
+
+  private long waitForConditionInVirtualTime(Condition condition, long timeout) {
+    long start = virtualClock.getElapsed();
+    try {
+      while (!condition.isSatisfied(this)) {
+        long waited = virtualClock.getElapsed() - start;
+        if (waited >= timeout) {
+          return -1;
+        }
+        virtualClock.runNextEvent(timeout - waited);
+        resetPageCaches();
+      }
+      return virtualClock.getElapsed() - start;
+    } finally {
+      resetPageCaches();
+    }
+  }
+
+  @Override
+  public long waitForText(final String text, long timeout) {
+    return waitForCondition(new Condition() {
+      @Override
+      public boolean isSatisfied(ITestingEngine engine) {
+        return engine.getPageText().contains(text);
+      }
+
+      @Override
+      public String toString() {
+        return "text [" + text + "]";
+      }
+    }, timeout);
+  }
+
+  @Override
+  public long waitForElementByXPath(final String xpath, long timeout) {
+    return waitForCondition(new Condition() {
+      @Override
+      public boolean isSatisfied(ITestingEngine engine) {
+        return engine.hasElementByXPath(xpath);
+      }
+
+      @Override
+      public String toString() {
+        return "element with xpath \"" + xpath + "\"";
+      }
+    }, timeout);
+  }
+
+  /**
+   * Fork the conversation into a new engine with its own web client. The options of this engine and the cookies of
+   * the browser are copied, then each window (and frame) gets the response of its current page again, without any
+   * request to the server, and the values entered in the form fields are copied. The page is rebuilt from the
+   * response, so its scripts run again: changes made to the DOM by scripts afterwards (other than form values) are
+   * only there if the scripts make them again. Expected JavaScript alerts, confirms and prompts are not copied.
+   */
+  @Override
+  public ITestingEngine fork(TestContext aTestContext) {
+    if (wc == null) {
+      throw new IllegalStateException("Cannot fork a conversation that has not begun.");
+    }
+    HtmlUnitTestingEngineImpl fork = new HtmlUnitTestingEngineImpl();
+    fork.jsEnabled = jsEnabled;
+    fork.throwExceptionOnScriptError = throwExceptionOnScriptError;
+    fork.ignoreFailingStatusCodes = ignoreFailingStatusCodes;
+    fork.timeout = timeout;
+    fork.defaultBrowserVersion = defaultBrowserVersion;
+    fork.webClientPool = webClientPool;
+    fork.refreshHandler = refreshHandler;
+    fork.virtualTimeEnabled = virtualTimeEnabled;
+    fork.setTestContext(aTestContext);
+    fork.initWebClient();
+    for (Cookie cookie : wc.getCookieManager().getCookies()) {
+      fork.wc.getCookieManager().addCookie(cookie);
+    }
+    Map<WebWindow, WebWindow> forkedWindows = new HashMap<>();
+    try {
+      boolean first = true;
+      for (TopLevelWindow window : wc.getTopLevelWindows()) {
+        WebWindow forkedWindow;
+        if (first) {
+          forkedWindow = fork.wc.getCurrentWindow();
+          forkedWindow.setName(window.getName());
+          first = false;
+        } else {
+          forkedWindow = fork.wc.openWindow(null, window.getName());
+        }
+        forkWindow(window, forkedWindow, fork.wc, forkedWindows);
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to fork the conversation", e);
+    }
+    fork.win = forkedWindows.get(win);
+    if (fork.win == null) {
+      fork.win = fork.wc.getCurrentWindow();
+    }
+    fork.wc.setCurrentWindow(fork.win.getTopWindow());
+    if (form != null && fork.win.getEnclosedPage() instanceof HtmlPage) {
+      int index = getForms().indexOf(form);
+      List<HtmlForm> forkedForms = fork.getForms();
+      if (index >= 0 && index < forkedForms.size()) {
+        fork.form = forkedForms.get(index);
+      }
+    }
+    return fork;
+  }
+
+  /**
+   * Load the current response of a window into a window of the forked conversation, then do the same for its frames.
+   */
+  private static void forkWindow(WebWindow window, WebWindow forkedWindow, WebClient forkedClient,
+    Map<WebWindow, WebWindow> forkedWindows) throws IOException {
+    forkedWindows.put(window, forkedWindow);
+    Page page = window.getEnclosedPage();
+    if (page == null) {
+      return;
+    }
+    forkedClient.loadWebResponseInto(page.getWebResponse(), forkedWindow);
+    Page forkedPage = forkedWindow.getEnclosedPage();
+    if (page instanceof HtmlPage && forkedPage instanceof HtmlPage) {
+      copyFormValues((HtmlPage) page, (HtmlPage) forkedPage);
+      for (FrameWindow frame : ((HtmlPage) page).getFrames()) {
+        try {
+          forkWindow(frame, ((HtmlPage) forkedPage).getFrameByName(frame.getName()), forkedClient, forkedWindows);
+        } catch (ElementNotFoundException e) {
+          // frame created by a script that didn't run again
+        }
+      }
+    }
+  }
+
+  /**
+   * Copy the values of the form fields of a page into the same page loaded again. Fields are matched in document
+   * order, until one doesn't match because a script changed the forms. No event handler is called.
+   */
+  private static void copyFormValues(HtmlPage page, HtmlPage forkedPage) {
+    List<?> fields = page.getByXPath(FORM_FIELDS_XPATH);
+    List<?> forkedFields = forkedPage.getByXPath(FORM_FIELDS_XPATH);
+    for (int i = 0; i < fields.size() && i < forkedFields.size(); i++) {
+      HtmlElement field = (HtmlElement) fields.get(i);
+      HtmlElement forkedField = (HtmlElement) forkedFields.get(i);
+      if (!field.getTagName().equals(forkedField.getTagName())
+        || !field.getAttribute("name").equals(forkedField.getAttribute("name"))
+        || !field.getAttribute("type").equals(forkedField.getAttribute("type"))) {
+        return;
+      }
+      if (field instanceof HtmlCheckBoxInput || field instanceof HtmlRadioButtonInput) {
+        ((HtmlInput) forkedField).setChecked(((HtmlInput) field).isChecked());
+      } else if (field instanceof HtmlInput) {
+        ((HtmlInput) forkedField).setValueAttribute(((HtmlInput) field).getValueAttribute());
+      } else if (field instanceof HtmlTextArea) {
+        ((HtmlTextArea) forkedField).setText(((HtmlTextArea) field).getText());
+      } else if (field instanceof HtmlSelect) {
+        List<HtmlOption> options = ((HtmlSelect) field).getOptions();
+        List<HtmlOption> forkedOptions = ((HtmlSelect) forkedField).getOptions();
+        for (int j = 0; j < options.size() && j < forkedOptions.size(); j++) {
+          forkedOptions.get(j).setSelected(options.get(j).isSelected(), false);
+        }
+      }
+    }
+  }
+
+  /**
+   * Use a pool of web clients instead of creating a new one for each dialog. The web client in use is given back to the
+   * pool by {@link #closeBrowser()}. The same pool can be shared by several engines, even from different threads.
+   *
+   * @param webClientPool the pool to lease web clients from, or <code>null</code> to always create a new web client
+   */
+  public void setWebClientPool(WebClientPool webClientPool) {
+    this.webClientPool = webClientPool;
+  }
+
+  /**
+   * @return the pool web clients are leased from, or <code>null</code> if web clients are not pooled.
+   */
+  public WebClientPool getWebClientPool() {
+    return webClientPool;
+  }
+
+  @Override
+  public BlockedRequestCounter getBlockedRequests() {
+    return blockedRequests;
+  }
+
   public void setRefreshHandler(RefreshHandler handler) {
     this.refreshHandler = handler;
 
-    if (wc != null) {
+    if (wc != null && virtualClock == null) {
       wc.setRefreshHandler(refreshHandler);
     }
   }
 
+  /**
+   * Run the JavaScript timers (<code>setTimeout</code>, <code>setInterval</code>...) and the delayed meta refreshes in
+   * virtual time: they only run when the test calls {@link #advanceTime(long, TimeUnit)}, instead of waiting in real
+   * time. The refresh handler is ignored while virtual time is enabled.
+   *
+   * @param enabled true to use virtual time, must be set before the browser is started
+   */
+  public void setVirtualTimeEnabled(boolean enabled) {
+    if (wc != null) {
+      throw new IllegalStateException("Cannot change the virtual time mode when the browser has already started.");
+    }
+    virtualTimeEnabled = enabled;
+  }
+
+  /**
+   * @return true if the JavaScript timers and the delayed refreshes run in virtual time
+   */
+  public boolean isVirtualTimeEnabled() {
+    return virtualTimeEnabled;
+  }
+
+  /**
+   * Fast-forward the virtual time, running in order all the JavaScript timers and delayed refreshes due in the period.
+   *
+   * @param duration the duration to advance, 0 to only run what is already due
+   * @param unit unit of the duration
+   * @return the number of timers and refreshes run
+   * @see #setVirtualTimeEnabled(boolean)
+   */
+  public int advanceTime(long duration, TimeUnit unit) {
+    if (virtualClock == null) {
+      throw new IllegalStateException("Virtual time is not enabled or the browser is not started.");
+    }
+    try {
+      return virtualClock.advance(duration, unit);
+    } finally {
+      resetPageCaches();
+    }
+  }
+
+  /**
+   * @return the virtual time elapsed since the browser was started, in milliseconds
+   * @see #setVirtualTimeEnabled(boolean)
+   */
+  public long getVirtualTime() {
+    if (virtualClock == null) {
+      throw new IllegalStateException("Virtual time is not enabled or the browser is not started.");
+    }
+    return virtualClock.getElapsed();
+  }
+
 }
@@ -0,0 +1,109 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.htmlunit;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import net.sourceforge.jwebunit.api.ILocalTransport;
+import org.eclipse.jetty.server.LocalConnector;
+import org.eclipse.jetty.server.Server;
+
+/**
+ * {@link ILocalTransport} dispatching the requests to a Jetty server of the same JVM through a {@link LocalConnector},
+ * so that a webapp can be tested without binding a port:
+ *
+ * <pre>
+ * Server server = new Server();
+ * server.setHandler(webapp);
+ * JettyLocalTransport transport = JettyLocalTransport.attach(server);
+ * server.start();
+ * getTestContext().setLocalTransport(transport);
+ * </pre>
+ *
+ * <p>Jetty is an optional dependency of the plugin, it must be provided by the test classpath.</p>
+ */
+public class JettyLocalTransport implements ILocalTransport {
+
+  /**
+   * Time to wait for the server to write something when no timeout is given, in milliseconds.
+   */
+  public static final long DEFAULT_IDLE_TIMEOUT = 30000;
+
+  private final LocalConnector connector;
+
+  /**
+   * Create a transport using an existing local connector of a server.
+   *
+   * @param connector the local connector
+   */
+  public JettyLocalTransport(LocalConnector connector) {
+    this.connector = connector;
+  }
+
+  /**
+   * Add a local connector to a server, starting it if the server is already started, and create a transport using
+   * it.
+   *
+   * @param server the Jetty server
+   * @return the transport
+   * @throws Exception if the connector can't be started
+   */
+  public static JettyLocalTransport attach(Server server) throws Exception {
+    LocalConnector connector = new LocalConnector(server);
+    server.addConnector(connector);
+    if (server.isStarted()) {
+      connector.start();
+    }
+    return new JettyLocalTransport(connector);
+  }
+
+  /**
+   * @return the local connector the requests are sent to
+   */
+  public LocalConnector getConnector() {
+    return connector;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The timeout is an idle timeout: the exchange fails if the server doesn't write anything during this time.</p>
+   */
+  @Override
+  public byte[] exchange(byte[] request, int timeout) throws IOException {
+    ByteBuffer response;
+    try {
+      response = connector.getResponses(ByteBuffer.wrap(request), timeout > 0 ? timeout : DEFAULT_IDLE_TIMEOUT,
+        TimeUnit.MILLISECONDS);
+    } catch (IOException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new IOException("Unable to send request to the local connector", e);
+    }
+    if (response == null || !response.hasRemaining()) {
+      throw new SocketTimeoutException("No response from the local connector");
+    }
+    byte[] bytes = new byte[response.remaining()];
+    response.get(bytes);
+    return bytes;
+  }
+
+}
@@ -0,0 +1,347 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.htmlunit;
+
+import com.gargoylesoftware.htmlunit.CookieManager;
+import com.gargoylesoftware.htmlunit.FormEncodingType;
+import com.gargoylesoftware.htmlunit.HttpMethod;
+import com.gargoylesoftware.htmlunit.WebClient;
+import com.gargoylesoftware.htmlunit.WebConnection;
+import com.gargoylesoftware.htmlunit.WebRequest;
+import com.gargoylesoftware.htmlunit.WebResponse;
+import com.gargoylesoftware.htmlunit.WebResponseData;
+import com.gargoylesoftware.htmlunit.httpclient.HtmlUnitBrowserCompatCookieSpec;
+import com.gargoylesoftware.htmlunit.util.Cookie;
+import com.gargoylesoftware.htmlunit.util.KeyDataPair;
+import com.gargoylesoftware.htmlunit.util.NameValuePair;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import net.sourceforge.jwebunit.api.ILocalTransport;
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpException;
+import org.apache.http.HttpResponse;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.Credentials;
+import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.utils.URLEncodedUtils;
+import org.apache.http.cookie.ClientCookie;
+import org.apache.http.cookie.CookieOrigin;
+import org.apache.http.cookie.MalformedCookieException;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.entity.mime.HttpMultipartMode;
+import org.apache.http.entity.mime.MultipartEntityBuilder;
+import org.apache.http.impl.io.ChunkedInputStream;
+import org.apache.http.impl.io.ContentLengthInputStream;
+import org.apache.http.impl.io.DefaultHttpResponseParser;
+import org.apache.http.impl.io.HttpTransportMetricsImpl;
+import org.apache.http.impl.io.IdentityInputStream;
+import org.apache.http.impl.io.SessionInputBufferImpl;
+import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link WebConnection} sending the requests of a {@link WebClient} to a server running in the same JVM through an
+ * {@link ILocalTransport}, instead of opening sockets. The host and port of the URLs are only used for the
+ * <code>Host</code> header and the cookies.
+ *
+ * <p>Cookies are taken from and stored into the cookie manager of the web client. Basic authentication is done when
+ * the server asks for it, with the credentials of the request or of the web client. Digest and NTLM authentication,
+ * proxies and compressed responses are not supported.</p>
+ *
+ * @see net.sourceforge.jwebunit.util.TestContext#setLocalTransport(ILocalTransport)
+ */
+public class LocalWebConnection implements WebConnection {
+
+  /**
+   * Logger for this class.
+   */
+  private final Logger logger = LoggerFactory.getLogger(LocalWebConnection.class);
+
+  private static final String CRLF = "\r\n";
+
+  private final WebClient webClient;
+
+  private final ILocalTransport transport;
+
+  private final HtmlUnitBrowserCompatCookieSpec cookieSpec;
+
+  /**
+   * Create a connection for a web client.
+   *
+   * @param webClient the web client whose cookies and credentials are used
+   * @param transport the transport to the in-process server
+   */
+  public LocalWebConnection(WebClient webClient, ILocalTransport transport) {
+    this.webClient = webClient;
+    this.transport = transport;
+    this.cookieSpec = new HtmlUnitBrowserCompatCookieSpec(webClient.getBrowserVersion());
+  }
+
+  /**
+   * @return the transport to the in-process server
+   */
+  public ILocalTransport getTransport() {
+    return transport;
+  }
+
+  @Override
+  public WebResponse getResponse(WebRequest request) throws IOException {
+    long start = System.currentTimeMillis();
+    HttpResponse response = null;
+    String authorization = null;
+    for (int attempt = 0; attempt < 2; attempt++) {
+      response = exchange(request, authorization);
+      if (authorization != null || response.getStatusLine().getStatusCode() != 401) {
+        break;
+      }
+      authorization = getBasicAuthorization(request, response);
+      if (authorization == null) {
+        break;
+      }
+    }
+    storeCookies(request.getUrl(), response);
+    List<NameValuePair> headers = new ArrayList<>();
+    for (Header header : response.getAllHeaders()) {
+      headers.add(new NameValuePair(header.getName(), header.getValue()));
+    }
+    WebResponseData data = new WebResponseData(EntityUtils.toByteArray(response.getEntity()),
+      response.getStatusLine().getStatusCode(), response.getStatusLine().getReasonPhrase(), headers);
+    return new WebResponse(data, request, System.currentTimeMillis() - start);
+  }
+
+  /**
+   * Write a request, send it through the transport and read the response.
+   */
+  private HttpResponse exchange(WebRequest request, String authorization) throws IOException {
+    URL url = request.getUrl();
+    Charset charset = Charset.forName(request.getCharset());
+    HttpEntity entity = null;
+    String target = url.getPath().length() == 0 ? "/" : url.getPath();
+    String query = url.getQuery();
+    if (hasBody(request.getHttpMethod())) {
+      entity = createEntity(request, charset);
+    } else if (!request.getRequestParameters().isEmpty()) {
+      String parameters = URLEncodedUtils.format(toHttpClient(request.getRequestParameters()), charset);
+      query = query == null ? parameters : query + "&" + parameters;
+    }
+    if (query != null) {
+      target += "?" + query;
+    }
+
+    StringBuilder head = new StringBuilder();
+    head.append(request.getHttpMethod().name()).append(' ').append(target).append(" HTTP/1.1").append(CRLF);
+    appendHeader(head, "Host", url.getPort() == -1 ? url.getHost() : url.getHost() + ":" + url.getPort());
+    for (Map.Entry<String, String> header : request.getAdditionalHeaders().entrySet()) {
+      // the body isn't decompressed and the connection is closed after each exchange
+      if (!"Accept-Encoding".equalsIgnoreCase(header.getKey()) && !"Connection".equalsIgnoreCase(header.getKey())
+        && !(entity != null && "Content-Type".equalsIgnoreCase(header.getKey()))) {
+        appendHeader(head, header.getKey(), header.getValue());
+      }
+    }
+    if (!request.isAdditionalHeader("User-Agent")) {
+      appendHeader(head, "User-Agent", webClient.getBrowserVersion().getUserAgent());
+    }
+    appendCookies(head, url);
+    if (authorization != null) {
+      appendHeader(head, "Authorization", authorization);
+    }
+    if (entity != null) {
+      if (entity.getContentType() != null) {
+        appendHeader(head, "Content-Type", entity.getContentType().getValue());
+      }
+      appendHeader(head, "Content-Length", String.valueOf(entity.getContentLength()));
+    }
+    appendHeader(head, "Connection", "close");
+    head.append(CRLF);
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    out.write(head.toString().getBytes(StandardCharsets.ISO_8859_1));
+    if (entity != null) {
+      entity.writeTo(out);
+    }
+    return parse(transport.exchange(out.toByteArray(), webClient.getOptions().getTimeout()), request.getHttpMethod());
+  }
+
+  private static boolean hasBody(HttpMethod method) {
+    return method == HttpMethod.POST || method == HttpMethod.PUT || method == HttpMethod.PATCH;
+  }
+
+  private static HttpEntity createEntity(WebRequest request, Charset charset) {
+    if (request.getRequestBody() != null) {
+      String contentType = request.getAdditionalHeaders().get("Content-Type");
+      if (contentType == null) {
+        contentType = request.getEncodingType().getName();
+      }
+      ContentType type = ContentType.parse(contentType);
+      return new StringEntity(request.getRequestBody(),
+        type.getCharset() == null ? type.withCharset(charset) : type);
+    }
+    if (request.getEncodingType() == FormEncodingType.MULTIPART) {
+      MultipartEntityBuilder builder = MultipartEntityBuilder.create()
+        .setMode(HttpMultipartMode.BROWSER_COMPATIBLE).setCharset(charset);
+      for (NameValuePair pair : request.getRequestParameters()) {
+        if (pair instanceof KeyDataPair) {
+          KeyDataPair file = (KeyDataPair) pair;
+          ContentType type = file.getMimeType() == null ? ContentType.APPLICATION_OCTET_STREAM
+            : ContentType.create(file.getMimeType());
+          String fileName = file.getFileName();
+          if (fileName == null) {
+            fileName = file.getFile() == null ? file.getValue() : file.getFile().getName();
+          }
+          if (file.getData() != null) {
+            builder.addBinaryBody(pair.getName(), file.getData(), type, fileName);
+          } else if (file.getFile() != null) {
+            builder.addBinaryBody(pair.getName(), file.getFile(), type, fileName);
+          } else {
+            builder.addBinaryBody(pair.getName(), new byte[0], type, fileName);
+          }
+        } else {
+          builder.addTextBody(pair.getName(), pair.getValue(), ContentType.create("text/plain", charset));
+        }
+      }
+      return builder.build();
+    }
+    return new UrlEncodedFormEntity(toHttpClient(request.getRequestParameters()), charset);
+  }
+
+  private static List<org.apache.http.NameValuePair> toHttpClient(List<NameValuePair> pairs) {
+    List<org.apache.http.NameValuePair> result = new ArrayList<>(pairs.size());
+    for (NameValuePair pair : pairs) {
+      result.add(new BasicNameValuePair(pair.getName(), pair.getValue()));
+    }
+    return result;
+  }
+
+  private static void appendHeader(StringBuilder head, String name, String value) {
+    head.append(name).append(": ").append(value).append(CRLF);
+  }
+
+  private void appendCookies(StringBuilder head, URL url) {
+    CookieManager cookieManager = webClient.getCookieManager();
+    if (!cookieManager.isCookiesEnabled()) {
+      return;
+    }
+    CookieOrigin origin = cookieManager.buildCookieOrigin(url);
+    Date now = new Date();
+    List<org.apache.http.cookie.Cookie> matching = new ArrayList<>();
+    for (Cookie cookie : cookieManager.getCookies()) {
+      org.apache.http.cookie.Cookie c = cookie.toHttpClient();
+      if (!c.isExpired(now) && cookieSpec.match(c, origin)) {
+        matching.add(c);
+      }
+    }
+    if (!matching.isEmpty()) {
+      for (Header header : cookieSpec.formatCookies(matching)) {
+        appendHeader(head, header.getName(), header.getValue());
+      }
+    }
+  }
+
+  private void storeCookies(URL url, HttpResponse response) {
+    CookieManager cookieManager = webClient.getCookieManager();
+    if (!cookieManager.isCookiesEnabled()) {
+      return;
+    }
+    CookieOrigin origin = cookieManager.buildCookieOrigin(url);
+    for (Header header : response.getHeaders("Set-Cookie")) {
+      try {
+        for (org.apache.http.cookie.Cookie c : cookieSpec.parse(header, origin)) {
+          cookieSpec.validate(c, origin);
+          cookieManager.addCookie(new Cookie((ClientCookie) c));
+        }
+      } catch (MalformedCookieException e) {
+        logger.warn("Ignoring invalid cookie {}", header.getValue(), e);
+      }
+    }
+  }
+
+  /**
+   * Compute the header answering a basic authentication challenge, or null if it isn't a basic challenge or there
+   * are no credentials for it.
+   */
+  private String getBasicAuthorization(WebRequest request, HttpResponse response) {
+    Header challenge = response.getFirstHeader("WWW-Authenticate");
+    if (challenge == null || !challenge.getValue().regionMatches(true, 0, "Basic", 0, 5)) {
+      return null;
+    }
+    Credentials credentials = request.getCredentials();
+    if (credentials == null) {
+      credentials = request.getUrlCredentials();
+    }
+    if (credentials == null) {
+      URL url = request.getUrl();
+      credentials = webClient.getCredentialsProvider().getCredentials(
+        new AuthScope(url.getHost(), url.getPort() == -1 ? url.getDefaultPort() : url.getPort()));
+    }
+    if (credentials == null || credentials.getUserPrincipal() == null) {
+      return null;
+    }
+    String userPass = credentials.getUserPrincipal().getName() + ":"
+      + (credentials.getPassword() == null ? "" : credentials.getPassword());
+    return "Basic " + Base64.encodeBase64String(userPass.getBytes(StandardCharsets.ISO_8859_1));
+  }
+
+  private static HttpResponse parse(byte[] bytes, HttpMethod method) throws IOException {
+    SessionInputBufferImpl buffer = new SessionInputBufferImpl(new HttpTransportMetricsImpl(), 8 * 1024);
+    buffer.bind(new ByteArrayInputStream(bytes));
+    HttpResponse response;
+    try {
+      response = new DefaultHttpResponseParser(buffer).parse();
+    } catch (HttpException e) {
+      throw new IOException("Invalid response from the local transport", e);
+    }
+    int status = response.getStatusLine().getStatusCode();
+    Header transferEncoding = response.getFirstHeader("Transfer-Encoding");
+    Header contentLength = response.getFirstHeader("Content-Length");
+    InputStream body;
+    if (method == HttpMethod.HEAD || status / 100 == 1 || status == 204 || status == 304) {
+      body = new ByteArrayInputStream(new byte[0]);
+    } else if (transferEncoding != null && "chunked".equalsIgnoreCase(transferEncoding.getValue().trim())) {
+      body = new ChunkedInputStream(buffer);
+    } else if (contentLength != null) {
+      body = new ContentLengthInputStream(buffer, Long.parseLong(contentLength.getValue().trim()));
+    } else {
+      body = new IdentityInputStream(buffer);
+    }
+    response.setEntity(new ByteArrayEntity(IOUtils.toByteArray(body)));
+    return response;
+  }
+
+  @Override
+  public void close() {
+    // the transport belongs to the caller
+  }
+
+}
@@ -0,0 +1,192 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.htmlunit;
+
+import com.gargoylesoftware.htmlunit.Page;
+import com.gargoylesoftware.htmlunit.WebWindow;
+import com.gargoylesoftware.htmlunit.WebWindowEvent;
+import com.gargoylesoftware.htmlunit.WebWindowListener;
+import com.gargoylesoftware.htmlunit.html.CharacterDataChangeEvent;
+import com.gargoylesoftware.htmlunit.html.CharacterDataChangeListener;
+import com.gargoylesoftware.htmlunit.html.DomChangeEvent;
+import com.gargoylesoftware.htmlunit.html.DomChangeListener;
+import com.gargoylesoftware.htmlunit.html.HtmlAttributeChangeEvent;
+import com.gargoylesoftware.htmlunit.html.HtmlAttributeChangeListener;
+import com.gargoylesoftware.htmlunit.html.HtmlPage;
+import com.gargoylesoftware.htmlunit.javascript.background.JavaScriptJobManager;
+
+/**
+ * Lets the test thread sleep until the page of a window may have changed: an element is added or removed, an
+ * attribute or a text is changed, a window is opened, closed or loads another page, or a background JavaScript job
+ * finishes.
+ *
+ * <p>The monitor of the job manager of the window is used to wait, because HtmlUnit notifies it each time a job is
+ * added, removed or finished. Page and window events notify it too.</p>
+ */
+class PageChangeMonitor implements DomChangeListener, HtmlAttributeChangeListener, CharacterDataChangeListener,
+  WebWindowListener {
+
+  private static final long serialVersionUID = 1L;
+
+  private final WebWindow window;
+
+  private final JavaScriptJobManager jobManager;
+
+  /**
+   * The page listened to, <code>null</code> if the window doesn't contain an HTML page.
+   */
+  private HtmlPage page;
+
+  /**
+   * Number of page and window events received, guarded by the job manager.
+   */
+  private long changes;
+
+  private long markedChanges;
+
+  private int markedJobCount;
+
+  /**
+   * Create a monitor and start listening for changes of a window.
+   *
+   * @param window the window to watch
+   */
+  PageChangeMonitor(WebWindow window) {
+    this.window = window;
+    this.jobManager = window.getJobManager();
+    synchronized (jobManager) {
+      window.getWebClient().addWebWindowListener(this);
+      listenTo(window.getEnclosedPage());
+    }
+  }
+
+  /**
+   * @return the window watched
+   */
+  WebWindow getWindow() {
+    return window;
+  }
+
+  /**
+   * Remember the state of the window, before checking its page.
+   */
+  void mark() {
+    synchronized (jobManager) {
+      markedChanges = changes;
+      markedJobCount = jobManager.getJobCount();
+    }
+  }
+
+  /**
+   * Wait until the page may have changed since {@link #mark()} was called.
+   *
+   * @param timeout maximum time to wait, in milliseconds
+   * @throws InterruptedException if the thread is interrupted while waiting
+   */
+  void awaitChange(long timeout) throws InterruptedException {
+    synchronized (jobManager) {
+      // the notification of a job finished since the mark was missed if the job count changed
+      if (changes == markedChanges && jobManager.getJobCount() == markedJobCount) {
+        jobManager.wait(timeout);
+      }
+    }
+  }
+
+  /**
+   * Stop listening for changes of the window.
+   */
+  void dispose() {
+    synchronized (jobManager) {
+      window.getWebClient().removeWebWindowListener(this);
+      listenTo(null);
+    }
+  }
+
+  private void listenTo(Page newPage) {
+    if (page != null) {
+      page.removeDomChangeListener(this);
+      page.removeHtmlAttributeChangeListener(this);
+      page.removeCharacterDataChangeListener(this);
+    }
+    page = newPage instanceof HtmlPage ? (HtmlPage) newPage : null;
+    if (page != null) {
+      page.addDomChangeListener(this);
+      page.addHtmlAttributeChangeListener(this);
+      page.addCharacterDataChangeListener(this);
+    }
+  }
+
+  private void changed() {
+    synchronized (jobManager) {
+      changes++;
+      jobManager.notifyAll();
+    }
+  }
+
+  @Override
+  public void nodeAdded(DomChangeEvent event) {
+    changed();
+  }
+
+  @Override
+  public void nodeDeleted(DomChangeEvent event) {
+    changed();
+  }
+
+  @Override
+  public void attributeAdded(HtmlAttributeChangeEvent event) {
+    changed();
+  }
+
+  @Override
+  public void attributeRemoved(HtmlAttributeChangeEvent event) {
+    changed();
+  }
+
+  @Override
+  public void attributeReplaced(HtmlAttributeChangeEvent event) {
+    changed();
+  }
+
+  @Override
+  public void characterDataChanged(CharacterDataChangeEvent event) {
+    changed();
+  }
+
+  @Override
+  public void webWindowOpened(WebWindowEvent event) {
+    changed();
+  }
+
+  @Override
+  public void webWindowContentChanged(WebWindowEvent event) {
+    if (event.getWebWindow() == window) {
+      synchronized (jobManager) {
+        listenTo(event.getNewPage());
+      }
+    }
+    changed();
+  }
+
+  @Override
+  public void webWindowClosed(WebWindowEvent event) {
+    changed();
+  }
+
+}
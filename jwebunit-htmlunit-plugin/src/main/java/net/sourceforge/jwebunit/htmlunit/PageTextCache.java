@@ -0,0 +1,170 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.htmlunit;
+
+import com.gargoylesoftware.htmlunit.html.CharacterDataChangeEvent;
+import com.gargoylesoftware.htmlunit.html.CharacterDataChangeListener;
+import com.gargoylesoftware.htmlunit.html.DomChangeEvent;
+import com.gargoylesoftware.htmlunit.html.DomChangeListener;
+import com.gargoylesoftware.htmlunit.html.HtmlAttributeChangeEvent;
+import com.gargoylesoftware.htmlunit.html.HtmlAttributeChangeListener;
+import com.gargoylesoftware.htmlunit.html.HtmlElement;
+import com.gargoylesoftware.htmlunit.html.HtmlPage;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import net.sourceforge.htmlunit.corejs.javascript.Context;
+import net.sourceforge.htmlunit.corejs.javascript.ContextFactory;
+
+/**
+ * Cache of the text of an {@link HtmlPage} and of its elements, as returned by <code>asText()</code>, so that several
+ * text assertions on the same page don't serialize the DOM again each time.
+ *
+ * <p>The cache is dropped as soon as the page is modified (element added or removed, attribute or text changed).
+ * Checking a checkbox or a radio button, or selecting an option, changes the text but doesn't fire any DOM event, so
+ * the cache is also dropped whenever a script runs, and the engine calls {@link #invalidate()} after it changed such
+ * a form control itself.</p>
+ */
+class PageTextCache implements DomChangeListener, HtmlAttributeChangeListener, CharacterDataChangeListener,
+    ContextFactory.Listener {
+
+  private static final long serialVersionUID = 1L;
+
+  private final HtmlElementIndex index;
+
+  /**
+   * Text of the body of the page, <code>null</code> when not computed yet.
+   */
+  private String pageText;
+
+  /**
+   * Texts of the elements of the page.
+   */
+  private final Map<HtmlElement, String> elementTexts = new IdentityHashMap<>();
+
+  /**
+   * Create a cache and start listening for changes of the page.
+   *
+   * @param index index of the elements of the page
+   */
+  PageTextCache(HtmlElementIndex index) {
+    this.index = index;
+    HtmlPage page = index.getPage();
+    page.addDomChangeListener(this);
+    page.addHtmlAttributeChangeListener(this);
+    page.addCharacterDataChangeListener(this);
+    getContextFactory().addListener(this);
+  }
+
+  private ContextFactory getContextFactory() {
+    return index.getPage().getWebClient().getJavaScriptEngine().getContextFactory();
+  }
+
+  /**
+   * @return the page whose texts are cached
+   */
+  HtmlPage getPage() {
+    return index.getPage();
+  }
+
+  /**
+   * Stop listening for changes of the page. The cache can't be used anymore.
+   */
+  void dispose() {
+    HtmlPage page = index.getPage();
+    page.removeDomChangeListener(this);
+    page.removeHtmlAttributeChangeListener(this);
+    page.removeCharacterDataChangeListener(this);
+    getContextFactory().removeListener(this);
+    invalidate();
+  }
+
+  /**
+   * @return the text of the body of the page
+   */
+  synchronized String getPageText() {
+    if (pageText == null) {
+      pageText = index.getPage().getBody().asText();
+    }
+    return pageText;
+  }
+
+  /**
+   * Get the text of an element of the page.
+   *
+   * @param element an element of the page
+   * @return the text of the element
+   */
+  synchronized String getText(HtmlElement element) {
+    String text = elementTexts.get(element);
+    if (text == null) {
+      text = element.asText();
+      elementTexts.put(element, text);
+    }
+    return text;
+  }
+
+  /**
+   * Drop the cached texts, after a change of the page which fired no event.
+   */
+  synchronized void invalidate() {
+    pageText = null;
+    elementTexts.clear();
+  }
+
+  @Override
+  public void nodeAdded(DomChangeEvent event) {
+    invalidate();
+  }
+
+  @Override
+  public void nodeDeleted(DomChangeEvent event) {
+    invalidate();
+  }
+
+  @Override
+  public void attributeAdded(HtmlAttributeChangeEvent event) {
+    invalidate();
+  }
+
+  @Override
+  public void attributeRemoved(HtmlAttributeChangeEvent event) {
+    invalidate();
+  }
+
+  @Override
+  public void attributeReplaced(HtmlAttributeChangeEvent event) {
+    invalidate();
+  }
+
+  @Override
+  public void characterDataChanged(CharacterDataChangeEvent event) {
+    invalidate();
+  }
+
+  @Override
+  public void contextCreated(Context cx) {
+    invalidate();
+  }
+
+  @Override
+  public void contextReleased(Context cx) {
+    invalidate();
+  }
+
+}
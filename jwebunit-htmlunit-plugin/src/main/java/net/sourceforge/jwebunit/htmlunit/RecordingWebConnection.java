@@ -0,0 +1,70 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.htmlunit;
+
+import com.gargoylesoftware.htmlunit.WebConnection;
+import com.gargoylesoftware.htmlunit.WebRequest;
+import com.gargoylesoftware.htmlunit.WebResponse;
+import com.gargoylesoftware.htmlunit.util.NameValuePair;
+import com.gargoylesoftware.htmlunit.util.WebConnectionWrapper;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import net.sourceforge.jwebunit.api.HttpHeader;
+import net.sourceforge.jwebunit.util.HttpArchive;
+import net.sourceforge.jwebunit.util.RecordedResponse;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * A {@link WebConnection} adding the responses of the wrapped connection to an {@link HttpArchive}, to be replayed
+ * later by a {@link ReplayWebConnection}.
+ *
+ * @see net.sourceforge.jwebunit.util.TestContext#setHttpArchive
+ */
+public class RecordingWebConnection extends WebConnectionWrapper {
+
+  private final HttpArchive archive;
+
+  /**
+   * @param connection connection sending the requests
+   * @param archive archive receiving the responses
+   */
+  public RecordingWebConnection(WebConnection connection, HttpArchive archive) {
+    super(connection);
+    this.archive = archive;
+  }
+
+  @Override
+  public WebResponse getResponse(WebRequest request) throws IOException {
+    WebResponse response = super.getResponse(request);
+    List<HttpHeader> headers = new ArrayList<>();
+    for (NameValuePair header : response.getResponseHeaders()) {
+      headers.add(new HttpHeader(header.getName(), header.getValue()));
+    }
+    byte[] body;
+    try (InputStream in = response.getContentAsStream()) {
+      body = in == null ? null : IOUtils.toByteArray(in);
+    }
+    archive.record(ReplayWebConnection.getKey(request),
+      new RecordedResponse(response.getStatusCode(), response.getStatusMessage(), headers, body));
+    return response;
+  }
+
+}
@@ -0,0 +1,161 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.htmlunit;
+
+import com.gargoylesoftware.htmlunit.CookieManager;
+import com.gargoylesoftware.htmlunit.HttpMethod;
+import com.gargoylesoftware.htmlunit.WebClient;
+import com.gargoylesoftware.htmlunit.WebConnection;
+import com.gargoylesoftware.htmlunit.WebRequest;
+import com.gargoylesoftware.htmlunit.WebResponse;
+import com.gargoylesoftware.htmlunit.WebResponseData;
+import com.gargoylesoftware.htmlunit.httpclient.HtmlUnitBrowserCompatCookieSpec;
+import com.gargoylesoftware.htmlunit.util.Cookie;
+import com.gargoylesoftware.htmlunit.util.NameValuePair;
+import com.gargoylesoftware.htmlunit.util.UrlUtils;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import net.sourceforge.jwebunit.api.HttpHeader;
+import net.sourceforge.jwebunit.util.HttpArchive;
+import net.sourceforge.jwebunit.util.RecordedResponse;
+import org.apache.http.client.utils.URLEncodedUtils;
+import org.apache.http.cookie.ClientCookie;
+import org.apache.http.cookie.CookieOrigin;
+import org.apache.http.cookie.MalformedCookieException;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.message.BasicNameValuePair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link WebConnection} answering the requests of a {@link WebClient} with the responses of an {@link HttpArchive},
+ * without sending anything to the server. The cookies set by the responses are stored into the cookie manager of the
+ * web client. Requests that were not recorded are answered with an empty 404 response.
+ *
+ * @see net.sourceforge.jwebunit.util.TestContext#setHttpArchive
+ * @see RecordingWebConnection
+ */
+public class ReplayWebConnection implements WebConnection {
+
+  private static final Logger logger = LoggerFactory.getLogger(ReplayWebConnection.class);
+
+  private final WebClient webClient;
+
+  private final HttpArchive archive;
+
+  private final HtmlUnitBrowserCompatCookieSpec cookieSpec;
+
+  /**
+   * How many times each request has been replayed by this connection.
+   */
+  private final Map<String, Integer> replayed = new HashMap<>();
+
+  /**
+   * @param webClient the web client whose cookie manager receives the cookies
+   * @param archive the recorded responses
+   */
+  public ReplayWebConnection(WebClient webClient, HttpArchive archive) {
+    this.webClient = webClient;
+    this.archive = archive;
+    this.cookieSpec = new HtmlUnitBrowserCompatCookieSpec(webClient.getBrowserVersion());
+  }
+
+  @Override
+  public WebResponse getResponse(WebRequest request) throws IOException {
+    long start = System.currentTimeMillis();
+    String key = getKey(request);
+    int index;
+    synchronized (replayed) {
+      Integer count = replayed.get(key);
+      index = count == null ? 0 : count;
+      replayed.put(key, index + 1);
+    }
+    RecordedResponse recorded = archive.getResponse(key, index);
+    if (recorded == null) {
+      logger.warn("No recorded response for {}", key);
+      WebResponseData data = new WebResponseData(new byte[0], 404, "Not Recorded",
+        Collections.singletonList(new NameValuePair("Content-Type", "text/plain")));
+      return new WebResponse(data, request, 0);
+    }
+    List<NameValuePair> headers = new ArrayList<>();
+    for (HttpHeader header : recorded.getHeaders()) {
+      headers.add(new NameValuePair(header.getName(), header.getValue()));
+      if ("Set-Cookie".equalsIgnoreCase(header.getName())) {
+        storeCookie(request.getUrl(), header.getValue());
+      }
+    }
+    WebResponseData data = new WebResponseData(recorded.getBody(), recorded.getStatus(),
+      recorded.getStatusMessage(), headers);
+    return new WebResponse(data, request, System.currentTimeMillis() - start);
+  }
+
+  private void storeCookie(URL url, String setCookie) {
+    CookieManager cookieManager = webClient.getCookieManager();
+    if (!cookieManager.isCookiesEnabled()) {
+      return;
+    }
+    CookieOrigin origin = cookieManager.buildCookieOrigin(url);
+    try {
+      for (org.apache.http.cookie.Cookie c : cookieSpec.parse(new BasicHeader("Set-Cookie", setCookie), origin)) {
+        cookieSpec.validate(c, origin);
+        cookieManager.addCookie(new Cookie((ClientCookie) c));
+      }
+    } catch (MalformedCookieException e) {
+      logger.warn("Ignoring invalid cookie {}", setCookie, e);
+    }
+  }
+
+  /**
+   * Compute the key of a request in an {@link HttpArchive}. Form parameters are part of the body of the requests that
+   * have one, whatever their encoding.
+   *
+   * @param request the request
+   * @return the key of the request
+   * @throws IOException if the URL of the request is invalid
+   */
+  static String getKey(WebRequest request) throws IOException {
+    URL url = UrlUtils.getUrlWithNewRef(request.getUrl(), null);
+    byte[] body = null;
+    if (request.getHttpMethod() != HttpMethod.GET) {
+      Charset charset = Charset.forName(request.getCharset());
+      if (request.getRequestBody() != null) {
+        body = request.getRequestBody().getBytes(charset);
+      } else if (!request.getRequestParameters().isEmpty()) {
+        List<org.apache.http.NameValuePair> parameters = new ArrayList<>();
+        for (NameValuePair pair : request.getRequestParameters()) {
+          parameters.add(new BasicNameValuePair(pair.getName(), pair.getValue()));
+        }
+        body = URLEncodedUtils.format(parameters, charset).getBytes(charset);
+      }
+    }
+    return HttpArchive.getKey(request.getHttpMethod().name(), url, body);
+  }
+
+  @Override
+  public void close() {
+    // the archive belongs to the caller
+  }
+
+}
@@ -0,0 +1,358 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.htmlunit;
+
+import com.gargoylesoftware.htmlunit.HttpMethod;
+import com.gargoylesoftware.htmlunit.WebRequest;
+import com.gargoylesoftware.htmlunit.WebResponse;
+import com.gargoylesoftware.htmlunit.util.UrlUtils;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import net.sourceforge.jwebunit.util.CachePolicy;
+import org.apache.http.client.utils.DateUtils;
+
+/**
+ * Responses shared by all the web clients of the JVM, so that the stylesheets, scripts and images used by every page
+ * of an application are downloaded once instead of once per test. Web clients use it through their own
+ * {@link ClientCache}.
+ *
+ * <p>Only the downloaded responses are shared. The stylesheets parsed and the scripts compiled from them are mutable
+ * or depend on the browser version, so each web client keeps its own in its {@link ClientCache}.</p>
+ *
+ * <p>Unlike the default HtmlUnit cache, entries expire: a response is fresh for its <code>Cache-Control</code>
+ * <code>max-age</code>, or until its <code>Expires</code> date, or for a tenth of its age when it only has a
+ * <code>Last-Modified</code> date. Responses with <code>no-store</code> or <code>no-cache</code> are not cached. With
+ * {@link CachePolicy#SHARED_IMMUTABLE_ASSETS}, stylesheets, scripts, images and fonts never expire.</p>
+ *
+ * <p>The cache is bounded by its number of entries and by the size of each entry. It counts hits, misses and the bytes
+ * that didn't have to be downloaded.</p>
+ *
+ * @see net.sourceforge.jwebunit.util.TestContext#setCachePolicy(CachePolicy)
+ */
+public class SharedResponseCache {
+
+  /**
+   * Default maximum number of entries.
+   */
+  public static final int DEFAULT_MAX_SIZE = 500;
+
+  /**
+   * Default maximum size of a cached response, in bytes.
+   */
+  public static final long DEFAULT_MAX_ENTRY_LENGTH = 2 * 1024 * 1024;
+
+  /**
+   * Heuristic freshness when the response doesn't tell how long it is fresh, and the minimum age of the
+   * <code>Last-Modified</code> date to apply it, as done by HtmlUnit.
+   */
+  private static final long HEURISTIC_MIN_AGE = 10 * 60 * 1000;
+
+  private static final SharedResponseCache SHARED = new SharedResponseCache(false);
+
+  private static final SharedResponseCache SHARED_IMMUTABLE_ASSETS = new SharedResponseCache(true);
+
+  private final boolean immutableAssets;
+
+  private volatile int maxSize = DEFAULT_MAX_SIZE;
+
+  private volatile long maxEntryLength = DEFAULT_MAX_ENTRY_LENGTH;
+
+  /**
+   * Entries by normalized URL, least recently used first.
+   */
+  private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+      return size() > maxSize;
+    }
+  };
+
+  private final AtomicLong hits = new AtomicLong();
+
+  private final AtomicLong misses = new AtomicLong();
+
+  private final AtomicLong bytesSaved = new AtomicLong();
+
+  /**
+   * A response and until when it is fresh.
+   */
+  private static final class Entry {
+
+    private final WebResponse response;
+
+    private final long expiry;
+
+    Entry(WebResponse response, long expiry) {
+      this.response = response;
+      this.expiry = expiry;
+    }
+  }
+
+  /**
+   * Create a cache. Most users want the JVM-wide instances of {@link #getInstance(CachePolicy)}.
+   *
+   * @param immutableAssets true if stylesheets, scripts, images and fonts never expire
+   */
+  public SharedResponseCache(boolean immutableAssets) {
+    this.immutableAssets = immutableAssets;
+  }
+
+  /**
+   * Get the JVM-wide cache for a policy.
+   *
+   * @param policy a shared cache policy
+   * @return the cache shared by all the engines using this policy
+   * @throws IllegalArgumentException if the policy isn't a shared one
+   */
+  public static SharedResponseCache getInstance(CachePolicy policy) {
+    switch (policy) {
+    case SHARED:
+      return SHARED;
+    case SHARED_IMMUTABLE_ASSETS:
+      return SHARED_IMMUTABLE_ASSETS;
+    default:
+      throw new IllegalArgumentException("Not a shared cache policy: " + policy);
+    }
+  }
+
+  /**
+   * @return true if stylesheets, scripts, images and fonts never expire
+   */
+  public boolean isImmutableAssets() {
+    return immutableAssets;
+  }
+
+  /**
+   * @return the maximum number of entries
+   */
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  /**
+   * Set the maximum number of entries. The least recently used entries are removed first.
+   *
+   * @param maxSize the maximum number of entries
+   */
+  public synchronized void setMaxSize(int maxSize) {
+    this.maxSize = maxSize;
+    while (entries.size() > maxSize) {
+      entries.remove(entries.keySet().iterator().next());
+    }
+  }
+
+  /**
+   * @return the maximum size of a cached response, in bytes
+   */
+  public long getMaxEntryLength() {
+    return maxEntryLength;
+  }
+
+  /**
+   * Set the maximum size of a cached response. Larger responses are not cached.
+   *
+   * @param maxEntryLength the maximum size in bytes
+   */
+  public void setMaxEntryLength(long maxEntryLength) {
+    this.maxEntryLength = maxEntryLength;
+  }
+
+  /**
+   * @return the number of entries
+   */
+  public synchronized int getSize() {
+    return entries.size();
+  }
+
+  /**
+   * Remove all the entries.
+   */
+  public synchronized void clear() {
+    entries.clear();
+  }
+
+  /**
+   * Keep a response if it can be cached: the response of a GET request, not too large, and fresh.
+   *
+   * @param request the request
+   * @param response its response
+   * @return true if the response was cached
+   */
+  public boolean cacheIfPossible(WebRequest request, WebResponse response) {
+    if (response.getWebRequest().getHttpMethod() != HttpMethod.GET || response.getContentLength() > maxEntryLength) {
+      return false;
+    }
+    long expiry = getExpiry(response);
+    if (expiry <= getCurrentTimestamp()) {
+      return false;
+    }
+    synchronized (this) {
+      entries.put(UrlUtils.normalize(response.getWebRequest().getUrl()), new Entry(response, expiry));
+    }
+    return true;
+  }
+
+  /**
+   * Get the fresh response of a request.
+   *
+   * @param request the request
+   * @return the cached response, or null if there is none or it is stale
+   */
+  public WebResponse getCachedResponse(WebRequest request) {
+    WebResponse response = null;
+    if (request.getHttpMethod() == HttpMethod.GET) {
+      Entry entry;
+      synchronized (this) {
+        entry = entries.get(UrlUtils.normalize(request.getUrl()));
+      }
+      if (entry != null && entry.expiry > getCurrentTimestamp()) {
+        response = entry.response;
+      }
+    }
+    if (response == null) {
+      misses.incrementAndGet();
+    } else {
+      hits.incrementAndGet();
+      bytesSaved.addAndGet(response.getContentLength());
+    }
+    return response;
+  }
+
+  /**
+   * @param request a request
+   * @return true if the cache has a fresh response for the request
+   */
+  public boolean isFresh(WebRequest request) {
+    if (request.getHttpMethod() != HttpMethod.GET) {
+      return false;
+    }
+    Entry entry;
+    synchronized (this) {
+      entry = entries.get(UrlUtils.normalize(request.getUrl()));
+    }
+    return entry != null && entry.expiry > getCurrentTimestamp();
+  }
+
+  /**
+   * @return the current time, in milliseconds
+   */
+  protected long getCurrentTimestamp() {
+    return System.currentTimeMillis();
+  }
+
+  /**
+   * Compute until when a response is fresh.
+   *
+   * @param response the response
+   * @return the expiry timestamp, in the past if the response can't be cached
+   */
+  protected long getExpiry(WebResponse response) {
+    long now = getCurrentTimestamp();
+    String cacheControl = response.getResponseHeaderValue("Cache-Control");
+    cacheControl = cacheControl == null ? "" : cacheControl.toLowerCase(Locale.ROOT);
+    if (cacheControl.contains("no-store") || cacheControl.contains("no-cache")) {
+      return 0;
+    }
+    if ((immutableAssets && isAsset(response)) || cacheControl.contains("immutable")) {
+      return Long.MAX_VALUE;
+    }
+    for (String directive : cacheControl.split(",")) {
+      directive = directive.trim();
+      if (directive.startsWith("max-age=")) {
+        try {
+          return now + Long.parseLong(directive.substring("max-age=".length()).trim()) * 1000;
+        } catch (NumberFormatException e) {
+          return 0;
+        }
+      }
+    }
+    Date expires = parseDateHeader(response, "Expires");
+    if (expires != null) {
+      return expires.getTime();
+    }
+    Date lastModified = parseDateHeader(response, "Last-Modified");
+    if (lastModified != null && now - lastModified.getTime() > HEURISTIC_MIN_AGE) {
+      return now + (now - lastModified.getTime()) / 10;
+    }
+    return 0;
+  }
+
+  private static Date parseDateHeader(WebResponse response, String name) {
+    String value = response.getResponseHeaderValue(name);
+    return value == null ? null : DateUtils.parseDate(value);
+  }
+
+  private static boolean isAsset(WebResponse response) {
+    String type = response.getContentType().toLowerCase(Locale.ROOT);
+    return type.startsWith("image/") || type.startsWith("font/") || type.equals("text/css")
+      || type.endsWith("javascript") || type.endsWith("ecmascript") || type.contains("font-woff")
+      || type.contains("font-ttf") || type.contains("font-otf");
+  }
+
+  /**
+   * @return the number of requests served from the cache
+   */
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  /**
+   * @return the number of requests that had to be downloaded
+   */
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  /**
+   * @return the ratio of requests served from the cache, 0 if there was no request
+   */
+  public double getHitRate() {
+    long hitCount = hits.get();
+    long total = hitCount + misses.get();
+    return total == 0 ? 0 : (double) hitCount / total;
+  }
+
+  /**
+   * @return the number of bytes served from the cache instead of being downloaded
+   */
+  public long getBytesSaved() {
+    return bytesSaved.get();
+  }
+
+  /**
+   * Reset the hit, miss and bytes saved counters.
+   */
+  public void resetStatistics() {
+    hits.set(0);
+    misses.set(0);
+    bytesSaved.set(0);
+  }
+
+  @Override
+  public String toString() {
+    return "SharedResponseCache[entries=" + getSize() + ", hits=" + getHitCount() + ", misses=" + getMissCount()
+      + ", hitRate=" + String.format(Locale.ROOT, "%.2f", getHitRate()) + ", bytesSaved=" + getBytesSaved() + "]";
+  }
+
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.htmlunit;
+
+import com.gargoylesoftware.htmlunit.DownloadedContent;
+import com.gargoylesoftware.htmlunit.HttpWebConnection;
+import com.gargoylesoftware.htmlunit.WebClient;
+import com.gargoylesoftware.htmlunit.WebConnection;
+import com.gargoylesoftware.htmlunit.WebRequest;
+import com.gargoylesoftware.htmlunit.WebResponse;
+import com.gargoylesoftware.htmlunit.util.WebConnectionWrapper;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import net.sourceforge.jwebunit.util.LoggedRequest;
+import net.sourceforge.jwebunit.util.RequestLog;
+import org.apache.http.HttpResponse;
+
+/**
+ * A {@link WebConnection} adding the requests sent by the wrapped connection, with their timings, to a
+ * {@link RequestLog}. The time to the first byte is known when the requests are sent by a
+ * {@link FirstByteWebConnection}; otherwise the whole request is counted as wait. DNS and connection times are not
+ * measured by HtmlUnit, they are counted in the wait.
+ *
+ * @see net.sourceforge.jwebunit.util.TestContext#setRequestLog(RequestLog)
+ */
+public class TimingWebConnection extends WebConnectionWrapper {
+
+  /**
+   * Time the first byte of the response was received by the current thread, set by {@link FirstByteWebConnection}.
+   */
+  private static final ThreadLocal<Long> FIRST_BYTE = new ThreadLocal<Long>();
+
+  private final RequestLog log;
+
+  /**
+   * @param connection connection sending the requests
+   * @param log log receiving the requests
+   */
+  public TimingWebConnection(WebConnection connection, RequestLog log) {
+    super(connection);
+    this.log = log;
+  }
+
+  @Override
+  public WebResponse getResponse(WebRequest request) throws IOException {
+    FIRST_BYTE.remove();
+    long started = System.currentTimeMillis();
+    long start = System.nanoTime();
+    WebResponse response = super.getResponse(request);
+    long end = System.nanoTime();
+    Long firstByte = FIRST_BYTE.get();
+    FIRST_BYTE.remove();
+    long wait = (firstByte == null ? end - start : firstByte - start) / 1000000;
+    long receive = firstByte == null ? 0 : (end - firstByte) / 1000000;
+    String body = request.getRequestBody();
+    String mimeType = response.getContentType();
+    log.record(new LoggedRequest(started, request.getHttpMethod().name(), request.getUrl().toExternalForm(),
+      response.getStatusCode(), response.getStatusMessage(), mimeType == null || mimeType.isEmpty() ? null : mimeType,
+      body == null ? -1 : body.getBytes(getCharset(request)).length, response.getContentLength(), -1, -1, -1, wait,
+      receive));
+    return response;
+  }
+
+  private static Charset getCharset(WebRequest request) {
+    try {
+      return Charset.forName(request.getCharset());
+    } catch (RuntimeException e) {
+      return Charset.forName("ISO-8859-1");
+    }
+  }
+
+  /**
+   * An {@link HttpWebConnection} noting when the first byte of each response is received, so that the
+   * {@link TimingWebConnection} wrapping it can tell the wait apart from the download.
+   */
+  public static class FirstByteWebConnection extends HttpWebConnection {
+
+    /**
+     * @param webClient the web client using the connection
+     */
+    public FirstByteWebConnection(WebClient webClient) {
+      super(webClient);
+    }
+
+    @Override
+    protected DownloadedContent downloadResponseBody(HttpResponse httpResponse) throws IOException {
+      FIRST_BYTE.set(System.nanoTime());
+      return super.downloadResponseBody(httpResponse);
+    }
+  }
+
+}
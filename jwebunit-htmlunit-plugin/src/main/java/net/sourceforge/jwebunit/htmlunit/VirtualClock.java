@@ -0,0 +1,271 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.htmlunit;
+
+import com.gargoylesoftware.htmlunit.ImmediateRefreshHandler;
+import com.gargoylesoftware.htmlunit.Page;
+import com.gargoylesoftware.htmlunit.RefreshHandler;
+import com.gargoylesoftware.htmlunit.WebClient;
+import com.gargoylesoftware.htmlunit.WebRequest;
+import com.gargoylesoftware.htmlunit.WebWindow;
+import com.gargoylesoftware.htmlunit.javascript.JavaScriptEngine;
+import com.gargoylesoftware.htmlunit.javascript.background.JavaScriptJob;
+import com.gargoylesoftware.htmlunit.javascript.background.JavaScriptJobManager;
+import com.gargoylesoftware.htmlunit.javascript.background.JavaScriptJobManager.JavaScriptJobFilter;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the JavaScript timers (<code>setTimeout</code>, <code>setInterval</code>, asynchronous XHR callbacks) and the
+ * delayed <code>&lt;meta http-equiv="refresh"&gt;</code> of a web client in virtual time: nothing happens until
+ * {@link #advance(long, TimeUnit)} is called, which then runs everything due in the advanced period in order, at CPU
+ * speed.
+ *
+ * <p>While installed, the web client has no background JavaScript thread. Timer targets are shifted back by the
+ * advanced duration, so that HtmlUnit sees them due and reschedules periodic jobs consistently. The JavaScript
+ * <code>Date</code> is not virtualized.</p>
+ *
+ * @see HtmlUnitTestingEngineImpl#setVirtualTimeEnabled(boolean)
+ */
+public class VirtualClock implements RefreshHandler {
+
+  /**
+   * Maximum number of events run without the clock moving, to detect pages rescheduling a job forever.
+   */
+  private static final int MAX_EVENTS_AT_SAME_TIME = 10000;
+
+  private final WebClient client;
+
+  private JavaScriptEngine baseJavaScriptEngine;
+
+  private RefreshHandler baseRefreshHandler;
+
+  /**
+   * Delayed refreshes, in the order they are due. Due times are on the same time base as the JavaScript jobs.
+   */
+  private final List<PendingRefresh> refreshes = new ArrayList<>();
+
+  private long elapsed;
+
+  /**
+   * Number of jobs and refreshes run since the clock last moved.
+   */
+  private int executedAtSameTime;
+
+  /**
+   * @param client the web client to run in virtual time
+   */
+  public VirtualClock(WebClient client) {
+    this.client = client;
+  }
+
+  /**
+   * Replace the JavaScript engine and the refresh handler of the web client. Must be done before the first page is
+   * loaded.
+   */
+  public void install() {
+    baseJavaScriptEngine = client.getJavaScriptEngine();
+    baseRefreshHandler = client.getRefreshHandler();
+    client.setJavaScriptEngine(new VirtualTimeJavaScriptEngine(client));
+    client.setRefreshHandler(this);
+  }
+
+  /**
+   * Put back the JavaScript engine and the refresh handler replaced by {@link #install()}, and forget the pending
+   * refreshes.
+   */
+  public void uninstall() {
+    if (baseJavaScriptEngine != null) {
+      client.getJavaScriptEngine().shutdown();
+      client.setJavaScriptEngine(baseJavaScriptEngine);
+      client.setRefreshHandler(baseRefreshHandler);
+      baseJavaScriptEngine = null;
+      baseRefreshHandler = null;
+    }
+    refreshes.clear();
+  }
+
+  /**
+   * @return the virtual time elapsed since the clock was created, in milliseconds
+   */
+  public long getElapsed() {
+    return elapsed;
+  }
+
+  /**
+   * Move the clock forward, running in order all the JavaScript jobs and refreshes due in the period.
+   *
+   * @param duration the duration to advance, 0 to only run what is already due
+   * @param unit unit of the duration
+   * @return the number of jobs and refreshes run
+   */
+  public int advance(long duration, TimeUnit unit) {
+    if (duration < 0) {
+      throw new IllegalArgumentException("Can't go back in time: " + duration);
+    }
+    long remaining = unit.toMillis(duration);
+    int executed = 0;
+    executedAtSameTime = 0;
+    long delay;
+    while ((delay = runNextEvent(remaining)) >= 0) {
+      remaining -= delay;
+      executed++;
+    }
+    return executed;
+  }
+
+  /**
+   * Move the clock forward to the next JavaScript job or refresh, and run it. If nothing is due within the maximum
+   * delay, the clock is moved by the maximum delay and nothing is run.
+   *
+   * @param maxDelay the maximum duration to advance, in milliseconds
+   * @return the duration the clock was moved by before running the job or refresh, -1 if nothing was run
+   */
+  public long runNextEvent(long maxDelay) {
+    long now = System.currentTimeMillis();
+    JavaScriptJobManager jobManager = null;
+    JavaScriptJob job = null;
+    long due = Long.MAX_VALUE;
+    for (WebWindow window : client.getWebWindows()) {
+      JavaScriptJob earliest = window.getJobManager().getEarliestJob();
+      if (earliest != null && earliest.getTargetExecutionTime() < due) {
+        jobManager = window.getJobManager();
+        job = earliest;
+        due = earliest.getTargetExecutionTime();
+      }
+    }
+    PendingRefresh refresh = refreshes.isEmpty() ? null : refreshes.get(0);
+    if (refresh != null && refresh.due < due) {
+      job = null;
+      due = refresh.due;
+    }
+    long delay = Math.max(0, due - now);
+    if ((job == null && refresh == null) || delay > maxDelay) {
+      shift(maxDelay);
+      return -1;
+    }
+    shift(delay);
+    if (delay > 0) {
+      executedAtSameTime = 0;
+    } else if (++executedAtSameTime > MAX_EVENTS_AT_SAME_TIME) {
+      throw new IllegalStateException("More than " + MAX_EVENTS_AT_SAME_TIME
+        + " JavaScript jobs or refreshes without the clock moving, is a job rescheduling itself without delay?");
+    }
+    if (job != null) {
+      jobManager.runSingleJob(job);
+    } else {
+      refreshes.remove(0);
+      refresh.run();
+    }
+    return delay;
+  }
+
+  /**
+   * Move all the pending jobs and refreshes closer by a duration, and count it as elapsed.
+   */
+  private void shift(final long millis) {
+    if (millis == 0) {
+      return;
+    }
+    elapsed += millis;
+    JavaScriptJobFilter shifter = new JavaScriptJobFilter() {
+      @Override
+      public boolean passes(JavaScriptJob job) {
+        // moving all the jobs by the same duration keeps the order of the job queue
+        job.setTargetExecutionTime(job.getTargetExecutionTime() - millis);
+        return false;
+      }
+    };
+    for (WebWindow window : client.getWebWindows()) {
+      window.getJobManager().getJobCount(shifter);
+    }
+    for (PendingRefresh refresh : refreshes) {
+      refresh.due -= millis;
+    }
+  }
+
+  /**
+   * Schedule a refresh in virtual time. Refreshes without delay are done immediately.
+   */
+  @Override
+  public void handleRefresh(Page page, URL url, int seconds) throws IOException {
+    if (seconds <= 0) {
+      new ImmediateRefreshHandler().handleRefresh(page, url, seconds);
+      return;
+    }
+    PendingRefresh refresh = new PendingRefresh(page, url, System.currentTimeMillis() + seconds * 1000L);
+    int i = refreshes.size();
+    while (i > 0 && refreshes.get(i - 1).due > refresh.due) {
+      i--;
+    }
+    refreshes.add(i, refresh);
+  }
+
+  /**
+   * A refresh waiting for its delay.
+   */
+  private final class PendingRefresh {
+
+    private final Page page;
+
+    private final URL url;
+
+    private long due;
+
+    PendingRefresh(Page page, URL url, long due) {
+      this.page = page;
+      this.url = url;
+      this.due = due;
+    }
+
+    /**
+     * Load the refresh URL, unless the window has left the page in the meantime.
+     */
+    void run() {
+      WebWindow window = page.getEnclosingWindow();
+      if (window == null || window.getEnclosedPage() != page || !client.getWebWindows().contains(window)) {
+        return;
+      }
+      try {
+        client.getPage(window, new WebRequest(url));
+      } catch (IOException e) {
+        throw new RuntimeException("Unable to refresh to " + url, e);
+      }
+    }
+  }
+
+  /**
+   * A JavaScript engine without background thread, the jobs only run when the clock is advanced.
+   */
+  private static final class VirtualTimeJavaScriptEngine extends JavaScriptEngine {
+
+    VirtualTimeJavaScriptEngine(WebClient client) {
+      super(client);
+    }
+
+    @Override
+    public synchronized void registerWindowAndMaybeStartEventLoop(WebWindow webWindow) {
+      // no event loop, jobs are run by VirtualClock#advance
+    }
+  }
+
+}
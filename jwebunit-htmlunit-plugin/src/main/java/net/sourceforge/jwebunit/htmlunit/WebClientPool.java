@@ -0,0 +1,223 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.htmlunit;
+
+import com.gargoylesoftware.htmlunit.BrowserVersion;
+import com.gargoylesoftware.htmlunit.DefaultCredentialsProvider;
+import com.gargoylesoftware.htmlunit.TopLevelWindow;
+import com.gargoylesoftware.htmlunit.WebClient;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A pool of {@link WebClient} instances that can be shared by several {@link HtmlUnitTestingEngineImpl}, so that the
+ * cost of creating a new client (and its Javascript engine) is only paid once per configuration instead of once per
+ * test.
+ *
+ * <p>Clients are keyed on the effective {@link BrowserVersion}, the proxy settings and the Javascript flag. When a
+ * client is given back to the pool its windows are closed and its cookies, cache, credentials and handlers are reset,
+ * so that the next lease starts from a blank conversation.</p>
+ *
+ * <p>The pool is opt-in, see {@link HtmlUnitTestingEngineImpl#setWebClientPool(WebClientPool)}. It is safe to share a
+ * single pool between threads.</p>
+ */
+public class WebClientPool {
+
+  /**
+   * Default number of idle clients kept for each configuration.
+   */
+  public static final int DEFAULT_MAX_IDLE_PER_KEY = 8;
+
+  /**
+   * Logger for this class.
+   */
+  private final Logger logger = LoggerFactory.getLogger(WebClientPool.class);
+
+  /**
+   * Idle clients, by configuration key.
+   */
+  private final Map<String, LinkedList<WebClient>> idleClients = new HashMap<>();
+
+  /**
+   * Maximum number of idle clients kept for each configuration.
+   */
+  private final int maxIdlePerKey;
+
+  private final AtomicLong hitCount = new AtomicLong();
+
+  private final AtomicLong missCount = new AtomicLong();
+
+  /**
+   * Create a pool keeping at most {@link #DEFAULT_MAX_IDLE_PER_KEY} idle clients for each configuration.
+   */
+  public WebClientPool() {
+    this(DEFAULT_MAX_IDLE_PER_KEY);
+  }
+
+  /**
+   * Create a pool.
+   *
+   * @param maxIdlePerKey maximum number of idle clients kept for each configuration. Clients released when this limit
+   *          is reached are closed.
+   */
+  public WebClientPool(int maxIdlePerKey) {
+    if (maxIdlePerKey < 1) {
+      throw new IllegalArgumentException("maxIdlePerKey must be greater than 0");
+    }
+    this.maxIdlePerKey = maxIdlePerKey;
+  }
+
+  /**
+   * Take an idle client matching the given configuration out of the pool.
+   *
+   * @param browserVersion effective browser version
+   * @param proxyHost proxy host, or <code>null</code> if no proxy is used
+   * @param proxyPort proxy port
+   * @param jsEnabled is Javascript enabled
+   * @return an idle client, or <code>null</code> if none is available and a new one must be created by the caller
+   */
+  public WebClient lease(BrowserVersion browserVersion, String proxyHost, int proxyPort, boolean jsEnabled) {
+    String key = getKey(browserVersion, proxyHost, proxyPort, jsEnabled);
+    WebClient client = null;
+    synchronized (idleClients) {
+      LinkedList<WebClient> clients = idleClients.get(key);
+      if (clients != null) {
+        client = clients.poll();
+      }
+    }
+    if (client == null) {
+      missCount.incrementAndGet();
+    } else {
+      hitCount.incrementAndGet();
+    }
+    return client;
+  }
+
+  /**
+   * Give a client back to the pool. The client is reset before being made available to the next lease. If it can't be
+   * reset, or if enough clients with the same configuration are already idle, it is closed instead.
+   *
+   * @param client the client to release
+   */
+  public void release(WebClient client) {
+    try {
+      reset(client);
+    } catch (RuntimeException e) {
+      logger.warn("Unable to reset web client, it will not be reused", e);
+      client.close();
+      return;
+    }
+    String key = getKey(client);
+    synchronized (idleClients) {
+      LinkedList<WebClient> clients = idleClients.get(key);
+      if (clients == null) {
+        clients = new LinkedList<>();
+        idleClients.put(key, clients);
+      }
+      if (clients.size() < maxIdlePerKey) {
+        clients.add(client);
+        return;
+      }
+    }
+    client.close();
+  }
+
+  /**
+   * Close all idle clients. Clients currently leased are not affected and can still be released later.
+   */
+  public void clear() {
+    List<WebClient> clients = new ArrayList<>();
+    synchronized (idleClients) {
+      for (LinkedList<WebClient> idle : idleClients.values()) {
+        clients.addAll(idle);
+      }
+      idleClients.clear();
+    }
+    for (WebClient client : clients) {
+      client.close();
+    }
+  }
+
+  /**
+   * @return number of leases served by an idle client.
+   */
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  /**
+   * @return number of leases that required a new client.
+   */
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  /**
+   * @return number of clients currently idle in the pool.
+   */
+  public int getIdleCount() {
+    int count = 0;
+    synchronized (idleClients) {
+      for (LinkedList<WebClient> idle : idleClients.values()) {
+        count += idle.size();
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Bring a client back to the state of a newly created one, as far as the conversation is concerned.
+   *
+   * @param client the client to reset
+   */
+  protected void reset(WebClient client) {
+    // Closing the last top level window makes the client open a new blank one.
+    for (TopLevelWindow window : new ArrayList<>(client.getTopLevelWindows())) {
+      window.close();
+    }
+    client.getCookieManager().clearCookies();
+    client.getCache().clear();
+    client.setCredentialsProvider(new DefaultCredentialsProvider());
+    client.setAlertHandler(null);
+    client.setConfirmHandler(null);
+    client.setPromptHandler(null);
+    client.setRefreshHandler(null);
+  }
+
+  private static String getKey(WebClient client) {
+    return getKey(client.getBrowserVersion(), client.getOptions().getProxyConfig().getProxyHost(), client.getOptions()
+        .getProxyConfig().getProxyPort(), client.getOptions().isJavaScriptEnabled());
+  }
+
+  private static String getKey(BrowserVersion browserVersion, String proxyHost, int proxyPort, boolean jsEnabled) {
+    StringBuilder key = new StringBuilder();
+    key.append(browserVersion.getNickname()).append('|').append(browserVersion.getUserAgent()).append('|');
+    if (proxyHost != null) {
+      key.append(proxyHost).append(':').append(proxyPort);
+    }
+    return key.append('|').append(jsEnabled).toString();
+  }
+
+}
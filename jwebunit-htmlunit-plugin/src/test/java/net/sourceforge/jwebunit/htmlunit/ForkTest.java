@@ -0,0 +1,144 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.htmlunit;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.sourceforge.jwebunit.api.ILocalTransport;
+import net.sourceforge.jwebunit.junit.WebTester;
+import net.sourceforge.jwebunit.tests.util.JettySetup;
+import net.sourceforge.jwebunit.util.TestContext;
+import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.webapp.WebAppContext;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static net.sourceforge.jwebunit.junit.JWebUnit.assertCheckboxSelected;
+import static net.sourceforge.jwebunit.junit.JWebUnit.assertTextFieldEquals;
+import static net.sourceforge.jwebunit.junit.JWebUnit.beginAt;
+import static net.sourceforge.jwebunit.junit.JWebUnit.checkCheckbox;
+import static net.sourceforge.jwebunit.junit.JWebUnit.closeBrowser;
+import static net.sourceforge.jwebunit.junit.JWebUnit.fork;
+import static net.sourceforge.jwebunit.junit.JWebUnit.getTestContext;
+import static net.sourceforge.jwebunit.junit.JWebUnit.gotoPage;
+import static net.sourceforge.jwebunit.junit.JWebUnit.setTestContext;
+import static net.sourceforge.jwebunit.junit.JWebUnit.setTextField;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Check that a forked conversation starts on the same page, form values and cookies without any request, and then
+ * goes on independently.
+ */
+public class ForkTest {
+
+  /**
+   * Nothing listens on this port, the requests only go through the local connector.
+   */
+  private static final String BASE_URL = "http://localhost:1/jwebunit";
+
+  private static Server server;
+
+  private static JettyLocalTransport transport;
+
+  private final AtomicInteger requests = new AtomicInteger();
+
+  private TestContext previousContext;
+
+  @BeforeClass
+  public static void startServer() throws Exception {
+    server = new Server();
+    server.setConnectors(new Connector[0]);
+    WebAppContext webapp = new WebAppContext();
+    webapp.setContextPath("/jwebunit");
+    webapp.setWar(JettySetup.class.getResource("/testcases/").toString());
+    server.setHandler(webapp);
+    transport = JettyLocalTransport.attach(server);
+    server.start();
+  }
+
+  @AfterClass
+  public static void stopServer() throws Exception {
+    server.stop();
+  }
+
+  @Before
+  public void setUp() {
+    previousContext = getTestContext();
+    TestContext context = new TestContext();
+    context.setBaseUrl(BASE_URL);
+    context.setLocalTransport(new ILocalTransport() {
+      @Override
+      public byte[] exchange(byte[] request, int timeout) throws IOException {
+        requests.incrementAndGet();
+        return transport.exchange(request, timeout);
+      }
+    });
+    setTestContext(context);
+  }
+
+  @After
+  public void cleanup() {
+    closeBrowser();
+    setTestContext(previousContext);
+  }
+
+  @Test
+  public void testFork() {
+    beginAt("/cookies.jsp");
+    gotoPage("/FormSubmissionTest/SingleNamedButtonForm.html");
+    setTextField("color", "blue");
+    checkCheckbox("checkBox");
+
+    int before = requests.get();
+    WebTester red = fork();
+    WebTester green = fork();
+    assertEquals("forking should not send any request", before, requests.get());
+
+    red.assertTextFieldEquals("color", "blue");
+    red.assertCheckboxSelected("checkBox");
+    red.setTextField("color", "red");
+    green.setTextField("color", "green");
+    red.submit("button");
+    green.submit("button");
+    red.assertTextPresent("color=[red]");
+    green.assertTextPresent("color=[green]");
+    assertTextFieldEquals("color", "blue");
+    assertCheckboxSelected("checkBox");
+
+    green.gotoPage("/cookies.jsp?dont_set=1");
+    green.assertTextPresent("serveurCookie=foo");
+    red.closeBrowser();
+    green.closeBrowser();
+  }
+
+  @Test
+  public void testForkHasOwnTestContext() {
+    getTestContext().addRequestHeader("X-Branch", "main");
+    beginAt("/FormSubmissionTest/SingleNamedButtonForm.html");
+    WebTester branch = fork();
+    branch.getTestContext().addRequestHeader("X-Branch", "fork");
+    assertEquals("main", getTestContext().getRequestHeaders().get("X-Branch"));
+    branch.closeBrowser();
+  }
+
+}
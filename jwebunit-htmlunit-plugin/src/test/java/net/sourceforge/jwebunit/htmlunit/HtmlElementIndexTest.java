@@ -0,0 +1,78 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.htmlunit;
+
+import com.gargoylesoftware.htmlunit.MockWebConnection;
+import com.gargoylesoftware.htmlunit.WebClient;
+import com.gargoylesoftware.htmlunit.html.HtmlElement;
+import com.gargoylesoftware.htmlunit.html.HtmlPage;
+import java.net.URL;
+import junit.framework.TestCase;
+
+public class HtmlElementIndexTest extends TestCase {
+
+  private WebClient client;
+
+  private HtmlPage page;
+
+  private HtmlElementIndex index;
+
+  @Override
+  protected void setUp() throws Exception {
+    URL url = new URL("http://localhost/index.html");
+    MockWebConnection connection = new MockWebConnection();
+    connection.setResponse(url, "<html><body><form id='f'>"
+      + "<input type='text' name='field' id='first'/>"
+      + "<input type='submit' name='field' id='second'/>"
+      + "</form></body></html>");
+    client = new WebClient();
+    client.setWebConnection(connection);
+    page = client.getPage(url);
+    index = new HtmlElementIndex(page);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    index.dispose();
+    client.close();
+  }
+
+  public void testLookupIsInDocumentOrder() {
+    assertEquals(2, index.getElements("name", "field").size());
+    assertEquals("first", index.getElement("name", "field").getId());
+    assertEquals("second", index.getElement("type", "submit").getId());
+    assertNull(index.getElement("id", "missing"));
+  }
+
+  public void testIndexFollowsDomMutations() {
+    assertNull(index.getElement("name", "added"));
+    HtmlElement input = (HtmlElement) page.createElement("input");
+    input.setAttribute("name", "added");
+    page.getHtmlElementById("f").appendChild(input);
+    assertSame(input, index.getElement("name", "added"));
+
+    input.setAttribute("name", "renamed");
+    assertNull(index.getElement("name", "added"));
+    assertSame(input, index.getElement("name", "renamed"));
+
+    input.remove();
+    assertNull(index.getElement("name", "renamed"));
+  }
+
+}
@@ -21,7 +21,13 @@ package net.sourceforge.jwebunit.htmlunit;
 import com.gargoylesoftware.htmlunit.WebClient;
 import com.gargoylesoftware.htmlunit.WebClientOptions;
 import junit.framework.TestCase;
+import net.sourceforge.jwebunit.api.IBatchTestingEngine;
+import net.sourceforge.jwebunit.api.IRequestFilteringEngine;
+import net.sourceforge.jwebunit.api.IStreamingTableEngine;
 import net.sourceforge.jwebunit.api.ITestingEngine;
+import net.sourceforge.jwebunit.junit.WebTester;
+import net.sourceforge.jwebunit.util.EngineInstrumentation;
+import net.sourceforge.jwebunit.util.TestingEngineRegistry;
 
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
@@ -39,4 +45,23 @@ public class HtmlUnitTestingEngineImplTest extends TestCase {
     verify(options).setThrowExceptionOnScriptError(true);
   }
 
+  public void testInstrumentedEngineCanBeUnwrapped() {
+    EngineInstrumentation.setEnabled(true);
+    try {
+      WebTester tester = new WebTester();
+      tester.setTestingEngineKey(TestingEngineRegistry.TESTING_ENGINE_HTMLUNIT);
+      ITestingEngine engine = tester.getTestingEngine();
+      assertFalse(engine instanceof HtmlUnitTestingEngineImpl);
+      assertTrue(engine instanceof IBatchTestingEngine);
+      assertTrue(engine instanceof IStreamingTableEngine);
+      assertTrue(engine instanceof IRequestFilteringEngine);
+      HtmlUnitTestingEngineImpl unwrapped = (HtmlUnitTestingEngineImpl) tester.getUnwrappedTestingEngine();
+      unwrapped.setVirtualTimeEnabled(true);
+      assertTrue(unwrapped.isVirtualTimeEnabled());
+    } finally {
+      EngineInstrumentation.setEnabled(false);
+      EngineInstrumentation.reset();
+    }
+  }
+
 }
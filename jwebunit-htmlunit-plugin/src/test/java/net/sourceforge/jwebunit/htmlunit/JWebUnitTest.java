@@ -33,6 +33,12 @@ import net.sourceforge.jwebunit.tests.HtmlParsingTest;
 import net.sourceforge.jwebunit.tests.IElementTest;
 import net.sourceforge.jwebunit.tests.ImageTest;
 import net.sourceforge.jwebunit.tests.ConcurrentJWebUnitTest;
+import net.sourceforge.jwebunit.tests.ParallelRunnerTest;
+import net.sourceforge.jwebunit.tests.RequestFilterTest;
+import net.sourceforge.jwebunit.tests.RequestLogTest;
+import net.sourceforge.jwebunit.tests.WaitForTest;
+import net.sourceforge.jwebunit.tests.CheckpointTest;
+import net.sourceforge.jwebunit.tests.SimulatedUsersTest;
 import net.sourceforge.jwebunit.tests.JavaScriptEventsTest;
 import net.sourceforge.jwebunit.tests.JavaScriptTest;
 import net.sourceforge.jwebunit.tests.NavigationTest;
@@ -83,7 +89,13 @@ import org.junit.runners.Suite;
     IElementTest.class,
     ResponseServletTest.class,
     CustomTesterTest.class,
-    ConcurrentJWebUnitTest.class
+    ConcurrentJWebUnitTest.class,
+    ParallelRunnerTest.class,
+    SimulatedUsersTest.class,
+    RequestFilterTest.class,
+    RequestLogTest.class,
+    WaitForTest.class,
+    CheckpointTest.class
 })
 public class JWebUnitTest extends JettySetup {
    
@@ -0,0 +1,129 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.htmlunit;
+
+import java.net.SocketTimeoutException;
+import net.sourceforge.jwebunit.tests.util.JettySetup;
+import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.webapp.WebAppContext;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static net.sourceforge.jwebunit.junit.JWebUnit.assertTextPresent;
+import static net.sourceforge.jwebunit.junit.JWebUnit.assertTitleEquals;
+import static net.sourceforge.jwebunit.junit.JWebUnit.beginAt;
+import static net.sourceforge.jwebunit.junit.JWebUnit.closeBrowser;
+import static net.sourceforge.jwebunit.junit.JWebUnit.getTestContext;
+import static net.sourceforge.jwebunit.junit.JWebUnit.gotoPage;
+import static net.sourceforge.jwebunit.junit.JWebUnit.setBaseUrl;
+import static net.sourceforge.jwebunit.junit.JWebUnit.setTextField;
+import static net.sourceforge.jwebunit.junit.JWebUnit.setTimeout;
+import static net.sourceforge.jwebunit.junit.JWebUnit.submit;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Run the test webapp in a Jetty server without any network connector, and browse it through a
+ * {@link JettyLocalTransport}.
+ */
+public class LocalWebConnectionTest {
+
+  /**
+   * Nothing listens on this port, the requests only go through the local connector.
+   */
+  private static final String BASE_URL = "http://localhost:1/jwebunit";
+
+  private static Server server;
+
+  private static JettyLocalTransport transport;
+
+  @BeforeClass
+  public static void startServer() throws Exception {
+    server = new Server();
+    server.setConnectors(new Connector[0]);
+    WebAppContext webapp = new WebAppContext();
+    webapp.setContextPath("/jwebunit");
+    webapp.setWar(JettySetup.class.getResource("/testcases/").toString());
+    server.setHandler(webapp);
+    transport = JettyLocalTransport.attach(server);
+    server.start();
+  }
+
+  @AfterClass
+  public static void stopServer() throws Exception {
+    server.stop();
+  }
+
+  @Before
+  public void setUp() {
+    getTestContext().setLocalTransport(transport);
+    setBaseUrl(BASE_URL);
+  }
+
+  @Test
+  public void testPage() {
+    beginAt("/helloworld.html");
+    assertTitleEquals("Hello, World!");
+    assertEquals(1, server.getConnectors().length);
+  }
+
+  @Test
+  public void testFormSubmission() {
+    setBaseUrl(BASE_URL + "/FormSubmissionTest");
+    beginAt("/SingleNamedButtonForm.html");
+    setTextField("color", "blue");
+    submit("button");
+    assertTextPresent("Submitted parameters");
+    assertTextPresent("color=[blue]");
+  }
+
+  @Test
+  public void testCookies() {
+    beginAt("/cookies.jsp");
+    gotoPage("/cookies.jsp?dont_set=true");
+    assertTextPresent("serveurCookie=foo");
+  }
+
+  @Test
+  public void testTimeout() {
+    setTimeout(500);
+    setBaseUrl(BASE_URL + "/ResponseServletTest");
+    beginAt("/SimpleForm.html");
+    setTextField("timeout", "1");
+    try {
+      submit();
+      fail("timeout was not called");
+    } catch (RuntimeException e) {
+      assertTrue(e.getCause() instanceof SocketTimeoutException);
+    }
+  }
+
+  @After
+  public void cleanup() {
+    closeBrowser();
+    setTimeout(0);
+    getTestContext().setLocalTransport(null);
+  }
+
+}
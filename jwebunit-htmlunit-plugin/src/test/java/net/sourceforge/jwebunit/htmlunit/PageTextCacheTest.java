@@ -0,0 +1,95 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.htmlunit;
+
+import com.gargoylesoftware.htmlunit.MockWebConnection;
+import com.gargoylesoftware.htmlunit.WebClient;
+import com.gargoylesoftware.htmlunit.html.HtmlCheckBoxInput;
+import com.gargoylesoftware.htmlunit.html.HtmlElement;
+import com.gargoylesoftware.htmlunit.html.HtmlPage;
+import java.net.URL;
+import junit.framework.TestCase;
+
+public class PageTextCacheTest extends TestCase {
+
+  private WebClient client;
+
+  private HtmlPage page;
+
+  private HtmlElementIndex index;
+
+  private PageTextCache cache;
+
+  @Override
+  protected void setUp() throws Exception {
+    URL url = new URL("http://localhost/index.html");
+    MockWebConnection connection = new MockWebConnection();
+    connection.setResponse(url, "<html><body><p id='p'>Hello</p>"
+      + "<form><input type='checkbox' name='c' id='c'/></form>"
+      + "</body></html>");
+    client = new WebClient();
+    client.setWebConnection(connection);
+    page = client.getPage(url);
+    index = new HtmlElementIndex(page);
+    cache = new PageTextCache(index);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    cache.dispose();
+    index.dispose();
+    client.close();
+  }
+
+  public void testTextIsCached() {
+    HtmlElement p = page.getHtmlElementById("p");
+    assertEquals("Hello", cache.getText(p));
+    assertSame(cache.getText(p), cache.getText(p));
+    assertSame(cache.getPageText(), cache.getPageText());
+  }
+
+  public void testCacheFollowsDomMutations() {
+    HtmlElement p = page.getHtmlElementById("p");
+    assertEquals("Hello", cache.getText(p));
+    p.getFirstChild().setNodeValue("Goodbye");
+    assertEquals("Goodbye", cache.getText(p));
+    assertTrue(cache.getPageText().contains("Goodbye"));
+
+    p.appendChild(page.createTextNode(" world"));
+    assertEquals("Goodbye world", cache.getText(p));
+  }
+
+  public void testCacheFollowsFormState() {
+    String unchecked = cache.getPageText();
+    HtmlCheckBoxInput checkbox = page.getHtmlElementById("c");
+    checkbox.setChecked(true);
+    assertFalse(unchecked.equals(cache.getPageText()));
+  }
+
+  public void testCacheIsKeptUntilInvalidated() {
+    client.getOptions().setJavaScriptEnabled(false);
+    String unchecked = cache.getPageText();
+    HtmlCheckBoxInput checkbox = page.getHtmlElementById("c");
+    checkbox.setChecked(true);
+    assertSame(unchecked, cache.getPageText());
+    cache.invalidate();
+    assertFalse(unchecked.equals(cache.getPageText()));
+  }
+
+}
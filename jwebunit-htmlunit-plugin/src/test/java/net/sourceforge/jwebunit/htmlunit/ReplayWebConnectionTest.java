@@ -0,0 +1,154 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.htmlunit;
+
+import java.io.File;
+import java.io.IOException;
+import net.sourceforge.jwebunit.api.ILocalTransport;
+import net.sourceforge.jwebunit.exception.TestingEngineResponseException;
+import net.sourceforge.jwebunit.tests.util.JettySetup;
+import net.sourceforge.jwebunit.util.HttpArchive;
+import net.sourceforge.jwebunit.util.HttpArchiveMode;
+import net.sourceforge.jwebunit.util.TestContext;
+import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.webapp.WebAppContext;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static net.sourceforge.jwebunit.junit.JWebUnit.assertTextPresent;
+import static net.sourceforge.jwebunit.junit.JWebUnit.assertTitleEquals;
+import static net.sourceforge.jwebunit.junit.JWebUnit.beginAt;
+import static net.sourceforge.jwebunit.junit.JWebUnit.closeBrowser;
+import static net.sourceforge.jwebunit.junit.JWebUnit.getTestContext;
+import static net.sourceforge.jwebunit.junit.JWebUnit.gotoPage;
+import static net.sourceforge.jwebunit.junit.JWebUnit.setTestContext;
+import static net.sourceforge.jwebunit.junit.JWebUnit.setTextField;
+import static net.sourceforge.jwebunit.junit.JWebUnit.submit;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Record a conversation with the test webapp, then replay it from the stored archive with the server out of reach.
+ */
+public class ReplayWebConnectionTest {
+
+  /**
+   * Nothing listens on this port, the requests only go through the local connector.
+   */
+  private static final String BASE_URL = "http://localhost:1/jwebunit";
+
+  private static Server server;
+
+  private static JettyLocalTransport transport;
+
+  private TestContext previousContext;
+
+  @BeforeClass
+  public static void startServer() throws Exception {
+    server = new Server();
+    server.setConnectors(new Connector[0]);
+    WebAppContext webapp = new WebAppContext();
+    webapp.setContextPath("/jwebunit");
+    webapp.setWar(JettySetup.class.getResource("/testcases/").toString());
+    server.setHandler(webapp);
+    transport = JettyLocalTransport.attach(server);
+    server.start();
+  }
+
+  @AfterClass
+  public static void stopServer() throws Exception {
+    server.stop();
+  }
+
+  @Before
+  public void setUp() {
+    previousContext = getTestContext();
+  }
+
+  @After
+  public void cleanup() {
+    closeBrowser();
+    setTestContext(previousContext);
+  }
+
+  private static void useContext(HttpArchive archive, HttpArchiveMode mode, ILocalTransport localTransport) {
+    TestContext context = new TestContext();
+    context.setBaseUrl(BASE_URL);
+    context.setLocalTransport(localTransport);
+    context.setHttpArchive(archive, mode);
+    setTestContext(context);
+  }
+
+  private static void browse() {
+    beginAt("/cookies.jsp");
+    gotoPage("/cookies.jsp?dont_set=1");
+    assertTextPresent("serveurCookie=foo");
+    gotoPage("/FormSubmissionTest/SingleNamedButtonForm.html");
+    setTextField("color", "blue");
+    submit("button");
+    assertTextPresent("color=[blue]");
+  }
+
+  @Test
+  public void testRecordAndReplay() throws Exception {
+    HttpArchive archive = new HttpArchive();
+    useContext(archive, HttpArchiveMode.RECORD, transport);
+    browse();
+    closeBrowser();
+    assertTrue("responses recorded: " + archive.size(), archive.size() >= 4);
+
+    File file = File.createTempFile("archive", ".zip");
+    try {
+      archive.store(file);
+      useContext(HttpArchive.load(file), HttpArchiveMode.REPLAY, new ILocalTransport() {
+        @Override
+        public byte[] exchange(byte[] request, int timeout) throws IOException {
+          throw new IOException("No request should be sent when replaying");
+        }
+      });
+      browse();
+    } finally {
+      file.delete();
+    }
+  }
+
+  @Test
+  public void testReplayNotRecorded() {
+    HttpArchive archive = new HttpArchive();
+    useContext(archive, HttpArchiveMode.RECORD, transport);
+    beginAt("/helloworld.html");
+    closeBrowser();
+
+    useContext(archive, HttpArchiveMode.REPLAY, null);
+    beginAt("/helloworld.html");
+    assertTitleEquals("Hello, World!");
+    try {
+      gotoPage("/cookies.jsp");
+      fail("Expected a 404 response");
+    } catch (TestingEngineResponseException e) {
+      assertEquals(404, e.getHttpStatusCode());
+    }
+  }
+
+}
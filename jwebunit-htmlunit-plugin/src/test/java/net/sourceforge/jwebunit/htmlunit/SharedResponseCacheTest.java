@@ -0,0 +1,185 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.htmlunit;
+
+import com.gargoylesoftware.htmlunit.Cache;
+import com.gargoylesoftware.htmlunit.MockWebConnection;
+import com.gargoylesoftware.htmlunit.WebClient;
+import com.gargoylesoftware.htmlunit.WebRequest;
+import com.gargoylesoftware.htmlunit.WebResponse;
+import com.gargoylesoftware.htmlunit.WebResponseData;
+import com.gargoylesoftware.htmlunit.util.NameValuePair;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import net.sourceforge.jwebunit.util.CachePolicy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Check that web clients sharing a {@link SharedResponseCache} download a script only once, that the objects parsed
+ * from the responses are kept by each client, and that the HTTP caching headers are honoured.
+ */
+public class SharedResponseCacheTest {
+
+  private static final String PAGE = "<html><head><script src='app.js'></script></head><body>Hello</body></html>";
+
+  private URL pageUrl;
+
+  private URL scriptUrl;
+
+  private MockWebConnection connection;
+
+  private SharedResponseCache cache;
+
+  @Before
+  public void setUp() throws Exception {
+    pageUrl = new URL("http://localhost/index.html");
+    scriptUrl = new URL("http://localhost/app.js");
+    connection = new MockWebConnection();
+    connection.setResponse(pageUrl, PAGE);
+    cache = new SharedResponseCache(false);
+  }
+
+  @After
+  public void tearDown() {
+    cache.clear();
+  }
+
+  @Test
+  public void testScriptIsSharedBetweenClients() throws Exception {
+    setScript(Collections.singletonList(new NameValuePair("Cache-Control", "public, max-age=3600")));
+
+    browse();
+    browse();
+
+    assertEquals(1, countScriptRequests());
+    assertEquals(1, cache.getHitCount());
+    // the page itself is looked up in the cache too
+    assertEquals(3, cache.getMissCount());
+    assertEquals(0.25, cache.getHitRate(), 0.001);
+    assertEquals("var a = 1;".length(), cache.getBytesSaved());
+  }
+
+  @Test
+  public void testNoStoreIsNotCached() throws Exception {
+    setScript(Arrays.asList(new NameValuePair("Cache-Control", "no-store"),
+      new NameValuePair("Expires", "Thu, 01 Jan 2099 00:00:00 GMT")));
+
+    browse();
+    browse();
+
+    assertEquals(2, countScriptRequests());
+    assertEquals(0, cache.getHitCount());
+  }
+
+  @Test
+  public void testExpiredEntryIsDownloadedAgain() throws Exception {
+    setScript(Collections.singletonList(new NameValuePair("Cache-Control", "max-age=0")));
+
+    browse();
+    browse();
+
+    assertEquals(2, countScriptRequests());
+  }
+
+  @Test
+  public void testImmutableAssetsIgnoreHeaders() throws Exception {
+    cache = new SharedResponseCache(true);
+    setScript(Collections.<NameValuePair>emptyList());
+
+    browse();
+    browse();
+
+    assertEquals(1, countScriptRequests());
+  }
+
+  @Test
+  public void testEntryLengthLimit() throws Exception {
+    cache.setMaxEntryLength(4);
+    setScript(Collections.singletonList(new NameValuePair("Cache-Control", "max-age=3600")));
+
+    browse();
+    browse();
+
+    assertEquals(2, countScriptRequests());
+  }
+
+  @Test
+  public void testParsedObjectsAreNotShared() throws Exception {
+    WebRequest request = new WebRequest(new URL("http://localhost/style.css"));
+    WebResponse response = new WebResponse(new WebResponseData("p {}".getBytes("UTF-8"), 200, "OK",
+      Arrays.asList(new NameValuePair("Content-Type", "text/css"),
+        new NameValuePair("Cache-Control", "max-age=3600"))), request, 0);
+    ClientCache first = new ClientCache(cache);
+    ClientCache second = new ClientCache(cache);
+    Object styleSheet = new Object();
+
+    assertTrue(first.cacheIfPossible(request, response, styleSheet));
+
+    assertSame(styleSheet, first.getCachedObject(request));
+    assertNull(second.getCachedObject(request));
+    assertSame(response, second.getCachedResponse(request));
+    first.clear();
+    assertSame(response, second.getCachedResponse(request));
+  }
+
+  @Test
+  public void testInstancePerPolicy() {
+    assertSame(SharedResponseCache.getInstance(CachePolicy.SHARED),
+      SharedResponseCache.getInstance(CachePolicy.SHARED));
+    assertEquals(true, SharedResponseCache.getInstance(CachePolicy.SHARED_IMMUTABLE_ASSETS).isImmutableAssets());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNoInstanceForPerBrowserPolicy() {
+    SharedResponseCache.getInstance(CachePolicy.PER_BROWSER);
+  }
+
+  private void setScript(List<NameValuePair> headers) {
+    connection.setResponse(scriptUrl, "var a = 1;", 200, "OK", "application/javascript", headers);
+  }
+
+  private void browse() throws Exception {
+    WebClient client = new WebClient();
+    try {
+      client.setWebConnection(connection);
+      client.setCache(new ClientCache(cache));
+      client.getPage(pageUrl);
+    } finally {
+      // like the engine, restore a cache of its own before closing the client, so that the lookups done to clean up
+      // the pages aren't counted
+      client.setCache(new Cache());
+      client.close();
+    }
+  }
+
+  private int countScriptRequests() {
+    // each browse() loads the page once
+    return connection.getRequestCount() - 2;
+  }
+
+}
@@ -0,0 +1,141 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.htmlunit;
+
+import com.gargoylesoftware.htmlunit.MockWebConnection;
+import com.gargoylesoftware.htmlunit.WebClient;
+import com.gargoylesoftware.htmlunit.html.HtmlPage;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Check that timers and delayed refreshes only run when the {@link VirtualClock} is advanced.
+ */
+public class VirtualClockTest {
+
+  private URL pageUrl;
+
+  private MockWebConnection connection;
+
+  private WebClient client;
+
+  private VirtualClock clock;
+
+  @Before
+  public void setUp() throws Exception {
+    pageUrl = new URL("http://localhost/index.html");
+    connection = new MockWebConnection();
+    client = new WebClient();
+    client.setWebConnection(connection);
+    clock = new VirtualClock(client);
+    clock.install();
+  }
+
+  @After
+  public void tearDown() {
+    clock.uninstall();
+    client.close();
+  }
+
+  @Test
+  public void testTimeout() throws Exception {
+    connection.setResponse(pageUrl, "<html><head><title>Waiting</title><script>"
+      + "setTimeout(function() { document.title = 'Done'; }, 30000);"
+      + "</script></head><body></body></html>");
+    HtmlPage page = client.getPage(pageUrl);
+
+    assertEquals(0, clock.advance(29, TimeUnit.SECONDS));
+    assertEquals("Waiting", page.getTitleText());
+    assertEquals(1, clock.advance(1, TimeUnit.SECONDS));
+    assertEquals("Done", page.getTitleText());
+    assertEquals(30000, clock.getElapsed());
+  }
+
+  @Test
+  public void testInterval() throws Exception {
+    connection.setResponse(pageUrl, "<html><head><title>0</title><script>"
+      + "var count = 0;"
+      + "setInterval(function() { count++; document.title = '' + count; }, 1000);"
+      + "</script></head><body></body></html>");
+    HtmlPage page = client.getPage(pageUrl);
+
+    assertEquals(10, clock.advance(10500, TimeUnit.MILLISECONDS));
+    assertEquals("10", page.getTitleText());
+    assertEquals(1, clock.advance(500, TimeUnit.MILLISECONDS));
+    assertEquals("11", page.getTitleText());
+  }
+
+  @Test
+  public void testTimersRunInOrder() throws Exception {
+    connection.setResponse(pageUrl, "<html><head><title></title><script>"
+      + "setTimeout(function() { document.title += 'b'; }, 2000);"
+      + "setTimeout(function() { document.title += 'a'; }, 1000);"
+      + "setTimeout(function() { document.title += 'c'; }, 3000);"
+      + "</script></head><body></body></html>");
+    HtmlPage page = client.getPage(pageUrl);
+
+    clock.advance(1, TimeUnit.MINUTES);
+    assertEquals("abc", page.getTitleText());
+  }
+
+  @Test
+  public void testDelayedRefresh() throws Exception {
+    URL nextUrl = new URL("http://localhost/next.html");
+    connection.setResponse(pageUrl, "<html><head><title>First</title>"
+      + "<meta http-equiv='refresh' content='60;URL=next.html'></head><body></body></html>");
+    connection.setResponse(nextUrl, "<html><head><title>Next</title></head><body></body></html>");
+    client.getPage(pageUrl);
+
+    clock.advance(59, TimeUnit.SECONDS);
+    assertEquals("First", ((HtmlPage) client.getCurrentWindow().getEnclosedPage()).getTitleText());
+    clock.advance(1, TimeUnit.SECONDS);
+    assertEquals("Next", ((HtmlPage) client.getCurrentWindow().getEnclosedPage()).getTitleText());
+  }
+
+  @Test
+  public void testRunNextEvent() throws Exception {
+    connection.setResponse(pageUrl, "<html><head><title></title><script>"
+      + "setTimeout(function() { document.title += 'a'; }, 1000);"
+      + "setTimeout(function() { document.title += 'b'; }, 3000);"
+      + "</script></head><body></body></html>");
+    HtmlPage page = client.getPage(pageUrl);
+
+    assertTrue(clock.runNextEvent(5000) > 0);
+    assertEquals("a", page.getTitleText());
+    assertEquals(-1, clock.runNextEvent(1000));
+    assertEquals("a", page.getTitleText());
+    assertTrue(clock.runNextEvent(5000) > 0);
+    assertEquals("ab", page.getTitleText());
+    long elapsed = clock.getElapsed();
+    assertEquals(-1, clock.runNextEvent(5000));
+    assertEquals(elapsed + 5000, clock.getElapsed());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNoNegativeAdvance() {
+    clock.advance(-1, TimeUnit.SECONDS);
+  }
+
+}
@@ -0,0 +1,79 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.htmlunit;
+
+import com.gargoylesoftware.htmlunit.WebClient;
+import net.sourceforge.jwebunit.tests.JWebUnitAPITestCase;
+import org.junit.After;
+import org.junit.Test;
+
+import static net.sourceforge.jwebunit.junit.JWebUnit.assertTextNotPresent;
+import static net.sourceforge.jwebunit.junit.JWebUnit.assertTextPresent;
+import static net.sourceforge.jwebunit.junit.JWebUnit.beginAt;
+import static net.sourceforge.jwebunit.junit.JWebUnit.closeBrowser;
+import static net.sourceforge.jwebunit.junit.JWebUnit.getUnwrappedTestingEngine;
+import static net.sourceforge.jwebunit.junit.JWebUnit.gotoPage;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Check that pooled web clients are reused and don't leak state from one dialog to the next one.
+ */
+public class WebClientPoolTest extends JWebUnitAPITestCase {
+
+  private WebClientPool pool = new WebClientPool();
+
+  @Test
+  public void testClientIsReused() {
+    HtmlUnitTestingEngineImpl engine = (HtmlUnitTestingEngineImpl) getUnwrappedTestingEngine();
+    engine.setWebClientPool(pool);
+
+    beginAt("/cookies.jsp");
+    WebClient first = engine.getWebClient();
+    closeBrowser();
+    assertEquals(1, pool.getIdleCount());
+
+    beginAt("/cookies.jsp");
+    assertSame(first, engine.getWebClient());
+    assertEquals(1, pool.getHitCount());
+    assertEquals(1, pool.getMissCount());
+  }
+
+  @Test
+  public void testCookiesAreResetBetweenLeases() {
+    HtmlUnitTestingEngineImpl engine = (HtmlUnitTestingEngineImpl) getUnwrappedTestingEngine();
+    engine.setWebClientPool(pool);
+
+    beginAt("/cookies.jsp");
+    gotoPage("/cookies.jsp?dont_set=true");
+    assertTextPresent("serveurCookie=foo");
+    closeBrowser();
+
+    beginAt("/cookies.jsp?dont_set=true");
+    assertTextNotPresent("serveurCookie=foo");
+  }
+
+  @After
+  public void cleanup() {
+    closeBrowser();
+    ((HtmlUnitTestingEngineImpl) getUnwrappedTestingEngine()).setWebClientPool(null);
+    pool.clear();
+  }
+
+}
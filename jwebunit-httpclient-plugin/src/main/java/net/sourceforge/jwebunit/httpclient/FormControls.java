@@ -0,0 +1,354 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.httpclient;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * State of the form controls of a {@link Page}. The state is kept in the DOM like the HTML source would declare it:
+ * the <code>value</code> attribute of inputs, the <code>checked</code> attribute of checkboxes and radio buttons, the
+ * <code>selected</code> attribute of options and the text of text areas. The initial state of a control is saved the
+ * first time it is changed, so that its form can be reset.
+ */
+final class FormControls {
+
+  private static final Set<String> CONTROL_TAGS = new HashSet<>(Arrays.asList(
+    "input", "select", "textarea", "button"));
+
+  /**
+   * Key of the user data holding the initial state of a control.
+   */
+  private static final String DEFAULT_STATE = "jwebunit.defaultState";
+
+  private FormControls() {
+  }
+
+  /**
+   * @param e an element
+   * @return true if the element is an input, a select, a text area or a button
+   */
+  static boolean isControl(Element e) {
+    return CONTROL_TAGS.contains(e.getTagName());
+  }
+
+  /**
+   * @param control an input or a button
+   * @return the type of the control in lower case, with the default of its tag when missing
+   */
+  static String getType(Element control) {
+    String type = control.getAttribute("type").trim().toLowerCase(Locale.ENGLISH);
+    if (type.isEmpty()) {
+      return "button".equals(control.getTagName()) ? "submit" : "text";
+    }
+    return type;
+  }
+
+  /**
+   * @param e an element
+   * @param tagName lower case tag name
+   * @param types accepted types, any type if empty
+   * @return true if the element has the tag name and one of the types
+   */
+  static boolean is(Element e, String tagName, String... types) {
+    if (!tagName.equals(e.getTagName())) {
+      return false;
+    }
+    if (types.length == 0) {
+      return true;
+    }
+    String type = getType(e);
+    for (String t : types) {
+      if (t.equals(type)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @param control a form control
+   * @return the form containing the control, or <code>null</code>
+   */
+  static Element getForm(Element control) {
+    for (Node n = control.getParentNode(); n != null; n = n.getParentNode()) {
+      if (n.getNodeType() == Node.ELEMENT_NODE && "form".equals(((Element) n).getTagName())) {
+        return (Element) n;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @param form a form
+   * @return the controls of the form, in document order
+   */
+  static List<Element> getControls(Element form) {
+    List<Element> controls = new ArrayList<>();
+    NodeList all = form.getElementsByTagName("*");
+    for (int i = 0; i < all.getLength(); i++) {
+      Element e = (Element) all.item(i);
+      if (isControl(e)) {
+        controls.add(e);
+      }
+    }
+    return controls;
+  }
+
+  /**
+   * @param control an input, a button, a text area or an option
+   * @return the current value of the control
+   */
+  static String getValue(Element control) {
+    switch (control.getTagName()) {
+      case "textarea":
+        return control.getTextContent();
+      case "option":
+        return control.hasAttribute("value") ? control.getAttribute("value")
+          : PageText.normalize(control.getTextContent()).trim();
+      case "input":
+        String type = getType(control);
+        if (!control.hasAttribute("value") && ("checkbox".equals(type) || "radio".equals(type))) {
+          return "on";
+        }
+        return control.getAttribute("value");
+      default:
+        return control.getAttribute("value");
+    }
+  }
+
+  /**
+   * Set the value of an input or the text of a text area.
+   *
+   * @param control the input or text area
+   * @param value the new value
+   */
+  static void setValue(Element control, String value) {
+    saveDefaultState(control);
+    if ("textarea".equals(control.getTagName())) {
+      control.setTextContent(value);
+    } else {
+      control.setAttribute("value", value);
+    }
+  }
+
+  /**
+   * @param control a checkbox or a radio button
+   * @return true if it is checked
+   */
+  static boolean isChecked(Element control) {
+    return control.hasAttribute("checked");
+  }
+
+  /**
+   * Check or uncheck a checkbox or a radio button. Checking a radio button unchecks the other buttons of its group.
+   *
+   * @param control the checkbox or radio button
+   * @param checked the new state
+   */
+  static void setChecked(Element control, boolean checked) {
+    if (checked && "radio".equals(getType(control))) {
+      for (Element radio : getRadioGroup(control)) {
+        if (radio != control && isChecked(radio)) {
+          saveDefaultState(radio);
+          radio.removeAttribute("checked");
+        }
+      }
+    }
+    saveDefaultState(control);
+    if (checked) {
+      control.setAttribute("checked", "checked");
+    } else {
+      control.removeAttribute("checked");
+    }
+  }
+
+  private static List<Element> getRadioGroup(Element radio) {
+    Element form = getForm(radio);
+    NodeList inputs = (form == null ? radio.getOwnerDocument().getDocumentElement() : form)
+      .getElementsByTagName("input");
+    List<Element> group = new ArrayList<>();
+    for (int i = 0; i < inputs.getLength(); i++) {
+      Element e = (Element) inputs.item(i);
+      if ("radio".equals(getType(e)) && radio.getAttribute("name").equals(e.getAttribute("name"))
+        && getForm(e) == form) {
+        group.add(e);
+      }
+    }
+    return group;
+  }
+
+  /**
+   * @param select a select
+   * @return true if several options can be selected
+   */
+  static boolean isMultiple(Element select) {
+    return select.hasAttribute("multiple");
+  }
+
+  /**
+   * @param select a select
+   * @return the options of the select, in document order
+   */
+  static List<Element> getOptions(Element select) {
+    NodeList nodes = select.getElementsByTagName("option");
+    List<Element> options = new ArrayList<>(nodes.getLength());
+    for (int i = 0; i < nodes.getLength(); i++) {
+      options.add((Element) nodes.item(i));
+    }
+    return options;
+  }
+
+  /**
+   * Get the selected options of a select. A single select without selected option has its first option selected,
+   * as in browsers.
+   *
+   * @param select a select
+   * @return the selected options
+   */
+  static List<Element> getSelectedOptions(Element select) {
+    List<Element> options = getOptions(select);
+    List<Element> selected = new ArrayList<>();
+    for (Element option : options) {
+      if (option.hasAttribute("selected")) {
+        selected.add(option);
+        if (!isMultiple(select)) {
+          break;
+        }
+      }
+    }
+    if (selected.isEmpty() && !isMultiple(select) && !options.isEmpty() && getSize(select) <= 1) {
+      selected.add(options.get(0));
+    }
+    return selected;
+  }
+
+  private static int getSize(Element select) {
+    try {
+      return Integer.parseInt(select.getAttribute("size").trim());
+    } catch (NumberFormatException e) {
+      return 1;
+    }
+  }
+
+  /**
+   * Select or unselect an option. Selecting an option of a single select unselects the other ones.
+   *
+   * @param select the select
+   * @param option one of its options
+   * @param selected the new state
+   */
+  static void setSelected(Element select, Element option, boolean selected) {
+    for (Element o : getOptions(select)) {
+      if (o == option || (selected && !isMultiple(select))) {
+        saveDefaultState(o);
+        if (selected && o == option) {
+          o.setAttribute("selected", "selected");
+        } else {
+          o.removeAttribute("selected");
+        }
+      }
+    }
+  }
+
+  /**
+   * @param option an option
+   * @return the label of the option
+   */
+  static String getLabel(Element option) {
+    return PageText.normalize(option.getTextContent()).trim();
+  }
+
+  /**
+   * Put the controls of a form back in their initial state.
+   *
+   * @param form the form
+   */
+  static void reset(Element form) {
+    for (Element control : getControls(form)) {
+      restoreDefaultState(control);
+      if ("select".equals(control.getTagName())) {
+        for (Element option : getOptions(control)) {
+          restoreDefaultState(option);
+        }
+      }
+    }
+  }
+
+  private static void saveDefaultState(Element e) {
+    if (e.getUserData(DEFAULT_STATE) != null) {
+      return;
+    }
+    String[] state;
+    if ("textarea".equals(e.getTagName())) {
+      state = new String[] {e.getTextContent()};
+    } else if ("option".equals(e.getTagName())) {
+      state = new String[] {e.hasAttribute("selected") ? e.getAttribute("selected") : null};
+    } else {
+      state = new String[] {e.hasAttribute("value") ? e.getAttribute("value") : null,
+        e.hasAttribute("checked") ? e.getAttribute("checked") : null};
+    }
+    e.setUserData(DEFAULT_STATE, state, null);
+  }
+
+  /**
+   * Copy the initial state of a control, saved when it was first changed, to its copy in a forked page.
+   *
+   * @param control a control
+   * @param copy the copy of the control
+   */
+  static void copyDefaultState(Element control, Element copy) {
+    String[] state = (String[]) control.getUserData(DEFAULT_STATE);
+    if (state != null) {
+      copy.setUserData(DEFAULT_STATE, state.clone(), null);
+    }
+  }
+
+  private static void restoreDefaultState(Element e) {
+    String[] state = (String[]) e.getUserData(DEFAULT_STATE);
+    if (state == null) {
+      return;
+    }
+    if ("textarea".equals(e.getTagName())) {
+      e.setTextContent(state[0]);
+    } else if ("option".equals(e.getTagName())) {
+      restoreAttribute(e, "selected", state[0]);
+    } else {
+      restoreAttribute(e, "value", state[0]);
+      restoreAttribute(e, "checked", state[1]);
+    }
+    e.setUserData(DEFAULT_STATE, null, null);
+  }
+
+  private static void restoreAttribute(Element e, String name, String value) {
+    if (value == null) {
+      e.removeAttribute(name);
+    } else {
+      e.setAttribute(name, value);
+    }
+  }
+
+}
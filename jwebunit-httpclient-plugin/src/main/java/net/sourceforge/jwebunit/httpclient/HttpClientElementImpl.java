@@ -0,0 +1,154 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.httpclient;
+
+import java.util.ArrayList;
+import java.util.List;
+import net.sourceforge.jwebunit.api.IElement;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Implementation of IElement wrapping an element of the DOM of a {@link Page}.
+ */
+public class HttpClientElementImpl implements IElement {
+
+  /**
+   * The wrapped element.
+   */
+  private final Element element;
+
+  public HttpClientElementImpl(Element element) {
+    if (element == null) {
+      throw new NullPointerException("Cannot create an IElement for a null element.");
+    }
+    this.element = element;
+  }
+
+  @Override
+  public String getAttribute(String name) {
+    if ("value".equals(name) && "option".equals(element.getTagName())) {
+      // for options, we want text if no value was specified
+      return FormControls.getValue(element);
+    }
+    if (!element.hasAttribute(name)) {
+      return null;
+    }
+    return element.getAttribute(name);
+  }
+
+  @Override
+  public String getName() {
+    return element.getTagName();
+  }
+
+  @Override
+  public String getTextContent() {
+    return element.getTextContent();
+  }
+
+  @Override
+  public IElement getParent() {
+    Node p = element.getParentNode();
+    if (p == null || p.getNodeType() != Node.ELEMENT_NODE) {
+      return null;
+    }
+    return new HttpClientElementImpl((Element) p);
+  }
+
+  @Override
+  public List<IElement> getChildren() {
+    List<IElement> children = new ArrayList<>();
+    for (Node n = element.getFirstChild(); n != null; n = n.getNextSibling()) {
+      if (n.getNodeType() == Node.ELEMENT_NODE) {
+        children.add(new HttpClientElementImpl((Element) n));
+      }
+    }
+    return children;
+  }
+
+  @Override
+  public IElement getElement(String xpath) {
+    Element e = XPathHelper.getFirstElement(element, xpath);
+    return e == null ? null : new HttpClientElementImpl(e);
+  }
+
+  @Override
+  public List<IElement> getElements(String xpath) {
+    List<IElement> elements = new ArrayList<>();
+    for (Element e : XPathHelper.getElements(element, xpath)) {
+      elements.add(new HttpClientElementImpl(e));
+    }
+    return elements;
+  }
+
+  @Override
+  public void setAttribute(String name) {
+    element.setAttribute(name, "1");
+  }
+
+  @Override
+  public void setAttribute(String name, String value) {
+    if ("value".equals(name) && "input".equals(element.getTagName())) {
+      FormControls.setValue(element, value);
+    } else {
+      element.setAttribute(name, value);
+    }
+  }
+
+  @Override
+  public void setTextContent(String value) {
+    if ("textarea".equals(element.getTagName())) {
+      FormControls.setValue(element, value);
+    } else {
+      element.setTextContent(value);
+    }
+  }
+
+  /**
+   * Return the wrapped DOM element.
+   *
+   * @return the element this IElement represents.
+   */
+  public Element getDomElement() {
+    return element;
+  }
+
+  @Override
+  public String toString() {
+    return "IElement[name=" + getName() + " wrapped=" + element + "]";
+  }
+
+  @Override
+  public int hashCode() {
+    return element.hashCode();
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (obj == null || getClass() != obj.getClass()) {
+      return false;
+    }
+    return element.equals(((HttpClientElementImpl) obj).element);
+  }
+
+}
@@ -0,0 +1,1894 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.httpclient;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import net.sourceforge.jwebunit.api.Condition;
+import net.sourceforge.jwebunit.api.HttpHeader;
+import net.sourceforge.jwebunit.api.IElement;
+import net.sourceforge.jwebunit.api.IRequestFilteringEngine;
+import net.sourceforge.jwebunit.api.IStreamingTableEngine;
+import net.sourceforge.jwebunit.api.ITestingEngine;
+import net.sourceforge.jwebunit.exception.ExpectedJavascriptAlertException;
+import net.sourceforge.jwebunit.exception.ExpectedJavascriptConfirmException;
+import net.sourceforge.jwebunit.exception.ExpectedJavascriptPromptException;
+import net.sourceforge.jwebunit.exception.TestingEngineResponseException;
+import net.sourceforge.jwebunit.exception.UnableToSetFormException;
+import net.sourceforge.jwebunit.html.Cell;
+import net.sourceforge.jwebunit.html.Row;
+import net.sourceforge.jwebunit.html.StreamingTable;
+import net.sourceforge.jwebunit.html.Table;
+import net.sourceforge.jwebunit.javascript.JavascriptAlert;
+import net.sourceforge.jwebunit.javascript.JavascriptConfirm;
+import net.sourceforge.jwebunit.javascript.JavascriptPrompt;
+import net.sourceforge.jwebunit.util.BlockedRequestCounter;
+import net.sourceforge.jwebunit.util.LoggedRequest;
+import net.sourceforge.jwebunit.util.RegexpCache;
+import net.sourceforge.jwebunit.util.RequestFilter;
+import net.sourceforge.jwebunit.util.TestContext;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.NameValuePair;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.NTCredentials;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.CredentialsProvider;
+import org.apache.http.client.config.CookieSpecs;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.client.utils.URIUtils;
+import org.apache.http.client.utils.URLEncodedUtils;
+import org.apache.http.cookie.ClientCookie;
+import org.apache.http.cookie.Cookie;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.mime.HttpMultipartMode;
+import org.apache.http.entity.mime.MultipartEntityBuilder;
+import org.apache.http.impl.client.BasicCookieStore;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.client.LaxRedirectStrategy;
+import org.apache.http.impl.cookie.BasicClientCookie;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Comment;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Lightweight testing engine without JavaScript: pages are loaded with Apache HttpClient and parsed with NekoHTML
+ * into a plain DOM. Forms, links, frames, tables, cookies and XPath are supported, but scripts are never run, and
+ * images, scripts and style sheets are never loaded. Being much lighter than a browser, this engine is the fastest one
+ * for tests of applications that don't need JavaScript.
+ *
+ * <p>HTTP archives and local transports of the test context are not supported.</p>
+ */
+public class HttpClientTestingEngineImpl implements ITestingEngine, IStreamingTableEngine, IRequestFilteringEngine {
+
+  /**
+   * Logger for this class.
+   */
+  private final Logger logger = LoggerFactory.getLogger(HttpClientTestingEngineImpl.class);
+
+  private static final String ACCEPT = "text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8";
+
+  private static final String DEFAULT_USER_AGENT = "Mozilla/5.0 (compatible; JWebUnit)";
+
+  private static final Pattern REFRESH = Pattern.compile("\\s*(\\d+)?\\s*[;,]?\\s*(?:url\\s*=\\s*)?['\"]?([^'\"]*)['\"]?",
+    Pattern.CASE_INSENSITIVE);
+
+  /**
+   * Maximum number of meta refreshes followed in a row.
+   */
+  private static final int MAX_REFRESHES = 20;
+
+  private CloseableHttpClient client;
+
+  private BasicCookieStore cookieStore;
+
+  private TestContext testContext;
+
+  /**
+   * Top level windows, in opening order.
+   */
+  private final List<Window> windows = new ArrayList<>();
+
+  /**
+   * Current window or frame.
+   */
+  private Window win;
+
+  /**
+   * Current form.
+   */
+  private Element form;
+
+  private boolean ignoreFailingStatusCodes = false;
+
+  private int timeout = 0;
+
+  private int windowCounter = 0;
+
+  private final BlockedRequestCounter blockedRequests = new BlockedRequestCounter();
+
+  /**
+   * Initializes the testing engine.
+   */
+  public HttpClientTestingEngineImpl() {
+  }
+
+  @Override
+  public void beginAt(URL initialURL, TestContext context) throws TestingEngineResponseException {
+    checkSupported(context);
+    this.testContext = context;
+    initClient();
+    windows.clear();
+    form = null;
+    Window main = new Window("");
+    windows.add(main);
+    win = main;
+    gotoPage(initialURL);
+  }
+
+  private static void checkSupported(TestContext context) {
+    if (context.hasHttpArchive()) {
+      throw new UnsupportedOperationException("HTTP archives are not supported by the HttpClient engine");
+    }
+    if (context.hasLocalTransport()) {
+      throw new UnsupportedOperationException("Local transports are not supported by the HttpClient engine");
+    }
+  }
+
+  private void initClient() {
+    cookieStore = new BasicCookieStore();
+    for (javax.servlet.http.Cookie c : testContext.getCookies()) {
+      BasicClientCookie cookie = new BasicClientCookie(c.getName(), c.getValue());
+      if (c.getDomain() != null) {
+        cookie.setDomain(c.getDomain());
+        cookie.setAttribute(ClientCookie.DOMAIN_ATTR, c.getDomain());
+      }
+      cookie.setPath(c.getPath() != null ? c.getPath() : "/");
+      if (c.getMaxAge() >= 0) {
+        cookie.setExpiryDate(new Date(System.currentTimeMillis() + c.getMaxAge() * 1000L));
+      }
+      cookie.setSecure(c.getSecure());
+      cookieStore.addCookie(cookie);
+    }
+    CredentialsProvider creds = new BasicCredentialsProvider();
+    if (testContext.hasAuthorization()) {
+      creds.setCredentials(AuthScope.ANY,
+        new UsernamePasswordCredentials(testContext.getUser(), testContext.getPassword()));
+    }
+    if (testContext.hasNTLMAuthorization()) {
+      creds.setCredentials(AuthScope.ANY,
+        new NTCredentials(testContext.getUser(), testContext.getPassword(), "", testContext.getDomain()));
+    }
+    RequestConfig.Builder config = RequestConfig.custom().setCookieSpec(CookieSpecs.DEFAULT)
+      .setCircularRedirectsAllowed(true);
+    if (timeout > 0) {
+      config.setConnectTimeout(timeout).setSocketTimeout(timeout);
+    }
+    HttpClientBuilder builder = HttpClientBuilder.create().setDefaultCookieStore(cookieStore)
+      .setDefaultCredentialsProvider(creds).setRedirectStrategy(new LaxRedirectStrategy())
+      .setUserAgent(testContext.hasUserAgent() ? testContext.getUserAgent() : DEFAULT_USER_AGENT);
+    if (testContext.getProxyHost() != null && testContext.getProxyHost().length() > 0) {
+      builder.setProxy(new HttpHost(testContext.getProxyHost(), testContext.getProxyPort()));
+      if (testContext.hasProxyAuthorization()) {
+        creds.setCredentials(new AuthScope(testContext.getProxyHost(), testContext.getProxyPort()),
+          new UsernamePasswordCredentials(testContext.getProxyUser(), testContext.getProxyPasswd()));
+      }
+    }
+    List<Header> headers = new ArrayList<>();
+    headers.add(new BasicHeader("Accept", ACCEPT));
+    for (Map.Entry<String, String> header : testContext.getRequestHeaders().entrySet()) {
+      headers.add(new BasicHeader(header.getKey(), header.getValue()));
+    }
+    client = builder.setDefaultHeaders(headers).setDefaultRequestConfig(config.build()).build();
+  }
+
+  @Override
+  public void closeBrowser() throws ExpectedJavascriptAlertException, ExpectedJavascriptConfirmException,
+    ExpectedJavascriptPromptException {
+    if (client != null) {
+      try {
+        client.close();
+      } catch (IOException e) {
+        logger.warn("Error while closing the HTTP client", e);
+      }
+      client = null;
+    }
+    windows.clear();
+    win = null;
+    form = null;
+  }
+
+  @Override
+  public void gotoPage(URL url) throws TestingEngineResponseException {
+    loadPage(win.getTopWindow(), new HttpGet(toURI(url)));
+    win = win.getTopWindow();
+  }
+
+  // Loading of pages
+
+  private static URI toURI(URL url) {
+    try {
+      return url.toURI();
+    } catch (URISyntaxException e) {
+      try {
+        return new URI(url.getProtocol(), url.getUserInfo(), url.getHost(), url.getPort(), url.getPath(),
+          url.getQuery(), url.getRef());
+      } catch (URISyntaxException e1) {
+        throw new RuntimeException("Invalid URL " + url, e1);
+      }
+    }
+  }
+
+  /**
+   * Send a request and read the whole response.
+   */
+  private Page load(HttpUriRequest request) {
+    URL url;
+    try {
+      url = request.getURI().toURL();
+    } catch (MalformedURLException e) {
+      throw new RuntimeException("Invalid URL " + request.getURI(), e);
+    }
+    if (testContext.hasRequestFilter()) {
+      String contentType = RequestFilter.guessContentType(url, ACCEPT);
+      if (!testContext.getRequestFilter().isAllowed(url, contentType)) {
+        logger.debug("Request to {} blocked", url);
+        blockedRequests.record(contentType);
+        List<HttpHeader> headers = new ArrayList<>();
+        headers.add(new HttpHeader("Content-Type", contentType == null ? "text/plain" : contentType));
+        return new Page(url, HttpStatus.SC_OK, "OK", headers, null);
+      }
+    }
+    HttpClientContext context = HttpClientContext.create();
+    long started = System.currentTimeMillis();
+    long start = System.nanoTime();
+    try (CloseableHttpResponse response = client.execute(request, context)) {
+      long firstByte = System.nanoTime();
+      URI location = URIUtils.resolve(request.getURI(), context.getTargetHost(), context.getRedirectLocations());
+      List<HttpHeader> headers = new ArrayList<>();
+      for (Header header : response.getAllHeaders()) {
+        headers.add(new HttpHeader(header.getName(), header.getValue()));
+      }
+      HttpEntity entity = response.getEntity();
+      byte[] content = entity == null ? null : EntityUtils.toByteArray(entity);
+      if (testContext.hasRequestLog()) {
+        logRequest(request, response, started, (firstByte - start) / 1000000,
+          (System.nanoTime() - firstByte) / 1000000, content == null ? 0 : content.length);
+      }
+      return new Page(location.toURL(), response.getStatusLine().getStatusCode(),
+        response.getStatusLine().getReasonPhrase(), headers, content);
+    } catch (IOException | URISyntaxException e) {
+      throw new RuntimeException("Unable to load " + url, e);
+    }
+  }
+
+  /**
+   * Add a request to the log of the test context. The wait includes the connection and the redirects followed by the
+   * client, which aren't measured apart.
+   */
+  private void logRequest(HttpUriRequest request, HttpResponse response, long started, long wait, long receive,
+    long size) {
+    long requestSize = 0;
+    if (request instanceof HttpEntityEnclosingRequest) {
+      HttpEntity entity = ((HttpEntityEnclosingRequest) request).getEntity();
+      requestSize = entity == null ? 0 : entity.getContentLength();
+    }
+    Header contentType = response.getFirstHeader("Content-Type");
+    testContext.getRequestLog().record(new LoggedRequest(started, request.getMethod(), request.getURI().toString(),
+      response.getStatusLine().getStatusCode(), response.getStatusLine().getReasonPhrase(),
+      contentType == null ? null : contentType.getValue(), requestSize, size, -1, -1, -1, wait, receive));
+  }
+
+  /**
+   * Load a page into a window, then the frames of the page, and follow its refreshes.
+   *
+   * @throws TestingEngineResponseException if the status code is a failure and failing status codes are not ignored
+   */
+  private void loadPage(Window window, HttpUriRequest request) {
+    Page page = load(request);
+    for (int i = 0; i < MAX_REFRESHES; i++) {
+      URL refresh = getRefreshUrl(page);
+      if (refresh == null) {
+        break;
+      }
+      page = load(new HttpGet(toURI(refresh)));
+    }
+    showPage(window, page);
+    int status = page.getStatusCode();
+    boolean successful = (status >= HttpStatus.SC_OK && status < HttpStatus.SC_MULTIPLE_CHOICES)
+      || status == HttpStatus.SC_USE_PROXY || status == HttpStatus.SC_NOT_MODIFIED;
+    if (!ignoreFailingStatusCodes && !successful) {
+      throw new TestingEngineResponseException(status,
+        "unexpected status code [" + status + "] at URL: [" + page.getUrl() + "]");
+    }
+  }
+
+  private void showPage(Window window, Page page) {
+    if (form != null && window.getPage() != null && window.getPage().isHtml()
+      && form.getOwnerDocument() == window.getPage().getDocument()) {
+      form = null;
+    }
+    window.setPage(page);
+    if (!page.isHtml()) {
+      return;
+    }
+    List<Element> frames = page.getElementsByTagName("frame");
+    frames.addAll(page.getElementsByTagName("iframe"));
+    for (Element frameElement : frames) {
+      String name = frameElement.getAttribute("name");
+      Window frame = new Window(name, window, frameElement);
+      window.getFrames().add(frame);
+      String src = frameElement.getAttribute("src").trim();
+      URL url = src.isEmpty() ? null : resolve(page, src);
+      if (url == null || !url.getProtocol().startsWith("http")) {
+        frame.setPage(new Page(page.getUrl(), HttpStatus.SC_OK, "OK", new ArrayList<HttpHeader>(), null));
+        continue;
+      }
+      try {
+        loadPage(frame, new HttpGet(toURI(url)));
+      } catch (TestingEngineResponseException e) {
+        logger.debug("Frame {} loaded with status {}", url, e.getHttpStatusCode());
+      }
+    }
+  }
+
+  /**
+   * Get the URL a page refreshes to immediately, through a <code>Refresh</code> header or a meta tag. Refreshes to
+   * the same page are ignored.
+   */
+  private URL getRefreshUrl(Page page) {
+    String refresh = page.getHeader("Refresh");
+    if (refresh == null && page.isHtml()) {
+      for (Element meta : page.getElementsByTagName("meta")) {
+        if ("refresh".equalsIgnoreCase(meta.getAttribute("http-equiv"))) {
+          refresh = meta.getAttribute("content");
+          break;
+        }
+      }
+    }
+    if (refresh == null) {
+      return null;
+    }
+    Matcher m = REFRESH.matcher(refresh);
+    if (!m.matches() || m.group(2).trim().isEmpty()) {
+      return null;
+    }
+    URL url = resolve(page, m.group(2).trim());
+    if (url == null || url.toExternalForm().equals(page.getUrl().toExternalForm())) {
+      return null;
+    }
+    return url;
+  }
+
+  /**
+   * Resolve a URL of a page, relative to its base element if any.
+   *
+   * @return the absolute URL, or <code>null</code> if invalid
+   */
+  private static URL resolve(Page page, String href) {
+    URL base = page.getUrl();
+    if (page.isHtml()) {
+      List<Element> bases = page.getElementsByTagName("base");
+      if (!bases.isEmpty() && bases.get(0).hasAttribute("href")) {
+        try {
+          base = new URL(base, bases.get(0).getAttribute("href").trim());
+        } catch (MalformedURLException e) {
+          // keep the URL of the page
+        }
+      }
+    }
+    try {
+      return new URL(base, href.trim().replace(" ", "%20"));
+    } catch (MalformedURLException e) {
+      return null;
+    }
+  }
+
+  /**
+   * @return the window or frame showing the page an element belongs to
+   */
+  private Window getWindow(Element element) {
+    for (Window w : windows) {
+      Window found = findWindow(w, element);
+      if (found != null) {
+        return found;
+      }
+    }
+    return win;
+  }
+
+  private static Window findWindow(Window window, Element element) {
+    Page page = window.getPage();
+    if (page != null && page.isHtml() && page.getDocument() == element.getOwnerDocument()) {
+      return window;
+    }
+    for (Window frame : window.getFrames()) {
+      Window found = findWindow(frame, element);
+      if (found != null) {
+        return found;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Find the window a link or form targets, opening a new top level window if needed.
+   */
+  private Window getTargetWindow(Window source, String target) {
+    target = target == null ? "" : target.trim();
+    if (target.isEmpty() || "_self".equals(target)) {
+      return source;
+    }
+    if ("_top".equals(target)) {
+      return source.getTopWindow();
+    }
+    if ("_parent".equals(target)) {
+      return source.getParent() == null ? source : source.getParent();
+    }
+    if (!"_blank".equals(target)) {
+      for (Window w : windows) {
+        Window found = w.findWindow(target);
+        if (found != null) {
+          return found;
+        }
+      }
+    }
+    Window w = new Window("_blank".equals(target) ? "window" + (++windowCounter) : target);
+    windows.add(w);
+    return w;
+  }
+
+  /**
+   * Follow the link of an anchor, or do nothing for JavaScript and same page links.
+   */
+  private void followLink(Element anchor) {
+    String href = anchor.getAttribute("href").trim();
+    if (!anchor.hasAttribute("href") || href.startsWith("#") || href.toLowerCase(Locale.ENGLISH).startsWith(
+      "javascript:")) {
+      return;
+    }
+    Window source = getWindow(anchor);
+    URL url = resolve(source.getPage(), href);
+    if (url == null) {
+      throw new RuntimeException("Invalid link " + href);
+    }
+    Window target = getTargetWindow(source, anchor.getAttribute("target"));
+    loadPage(target, new HttpGet(toURI(url)));
+  }
+
+  /**
+   * Submit a form, as if the given button was clicked.
+   *
+   * @param f the form
+   * @param submitter the clicked button, or <code>null</code>
+   */
+  private void submitForm(Element f, Element submitter) {
+    Window source = getWindow(f);
+    Page page = source.getPage();
+    String method = f.getAttribute("method").trim().toLowerCase(Locale.ENGLISH);
+    String action = f.getAttribute("action").trim();
+    if (action.toLowerCase(Locale.ENGLISH).startsWith("javascript:")) {
+      return;
+    }
+    String enctype = f.getAttribute("enctype").trim().toLowerCase(Locale.ENGLISH);
+    Charset charset = getSubmitCharset(f, page);
+    URL url = action.isEmpty() ? page.getUrl() : resolve(page, action);
+    if (url == null) {
+      throw new RuntimeException("Invalid form action " + action);
+    }
+    List<Element> fields = new ArrayList<>();
+    List<NameValuePair> parameters = getParameters(f, submitter, fields);
+    HttpUriRequest request;
+    if ("post".equals(method)) {
+      HttpPost post = new HttpPost(toURI(url));
+      if ("multipart/form-data".equals(enctype)) {
+        post.setEntity(getMultipartEntity(parameters, fields, charset));
+      } else {
+        post.setEntity(new UrlEncodedFormEntity(parameters, charset));
+      }
+      request = post;
+    } else {
+      String query = URLEncodedUtils.format(parameters, charset);
+      String u = url.toExternalForm();
+      int index = u.indexOf('#');
+      u = index < 0 ? u : u.substring(0, index);
+      index = u.indexOf('?');
+      u = index < 0 ? u : u.substring(0, index);
+      request = new HttpGet(URI.create(u + "?" + query));
+    }
+    Window target = getTargetWindow(source, f.getAttribute("target"));
+    loadPage(target, request);
+  }
+
+  private static Charset getSubmitCharset(Element f, Page page) {
+    for (String name : f.getAttribute("accept-charset").split("[\\s,]+")) {
+      if (!name.isEmpty()) {
+        try {
+          return Charset.forName(name);
+        } catch (RuntimeException e) {
+          // try the next one
+        }
+      }
+    }
+    return page.getCharset();
+  }
+
+  /**
+   * Get the parameters submitted by a form.
+   *
+   * @param f the form
+   * @param submitter the clicked button, or <code>null</code>
+   * @param fields receives the control of each parameter
+   */
+  private static List<NameValuePair> getParameters(Element f, Element submitter, List<Element> fields) {
+    List<NameValuePair> parameters = new ArrayList<>();
+    for (Element control : FormControls.getControls(f)) {
+      String name = control.getAttribute("name");
+      if (control.hasAttribute("disabled")) {
+        continue;
+      }
+      String tag = control.getTagName();
+      if ("select".equals(tag)) {
+        if (name.isEmpty()) {
+          continue;
+        }
+        for (Element option : FormControls.getSelectedOptions(control)) {
+          parameters.add(new BasicNameValuePair(name, FormControls.getValue(option)));
+          fields.add(control);
+        }
+        continue;
+      }
+      String type = "textarea".equals(tag) ? "textarea" : FormControls.getType(control);
+      switch (type) {
+        case "submit":
+        case "button":
+        case "reset":
+          if (control == submitter && !name.isEmpty() && !"reset".equals(type)) {
+            parameters.add(new BasicNameValuePair(name, FormControls.getValue(control)));
+            fields.add(control);
+          }
+          break;
+        case "image":
+          if (control == submitter) {
+            String prefix = name.isEmpty() ? "" : name + ".";
+            parameters.add(new BasicNameValuePair(prefix + "x", "0"));
+            fields.add(control);
+            parameters.add(new BasicNameValuePair(prefix + "y", "0"));
+            fields.add(control);
+          }
+          break;
+        case "checkbox":
+        case "radio":
+          if (!name.isEmpty() && FormControls.isChecked(control)) {
+            parameters.add(new BasicNameValuePair(name, FormControls.getValue(control)));
+            fields.add(control);
+          }
+          break;
+        default:
+          if (!name.isEmpty()) {
+            parameters.add(new BasicNameValuePair(name, FormControls.getValue(control)));
+            fields.add(control);
+          }
+      }
+    }
+    return parameters;
+  }
+
+  private static HttpEntity getMultipartEntity(List<NameValuePair> parameters, List<Element> fields,
+    Charset charset) {
+    MultipartEntityBuilder builder = MultipartEntityBuilder.create()
+      .setMode(HttpMultipartMode.BROWSER_COMPATIBLE).setCharset(charset);
+    for (int i = 0; i < parameters.size(); i++) {
+      NameValuePair parameter = parameters.get(i);
+      Element field = fields.get(i);
+      if (FormControls.is(field, "input", "file")) {
+        File file = new File(parameter.getValue());
+        if (!parameter.getValue().isEmpty() && file.isFile()) {
+          builder.addBinaryBody(parameter.getName(), file, ContentType.APPLICATION_OCTET_STREAM, file.getName());
+        } else {
+          builder.addBinaryBody(parameter.getName(), new byte[0], ContentType.APPLICATION_OCTET_STREAM, "");
+        }
+      } else {
+        builder.addTextBody(parameter.getName(), parameter.getValue(),
+          ContentType.create("text/plain", charset));
+      }
+    }
+    return builder.build();
+  }
+
+  /**
+   * Click an element like a browser without JavaScript would do.
+   */
+  private void click(Element e) {
+    String tag = e.getTagName();
+    if ("input".equals(tag) || "button".equals(tag)) {
+      String type = FormControls.getType(e);
+      Element f = FormControls.getForm(e);
+      switch (type) {
+        case "checkbox":
+          FormControls.setChecked(e, !FormControls.isChecked(e));
+          return;
+        case "radio":
+          FormControls.setChecked(e, true);
+          return;
+        case "submit":
+        case "image":
+          if (f != null) {
+            form = f;
+            submitForm(f, e);
+          }
+          return;
+        case "reset":
+          if (f != null) {
+            FormControls.reset(f);
+          }
+          return;
+        default:
+          return;
+      }
+    }
+    for (Node n = e; n != null; n = n.getParentNode()) {
+      if (n.getNodeType() == Node.ELEMENT_NODE && "a".equals(((Element) n).getTagName())) {
+        followLink((Element) n);
+        return;
+      }
+    }
+  }
+
+  // Current page
+
+  private Page getPage() {
+    if (win == null || win.getPage() == null) {
+      throw new RuntimeException("No page loaded");
+    }
+    return win.getPage();
+  }
+
+  private Page getCurrentPage() {
+    Page page = getPage();
+    if (!page.isHtml()) {
+      throw new RuntimeException("Non HTML content");
+    }
+    return page;
+  }
+
+  private Element getElement(String id) {
+    return getCurrentPage().getElementById(id);
+  }
+
+  private Element getElementByXPathInternal(String xpath) {
+    return XPathHelper.getFirstElement(getCurrentPage().getDocument(), xpath);
+  }
+
+  // Windows and frames
+
+  @Override
+  public void setScriptingEnabled(boolean value) {
+    if (value) {
+      logger.debug("JavaScript is not supported by the HttpClient engine");
+    }
+  }
+
+  @Override
+  public void setThrowExceptionOnScriptError(boolean value) {
+    // scripts are never run
+  }
+
+  @Override
+  public List<javax.servlet.http.Cookie> getCookies() {
+    List<javax.servlet.http.Cookie> result = new LinkedList<>();
+    for (Cookie cookie : cookieStore.getCookies()) {
+      javax.servlet.http.Cookie c = new javax.servlet.http.Cookie(cookie.getName(), cookie.getValue());
+      c.setComment(cookie.getComment());
+      c.setDomain(cookie.getDomain());
+      Date expire = cookie.getExpiryDate();
+      if (expire == null) {
+        c.setMaxAge(-1);
+      } else {
+        // Convert milli-second to second
+        c.setMaxAge((int) ((expire.getTime() - System.currentTimeMillis()) / 1000));
+      }
+      c.setPath(cookie.getPath());
+      c.setSecure(cookie.isSecure());
+      c.setVersion(cookie.getVersion());
+      result.add(c);
+    }
+    return result;
+  }
+
+  private Window getWindowByName(String windowName) {
+    for (Window w : windows) {
+      Window found = w.findWindow(windowName);
+      if (found != null) {
+        return found;
+      }
+    }
+    return null;
+  }
+
+  private Window getWindowByTitle(String title) {
+    for (Window w : windows) {
+      if (w.getPage() != null && w.getPage().getTitle().equals(title)) {
+        return w;
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public boolean hasWindow(String windowName) {
+    return getWindowByName(windowName) != null;
+  }
+
+  @Override
+  public boolean hasWindowByTitle(String windowTitle) {
+    return getWindowByTitle(windowTitle) != null;
+  }
+
+  @Override
+  public void gotoWindow(String windowName) {
+    Window w = getWindowByName(windowName);
+    if (w == null) {
+      throw new RuntimeException("No window found with name [" + windowName + "]");
+    }
+    setMainWindow(w);
+  }
+
+  @Override
+  public void gotoWindowByTitle(String title) {
+    Window w = getWindowByTitle(title);
+    if (w == null) {
+      throw new RuntimeException("No window found with title [" + title + "]");
+    }
+    setMainWindow(w);
+  }
+
+  @Override
+  public void gotoWindow(int windowID) {
+    setMainWindow(windows.get(windowID));
+  }
+
+  private void setMainWindow(Window w) {
+    if (w != win) {
+      win = w;
+      form = null;
+    }
+  }
+
+  @Override
+  public void gotoRootWindow() {
+    win = win.getTopWindow();
+  }
+
+  @Override
+  public int getWindowCount() {
+    return windows.size();
+  }
+
+  @Override
+  public void closeWindow() {
+    if (win != null) {
+      windows.remove(win.getTopWindow());
+      win = windows.isEmpty() ? null : windows.get(windows.size() - 1);
+      form = null;
+    }
+  }
+
+  private Window getFrame(String frameNameOrId) {
+    for (Window frame : win.getFrames()) {
+      if (frameNameOrId.equals(frame.getFrameElement().getAttribute("id"))) {
+        return frame;
+      }
+    }
+    for (Window frame : win.getFrames()) {
+      if (frameNameOrId.equals(frame.getName())) {
+        return frame;
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public boolean hasFrame(String frameNameOrId) {
+    return getFrame(frameNameOrId) != null;
+  }
+
+  @Override
+  public void gotoFrame(String frameNameOrId) {
+    Window frame = getFrame(frameNameOrId);
+    if (frame == null) {
+      throw new RuntimeException("No frame found in current page with name or id [" + frameNameOrId + "]");
+    }
+    setMainWindow(frame);
+  }
+
+  // Forms
+
+  private List<Element> getForms() {
+    return getCurrentPage().getElementsByTagName("form");
+  }
+
+  private Element getForm(String nameOrID, int index) {
+    int count = 0;
+    for (Element f : getForms()) {
+      if (nameOrID.equals(f.getAttribute("id")) || nameOrID.equals(f.getAttribute("name"))) {
+        if (count++ == index) {
+          return f;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Return the current form, which is the first form of the page if none has been set.
+   *
+   * @return the current form
+   */
+  private Element getForm() {
+    if (form == null) {
+      List<Element> forms = getForms();
+      if (forms.isEmpty()) {
+        throw new RuntimeException("No form in current page");
+      }
+      form = forms.get(0);
+    }
+    return form;
+  }
+
+  @Override
+  public void setWorkingForm(int index) {
+    List<Element> forms = getForms();
+    if (index < 0 || index >= forms.size()) {
+      throw new UnableToSetFormException("No form found in current page with index " + index);
+    }
+    form = forms.get(index);
+  }
+
+  @Override
+  public void setWorkingForm(String nameOrId, int index) {
+    Element f = getForm(nameOrId, index);
+    if (f == null) {
+      throw new UnableToSetFormException("No form found in current page with name or id [" + nameOrId
+        + "] and index " + index);
+    }
+    form = f;
+  }
+
+  @Override
+  public boolean hasForm() {
+    return !getForms().isEmpty();
+  }
+
+  @Override
+  public boolean hasForm(String nameOrID) {
+    return getForm(nameOrID, 0) != null;
+  }
+
+  @Override
+  public boolean hasForm(String nameOrID, int index) {
+    return getForm(nameOrID, index) != null;
+  }
+
+  /**
+   * Get the controls with a given name, in document order.
+   *
+   * @param root where to search
+   */
+  private static List<Element> getControlsByName(Element root, String name) {
+    List<Element> result = new ArrayList<>();
+    NodeList all = root.getElementsByTagName("*");
+    for (int i = 0; i < all.getLength(); i++) {
+      Element e = (Element) all.item(i);
+      if (FormControls.isControl(e) && name.equals(e.getAttribute("name"))) {
+        result.add(e);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Find a control with a given name, first in the current form then anywhere in the page, in which case its form
+   * becomes the current form.
+   *
+   * @param name name of the control
+   * @param filter accepts the control looked for
+   * @return the control, or <code>null</code>
+   */
+  private Element findControl(String name, ControlFilter filter) {
+    if (form != null) {
+      for (Element e : getControlsByName(form, name)) {
+        if (filter.accept(e)) {
+          return e;
+        }
+      }
+    }
+    for (Element e : getControlsByName(getCurrentPage().getDocument().getDocumentElement(), name)) {
+      if (filter.accept(e)) {
+        Element f = FormControls.getForm(e);
+        if (f != null) {
+          form = f;
+        }
+        return e;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Selects form controls.
+   */
+  private interface ControlFilter {
+    boolean accept(Element control);
+  }
+
+  private static final ControlFilter TEXT_FIELD = new ControlFilter() {
+    @Override
+    public boolean accept(Element control) {
+      return "textarea".equals(control.getTagName()) || FormControls.is(control, "input", "text", "password",
+        "file", "email", "search", "tel", "url", "number", "date", "hidden", "color", "range", "month", "week",
+        "time", "datetime", "datetime-local");
+    }
+  };
+
+  private static final ControlFilter HIDDEN_FIELD = new ControlFilter() {
+    @Override
+    public boolean accept(Element control) {
+      return FormControls.is(control, "input", "hidden");
+    }
+  };
+
+  @Override
+  public boolean hasFormParameterNamed(String paramName) {
+    for (Element e : getControlsByName(getCurrentPage().getDocument().getDocumentElement(), paramName)) {
+      Element f = FormControls.getForm(e);
+      // set the working form if none has been set
+      if (f != null && form == null) {
+        form = f;
+      }
+      return true;
+    }
+    return false;
+  }
+
+  @Override
+  public String getTextFieldValue(String paramName) {
+    Element e = findControl(paramName, TEXT_FIELD);
+    if (e == null) {
+      throw new RuntimeException("getTextFieldParameterValue failed, text field with name [" + paramName
+        + "] does not exist.");
+    }
+    return FormControls.getValue(e);
+  }
+
+  @Override
+  public String getHiddenFieldValue(String paramName) {
+    Element e = findControl(paramName, HIDDEN_FIELD);
+    if (e == null) {
+      throw new RuntimeException("No hidden field with name [" + paramName + "] was found.");
+    }
+    return FormControls.getValue(e);
+  }
+
+  @Override
+  public void setTextField(String inputName, String text) {
+    Element e = findControl(inputName, TEXT_FIELD);
+    if (e == null) {
+      throw new RuntimeException("No text field with name [" + inputName + "] was found.");
+    }
+    if ("input".equals(e.getTagName()) && e.hasAttribute("maxlength")) {
+      try {
+        int maxLength = Integer.parseInt(e.getAttribute("maxlength").trim());
+        if (text.length() > maxLength) {
+          text = text.substring(0, maxLength);
+        }
+      } catch (NumberFormatException ex) {
+        // no limit
+      }
+    }
+    FormControls.setValue(e, text);
+  }
+
+  @Override
+  public void setHiddenField(String inputName, String text) {
+    Element e = findControl(inputName, HIDDEN_FIELD);
+    if (e == null) {
+      throw new RuntimeException("No hidden field with name [" + inputName + "] was found.");
+    }
+    FormControls.setValue(e, text);
+  }
+
+  private Element getSelect(String selectName, int index) {
+    int count = 0;
+    for (Element e : getControlsByName(getForm(), selectName)) {
+      if ("select".equals(e.getTagName()) && count++ == index) {
+        return e;
+      }
+    }
+    throw new RuntimeException("Did not find select with name [" + selectName + "] at index " + index);
+  }
+
+  @Override
+  public String[] getSelectOptionValues(String selectName) {
+    return getSelectOptionValues(selectName, 0);
+  }
+
+  @Override
+  public String[] getSelectOptionValues(String selectName, int index) {
+    List<String> result = new ArrayList<>();
+    for (Element option : FormControls.getOptions(getSelect(selectName, index))) {
+      result.add(FormControls.getValue(option));
+    }
+    return result.toArray(new String[result.size()]);
+  }
+
+  @Override
+  public String[] getSelectedOptions(String selectName) {
+    return getSelectedOptions(selectName, 0);
+  }
+
+  @Override
+  public String[] getSelectedOptions(String selectName, int index) {
+    List<String> result = new ArrayList<>();
+    for (Element option : FormControls.getSelectedOptions(getSelect(selectName, index))) {
+      result.add(FormControls.getValue(option));
+    }
+    return result.toArray(new String[result.size()]);
+  }
+
+  @Override
+  public String getSelectOptionLabelForValue(String selectName, String optionValue) {
+    return getSelectOptionLabelForValue(selectName, 0, optionValue);
+  }
+
+  @Override
+  public String getSelectOptionLabelForValue(String selectName, int index, String optionValue) {
+    for (Element option : FormControls.getOptions(getSelect(selectName, index))) {
+      if (FormControls.getValue(option).equals(optionValue)) {
+        return FormControls.getLabel(option);
+      }
+    }
+    throw new RuntimeException("Unable to find option " + optionValue + " for " + selectName);
+  }
+
+  @Override
+  public String getSelectOptionValueForLabel(String selectName, String optionLabel) {
+    return getSelectOptionValueForLabel(selectName, 0, optionLabel);
+  }
+
+  @Override
+  public String getSelectOptionValueForLabel(String selectName, int index, String optionLabel) {
+    for (Element option : FormControls.getOptions(getSelect(selectName, index))) {
+      if (FormControls.getLabel(option).equals(optionLabel)) {
+        return FormControls.getValue(option);
+      }
+    }
+    throw new RuntimeException("Unable to find option " + optionLabel + " for " + selectName);
+  }
+
+  @Override
+  public void selectOptions(String selectName, String[] optionValues) {
+    selectOptions(selectName, 0, optionValues);
+  }
+
+  @Override
+  public void selectOptions(String selectName, int index, String[] optionValues) {
+    setSelected(getSelect(selectName, index), optionValues, true);
+  }
+
+  @Override
+  public void unselectOptions(String selectName, String[] optionValues) {
+    unselectOptions(selectName, 0, optionValues);
+  }
+
+  @Override
+  public void unselectOptions(String selectName, int index, String[] optionValues) {
+    setSelected(getSelect(selectName, index), optionValues, false);
+  }
+
+  private static void setSelected(Element select, String[] optionValues, boolean selected) {
+    if (!FormControls.isMultiple(select) && optionValues.length > 1) {
+      throw new RuntimeException("Multiselect not enabled");
+    }
+    for (String value : optionValues) {
+      boolean found = false;
+      for (Element option : FormControls.getOptions(select)) {
+        if (FormControls.getValue(option).equals(value)) {
+          FormControls.setSelected(select, option, selected);
+          found = true;
+          break;
+        }
+      }
+      if (!found) {
+        throw new RuntimeException("Option " + value + " not found");
+      }
+    }
+  }
+
+  @Override
+  public boolean hasSelectOption(String selectName, String optionLabel) {
+    return hasSelectOption(selectName, 0, optionLabel);
+  }
+
+  @Override
+  public boolean hasSelectOptionValue(String selectName, String optionValue) {
+    return hasSelectOptionValue(selectName, 0, optionValue);
+  }
+
+  @Override
+  public boolean hasSelectOption(String selectName, int index, String optionLabel) {
+    for (Element option : FormControls.getOptions(getSelect(selectName, index))) {
+      if (FormControls.getLabel(option).equals(optionLabel)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public boolean hasSelectOptionValue(String selectName, int index, String optionValue) {
+    for (Element option : FormControls.getOptions(getSelect(selectName, index))) {
+      if (FormControls.getValue(option).equals(optionValue)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private Element getCheckbox(String checkBoxName, String value) {
+    for (Element e : getControlsByName(getForm(), checkBoxName)) {
+      if (FormControls.is(e, "input", "checkbox") && (value == null || FormControls.getValue(e).equals(value))) {
+        return e;
+      }
+    }
+    if (value == null) {
+      throw new RuntimeException("No checkbox with name [" + checkBoxName + "] was found in current form.");
+    }
+    throw new RuntimeException("No checkbox with name [" + checkBoxName + "] and value [" + value
+      + "] was found in current form.");
+  }
+
+  @Override
+  public boolean isCheckboxSelected(String checkBoxName) {
+    return FormControls.isChecked(getCheckbox(checkBoxName, null));
+  }
+
+  @Override
+  public boolean isCheckboxSelected(String checkBoxName, String checkBoxValue) {
+    return FormControls.isChecked(getCheckbox(checkBoxName, checkBoxValue));
+  }
+
+  @Override
+  public void checkCheckbox(String checkBoxName) {
+    FormControls.setChecked(getCheckbox(checkBoxName, null), true);
+  }
+
+  @Override
+  public void checkCheckbox(String checkBoxName, String checkBoxValue) {
+    FormControls.setChecked(getCheckbox(checkBoxName, checkBoxValue), true);
+  }
+
+  @Override
+  public void uncheckCheckbox(String checkBoxName) {
+    FormControls.setChecked(getCheckbox(checkBoxName, null), false);
+  }
+
+  @Override
+  public void uncheckCheckbox(String checkBoxName, String value) {
+    FormControls.setChecked(getCheckbox(checkBoxName, value), false);
+  }
+
+  private Element getRadioOption(String radioGroup, String radioOption) {
+    for (Element f : getForms()) {
+      for (Element e : getControlsByName(f, radioGroup)) {
+        if (FormControls.is(e, "input", "radio") && FormControls.getValue(e).equals(radioOption)) {
+          return e;
+        }
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public void clickRadioOption(String radioGroup, String radioOptionValue) {
+    Element radio = getRadioOption(radioGroup, radioOptionValue);
+    if (radio == null) {
+      throw new RuntimeException("No radio option [" + radioOptionValue + "] in group [" + radioGroup + "]");
+    }
+    FormControls.setChecked(radio, true);
+  }
+
+  @Override
+  public boolean hasRadioOption(String radioGroup, String radioOptionValue) {
+    return getRadioOption(radioGroup, radioOptionValue) != null;
+  }
+
+  @Override
+  public String getSelectedRadio(String radioGroup) {
+    for (Element e : getControlsByName(getForm(), radioGroup)) {
+      if (FormControls.is(e, "input", "radio") && FormControls.isChecked(e)) {
+        return FormControls.getValue(e);
+      }
+    }
+    throw new RuntimeException("Unexpected state: no radio button was selected in radio group [" + radioGroup
+      + "]. Is it possible in a real browser?");
+  }
+
+  // Buttons
+
+  private static boolean isSubmitButton(Element e) {
+    return FormControls.is(e, "input", "submit", "image") || FormControls.is(e, "button", "submit");
+  }
+
+  private static boolean isResetButton(Element e) {
+    return FormControls.is(e, "input", "reset") || FormControls.is(e, "button", "reset");
+  }
+
+  /**
+   * Find a button in the current form, or in all the forms if none is set, in which case the form of the button
+   * becomes the current form.
+   *
+   * @param name name of the button, or <code>null</code> for any name
+   * @param value value of the button, or <code>null</code> for any value
+   * @param submit true for a submit button, false for a reset button
+   */
+  private Element getButton(String name, String value, boolean submit) {
+    List<Element> forms = form != null ? Collections.singletonList(form) : getForms();
+    for (Element f : forms) {
+      for (Element e : FormControls.getControls(f)) {
+        if ((submit ? isSubmitButton(e) : isResetButton(e)) && (name == null || name.equals(e.getAttribute("name")))
+          && (value == null || value.equals(FormControls.getValue(e)))) {
+          if (form == null) {
+            form = f;
+          }
+          return e;
+        }
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public boolean hasSubmitButton() {
+    return getButton(null, null, true) != null;
+  }
+
+  @Override
+  public boolean hasSubmitButton(String nameOrID) {
+    return getButton(nameOrID, null, true) != null;
+  }
+
+  @Override
+  public boolean hasSubmitButton(String nameOrID, String value) {
+    return getButton(nameOrID, value, true) != null;
+  }
+
+  @Override
+  public void submit() {
+    Element button = getButton(null, null, true);
+    if (button == null) {
+      throw new RuntimeException("No submit button found in current form.");
+    }
+    submitForm(FormControls.getForm(button), button);
+  }
+
+  @Override
+  public void submit(String buttonName) {
+    Element button = getButton(buttonName, null, true);
+    if (button == null) {
+      throw new RuntimeException("No submit button found in current form.");
+    }
+    submitForm(FormControls.getForm(button), button);
+  }
+
+  @Override
+  public void submit(String buttonName, String buttonValue) {
+    Element button = getButton(buttonName, buttonValue, true);
+    if (button == null) {
+      throw new RuntimeException("No submit button found in current form with name [" + buttonName
+        + "] and value [" + buttonValue + "].");
+    }
+    submitForm(FormControls.getForm(button), button);
+  }
+
+  @Override
+  public boolean hasResetButton() {
+    for (Element e : FormControls.getControls(getForm())) {
+      if (isResetButton(e)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public boolean hasResetButton(String nameOrID) {
+    return getButton(nameOrID, null, false) != null;
+  }
+
+  @Override
+  public void reset() {
+    FormControls.reset(getForm());
+  }
+
+  private Element getButtonById(String buttonId) {
+    Element e = getElement(buttonId);
+    if (e != null && (FormControls.is(e, "button") || FormControls.is(e, "input", "button", "submit", "reset"))) {
+      return e;
+    }
+    return null;
+  }
+
+  private Element getButtonWithText(String text) {
+    if (text == null) {
+      throw new NullPointerException("Cannot search for button with null text");
+    }
+    NodeList all = getCurrentPage().getDocument().getElementsByTagName("*");
+    for (int i = 0; i < all.getLength(); i++) {
+      Element e = (Element) all.item(i);
+      if ("button".equals(e.getTagName())) {
+        if (text.equals(e.getTextContent())) {
+          return e;
+        }
+      } else if (FormControls.is(e, "input", "button", "submit", "reset")) {
+        if (text.equals(e.getAttribute("value"))) {
+          return e;
+        }
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public boolean hasButtonWithText(String text) {
+    return getButtonWithText(text) != null;
+  }
+
+  @Override
+  public boolean hasButton(String buttonId) {
+    return getButtonById(buttonId) != null;
+  }
+
+  @Override
+  public void clickButton(String buttonId) {
+    Element button = getButtonById(buttonId);
+    if (button == null) {
+      throw new RuntimeException("No button found with id [" + buttonId + "]");
+    }
+    click(button);
+  }
+
+  @Override
+  public void clickButtonWithText(String buttonValueText) {
+    Element button = getButtonWithText(buttonValueText);
+    if (button == null) {
+      throw new RuntimeException("No button found with text: " + buttonValueText);
+    }
+    click(button);
+  }
+
+  // Page content
+
+  @Override
+  public URL getPageURL() {
+    return getPage().getUrl();
+  }
+
+  @Override
+  public String getPageText() {
+    return getPage().getText();
+  }
+
+  @Override
+  public String getPageSource() {
+    return getPage().getContentAsString();
+  }
+
+  @Override
+  public String getPageTitle() {
+    return getPage().getTitle();
+  }
+
+  @Override
+  public String getServerResponse() {
+    Page page = getPage();
+    StringBuilder result = new StringBuilder();
+    result.append(page.getStatusCode()).append(" ").append(page.getStatusMessage()).append("\n");
+    result.append("Location: ").append(page.getUrl()).append("\n");
+    for (HttpHeader h : page.getHeaders()) {
+      result.append(h.getName()).append(": ").append(h.getValue()).append("\n");
+    }
+    result.append("\n");
+    result.append(page.getContentAsString());
+    return result.toString();
+  }
+
+  @Override
+  public InputStream getInputStream() {
+    return new ByteArrayInputStream(getPage().getContent());
+  }
+
+  @Override
+  public InputStream getInputStream(URL url) throws TestingEngineResponseException {
+    Page page = load(new HttpGet(toURI(url)));
+    int status = page.getStatusCode();
+    if (status >= HttpStatus.SC_BAD_REQUEST) {
+      throw new TestingEngineResponseException(status, "unexpected status code [" + status + "] at URL: ["
+        + url + "]");
+    }
+    return new ByteArrayInputStream(page.getContent());
+  }
+
+  // Tables
+
+  private Element getHtmlTable(String tableSummaryNameOrId) {
+    Element e = getElement(tableSummaryNameOrId);
+    if (e != null && "table".equals(e.getTagName())) {
+      return e;
+    }
+    for (Element table : getCurrentPage().getElementsByTagName("table")) {
+      if (tableSummaryNameOrId.equals(table.getAttribute("summary"))) {
+        return table;
+      }
+    }
+    for (Element table : getCurrentPage().getElementsByTagName("table")) {
+      if (tableSummaryNameOrId.equals(table.getAttribute("name"))) {
+        return table;
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public boolean hasTable(String tableSummaryNameOrId) {
+    return getHtmlTable(tableSummaryNameOrId) != null;
+  }
+
+  @Override
+  public Table getTable(String tableSummaryNameOrId) {
+    StreamingTable table = getStreamingTable(tableSummaryNameOrId);
+    Table result = new Table();
+    for (int i = 0; i < table.getRowCount(); i++) {
+      result.appendRow(table.getRow(i));
+    }
+    return result;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The rows are listed once, but the text of the cells of a row is only read when the row is.</p>
+   */
+  @Override
+  public StreamingTable getStreamingTable(String tableSummaryNameOrId) {
+    Element table = getHtmlTable(tableSummaryNameOrId);
+    if (table == null) {
+      throw new RuntimeException("No table with summary or id [" + tableSummaryNameOrId + "] found in response.");
+    }
+    final List<Element> rows = getRows(table);
+    return new StreamingTable() {
+      @Override
+      public int getRowCount() {
+        return rows.size();
+      }
+
+      @Override
+      public Row getRow(int index) {
+        Row newRow = new Row();
+        for (Node n = rows.get(index).getFirstChild(); n != null; n = n.getNextSibling()) {
+          if (n.getNodeType() == Node.ELEMENT_NODE) {
+            Element cell = (Element) n;
+            if ("td".equals(cell.getTagName()) || "th".equals(cell.getTagName())) {
+              newRow.appendCell(new Cell(PageText.getText(cell), getSpan(cell, "colspan"), getSpan(cell,
+                "rowspan")));
+            }
+          }
+        }
+        return newRow;
+      }
+    };
+  }
+
+  /**
+   * Get the rows of a table, not of its nested tables: the header rows first, then the body rows, then the footer
+   * rows.
+   */
+  private static List<Element> getRows(Element table) {
+    List<Element> head = new ArrayList<>();
+    List<Element> body = new ArrayList<>();
+    List<Element> foot = new ArrayList<>();
+    for (Node n = table.getFirstChild(); n != null; n = n.getNextSibling()) {
+      if (n.getNodeType() != Node.ELEMENT_NODE) {
+        continue;
+      }
+      Element e = (Element) n;
+      switch (e.getTagName()) {
+        case "tr":
+          body.add(e);
+          break;
+        case "thead":
+          addRows(e, head);
+          break;
+        case "tfoot":
+          addRows(e, foot);
+          break;
+        case "tbody":
+          addRows(e, body);
+          break;
+        default:
+          break;
+      }
+    }
+    head.addAll(body);
+    head.addAll(foot);
+    return head;
+  }
+
+  private static void addRows(Element section, List<Element> rows) {
+    for (Node n = section.getFirstChild(); n != null; n = n.getNextSibling()) {
+      if (n.getNodeType() == Node.ELEMENT_NODE && "tr".equals(((Element) n).getTagName())) {
+        rows.add((Element) n);
+      }
+    }
+  }
+
+  private static int getSpan(Element cell, String attribute) {
+    try {
+      return Math.max(1, Integer.parseInt(cell.getAttribute(attribute).trim()));
+    } catch (NumberFormatException e) {
+      return 1;
+    }
+  }
+
+  // Links
+
+  private List<Element> getLinks() {
+    return getCurrentPage().getElementsByTagName("a");
+  }
+
+  private Element getLinkWithText(String linkText, int index) {
+    int count = 0;
+    for (Element link : getLinks()) {
+      if (PageText.getText(link).contains(linkText) && count++ == index) {
+        return link;
+      }
+    }
+    return null;
+  }
+
+  private Element getLinkWithExactText(String linkText, int index) {
+    int count = 0;
+    for (Element link : getLinks()) {
+      if (PageText.getText(link).equals(linkText) && count++ == index) {
+        return link;
+      }
+    }
+    return null;
+  }
+
+  private Element getLinkWithImage(String filename, int index) {
+    int count = 0;
+    for (Element link : getLinks()) {
+      for (Element img : XPathHelper.getElements(link, ".//img")) {
+        if (img.getAttribute("src").contains(filename)) {
+          if (count++ == index) {
+            return link;
+          }
+          break;
+        }
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public boolean hasLinkWithText(String linkText, int index) {
+    return getLinkWithText(linkText, index) != null;
+  }
+
+  @Override
+  public boolean hasLinkWithExactText(String linkText, int index) {
+    return getLinkWithExactText(linkText, index) != null;
+  }
+
+  @Override
+  public boolean hasLinkWithImage(String imageFileName, int index) {
+    return getLinkWithImage(imageFileName, index) != null;
+  }
+
+  @Override
+  public boolean hasLink(String anId) {
+    return getElement(anId) != null;
+  }
+
+  @Override
+  public void clickLinkWithText(String linkText, int index) {
+    Element link = getLinkWithText(linkText, index);
+    if (link == null) {
+      throw new RuntimeException("No Link found for \"" + linkText + "\" with index " + index);
+    }
+    followLink(link);
+  }
+
+  @Override
+  public void clickLinkWithExactText(String linkText, int index) {
+    Element link = getLinkWithExactText(linkText, index);
+    if (link == null) {
+      throw new RuntimeException("No Link found for \"" + linkText + "\" with index " + index);
+    }
+    followLink(link);
+  }
+
+  @Override
+  public void clickLink(String anID) {
+    Element link = getElement(anID);
+    if (link == null || !"a".equals(link.getTagName())) {
+      throw new RuntimeException("No link found with id [" + anID + "]");
+    }
+    followLink(link);
+  }
+
+  @Override
+  public void clickLinkWithImage(String imageFileName, int index) {
+    Element link = getLinkWithImage(imageFileName, index);
+    if (link == null) {
+      throw new RuntimeException("No Link found with filename \"" + imageFileName + "\" and index " + index);
+    }
+    followLink(link);
+  }
+
+  // Elements
+
+  @Override
+  public boolean hasElement(String anID) {
+    return getElement(anID) != null;
+  }
+
+  @Override
+  public boolean hasElementByXPath(String xpath) {
+    return getElementByXPathInternal(xpath) != null;
+  }
+
+  @Override
+  public void clickElementByXPath(String xpath) {
+    Element e = getElementByXPathInternal(xpath);
+    if (e == null) {
+      throw new RuntimeException("No element found with xpath \"" + xpath + "\"");
+    }
+    click(e);
+  }
+
+  @Override
+  public String getElementAttributByXPath(String xpath, String attribut) {
+    Element e = getElementByXPathInternal(xpath);
+    if (e == null) {
+      return null;
+    }
+    return e.getAttribute(attribut);
+  }
+
+  @Override
+  public String getElementTextByXPath(String xpath) {
+    Element e = getElementByXPathInternal(xpath);
+    if (e == null) {
+      return null;
+    }
+    return PageText.getText(e);
+  }
+
+  @Override
+  public boolean isTextInElement(String elementID, String text) {
+    return PageText.getText(getExistingElement(elementID)).contains(text);
+  }
+
+  @Override
+  public boolean isMatchInElement(String elementID, String regexp) {
+    return RegexpCache.match(regexp, PageText.getText(getExistingElement(elementID)));
+  }
+
+  private Element getExistingElement(String id) {
+    Element e = getElement(id);
+    if (e == null) {
+      throw new RuntimeException("No element found with id [" + id + "]");
+    }
+    return e;
+  }
+
+  @Override
+  public IElement getElementByXPath(String xpath) {
+    Element e = getElementByXPathInternal(xpath);
+    return e == null ? null : new HttpClientElementImpl(e);
+  }
+
+  @Override
+  public IElement getElementByID(String id) {
+    Element e = getElement(id);
+    return e == null ? null : new HttpClientElementImpl(e);
+  }
+
+  @Override
+  public List<IElement> getElementsByXPath(String xpath) {
+    List<IElement> result = new ArrayList<>();
+    for (Element e : XPathHelper.getElements(getCurrentPage().getDocument(), xpath)) {
+      result.add(new HttpClientElementImpl(e));
+    }
+    return result;
+  }
+
+  @Override
+  public List<String> getComments() {
+    List<String> comments = new ArrayList<>();
+    getComments(comments, getCurrentPage().getDocument());
+    return comments;
+  }
+
+  private static void getComments(List<String> comments, Node node) {
+    for (Node n = node.getFirstChild(); n != null; n = n.getNextSibling()) {
+      if (n instanceof Comment) {
+        comments.add(((Comment) n).getData().trim());
+      }
+      getComments(comments, n);
+    }
+  }
+
+  // JavaScript
+
+  @Override
+  public void setExpectedJavaScriptAlert(JavascriptAlert[] alerts) throws ExpectedJavascriptAlertException {
+    throw new UnsupportedOperationException("JavaScript is not supported by the HttpClient engine");
+  }
+
+  @Override
+  public void setExpectedJavaScriptConfirm(JavascriptConfirm[] confirms) throws ExpectedJavascriptConfirmException {
+    throw new UnsupportedOperationException("JavaScript is not supported by the HttpClient engine");
+  }
+
+  @Override
+  public void setExpectedJavaScriptPrompt(JavascriptPrompt[] prompts) throws ExpectedJavascriptPromptException {
+    throw new UnsupportedOperationException("JavaScript is not supported by the HttpClient engine");
+  }
+
+  // Response
+
+  @Override
+  public int getServerResponseCode() {
+    return getPage().getStatusCode();
+  }
+
+  @Override
+  public String getHeader(String name) {
+    return getPage().getHeader(name);
+  }
+
+  @Override
+  @Deprecated
+  public Map<String, String> getAllHeaders() {
+    Map<String, String> map = new HashMap<>();
+    for (HttpHeader header : getPage().getHeaders()) {
+      map.put(header.getName(), header.getValue());
+    }
+    return map;
+  }
+
+  @Override
+  public List<HttpHeader> getResponseHeaders() {
+    return new LinkedList<>(getPage().getHeaders());
+  }
+
+  @Override
+  public void setIgnoreFailingStatusCodes(boolean ignore) {
+    ignoreFailingStatusCodes = ignore;
+  }
+
+  @Override
+  public void setTimeout(int milliseconds) {
+    if (client != null) {
+      throw new IllegalArgumentException("Cannot set the timeout when the HTTP client has already been created.");
+    }
+    timeout = milliseconds;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Without JavaScript a page never changes by itself, so the condition is only checked once.</p>
+   */
+  @Override
+  public long waitForCondition(Condition condition, long timeout) {
+    return condition.isSatisfied(this) ? 0 : -1;
+  }
+
+  @Override
+  public long waitForText(String text, long timeout) {
+    return getPageText().contains(text) ? 0 : -1;
+  }
+
+  @Override
+  public long waitForElementByXPath(String xpath, long timeout) {
+    return hasElementByXPath(xpath) ? 0 : -1;
+  }
+
+  @Override
+  public ITestingEngine fork(TestContext aTestContext) {
+    if (client == null) {
+      throw new IllegalStateException("Cannot fork a conversation that has not begun.");
+    }
+    checkSupported(aTestContext);
+    HttpClientTestingEngineImpl fork = new HttpClientTestingEngineImpl();
+    fork.ignoreFailingStatusCodes = ignoreFailingStatusCodes;
+    fork.timeout = timeout;
+    fork.windowCounter = windowCounter;
+    fork.testContext = aTestContext;
+    fork.initClient();
+    for (Cookie cookie : cookieStore.getCookies()) {
+      fork.cookieStore.addCookie(cookie);
+    }
+    // without JavaScript, the state of the conversation is the DOM of the pages
+    Map<Node, Node> nodes = new IdentityHashMap<>();
+    Map<Window, Window> forkedWindows = new IdentityHashMap<>();
+    for (Window window : windows) {
+      fork.windows.add(window.copy(null, nodes, forkedWindows));
+    }
+    fork.win = forkedWindows.get(win);
+    fork.form = form == null ? null : (Element) nodes.get(form);
+    return fork;
+  }
+
+  @Override
+  public BlockedRequestCounter getBlockedRequests() {
+    return blockedRequests;
+  }
+
+}
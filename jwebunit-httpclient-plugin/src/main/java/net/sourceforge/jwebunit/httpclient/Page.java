@@ -0,0 +1,349 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.httpclient;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import net.sourceforge.htmlunit.cyberneko.parsers.DOMParser;
+import net.sourceforge.jwebunit.api.HttpHeader;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.events.Event;
+import org.w3c.dom.events.EventListener;
+import org.w3c.dom.events.EventTarget;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * A response loaded by the {@link HttpClientTestingEngineImpl}. HTML responses are parsed with NekoHTML into a plain
+ * DOM, with lower case element and attribute names and without namespaces, so that standard XPath expressions like
+ * <code>//table[@id='t']</code> can be used on any page, HTML or XHTML.
+ */
+public class Page {
+
+  /**
+   * Charset of the responses that don't declare one, as browsers do.
+   */
+  private static final Charset DEFAULT_CHARSET = StandardCharsets.ISO_8859_1;
+
+  private static final Pattern META_CHARSET = Pattern.compile(
+    "<meta[^>]+charset\\s*=\\s*[\"']?([\\w.:-]+)", Pattern.CASE_INSENSITIVE);
+
+  private final URL url;
+
+  private final int statusCode;
+
+  private final String statusMessage;
+
+  private final List<HttpHeader> headers;
+
+  private final byte[] content;
+
+  private final String mimeType;
+
+  private final Charset charset;
+
+  private String source;
+
+  private Document document;
+
+  /**
+   * Text of the page, dropped when its DOM is modified.
+   */
+  private String text;
+
+  /**
+   * @param url URL of the page, after redirections
+   * @param statusCode status code of the response
+   * @param statusMessage status message of the response
+   * @param headers headers of the response
+   * @param content body of the response
+   */
+  public Page(URL url, int statusCode, String statusMessage, List<HttpHeader> headers, byte[] content) {
+    this.url = url;
+    this.statusCode = statusCode;
+    this.statusMessage = statusMessage;
+    this.headers = Collections.unmodifiableList(new ArrayList<>(headers));
+    this.content = content == null ? new byte[0] : content;
+    String contentType = getHeader("Content-Type");
+    this.mimeType = getMimeType(contentType);
+    this.charset = getCharset(contentType, mimeType, this.content);
+  }
+
+  private static String getMimeType(String contentType) {
+    if (contentType == null) {
+      return "text/html";
+    }
+    int index = contentType.indexOf(';');
+    return (index < 0 ? contentType : contentType.substring(0, index)).trim().toLowerCase(Locale.ENGLISH);
+  }
+
+  private static Charset getCharset(String contentType, String mimeType, byte[] content) {
+    if (contentType != null) {
+      Matcher m = Pattern.compile("charset\\s*=\\s*[\"']?([\\w.:-]+)", Pattern.CASE_INSENSITIVE).matcher(contentType);
+      if (m.find()) {
+        Charset charset = forName(m.group(1));
+        if (charset != null) {
+          return charset;
+        }
+      }
+    }
+    if (content.length >= 3 && (content[0] & 0xFF) == 0xEF && (content[1] & 0xFF) == 0xBB
+      && (content[2] & 0xFF) == 0xBF) {
+      return StandardCharsets.UTF_8;
+    }
+    if (isHtml(mimeType)) {
+      String head = new String(content, 0, Math.min(content.length, 1024), StandardCharsets.ISO_8859_1);
+      Matcher m = META_CHARSET.matcher(head);
+      if (m.find()) {
+        Charset charset = forName(m.group(1));
+        if (charset != null) {
+          return charset;
+        }
+      }
+    }
+    return DEFAULT_CHARSET;
+  }
+
+  private static Charset forName(String name) {
+    try {
+      return Charset.forName(name);
+    } catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+      return null;
+    }
+  }
+
+  private static boolean isHtml(String mimeType) {
+    return "text/html".equals(mimeType) || "application/xhtml+xml".equals(mimeType);
+  }
+
+  public URL getUrl() {
+    return url;
+  }
+
+  public int getStatusCode() {
+    return statusCode;
+  }
+
+  public String getStatusMessage() {
+    return statusMessage;
+  }
+
+  public List<HttpHeader> getHeaders() {
+    return headers;
+  }
+
+  /**
+   * @param name name of the header, case insensitive
+   * @return the value of the first header with this name, or <code>null</code>
+   */
+  public String getHeader(String name) {
+    for (HttpHeader header : headers) {
+      if (header.getName().equalsIgnoreCase(name)) {
+        return header.getValue();
+      }
+    }
+    return null;
+  }
+
+  public byte[] getContent() {
+    return content;
+  }
+
+  /**
+   * @return the mime type of the response, in lower case and without parameters
+   */
+  public String getMimeType() {
+    return mimeType;
+  }
+
+  public Charset getCharset() {
+    return charset;
+  }
+
+  /**
+   * @return the body of the response, decoded with its charset
+   */
+  public String getContentAsString() {
+    if (source == null) {
+      String s = new String(content, charset);
+      source = s.startsWith("\uFEFF") ? s.substring(1) : s;
+    }
+    return source;
+  }
+
+  /**
+   * @return true if the response is an HTML page
+   */
+  public boolean isHtml() {
+    return isHtml(mimeType);
+  }
+
+  /**
+   * Get the DOM of the page, parsing the response the first time.
+   *
+   * @return the document
+   * @throws RuntimeException if the response is not an HTML page
+   */
+  public Document getDocument() {
+    if (document == null) {
+      if (!isHtml()) {
+        throw new RuntimeException("Non HTML content");
+      }
+      setDocument(parse(getContentAsString()));
+    }
+    return document;
+  }
+
+  private void setDocument(Document doc) {
+    document = doc;
+    ((EventTarget) document).addEventListener("DOMSubtreeModified", new EventListener() {
+      @Override
+      public void handleEvent(Event evt) {
+        text = null;
+      }
+    }, true);
+  }
+
+  /**
+   * Copy the page for a forked conversation, with the current state of its DOM, including the values entered in its
+   * forms.
+   *
+   * @param nodes receives the nodes of the copy by node of this page
+   * @return the copy
+   */
+  Page copy(Map<Node, Node> nodes) {
+    Page copy = new Page(url, statusCode, statusMessage, headers, content);
+    if (document != null) {
+      copy.setDocument((Document) document.cloneNode(true));
+      copyNodes(document, copy.document, nodes);
+    }
+    return copy;
+  }
+
+  private static void copyNodes(Node node, Node copy, Map<Node, Node> nodes) {
+    nodes.put(node, copy);
+    if (node instanceof Element) {
+      FormControls.copyDefaultState((Element) node, (Element) copy);
+    }
+    Node child = node.getFirstChild();
+    Node childCopy = copy.getFirstChild();
+    while (child != null && childCopy != null) {
+      copyNodes(child, childCopy, nodes);
+      child = child.getNextSibling();
+      childCopy = childCopy.getNextSibling();
+    }
+  }
+
+  /**
+   * Get the text of the page as displayed, or the content of a non HTML response. The text is cached until the page
+   * is modified, for example when a form field is set.
+   *
+   * @return the text of the page
+   */
+  public String getText() {
+    if (!isHtml()) {
+      return getContentAsString();
+    }
+    if (text == null) {
+      List<Element> bodies = getElementsByTagName("body");
+      text = PageText.getText(bodies.isEmpty() ? getDocument().getDocumentElement() : bodies.get(0));
+    }
+    return text;
+  }
+
+  /**
+   * Parse HTML into a DOM that can be modified and queried with XPath.
+   *
+   * @param html the HTML source
+   * @return the document
+   */
+  static Document parse(String html) {
+    DOMParser parser = new DOMParser();
+    try {
+      parser.setFeature("http://xml.org/sax/features/namespaces", false);
+      parser.setFeature("http://apache.org/xml/features/dom/defer-node-expansion", false);
+      parser.setProperty("http://cyberneko.org/html/properties/names/elems", "lower");
+      parser.setProperty("http://cyberneko.org/html/properties/names/attrs", "lower");
+      parser.setProperty("http://apache.org/xml/properties/dom/document-class-name",
+        "org.apache.xerces.dom.DocumentImpl");
+      parser.parse(new InputSource(new StringReader(html)));
+    } catch (SAXException | IOException e) {
+      throw new RuntimeException("Unable to parse HTML", e);
+    }
+    return parser.getDocument();
+  }
+
+  /**
+   * @return the text of the title of the page, or an empty string
+   */
+  public String getTitle() {
+    if (!isHtml()) {
+      return "";
+    }
+    NodeList titles = getDocument().getElementsByTagName("title");
+    if (titles.getLength() == 0) {
+      return "";
+    }
+    return PageText.normalize(titles.item(0).getTextContent()).trim();
+  }
+
+  /**
+   * @param id id of the element
+   * @return the first element of the page with this id, or <code>null</code>
+   */
+  public Element getElementById(String id) {
+    NodeList all = getDocument().getElementsByTagName("*");
+    for (int i = 0; i < all.getLength(); i++) {
+      Element e = (Element) all.item(i);
+      if (id.equals(e.getAttribute("id"))) {
+        return e;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @param tagName lower case tag name
+   * @return the elements with this tag name, in document order
+   */
+  public List<Element> getElementsByTagName(String tagName) {
+    NodeList nodes = getDocument().getElementsByTagName(tagName);
+    List<Element> result = new ArrayList<>(nodes.getLength());
+    for (int i = 0; i < nodes.getLength(); i++) {
+      result.add((Element) nodes.item(i));
+    }
+    return result;
+  }
+
+}
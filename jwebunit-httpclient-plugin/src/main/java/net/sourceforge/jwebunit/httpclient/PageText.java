@@ -0,0 +1,223 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.httpclient;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Render the text of a DOM node the way a browser displays it: white space is collapsed, block elements start a new
+ * line, table cells are separated by tabs and the content of scripts and styles is left out. Form controls show their
+ * current value.
+ */
+final class PageText {
+
+  private static final Set<String> HIDDEN_ELEMENTS = new HashSet<>(Arrays.asList(
+    "head", "script", "style", "title", "template", "option", "optgroup"));
+
+  private static final Set<String> BLOCK_ELEMENTS = new HashSet<>(Arrays.asList(
+    "address", "article", "aside", "blockquote", "body", "caption", "center", "dd", "dir", "div", "dl", "dt",
+    "fieldset", "figure", "footer", "form", "frameset", "h1", "h2", "h3", "h4", "h5", "h6", "header", "hr", "html",
+    "legend", "li", "menu", "nav", "noframes", "ol", "p", "pre", "section", "table", "tbody", "tfoot", "thead", "tr",
+    "ul"));
+
+  private final StringBuilder text = new StringBuilder();
+
+  private PageText() {
+  }
+
+  /**
+   * @param node a node of a page
+   * @return the text of the node as displayed, lines trimmed and blank lines removed
+   */
+  static String getText(Node node) {
+    PageText pageText = new PageText();
+    pageText.append(node, false);
+    StringBuilder result = new StringBuilder();
+    for (String line : pageText.text.toString().split("\n")) {
+      String trimmed = trim(line);
+      if (!trimmed.isEmpty()) {
+        if (result.length() > 0) {
+          result.append('\n');
+        }
+        // non breaking spaces are kept until now so that they are not trimmed
+        result.append(trimmed.replace('\u00A0', ' '));
+      }
+    }
+    return result.toString();
+  }
+
+  /**
+   * Collapse the white space sequences of a text into single spaces.
+   *
+   * @param s the text
+   * @return the collapsed text
+   */
+  static String normalize(String s) {
+    return collapse(s.replace('\u00A0', ' '));
+  }
+
+  /**
+   * Collapse the white space sequences of a text into single spaces, keeping its non breaking spaces.
+   */
+  private static String collapse(String s) {
+    StringBuilder sb = new StringBuilder(s.length());
+    boolean space = false;
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (Character.isWhitespace(c)) {
+        if (!space) {
+          sb.append(' ');
+          space = true;
+        }
+      } else {
+        sb.append(c);
+        space = false;
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Trim the spaces of a line, and the spaces around its tabs.
+   */
+  private static String trim(String line) {
+    return line.replaceAll(" *\t *", "\t").replaceAll("^[ \t]+|[ \t]+$", "");
+  }
+
+  private void append(Node node, boolean pre) {
+    switch (node.getNodeType()) {
+      case Node.TEXT_NODE:
+      case Node.CDATA_SECTION_NODE:
+        if (pre) {
+          text.append(node.getNodeValue());
+        } else {
+          appendInline(collapse(node.getNodeValue()));
+        }
+        break;
+      case Node.ELEMENT_NODE:
+        appendElement((Element) node, pre);
+        break;
+      case Node.DOCUMENT_NODE:
+      case Node.DOCUMENT_FRAGMENT_NODE:
+        appendChildren(node, pre);
+        break;
+      default:
+        // comments and processing instructions are not displayed
+    }
+  }
+
+  private void appendInline(String s) {
+    if (s.startsWith(" ") && (text.length() == 0 || isSeparator(text.charAt(text.length() - 1)))) {
+      s = s.substring(1);
+    }
+    text.append(s);
+  }
+
+  private static boolean isSeparator(char c) {
+    return c == ' ' || c == '\n' || c == '\t';
+  }
+
+  private void newLine() {
+    if (text.length() > 0 && text.charAt(text.length() - 1) != '\n') {
+      text.append('\n');
+    }
+  }
+
+  private void appendChildren(Node node, boolean pre) {
+    for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+      append(child, pre);
+    }
+  }
+
+  private void appendElement(Element e, boolean pre) {
+    String tag = e.getTagName();
+    if (HIDDEN_ELEMENTS.contains(tag) || isHiddenByStyle(e)) {
+      return;
+    }
+    switch (tag) {
+      case "br":
+        text.append('\n');
+        return;
+      case "td":
+      case "th":
+        if (isPrecededByCell(e)) {
+          text.append('\t');
+        }
+        appendChildren(e, pre);
+        return;
+      case "input":
+        appendInput(e);
+        return;
+      case "select":
+        appendSelect(e);
+        return;
+      case "textarea":
+        appendInline(normalize(e.getTextContent()));
+        return;
+      default:
+        break;
+    }
+    boolean block = BLOCK_ELEMENTS.contains(tag);
+    if (block) {
+      newLine();
+    }
+    appendChildren(e, pre || "pre".equals(tag));
+    if (block) {
+      newLine();
+    }
+  }
+
+  private static boolean isPrecededByCell(Element cell) {
+    for (Node n = cell.getPreviousSibling(); n != null; n = n.getPreviousSibling()) {
+      if (n.getNodeType() == Node.ELEMENT_NODE) {
+        String tag = ((Element) n).getTagName();
+        if ("td".equals(tag) || "th".equals(tag)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static boolean isHiddenByStyle(Element e) {
+    String style = e.getAttribute("style");
+    return style.length() > 0 && style.replace(" ", "").toLowerCase().contains("display:none");
+  }
+
+  private void appendInput(Element input) {
+    String type = input.getAttribute("type").toLowerCase();
+    if ("submit".equals(type) || "reset".equals(type) || "button".equals(type)) {
+      appendInline(normalize(input.getAttribute("value")));
+    } else if ("checkbox".equals(type) || "radio".equals(type)) {
+      appendInline(input.hasAttribute("checked") ? "checked" : "unchecked");
+    }
+  }
+
+  private void appendSelect(Element select) {
+    newLine();
+    for (Element option : FormControls.getSelectedOptions(select)) {
+      text.append(normalize(option.getTextContent()).trim()).append('\n');
+    }
+  }
+
+}
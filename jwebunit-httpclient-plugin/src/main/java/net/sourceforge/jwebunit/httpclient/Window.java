@@ -0,0 +1,153 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.httpclient;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * A browser window or frame of the {@link HttpClientTestingEngineImpl}, showing a {@link Page}.
+ */
+public class Window {
+
+  private final String name;
+
+  private final Window parent;
+
+  private final Element frameElement;
+
+  private Page page;
+
+  private final List<Window> frames = new ArrayList<>();
+
+  /**
+   * Create a top level window.
+   *
+   * @param name name of the window, empty for the main window
+   */
+  Window(String name) {
+    this(name, null, null);
+  }
+
+  /**
+   * Create a frame.
+   *
+   * @param name name of the frame
+   * @param parent window containing the frame
+   * @param frameElement the <code>frame</code> or <code>iframe</code> element
+   */
+  Window(String name, Window parent, Element frameElement) {
+    this.name = name == null ? "" : name;
+    this.parent = parent;
+    this.frameElement = frameElement;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * @return the window containing this frame, or <code>null</code> for a top level window
+   */
+  public Window getParent() {
+    return parent;
+  }
+
+  /**
+   * @return the top level window containing this window
+   */
+  public Window getTopWindow() {
+    Window w = this;
+    while (w.parent != null) {
+      w = w.parent;
+    }
+    return w;
+  }
+
+  /**
+   * @return the <code>frame</code> or <code>iframe</code> element, or <code>null</code> for a top level window
+   */
+  public Element getFrameElement() {
+    return frameElement;
+  }
+
+  public Page getPage() {
+    return page;
+  }
+
+  /**
+   * Show a new page. The frames of the previous page are dropped.
+   *
+   * @param page the page
+   */
+  void setPage(Page page) {
+    this.page = page;
+    frames.clear();
+  }
+
+  /**
+   * @return the frames of the current page
+   */
+  public List<Window> getFrames() {
+    return frames;
+  }
+
+  /**
+   * Copy the window, its page and its frames for a forked conversation.
+   *
+   * @param copyParent copy of the parent window, <code>null</code> for a top level window
+   * @param nodes receives the nodes of the copied pages by node of the pages of this window
+   * @param windows receives the copied windows by window
+   * @return the copy
+   */
+  Window copy(Window copyParent, Map<Node, Node> nodes, Map<Window, Window> windows) {
+    Window copy = new Window(name, copyParent, frameElement == null ? null : (Element) nodes.get(frameElement));
+    windows.put(this, copy);
+    if (page != null) {
+      copy.page = page.copy(nodes);
+    }
+    for (Window frame : frames) {
+      copy.frames.add(frame.copy(copy, nodes, windows));
+    }
+    return copy;
+  }
+
+  /**
+   * Find a window by name in this window and its frames, recursively.
+   *
+   * @param windowName name of the window
+   * @return the window found, or <code>null</code>
+   */
+  Window findWindow(String windowName) {
+    if (name.equals(windowName)) {
+      return this;
+    }
+    for (Window frame : frames) {
+      Window w = frame.findWindow(windowName);
+      if (w != null) {
+        return w;
+      }
+    }
+    return null;
+  }
+
+}
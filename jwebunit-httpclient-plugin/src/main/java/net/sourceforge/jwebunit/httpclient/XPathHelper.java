@@ -0,0 +1,110 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.httpclient;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Evaluate XPath expressions on the DOM of a {@link Page} with the XPath implementation of the JDK.
+ */
+final class XPathHelper {
+
+  /**
+   * XPath objects are not thread safe, and costly to create.
+   */
+  private static final ThreadLocal<XPath> XPATH = new ThreadLocal<XPath>() {
+    @Override
+    protected XPath initialValue() {
+      return XPathFactory.newInstance().newXPath();
+    }
+  };
+
+  /**
+   * Calls of the XPath 2 case functions with a simple argument, which are rewritten with <code>translate</code>.
+   */
+  private static final Pattern CASE_FUNCTION = Pattern.compile("(lower|upper)-case\\(([^()]*)\\)");
+
+  private static final String UPPER = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+
+  private static final String LOWER = "abcdefghijklmnopqrstuvwxyz";
+
+  private XPathHelper() {
+  }
+
+  /**
+   * @param context node the expression is evaluated from
+   * @param xpath the expression
+   * @return the elements selected by the expression, in document order
+   */
+  static List<Element> getElements(Node context, String xpath) {
+    NodeList nodes;
+    try {
+      nodes = (NodeList) XPATH.get().evaluate(toXPath1(xpath), context, XPathConstants.NODESET);
+    } catch (XPathExpressionException e) {
+      throw new RuntimeException("Invalid xpath \"" + xpath + "\"", e);
+    }
+    List<Element> result = new ArrayList<>(nodes.getLength());
+    for (int i = 0; i < nodes.getLength(); i++) {
+      if (nodes.item(i).getNodeType() == Node.ELEMENT_NODE) {
+        result.add((Element) nodes.item(i));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * The JDK only implements XPath 1, so rewrite the <code>lower-case</code> and <code>upper-case</code> functions
+   * that JWebUnit and HtmlUnit accept.
+   */
+  private static String toXPath1(String xpath) {
+    if (!xpath.contains("-case(")) {
+      return xpath;
+    }
+    Matcher m = CASE_FUNCTION.matcher(xpath);
+    StringBuffer sb = new StringBuffer();
+    while (m.find()) {
+      boolean lower = "lower".equals(m.group(1));
+      m.appendReplacement(sb, Matcher.quoteReplacement("translate(" + m.group(2) + ", '" + (lower ? UPPER : LOWER)
+        + "', '" + (lower ? LOWER : UPPER) + "')"));
+    }
+    m.appendTail(sb);
+    return sb.toString();
+  }
+
+  /**
+   * @param context node the expression is evaluated from
+   * @param xpath the expression
+   * @return the first element selected by the expression, or <code>null</code>
+   */
+  static Element getFirstElement(Node context, String xpath) {
+    List<Element> elements = getElements(context, xpath);
+    return elements.isEmpty() ? null : elements.get(0);
+  }
+
+}
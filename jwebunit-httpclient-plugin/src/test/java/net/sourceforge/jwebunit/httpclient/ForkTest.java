@@ -0,0 +1,94 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.httpclient;
+
+import net.sourceforge.jwebunit.junit.WebTester;
+import net.sourceforge.jwebunit.tests.JWebUnitAPITestCase;
+import net.sourceforge.jwebunit.tests.util.JettySetup;
+import net.sourceforge.jwebunit.util.TestingEngineRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertNotSame;
+
+/**
+ * Check that a forked conversation starts on the same page, form values and cookies, and then goes on independently.
+ */
+public class ForkTest extends JettySetup {
+
+  private WebTester tester;
+
+  @Before
+  public void setUp() {
+    tester = new WebTester();
+    tester.setTestingEngineKey(TestingEngineRegistry.TESTING_ENGINE_HTTPCLIENT);
+    tester.setBaseUrl(JWebUnitAPITestCase.HOST_PATH);
+  }
+
+  @After
+  public void cleanup() {
+    tester.closeBrowser();
+  }
+
+  @Test
+  public void testFork() {
+    tester.beginAt("/cookies.jsp");
+    tester.gotoPage("/FormSubmissionTest/SingleNamedButtonForm.html");
+    tester.setTextField("color", "blue");
+    tester.checkCheckbox("checkBox");
+
+    WebTester red = tester.fork();
+    WebTester green = tester.fork();
+    assertNotSame(red.getTestingEngine(), green.getTestingEngine());
+
+    red.assertTextFieldEquals("color", "blue");
+    red.assertCheckboxSelected("checkBox");
+    red.setTextField("color", "red");
+    green.setTextField("color", "green");
+    red.submit("button");
+    green.submit("button");
+    red.assertTextPresent("color=[red]");
+    green.assertTextPresent("color=[green]");
+    tester.assertTextFieldEquals("color", "blue");
+    tester.assertCheckboxSelected("checkBox");
+
+    green.gotoPage("/cookies.jsp?dont_set=1");
+    green.assertTextPresent("serveurCookie=foo");
+    red.closeBrowser();
+    green.closeBrowser();
+  }
+
+  @Test
+  public void testForkKeepsWorkingFormAndDefaults() {
+    tester.beginAt("/FormSubmissionTest/SingleNamedButtonForm.html");
+    tester.setTextField("color", "blue");
+    WebTester fork = tester.fork();
+    fork.getTestingEngine().reset();
+    fork.assertTextFieldEquals("color", "");
+    tester.assertTextFieldEquals("color", "blue");
+    fork.closeBrowser();
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testForkBeforeBeginAt() {
+    tester.getTestingEngine().fork(tester.getTestContext());
+  }
+
+}
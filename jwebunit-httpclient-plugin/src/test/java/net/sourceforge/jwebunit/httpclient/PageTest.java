@@ -0,0 +1,86 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.httpclient;
+
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import junit.framework.TestCase;
+import net.sourceforge.jwebunit.api.HttpHeader;
+import org.w3c.dom.Element;
+
+public class PageTest extends TestCase {
+
+  private static Page createPage(String contentType, byte[] content) throws Exception {
+    List<HttpHeader> headers = new ArrayList<>();
+    if (contentType != null) {
+      headers.add(new HttpHeader("Content-Type", contentType));
+    }
+    return new Page(new URL("http://localhost/index.html"), 200, "OK", headers, content);
+  }
+
+  private static Page createPage(String html) throws Exception {
+    return createPage("text/html; charset=UTF-8", html.getBytes(StandardCharsets.UTF_8));
+  }
+
+  public void testCharset() throws Exception {
+    assertEquals(StandardCharsets.UTF_8, createPage("<html></html>").getCharset());
+    assertEquals(StandardCharsets.ISO_8859_1, createPage("text/html", "<html></html>".getBytes()).getCharset());
+    assertEquals(StandardCharsets.UTF_8, createPage("text/html",
+      "<html><head><meta charset='utf-8'></head></html>".getBytes()).getCharset());
+  }
+
+  public void testDocumentIsLowerCase() throws Exception {
+    Page page = createPage("<HTML><BODY><TABLE ID='t'><TR><TD>cell</TD></TR></TABLE></BODY></HTML>");
+    assertEquals("table", page.getElementById("t").getTagName());
+    assertEquals(1, XPathHelper.getElements(page.getDocument(), "//table[@id='t']//td").size());
+  }
+
+  public void testText() throws Exception {
+    Page page = createPage("<html><head><title> The  title </title></head><body><p>Hello\n  world</p>"
+      + "<table><tr><td>a</td><td>&nbsp;</td></tr></table><script>var s;</script></body></html>");
+    assertEquals("The title", page.getTitle());
+    assertEquals("Hello world\na\t ", page.getText());
+  }
+
+  public void testTextIsCachedUntilModified() throws Exception {
+    Page page = createPage("<html><body><p id='p'>Hello</p>"
+      + "<form><input type='checkbox' name='c' id='c'></form></body></html>");
+    assertEquals("Hello\nunchecked", page.getText());
+    assertSame(page.getText(), page.getText());
+    Element checkbox = page.getElementById("c");
+    FormControls.setChecked(checkbox, true);
+    assertEquals("Hello\nchecked", page.getText());
+    page.getElementById("p").setTextContent("Goodbye");
+    assertEquals("Goodbye\nchecked", page.getText());
+  }
+
+  public void testNonHtmlContent() throws Exception {
+    Page page = createPage("text/plain", "plain text".getBytes());
+    assertFalse(page.isHtml());
+    assertEquals("plain text", page.getText());
+  }
+
+  public void testLowerCaseXPathFunction() throws Exception {
+    Page page = createPage("<html><body><input type='CheckBox' name='c'></body></html>");
+    assertEquals(1, XPathHelper.getElements(page.getDocument(), "//input[lower-case(@type)='checkbox']").size());
+  }
+
+}
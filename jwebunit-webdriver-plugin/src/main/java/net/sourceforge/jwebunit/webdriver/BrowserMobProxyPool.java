@@ -0,0 +1,364 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.webdriver;
+
+import net.lightbody.bmp.core.har.Har;
+import net.lightbody.bmp.proxy.LegacyProxyServer;
+import net.lightbody.bmp.proxy.ProxyServer;
+import net.lightbody.bmp.proxy.http.BrowserMobHttpRequest;
+import net.lightbody.bmp.proxy.http.BrowserMobHttpResponse;
+import net.lightbody.bmp.proxy.http.RequestInterceptor;
+import net.lightbody.bmp.proxy.http.ResponseInterceptor;
+import org.apache.http.Header;
+import org.openqa.selenium.Proxy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Long-lived BrowserMob proxies shared by the {@link WebDriverTestingEngineImpl} sessions of the JVM, instead of
+ * starting and stopping a proxy for each test.
+ * <p>
+ * Each session is given an id, sent by its browser in the {@link #SESSION_HEADER} header. The proxies have a single
+ * request and response interceptor, which find the session of a request by this header, remove it, and hand the
+ * request and its response to the session. The proxies listen on a port chosen by the operating system, so starting
+ * one never collides with another proxy or test server.
+ * </p>
+ * <p>
+ * The number of shared proxies is set by the <code>jwebunit.webdriver.proxyPoolSize</code> system property, 1 by
+ * default; sessions are given the proxy serving the fewest sessions. Sessions recording an HTTP archive get a
+ * dedicated proxy, as the archive captured by a proxy isn't split by session.
+ * </p>
+ */
+public final class BrowserMobProxyPool {
+
+  /**
+   * Header identifying the session of a request, removed by the proxy.
+   */
+  static final String SESSION_HEADER = "X-JWebUnit-Session";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(BrowserMobProxyPool.class);
+
+  private static final BrowserMobProxyPool INSTANCE = new BrowserMobProxyPool(
+    Math.max(1, Integer.getInteger("jwebunit.webdriver.proxyPoolSize", 1)));
+
+  /**
+   * Session of the request handled by the current thread of a proxy: the response of a request is processed by the
+   * thread that processed the request. Set or cleared by every request, so a request that failed without a response
+   * can't route the response of the next one.
+   */
+  private static final ThreadLocal<Session> CURRENT = new ThreadLocal<Session>();
+
+  private final int size;
+
+  private final List<SharedProxy> proxies = new ArrayList<SharedProxy>();
+
+  private final Map<String, Session> sessions = new ConcurrentHashMap<String, Session>();
+
+  private final AtomicLong nextId = new AtomicLong();
+
+  private final AtomicInteger proxiesStarted = new AtomicInteger();
+
+  private final AtomicLong sessionsServed = new AtomicLong();
+
+  private final AtomicLong routedRequests = new AtomicLong();
+
+  private final AtomicLong unroutedRequests = new AtomicLong();
+
+  private boolean shutdownHook;
+
+  BrowserMobProxyPool(int size) {
+    this.size = size;
+  }
+
+  /**
+   * @return the pool shared by the testing engines of the JVM.
+   */
+  public static BrowserMobProxyPool getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Callbacks of a session for its requests and responses, called by the threads of the proxy. The response of a
+   * request is handed over on the thread that handed over the request, right after it, unless the request failed;
+   * the body has already been sent to the browser by then.
+   */
+  interface Session {
+
+    void onRequest(BrowserMobHttpRequest request);
+
+    void onResponse(BrowserMobHttpResponse response);
+  }
+
+  /**
+   * A session registered in a proxy of the pool, until it is released.
+   */
+  final class Lease {
+
+    private final String id;
+
+    private final SharedProxy proxy;
+
+    private boolean released;
+
+    Lease(String id, SharedProxy proxy) {
+      this.id = id;
+      this.proxy = proxy;
+    }
+
+    /**
+     * @return the value of the {@link #SESSION_HEADER} header to send with each request.
+     */
+    String getSessionId() {
+      return id;
+    }
+
+    /**
+     * @return the proxy settings of the browser.
+     */
+    Proxy getSeleniumProxy() {
+      return proxy.server.seleniumProxy();
+    }
+
+    /**
+     * @return <code>true</code> if the proxy is shared and kept after the session.
+     */
+    boolean isShared() {
+      return proxy.shared;
+    }
+
+    /**
+     * @return the archive captured by a dedicated proxy, <code>null</code> for a shared one.
+     */
+    Har getHar() {
+      return proxy.shared ? null : proxy.server.getHar();
+    }
+
+    /**
+     * Unregister the session. A dedicated proxy is stopped, a shared one is kept for the next sessions.
+     */
+    void release() {
+      if (released) {
+        return;
+      }
+      released = true;
+      sessions.remove(id);
+      if (proxy.shared) {
+        synchronized (BrowserMobProxyPool.this) {
+          proxy.sessions--;
+        }
+      } else {
+        stop(proxy.server);
+      }
+    }
+  }
+
+  /**
+   * Register a session in a proxy, starting the proxy if needed.
+   *
+   * @param session callbacks of the session.
+   * @param record <code>true</code> to capture the requests of the session in a dedicated proxy.
+   * @return the lease of the session, to release when the browser is closed.
+   */
+  Lease lease(Session session, boolean record) {
+    String id = Long.toString(nextId.incrementAndGet());
+    SharedProxy proxy;
+    if (record) {
+      proxy = new SharedProxy(start(), false);
+      proxy.server.setCaptureHeaders(true);
+      proxy.server.setCaptureContent(true);
+      proxy.server.setCaptureBinaryContent(true);
+      proxy.server.newHar("jwebunit");
+    } else {
+      proxy = acquireShared();
+    }
+    sessions.put(id, session);
+    sessionsServed.incrementAndGet();
+    return new Lease(id, proxy);
+  }
+
+  private synchronized SharedProxy acquireShared() {
+    SharedProxy proxy = null;
+    for (SharedProxy p : proxies) {
+      if (proxy == null || p.sessions < proxy.sessions) {
+        proxy = p;
+      }
+    }
+    if (proxy == null || proxy.sessions > 0 && proxies.size() < size) {
+      proxy = new SharedProxy(start(), true);
+      proxies.add(proxy);
+      if (!shutdownHook) {
+        shutdownHook = true;
+        Runtime.getRuntime().addShutdownHook(new Thread("jwebunit-proxy-pool-shutdown") {
+          @Override
+          public void run() {
+            shutdown();
+          }
+        });
+      }
+    }
+    proxy.sessions++;
+    return proxy;
+  }
+
+  private LegacyProxyServer start() {
+    LegacyProxyServer server = new ProxyServer();
+    // let the operating system choose a free port
+    server.setPort(0);
+    try {
+      server.start();
+    } catch (Exception e) {
+      throw new RuntimeException("Unable to start BrowserMob proxy", e);
+    }
+    proxiesStarted.incrementAndGet();
+    LOGGER.debug("BrowserMob proxy started on port {}", server.getPort());
+    server.blacklistRequests(Pattern.quote(WebDriverTestingEngineImpl.BLOCKED_URL) + ".*",
+      WebDriverTestingEngineImpl.BLOCKED_STATUS);
+    server.addRequestInterceptor(new RequestInterceptor() {
+      @Override
+      public void process(BrowserMobHttpRequest request, Har har) {
+        Session session = null;
+        Header header = request.getMethod().getFirstHeader(SESSION_HEADER);
+        if (header != null) {
+          request.getMethod().removeHeaders(SESSION_HEADER);
+          session = sessions.get(header.getValue());
+        }
+        if (session == null) {
+          CURRENT.remove();
+          unroutedRequests.incrementAndGet();
+          return;
+        }
+        CURRENT.set(session);
+        routedRequests.incrementAndGet();
+        session.onRequest(request);
+      }
+    });
+    server.addResponseInterceptor(new ResponseInterceptor() {
+      @Override
+      public void process(BrowserMobHttpResponse response, Har har) {
+        Session session = CURRENT.get();
+        CURRENT.remove();
+        if (session != null) {
+          session.onResponse(response);
+        }
+      }
+    });
+    return server;
+  }
+
+  private static void stop(LegacyProxyServer server) {
+    try {
+      server.stop();
+    } catch (Exception e) {
+      LOGGER.error("Error while stopping proxy", e);
+      throw new RuntimeException("Error while stopping proxy", e);
+    }
+  }
+
+  /**
+   * Stop the shared proxies. They are started again by the next sessions. Called when the JVM exits.
+   */
+  public synchronized void shutdown() {
+    for (SharedProxy proxy : proxies) {
+      try {
+        stop(proxy.server);
+      } catch (RuntimeException e) {
+        // already logged, stop the other ones
+      }
+    }
+    proxies.clear();
+  }
+
+  /**
+   * @return the number of proxies started, shared or dedicated.
+   */
+  public int getProxiesStarted() {
+    return proxiesStarted.get();
+  }
+
+  /**
+   * @return the number of sessions that used a proxy of the pool.
+   */
+  public long getSessionsServed() {
+    return sessionsServed.get();
+  }
+
+  /**
+   * @return the number of sessions that reused a proxy started for a previous session.
+   */
+  public long getSessionsReused() {
+    return Math.max(0, sessionsServed.get() - proxiesStarted.get());
+  }
+
+  /**
+   * @return the number of sessions not released yet.
+   */
+  public int getActiveSessions() {
+    return sessions.size();
+  }
+
+  /**
+   * @return the number of requests handed to their session.
+   */
+  public long getRoutedRequests() {
+    return routedRequests.get();
+  }
+
+  /**
+   * @return the number of requests without a known session, forwarded without changes.
+   */
+  public long getUnroutedRequests() {
+    return unroutedRequests.get();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString() {
+    return getProxiesStarted() + " proxies started, " + getSessionsServed() + " sessions served, "
+      + getSessionsReused() + " reused, " + getActiveSessions() + " active, " + getRoutedRequests()
+      + " requests routed, " + getUnroutedRequests() + " unrouted";
+  }
+
+  /**
+   * A started proxy and the number of sessions it serves.
+   */
+  private static final class SharedProxy {
+
+    private final LegacyProxyServer server;
+
+    private final boolean shared;
+
+    private int sessions;
+
+    SharedProxy(LegacyProxyServer server, boolean shared) {
+      this.server = server;
+      this.shared = shared;
+    }
+  }
+
+}
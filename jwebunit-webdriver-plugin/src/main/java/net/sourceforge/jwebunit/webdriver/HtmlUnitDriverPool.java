@@ -0,0 +1,273 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.webdriver;
+
+import com.gargoylesoftware.htmlunit.WebClient;
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.Proxy;
+import org.openqa.selenium.htmlunit.HtmlUnitDriver;
+import org.openqa.selenium.remote.CapabilityType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Idle {@link HtmlUnitDriver}s kept between the sessions of {@link WebDriverTestingEngineImpl}, instead of creating
+ * a browser for each test.
+ * <p>
+ * Drivers are pooled by capabilities: Javascript support and proxy. A released driver is cleaned: its cookies and
+ * cache are cleared, all its windows but one are closed and <code>about:blank</code> is loaded. A driver is checked
+ * again before being handed out, and is quit instead of being pooled when the cleaning fails or after it served
+ * <code>jwebunit.webdriver.driverMaxReuse</code> sessions (50 by default). At most
+ * <code>jwebunit.webdriver.driverPoolSize</code> idle drivers (8 by default) are kept for each capabilities.
+ * </p>
+ */
+public final class HtmlUnitDriverPool {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(HtmlUnitDriverPool.class);
+
+  private static final String BLANK = "about:blank";
+
+  private static final HtmlUnitDriverPool INSTANCE = new HtmlUnitDriverPool(
+    Math.max(0, Integer.getInteger("jwebunit.webdriver.driverPoolSize", 8)),
+    Math.max(1, Integer.getInteger("jwebunit.webdriver.driverMaxReuse", 50)));
+
+  private final int maxIdle;
+
+  private final int maxReuse;
+
+  private final Map<String, Deque<PooledDriver>> idle = new HashMap<String, Deque<PooledDriver>>();
+
+  private final AtomicLong created = new AtomicLong();
+
+  private final AtomicLong reused = new AtomicLong();
+
+  private final AtomicLong discarded = new AtomicLong();
+
+  HtmlUnitDriverPool(int maxIdle, int maxReuse) {
+    this.maxIdle = maxIdle;
+    this.maxReuse = maxReuse;
+  }
+
+  /**
+   * @return the pool shared by the testing engines of the JVM.
+   */
+  public static HtmlUnitDriverPool getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * An {@link HtmlUnitDriver} giving access to its {@link WebClient}, so that it can be prepared for a session and
+   * cleaned after it.
+   */
+  static final class PooledDriver extends HtmlUnitDriver {
+
+    private final String key;
+
+    private final boolean javascript;
+
+    private int uses;
+
+    PooledDriver(Capabilities capabilities, String key) {
+      super(capabilities);
+      this.key = key;
+      this.javascript = isJavascriptEnabled();
+    }
+
+    WebClient getClient() {
+      return getWebClient();
+    }
+  }
+
+  /**
+   * Get an idle driver with the same capabilities, or create one.
+   *
+   * @param capabilities capabilities of the driver.
+   * @return a driver showing a blank page, without cookies.
+   */
+  PooledDriver acquire(Capabilities capabilities) {
+    String key = getKey(capabilities);
+    while (true) {
+      PooledDriver driver;
+      synchronized (idle) {
+        Deque<PooledDriver> drivers = idle.get(key);
+        driver = drivers == null ? null : drivers.pollFirst();
+      }
+      if (driver == null) {
+        break;
+      }
+      if (isHealthy(driver)) {
+        driver.uses++;
+        reused.incrementAndGet();
+        return driver;
+      }
+      discard(driver);
+    }
+    PooledDriver driver = new PooledDriver(capabilities, key);
+    driver.uses++;
+    created.incrementAndGet();
+    return driver;
+  }
+
+  /**
+   * Give back a driver at the end of a session. It is cleaned and kept for the next session, or quit.
+   *
+   * @param driver the driver.
+   * @param reusable <code>false</code> when the driver can't serve another session, for example because its proxy
+   *          was stopped.
+   */
+  void release(PooledDriver driver, boolean reusable) {
+    if (!reusable || driver.uses >= maxReuse || !clean(driver)) {
+      discard(driver);
+      return;
+    }
+    synchronized (idle) {
+      Deque<PooledDriver> drivers = idle.get(driver.key);
+      if (drivers == null) {
+        drivers = new ArrayDeque<PooledDriver>();
+        idle.put(driver.key, drivers);
+      }
+      if (drivers.size() < maxIdle) {
+        // the most recently used driver is handed out first, so that the other ones can expire
+        drivers.addFirst(driver);
+        return;
+      }
+    }
+    discard(driver);
+  }
+
+  private static String getKey(Capabilities capabilities) {
+    Object proxy = capabilities.getCapability(CapabilityType.PROXY);
+    String proxyKey = proxy instanceof Proxy ? ((Proxy) proxy).getHttpProxy() : String.valueOf(proxy);
+    return capabilities.getBrowserName() + "|" + capabilities.getVersion() + "|"
+      + capabilities.isJavascriptEnabled() + "|" + proxyKey;
+  }
+
+  private static boolean clean(PooledDriver driver) {
+    try {
+      Set<String> handles = driver.getWindowHandles();
+      if (handles.size() > 1) {
+        List<String> others = new ArrayList<String>(handles);
+        String kept = others.remove(0);
+        for (String handle : others) {
+          driver.switchTo().window(handle);
+          driver.close();
+        }
+        driver.switchTo().window(kept);
+      }
+      WebClient client = driver.getClient();
+      client.removeRequestHeader(BrowserMobProxyPool.SESSION_HEADER);
+      client.getCookieManager().clearCookies();
+      client.getCache().clear();
+      driver.setJavascriptEnabled(driver.javascript);
+      driver.get(BLANK);
+      return true;
+    } catch (RuntimeException e) {
+      LOGGER.debug("Unable to clean the driver, discarding it", e);
+      return false;
+    }
+  }
+
+  private static boolean isHealthy(PooledDriver driver) {
+    try {
+      return BLANK.equals(driver.getCurrentUrl()) && driver.getClient().getTopLevelWindows().size() == 1
+        && driver.getClient().getCookieManager().getCookies().isEmpty();
+    } catch (RuntimeException e) {
+      LOGGER.debug("Pooled driver is broken, discarding it", e);
+      return false;
+    }
+  }
+
+  private void discard(PooledDriver driver) {
+    discarded.incrementAndGet();
+    try {
+      driver.quit();
+    } catch (RuntimeException e) {
+      LOGGER.debug("Error while quitting the driver", e);
+    }
+  }
+
+  /**
+   * Quit the idle drivers.
+   */
+  public void clear() {
+    List<PooledDriver> drivers = new ArrayList<PooledDriver>();
+    synchronized (idle) {
+      for (Deque<PooledDriver> d : idle.values()) {
+        drivers.addAll(d);
+      }
+      idle.clear();
+    }
+    for (PooledDriver driver : drivers) {
+      discard(driver);
+    }
+  }
+
+  /**
+   * @return the number of drivers created.
+   */
+  public long getCreated() {
+    return created.get();
+  }
+
+  /**
+   * @return the number of sessions given a pooled driver.
+   */
+  public long getReused() {
+    return reused.get();
+  }
+
+  /**
+   * @return the number of drivers quit: broken, worn out or in excess.
+   */
+  public long getDiscarded() {
+    return discarded.get();
+  }
+
+  /**
+   * @return the number of idle drivers.
+   */
+  public int getIdle() {
+    synchronized (idle) {
+      int count = 0;
+      for (Deque<PooledDriver> drivers : idle.values()) {
+        count += drivers.size();
+      }
+      return count;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString() {
+    return getCreated() + " drivers created, " + getReused() + " reused, " + getDiscarded() + " discarded, "
+      + getIdle() + " idle";
+  }
+
+}
@@ -0,0 +1,184 @@
+/**
+ * Copyright (c) 2002-2015, JWebUnit team.
+ *
+ * This file is part of JWebUnit.
+ *
+ * JWebUnit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JWebUnit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JWebUnit.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sourceforge.jwebunit.webdriver;
+
+import net.sourceforge.jwebunit.html.Cell;
+import net.sourceforge.jwebunit.html.Row;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.htmlunit.HtmlUnitDriver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Read a whole table, or all the options of a select, with a single <code>executeScript</code> call instead of
+ * several driver calls per cell or option.
+ * <p>
+ * The text of a cell is only computed by the script when the cell contains nothing but text and is displayed, with
+ * the same whitespace rules as {@link WebElement#getText()}. Other cells are returned as elements, whose text is read
+ * by the driver, so that the result is the same as without the script. When Javascript is disabled the methods return
+ * <code>null</code> and the caller reads the elements one by one.
+ * </p>
+ */
+final class ScriptExtractor {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ScriptExtractor.class);
+
+  private static final Pattern WHITESPACE = Pattern.compile("[ \\t\\n\\r\\f]+");
+
+  /**
+   * Rows of the table, and its tbody, as <code>[text or element, colspan, rowspan]</code> for each cell. The
+   * computed style, which is costly, is only checked for the ancestors of the table, and for the cells when the page
+   * has style sheets or the cell has an inline style.
+   */
+  private static final String TABLE_SCRIPT = "function hiddenStyle(e) {"
+    + "  var s = window.getComputedStyle(e, null);"
+    + "  return s && (s.display == 'none' || s.visibility == 'hidden');"
+    + "}"
+    + "function hidden(e, until) {"
+    + "  for (; e && e.nodeType == 1 && e != until; e = e.parentNode) {"
+    + "    if ((styled || e.getAttribute('style')) && hiddenStyle(e)) return true;"
+    + "  }"
+    + "  return false;"
+    + "}"
+    + "var styled = document.styleSheets.length > 0;"
+    + "function name(e) { return e.nodeType == 1 ? e.nodeName.toUpperCase() : ''; }"
+    + "function textOnly(e) {"
+    + "  for (var i = 0; i < e.childNodes.length; i++) { if (e.childNodes[i].nodeType != 3) return false; }"
+    + "  return true;"
+    + "}"
+    + "var table = arguments[0], trs = [], result = [], i, j, c, cells, cell;"
+    + "var tableHidden = hidden(table, null);"
+    + "for (i = 0; i < table.childNodes.length; i++) {"
+    + "  c = table.childNodes[i];"
+    + "  if (name(c) == 'TR') trs.push(c);"
+    + "  else if (name(c) == 'TBODY') {"
+    + "    for (j = 0; j < c.childNodes.length; j++) { if (name(c.childNodes[j]) == 'TR') trs.push(c.childNodes[j]); }"
+    + "  }"
+    + "}"
+    + "for (i = 0; i < trs.length; i++) {"
+    + "  cells = [];"
+    + "  for (j = 0; j < trs[i].childNodes.length; j++) {"
+    + "    cell = trs[i].childNodes[j];"
+    + "    if (name(cell) != 'TD' && name(cell) != 'TH') continue;"
+    + "    cells.push([!tableHidden && textOnly(cell) && !hidden(cell, table) ? cell.textContent : cell,"
+    + "      cell.getAttribute('colspan'), cell.getAttribute('rowspan')]);"
+    + "  }"
+    + "  result.push(cells);"
+    + "}"
+    + "return result;";
+
+  /**
+   * Options of the select as <code>[value, label, selected]</code>.
+   */
+  private static final String OPTIONS_SCRIPT = "var options = arguments[0].options, result = [];"
+    + "for (var i = 0; i < options.length; i++) {"
+    + "  result.push([options[i].value, options[i].textContent, options[i].selected]);"
+    + "}"
+    + "return result;";
+
+  private ScriptExtractor() {
+  }
+
+  /**
+   * @param driver the driver.
+   * @param table the table element.
+   * @return the rows of the table and of its tbody, or <code>null</code> if Javascript can't be used.
+   */
+  static List<Row> readTable(WebDriver driver, WebElement table) {
+    List<?> rows = execute(driver, TABLE_SCRIPT, table);
+    if (rows == null) {
+      return null;
+    }
+    List<Row> result = new ArrayList<Row>(rows.size());
+    for (Object r : rows) {
+      Row row = new Row();
+      for (Object c : (List<?>) r) {
+        List<?> cell = (List<?>) c;
+        Object content = cell.get(0);
+        String text = content instanceof WebElement ? ((WebElement) content).getText() : normalize((String) content);
+        row.appendCell(new Cell(text, parseSpan(cell.get(1)), parseSpan(cell.get(2))));
+      }
+      result.add(row);
+    }
+    return result;
+  }
+
+  /**
+   * @param driver the driver.
+   * @param select the select element.
+   * @return the options of the select as <code>{value, label, "true" or "false"}</code>, or <code>null</code> if
+   *         Javascript can't be used.
+   */
+  static List<String[]> readOptions(WebDriver driver, WebElement select) {
+    List<?> options = execute(driver, OPTIONS_SCRIPT, select);
+    if (options == null) {
+      return null;
+    }
+    List<String[]> result = new ArrayList<String[]>(options.size());
+    for (Object o : options) {
+      List<?> option = (List<?>) o;
+      result.add(new String[] {String.valueOf(option.get(0)), normalize((String) option.get(1)),
+        String.valueOf(Boolean.TRUE.equals(option.get(2)))});
+    }
+    return result;
+  }
+
+  /**
+   * Cells without a valid span, like in the driver.
+   */
+  static int parseSpan(Object span) {
+    try {
+      return Integer.valueOf(String.valueOf(span).trim());
+    } catch (NumberFormatException e) {
+      return 1;
+    }
+  }
+
+  /**
+   * Whitespace rules of {@link WebElement#getText()} for a displayed text.
+   */
+  private static String normalize(String text) {
+    if (text == null) {
+      return "";
+    }
+    return WHITESPACE.matcher(text).replaceAll(" ").trim().replace('\u00a0', ' ');
+  }
+
+  private static List<?> execute(WebDriver driver, String script, WebElement element) {
+    if (!(driver instanceof JavascriptExecutor)
+      || driver instanceof HtmlUnitDriver && !((HtmlUnitDriver) driver).isJavascriptEnabled()) {
+      return null;
+    }
+    try {
+      Object result = ((JavascriptExecutor) driver).executeScript(script, element);
+      return result instanceof List ? (List<?>) result : null;
+    } catch (WebDriverException e) {
+      LOGGER.debug("Unable to extract with a script, reading the elements one by one", e);
+      return null;
+    }
+  }
+
+}
@@ -20,16 +20,21 @@ package net.sourceforge.jwebunit.webdriver;
 
 import com.gargoylesoftware.htmlunit.WebClient;
 import com.gargoylesoftware.htmlunit.WebResponse;
+import com.google.common.io.BaseEncoding;
 import net.lightbody.bmp.core.har.Har;
-import net.lightbody.bmp.proxy.LegacyProxyServer;
-import net.lightbody.bmp.proxy.ProxyServer;
+import net.lightbody.bmp.core.har.HarContent;
+import net.lightbody.bmp.core.har.HarEntry;
+import net.lightbody.bmp.core.har.HarNameValuePair;
+import net.lightbody.bmp.core.har.HarRequest;
+import net.lightbody.bmp.core.har.HarResponse;
+import net.lightbody.bmp.core.har.HarTimings;
 import net.lightbody.bmp.proxy.http.BrowserMobHttpRequest;
 import net.lightbody.bmp.proxy.http.BrowserMobHttpResponse;
-import net.lightbody.bmp.proxy.http.RequestInterceptor;
-import net.lightbody.bmp.proxy.http.ResponseInterceptor;
-import net.lightbody.bmp.proxy.jetty.util.MultiException;
+import net.sourceforge.jwebunit.api.Condition;
 import net.sourceforge.jwebunit.api.HttpHeader;
 import net.sourceforge.jwebunit.api.IElement;
+import net.sourceforge.jwebunit.api.IRequestFilteringEngine;
+import net.sourceforge.jwebunit.api.IStreamingTableEngine;
 import net.sourceforge.jwebunit.api.ITestingEngine;
 import net.sourceforge.jwebunit.exception.ExpectedJavascriptAlertException;
 import net.sourceforge.jwebunit.exception.ExpectedJavascriptConfirmException;
@@ -37,27 +42,38 @@ import net.sourceforge.jwebunit.exception.ExpectedJavascriptPromptException;
 import net.sourceforge.jwebunit.exception.TestingEngineResponseException;
 import net.sourceforge.jwebunit.html.Cell;
 import net.sourceforge.jwebunit.html.Row;
+import net.sourceforge.jwebunit.html.StreamingTable;
 import net.sourceforge.jwebunit.html.Table;
 import net.sourceforge.jwebunit.javascript.JavascriptAlert;
 import net.sourceforge.jwebunit.javascript.JavascriptConfirm;
 import net.sourceforge.jwebunit.javascript.JavascriptPrompt;
+import net.sourceforge.jwebunit.util.BlockedRequestCounter;
+import net.sourceforge.jwebunit.util.HttpArchive;
+import net.sourceforge.jwebunit.util.HttpArchiveMode;
+import net.sourceforge.jwebunit.util.LoggedRequest;
+import net.sourceforge.jwebunit.util.RecordedResponse;
+import net.sourceforge.jwebunit.util.RegexpCache;
+import net.sourceforge.jwebunit.util.RequestFilter;
+import net.sourceforge.jwebunit.util.RequestLog;
 import net.sourceforge.jwebunit.util.TestContext;
 import org.apache.commons.lang.StringUtils;
 import org.apache.http.Header;
 import org.apache.http.HttpStatus;
-import org.apache.regexp.RE;
-import org.apache.regexp.RESyntaxException;
+import org.apache.http.entity.ContentType;
 import org.openqa.selenium.By;
 import org.openqa.selenium.Cookie;
 import org.openqa.selenium.JavascriptExecutor;
 import org.openqa.selenium.NoSuchElementException;
 import org.openqa.selenium.NoSuchWindowException;
-import org.openqa.selenium.Proxy;
+import org.openqa.selenium.TimeoutException;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.htmlunit.HtmlUnitDriver;
 import org.openqa.selenium.remote.CapabilityType;
 import org.openqa.selenium.remote.DesiredCapabilities;
+import org.openqa.selenium.support.ui.ExpectedCondition;
+import org.openqa.selenium.support.ui.ExpectedConditions;
+import org.openqa.selenium.support.ui.FluentWait;
 import org.openqa.selenium.support.ui.Select;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -65,15 +81,19 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
+import java.net.URI;
 import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Acts as the wrapper for Webdriver access. A testing engine is initialized with a given URL, and maintains
@@ -81,19 +101,47 @@ import java.util.Set;
  *
  * @author Julien Henry
  */
-public class WebDriverTestingEngineImpl implements ITestingEngine {
+public class WebDriverTestingEngineImpl implements ITestingEngine, IStreamingTableEngine, IRequestFilteringEngine {
 
   /**
    * Logger for this class.
    */
   private final Logger logger = LoggerFactory.getLogger(WebDriverTestingEngineImpl.class);
-  private LegacyProxyServer proxyServer;
+  private BrowserMobProxyPool.Lease proxyLease;
   private WebDriver driver;
   private TestContext testContext;
-  private static final int TRY_COUNT = 50;
-  private static final int DEFAULT_PORT = 8183;
-  private static final Random RANDOM = new Random();
-  private BrowserMobHttpResponse response;
+  /**
+   * Last exchange through the proxy for each requested URL, so that the response of the current page can be found
+   * whatever the other requests of this session. Guarded by itself.
+   */
+  private final Map<String, ProxyExchange> exchanges = new java.util.HashMap<String, ProxyExchange>();
+  /**
+   * Exchange handled by the proxy on the current thread: the proxy runs the request and the response interceptors of
+   * an exchange on the same thread.
+   */
+  private final ThreadLocal<ProxyExchange> proxiedExchange = new ThreadLocal<ProxyExchange>();
+  /**
+   * The proxy sends the body to the browser before handing over the response, so a page can be loaded before its
+   * response is known: time to wait for it, in milliseconds.
+   */
+  private static final long RESPONSE_TIMEOUT = 10000;
+  /**
+   * Requests blocked by the request filter are sent to this URL, blacklisted in the proxy so that it answers them
+   * itself with an empty response.
+   */
+  static final String BLOCKED_URL = "http://jwebunit.blocked/";
+  static final int BLOCKED_STATUS = HttpStatus.SC_NO_CONTENT;
+  /**
+   * Interval between two checks of the waited conditions, in milliseconds.
+   */
+  private static final long WAIT_POLLING_INTERVAL = 50;
+  /**
+   * Indexes in the options read by {@link #getOptions(WebElement)}.
+   */
+  private static final int OPTION_VALUE = 0;
+  private static final int OPTION_LABEL = 1;
+  private static final int OPTION_SELECTED = 2;
+  private final BlockedRequestCounter blockedRequests = new BlockedRequestCounter();
   // The xpath string that identifie the current form
   // ie : @name='myForm'
   private String formIdent;
@@ -108,100 +156,230 @@ public class WebDriverTestingEngineImpl implements ITestingEngine {
   }
 
   public void beginAt(URL aInitialURL, TestContext aTestContext) throws TestingEngineResponseException {
+    if (aTestContext.getHttpArchiveMode() == HttpArchiveMode.REPLAY) {
+      throw new UnsupportedOperationException("Replaying an HTTP archive is not supported by the WebDriver engine");
+    }
     this.setTestContext(aTestContext);
-    // start the proxy
-    Proxy proxy = startBrowserMobProxy();
+    // register in a shared proxy
+    BrowserMobProxyPool.Lease lease = BrowserMobProxyPool.getInstance().lease(newProxySession(),
+      aTestContext.getHttpArchiveMode() == HttpArchiveMode.RECORD);
+    proxyLease = lease;
 
     DesiredCapabilities capabilities = new DesiredCapabilities();
-    capabilities.setCapability(CapabilityType.PROXY, proxy);
+    capabilities.setCapability(CapabilityType.PROXY, lease.getSeleniumProxy());
     capabilities.setCapability(CapabilityType.SUPPORTS_JAVASCRIPT, jsEnabled);
     capabilities.setBrowserName("htmlunit");
     capabilities.setVersion("firefox");
 
-    driver = new HtmlUnitDriver(capabilities);
+    HtmlUnitDriverPool.PooledDriver pooledDriver = HtmlUnitDriverPool.getInstance().acquire(capabilities);
+    WebClient client = pooledDriver.getClient();
+    // Deal with cookies: they can't be added through the driver before a page of their domain is loaded.
+    // If Path==null, cookie is not send to the server.
+    for (javax.servlet.http.Cookie c : aTestContext.getCookies()) {
+      client.getCookieManager().addCookie(
+        new com.gargoylesoftware.htmlunit.util.Cookie(c.getDomain() != null ? c.getDomain() : "", c
+          .getName(), c.getValue(), c.getPath() != null ? c.getPath() : "", c.getMaxAge(), c.getSecure()));
+    }
+    // lets the proxy find the session of each request
+    client.addRequestHeader(BrowserMobProxyPool.SESSION_HEADER, lease.getSessionId());
+    driver = pooledDriver;
 
     // Reset form
     formIdent = null;
 
-    // Deal with cookies
-    for (javax.servlet.http.Cookie c : aTestContext.getCookies()) {
-      // FIXME Hack for BrowserMob
-      String domain = c.getDomain();
-      if ("localhost".equals(domain)) {
-        domain = null;
-      }
-      if ("".equals(domain)) {
-        domain = null;
-      }
-      Date expiry = null;
-      if (c.getMaxAge() != -1) {
-        Calendar cal = Calendar.getInstance();
-        cal.add(Calendar.SECOND, c.getMaxAge());
-        expiry = cal.getTime();
-      }
-      driver.manage().addCookie(
-        new org.openqa.selenium.Cookie(c
-          .getName(), c.getValue(), domain, c.getPath() != null ? c
-          .getPath() : "", expiry, c.getSecure()));
-    }
     gotoPage(aInitialURL);
   }
 
-  private Proxy startBrowserMobProxy() {
-    for (int i = 1; i <= TRY_COUNT; i++) {
-      int port = getRandomPort();
-      proxyServer = new ProxyServer();
-      proxyServer.setPort(port);
-      try {
-        proxyServer.start();
-        proxyServer.addResponseInterceptor(new ResponseInterceptor() {
-
-          @Override
-          public void process(BrowserMobHttpResponse response, Har har) {
-            WebDriverTestingEngineImpl.this.response = response;
+  /**
+   * Handle the requests and responses of this engine in the shared proxy: requests are filtered and get the headers
+   * of the test context, and the response of each one is kept for its URL.
+   */
+  private BrowserMobProxyPool.Session newProxySession() {
+    final RequestFilter filter = testContext.hasRequestFilter() ? testContext.getRequestFilter() : null;
+    final Map<String, String> requestHeaders = testContext.getRequestHeaders();
+    final String userAgent = testContext.getUserAgent();
+    final RequestLog requestLog = testContext.hasRequestLog() ? testContext.getRequestLog() : null;
+    return new BrowserMobProxyPool.Session() {
+      @Override
+      public void onRequest(BrowserMobHttpRequest request) {
+        ProxyExchange exchange = new ProxyExchange();
+        synchronized (exchanges) {
+          // forget the response of the previous request to the same URL
+          exchanges.put(request.getMethod().getURI().toString(), exchange);
+        }
+        proxiedExchange.set(exchange);
+        if (filter != null) {
+          blockIfFiltered(request, filter);
+        }
+        if (requestHeaders != null) {
+          for (Map.Entry<String, String> requestHeader : requestHeaders.entrySet()) {
+            request.addRequestHeader(requestHeader.getKey(), requestHeader.getValue());
           }
-        });
-        if (testContext.getRequestHeaders() != null && !testContext.getRequestHeaders().isEmpty()) {
-          proxyServer.addRequestInterceptor(new RequestInterceptor() {
-
-            @Override
-            public void process(BrowserMobHttpRequest request, Har har) {
-              for (Map.Entry<String, String> requestHeader : testContext.getRequestHeaders().entrySet()) {
-                request.addRequestHeader(requestHeader.getKey(), requestHeader.getValue());
-              }
-            }
-          });
         }
-        if (StringUtils.isNotBlank(testContext.getUserAgent())) {
-          proxyServer.addRequestInterceptor(new RequestInterceptor() {
-            @Override
-            public void process(BrowserMobHttpRequest request, Har har) {
-              request.getMethod().removeHeaders("User-Agent");
-              request.addRequestHeader("User-Agent", testContext.getUserAgent());
-            }
-          });
+        if (StringUtils.isNotBlank(userAgent)) {
+          request.getMethod().removeHeaders("User-Agent");
+          request.addRequestHeader("User-Agent", userAgent);
         }
-        return proxyServer.seleniumProxy();
-      } catch (Exception e) {
-        if (i < TRY_COUNT) {
-          logger.error("Error while starting BrowserMob proxy on port " + port + ". Retry...: " + e.getMessage(), e);
-          if (e instanceof MultiException) {
-            Exception e1 = ((MultiException) e).getException(0);
-            logger.error("First exception: " + e1.getMessage(), e1);
+      }
+
+      @Override
+      public void onResponse(BrowserMobHttpResponse response) {
+        ProxyExchange exchange = proxiedExchange.get();
+        proxiedExchange.remove();
+        if (exchange != null) {
+          synchronized (exchanges) {
+            exchange.response = response;
+            exchanges.notifyAll();
           }
-          continue;
+        }
+        if (requestLog != null && response.getEntry() != null
+          && !response.getEntry().getRequest().getUrl().startsWith(BLOCKED_URL)) {
+          requestLog.record(toLoggedRequest(response.getEntry()));
         }
       }
+    };
+  }
+
+  /**
+   * A request through the proxy and its response, once it came back.
+   */
+  private static final class ProxyExchange {
+    private BrowserMobHttpResponse response;
+  }
+
+  /**
+   * Get the response of the current page, waiting for the proxy to hand it over.
+   *
+   * @throws TestingEngineResponseException if no response came back for the last request to the page
+   */
+  private BrowserMobHttpResponse getPageResponse() {
+    return getResponse(driver.getCurrentUrl());
+  }
+
+  private boolean isRequested(String url) {
+    synchronized (exchanges) {
+      return exchanges.containsKey(StringUtils.substringBefore(url, "#"));
     }
-    throw new RuntimeException("Unable to start BrowserMob proxy after " + TRY_COUNT + " retries");
   }
 
-  private static int getRandomPort() {
-    synchronized (RANDOM) {
-      return DEFAULT_PORT + RANDOM.nextInt(1000);
+  /**
+   * Get the response of the last request to a URL, waiting for the proxy to hand it over.
+   *
+   * @throws TestingEngineResponseException if no response came back for the last request to the URL
+   */
+  private BrowserMobHttpResponse getResponse(String pageUrl) {
+    String url = StringUtils.substringBefore(pageUrl, "#");
+    long deadline = System.currentTimeMillis() + RESPONSE_TIMEOUT;
+    synchronized (exchanges) {
+      ProxyExchange exchange = exchanges.get(url);
+      while (exchange != null && exchange.response == null && System.currentTimeMillis() < deadline) {
+        try {
+          exchanges.wait(Math.max(1, deadline - System.currentTimeMillis()));
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          break;
+        }
+        exchange = exchanges.get(url);
+      }
+      if (exchange == null || exchange.response == null) {
+        throw new TestingEngineResponseException("No response came back for the last request to " + url);
+      }
+      return exchange.response;
     }
   }
 
+  /**
+   * Timings measured by the proxy for a request. The proxy is close to the browser, so they are the ones of the
+   * browser, less its own processing.
+   */
+  private static LoggedRequest toLoggedRequest(HarEntry entry) {
+    HarRequest request = entry.getRequest();
+    HarResponse response = entry.getResponse();
+    HarTimings timings = entry.getTimings();
+    HarContent content = response == null ? null : response.getContent();
+    return new LoggedRequest(entry.getStartedDateTime() == null ? System.currentTimeMillis()
+      : entry.getStartedDateTime().getTime(), request.getMethod(), request.getUrl(),
+      response == null ? 0 : response.getStatus(), response == null ? null : response.getStatusText(),
+      content == null ? null : content.getMimeType(), request.getBodySize(), response == null ? -1
+        : response.getBodySize(), orUnknown(timings.getDns()), orUnknown(timings.getConnect()), timings.getSend(),
+      timings.getWait(), timings.getReceive());
+  }
+
+  private static long orUnknown(Long timing) {
+    return timing == null ? -1 : timing;
+  }
+
+  private void blockIfFiltered(BrowserMobHttpRequest request, RequestFilter filter) {
+    URL url;
+    try {
+      url = request.getMethod().getURI().toURL();
+    } catch (MalformedURLException e) {
+      return;
+    }
+    Header accept = request.getMethod().getFirstHeader("Accept");
+    String contentType = RequestFilter.guessContentType(url, accept == null ? null : accept.getValue());
+    if (!filter.isAllowed(url, contentType)) {
+      logger.debug("Request to {} blocked", url);
+      blockedRequests.record(contentType);
+      request.getMethod().setURI(URI.create(BLOCKED_URL));
+    }
+  }
+
+  /**
+   * Add the responses captured by the proxy to an archive.
+   */
+  private void record(Har har, HttpArchive archive) {
+    for (HarEntry entry : har.getLog().getEntries()) {
+      HarRequest request = entry.getRequest();
+      HarResponse response = entry.getResponse();
+      if (request.getUrl().startsWith(BLOCKED_URL) || response.getStatus() <= 0) {
+        // blocked or failed request
+        continue;
+      }
+      URL url;
+      try {
+        url = new URL(request.getUrl());
+      } catch (MalformedURLException e) {
+        logger.warn("Not recording the response of {}", request.getUrl(), e);
+        continue;
+      }
+      byte[] requestBody = null;
+      if (request.getPostData() != null && request.getPostData().getText() != null) {
+        requestBody = request.getPostData().getText().getBytes(StandardCharsets.UTF_8);
+      }
+      List<HttpHeader> headers = new ArrayList<HttpHeader>();
+      for (HarNameValuePair header : response.getHeaders()) {
+        headers.add(new HttpHeader(header.getName(), header.getValue()));
+      }
+      archive.record(request.getMethod(), url, requestBody, new RecordedResponse(response.getStatus(),
+        response.getStatusText(), headers, getBody(response.getContent())));
+    }
+  }
+
+  /**
+   * Get back the bytes of a response captured by the proxy: binary contents are base64 encoded, text contents are
+   * decoded with the charset of their content type.
+   */
+  private static byte[] getBody(HarContent content) {
+    if (content == null || content.getText() == null) {
+      return null;
+    }
+    if ("base64".equals(content.getEncoding())) {
+      return BaseEncoding.base64().decode(content.getText());
+    }
+    Charset charset = null;
+    try {
+      charset = content.getMimeType() == null ? null : ContentType.parse(content.getMimeType()).getCharset();
+    } catch (RuntimeException e) {
+      // invalid content type, use the same default as the proxy
+    }
+    return content.getText().getBytes(charset == null ? Charset.defaultCharset() : charset);
+  }
+
+  public BlockedRequestCounter getBlockedRequests() {
+    return blockedRequests;
+  }
+
   public void setTestContext(TestContext testContext) {
     this.testContext = testContext;
   }
@@ -209,17 +387,25 @@ public class WebDriverTestingEngineImpl implements ITestingEngine {
   public void closeBrowser() throws ExpectedJavascriptAlertException, ExpectedJavascriptConfirmException, ExpectedJavascriptPromptException {
     formIdent = null;
     if (driver != null) {
-      driver.quit();
+      if (driver instanceof HtmlUnitDriverPool.PooledDriver) {
+        // a driver using a dedicated proxy can't serve another session
+        HtmlUnitDriverPool.getInstance().release((HtmlUnitDriverPool.PooledDriver) driver,
+          proxyLease != null && proxyLease.isShared());
+      } else {
+        driver.quit();
+      }
       driver = null;
     }
-    if (proxyServer != null) {
-      try {
-        proxyServer.stop();
-        proxyServer = null;
-      } catch (Exception e) {
-        logger.error("Error while stopping proxy", e);
-        throw new RuntimeException("Error while stopping proxy", e);
+    if (proxyLease != null) {
+      BrowserMobProxyPool.Lease lease = proxyLease;
+      proxyLease = null;
+      if (testContext.getHttpArchiveMode() == HttpArchiveMode.RECORD) {
+        record(lease.getHar(), testContext.getHttpArchive());
       }
+      lease.release();
+    }
+    synchronized (exchanges) {
+      exchanges.clear();
     }
   }
 
@@ -228,8 +414,30 @@ public class WebDriverTestingEngineImpl implements ITestingEngine {
     // Big hack for browsermob
     String urlStr = url.toString().replace("http://localhost", "http://127.0.0.1");
     driver.get(urlStr);
+    // A page without content, like a blocked one, leaves the browser where it was, and a redirection leads it
+    // elsewhere: the response of the requested URL is the one of the page, unless it is a redirection.
+    BrowserMobHttpResponse pageResponse = isRequested(urlStr) ? getResponse(urlStr) : null;
+    if (pageResponse == null || isRedirection(pageResponse)) {
+      pageResponse = getPageResponse();
+    }
     throwFailingHttpStatusCodeExceptionIfNecessary(
-      getServerResponseCode(), urlStr);
+      getStatusCode(pageResponse), urlStr);
+  }
+
+  /**
+   * Requests blacklisted in the proxy, like the blocked ones, are answered without a raw response.
+   */
+  private static int getStatusCode(BrowserMobHttpResponse response) {
+    if (response.getRawResponse() == null) {
+      return response.getEntry().getResponse().getStatus();
+    }
+    return response.getRawResponse().getStatusLine().getStatusCode();
+  }
+
+  private static boolean isRedirection(BrowserMobHttpResponse response) {
+    int statusCode = getStatusCode(response);
+    return statusCode >= HttpStatus.SC_MULTIPLE_CHOICES && statusCode < HttpStatus.SC_BAD_REQUEST
+      && response.getHeader("Location") != null;
   }
 
   /**
@@ -397,37 +605,34 @@ public class WebDriverTestingEngineImpl implements ITestingEngine {
     return getWebElementByXPath("//*[@name=" + escapeQuotes(paramName) + "]", false, true) != null;
   }
 
+  /**
+   * Find an element in the current form, else in the first form containing one, else anywhere in the page. Each step
+   * is a single <code>findElements</code> call, so that misses don't cost a round-trip per form nor an exception.
+   */
   private WebElement getWebElementByXPath(String xpathAfterForm, boolean searchOnlyInCurrentForm, boolean overrideWorkingForm) {
     // First try the current form
     if (formIdent != null) {
-      try {
-        return driver.findElement(By.xpath("//form[" + formIdent + "]" + xpathAfterForm));
-      } catch (NoSuchElementException ex) {
-        if (searchOnlyInCurrentForm) {
-          return null;
-        }
+      List<WebElement> elements = driver.findElements(By.xpath("//form[" + formIdent + "]" + xpathAfterForm));
+      if (!elements.isEmpty()) {
+        return elements.get(0);
+      }
+      if (searchOnlyInCurrentForm) {
+        return null;
       }
     }
-    // not in the current form: try other forms
-    List<WebElement> forms = driver.findElements(By.tagName("form"));
-    int index = 0;
-    for (WebElement f : forms) {
-      try {
-        WebElement e = driver.findElement(By.xpath("//form[position()=" + (index + 1) + "]" + xpathAfterForm));
-        if (overrideWorkingForm) {
-          setWorkingForm(index);
-        }
-        return e;
-      } catch (NoSuchElementException ex) {
-        index++;
+    // not in the current form: try other forms, the first match in document order is in the first matching form
+    List<WebElement> elements = driver.findElements(By.xpath("//form" + xpathAfterForm));
+    if (!elements.isEmpty()) {
+      WebElement e = elements.get(0);
+      if (overrideWorkingForm) {
+        WebElement form = e.findElement(By.xpath("ancestor::form[1]"));
+        setWorkingForm(form.findElements(By.xpath("preceding-sibling::form")).size());
       }
+      return e;
     }
     // now look everywhere (maybe outside of form)
-    try {
-      return driver.findElement(By.xpath("//body" + xpathAfterForm));
-    } catch (NoSuchElementException ex) {
-      return null;
-    }
+    elements = driver.findElements(By.xpath("//body" + xpathAfterForm));
+    return elements.isEmpty() ? null : elements.get(0);
   }
 
   private List<WebElement> getWebElementsByXPath(String xpathAfterForm) {
@@ -481,10 +686,9 @@ public class WebDriverTestingEngineImpl implements ITestingEngine {
   }
 
   public String[] getSelectOptionValues(String selectName, int index) {
-    Select select = new Select(getWebElementByXPath("//select[@name=" + escapeQuotes(selectName) + "][" + (index + 1) + "]", true, true));
     ArrayList<String> result = new ArrayList<String>();
-    for (WebElement opt : select.getOptions()) {
-      result.add(opt.getAttribute("value"));
+    for (String[] option : getOptions(getSelectElement(selectName, index))) {
+      result.add(option[OPTION_VALUE]);
     }
     return result.toArray(new String[result.size()]);
   }
@@ -493,57 +697,66 @@ public class WebDriverTestingEngineImpl implements ITestingEngine {
     return getSelectedOptions(selectName, 0);
   }
 
-  private String[] getSelectedOptions(Select select) {
-    // FIXME http://code.google.com/p/selenium/issues/detail?id=2295
-    String[] result = new String[select.getAllSelectedOptions().size()];
-    int i = 0;
-    for (WebElement opt : select.getAllSelectedOptions()) {
-      result[i++] = opt.getAttribute("value");
+  public String[] getSelectedOptions(String selectName, int index) {
+    ArrayList<String> result = new ArrayList<String>();
+    for (String[] option : getOptions(getSelectElement(selectName, index))) {
+      if (Boolean.parseBoolean(option[OPTION_SELECTED])) {
+        result.add(option[OPTION_VALUE]);
+      }
     }
-    return result;
+    return result.toArray(new String[result.size()]);
   }
 
-  public String[] getSelectedOptions(String selectName, int index) {
-    Select select = new Select(getWebElementByXPath("//select[@name=" + escapeQuotes(selectName) + "][" + (index + 1) + "]", true, true));
-    return getSelectedOptions(select);
+  private WebElement getSelectElement(String selectName, int index) {
+    return getWebElementByXPath("//select[@name=" + escapeQuotes(selectName) + "][" + (index + 1) + "]", true, true);
+  }
+
+  /**
+   * Get the value, label and selection of all the options of a select, with a single script when possible.
+   */
+  private List<String[]> getOptions(WebElement select) {
+    List<String[]> options = ScriptExtractor.readOptions(driver, select);
+    if (options == null) {
+      options = new ArrayList<String[]>();
+      for (WebElement opt : new Select(select).getOptions()) {
+        options.add(new String[] {opt.getAttribute("value"), opt.getText(), String.valueOf(opt.isSelected())});
+      }
+    }
+    return options;
   }
 
-  private String getSelectOptionValueForLabel(Select select, String label) {
-    for (WebElement opt : select.getOptions()) {
-      if (opt.getText().equals(label)) {
-        return opt.getAttribute("value");
+  private String getSelectOptionValueForLabel(WebElement select, String label) {
+    for (String[] option : getOptions(select)) {
+      if (option[OPTION_LABEL].equals(label)) {
+        return option[OPTION_VALUE];
       }
     }
     throw new RuntimeException("Unable to find option " + label);
   }
 
-  private String getSelectOptionLabelForValue(Select select, String value) {
-    for (WebElement opt : select.getOptions()) {
-      if (opt.getAttribute("value").equals(value)) {
-        return opt.getText();
+  private String getSelectOptionLabelForValue(WebElement select, String value) {
+    for (String[] option : getOptions(select)) {
+      if (option[OPTION_VALUE].equals(value)) {
+        return option[OPTION_LABEL];
       }
     }
     throw new RuntimeException("Unable to find option " + value);
   }
 
   public String getSelectOptionLabelForValue(String selectName, String optionValue) {
-    Select select = new Select(getWebElementByXPath("//select[@name=" + escapeQuotes(selectName) + "]", true, true));
-    return getSelectOptionLabelForValue(select, optionValue);
+    return getSelectOptionLabelForValue(getWebElementByXPath("//select[@name=" + escapeQuotes(selectName) + "]", true, true), optionValue);
   }
 
   public String getSelectOptionLabelForValue(String selectName, int index, String optionValue) {
-    Select select = new Select(getWebElementByXPath("//select[@name=" + escapeQuotes(selectName) + "][" + (index + 1) + "]", true, true));
-    return getSelectOptionLabelForValue(select, optionValue);
+    return getSelectOptionLabelForValue(getSelectElement(selectName, index), optionValue);
   }
 
   public String getSelectOptionValueForLabel(String selectName, String optionLabel) {
-    Select select = new Select(getWebElementByXPath("//select[@name=" + escapeQuotes(selectName) + "]", true, true));
-    return getSelectOptionValueForLabel(select, optionLabel);
+    return getSelectOptionValueForLabel(getWebElementByXPath("//select[@name=" + escapeQuotes(selectName) + "]", true, true), optionLabel);
   }
 
   public String getSelectOptionValueForLabel(String selectName, int index, String optionLabel) {
-    Select select = new Select(getWebElementByXPath("//select[@name=" + escapeQuotes(selectName) + "][" + (index + 1) + "]", true, true));
-    return getSelectOptionValueForLabel(select, optionLabel);
+    return getSelectOptionValueForLabel(getSelectElement(selectName, index), optionLabel);
   }
 
   public void selectOptions(String selectName, String[] optionValues) {
@@ -551,22 +764,20 @@ public class WebDriverTestingEngineImpl implements ITestingEngine {
   }
 
   public void selectOptions(String selectName, int index, String[] optionValues) {
-    Select select = new Select(getWebElementByXPath("//select[@name=" + escapeQuotes(selectName) + "][" + (index + 1) + "]", true, true));
+    WebElement element = getSelectElement(selectName, index);
+    Select select = new Select(element);
     if (!select.isMultiple() && optionValues.length > 1)
       throw new RuntimeException("Multiselect not enabled");
+    Set<String> values = new HashSet<String>();
+    for (String[] option : getOptions(element)) {
+      values.add(option[OPTION_VALUE]);
+    }
     for (String option : optionValues) {
-      boolean found = false;
-      for (WebElement opt : select.getOptions()) {
-        if (opt.getAttribute("value").equals(option)) {
-          select.selectByValue(option);
-          found = true;
-          break;
-        }
-      }
-      if (!found) {
+      if (!values.contains(option)) {
         throw new RuntimeException("Option " + option
           + " not found");
       }
+      select.selectByValue(option);
     }
   }
 
@@ -575,22 +786,20 @@ public class WebDriverTestingEngineImpl implements ITestingEngine {
   }
 
   public void unselectOptions(String selectName, int index, String[] optionValues) {
-    Select select = new Select(getWebElementByXPath("//select[@name=" + escapeQuotes(selectName) + "][" + (index + 1) + "]", true, true));
+    WebElement element = getSelectElement(selectName, index);
+    Select select = new Select(element);
     if (!select.isMultiple() && optionValues.length > 1)
       throw new RuntimeException("Multiselect not enabled");
+    Set<String> values = new HashSet<String>();
+    for (String[] option : getOptions(element)) {
+      values.add(option[OPTION_VALUE]);
+    }
     for (String option : optionValues) {
-      boolean found = false;
-      for (WebElement opt : select.getOptions()) {
-        if (opt.getAttribute("value").equals(option)) {
-          select.deselectByValue(option);
-          found = true;
-          break;
-        }
-      }
-      if (!found) {
+      if (!values.contains(option)) {
         throw new RuntimeException("Option " + option
           + " not found");
       }
+      select.deselectByValue(option);
     }
   }
 
@@ -603,9 +812,8 @@ public class WebDriverTestingEngineImpl implements ITestingEngine {
   }
 
   public boolean hasSelectOption(String selectName, int index, String optionLabel) {
-    Select select = new Select(getWebElementByXPath("//select[@name=" + escapeQuotes(selectName) + "][" + (index + 1) + "]", true, true));
-    for (WebElement opt : select.getOptions()) {
-      if (opt.getText().equals(optionLabel)) {
+    for (String[] option : getOptions(getSelectElement(selectName, index))) {
+      if (option[OPTION_LABEL].equals(optionLabel)) {
         return true;
       }
     }
@@ -613,9 +821,8 @@ public class WebDriverTestingEngineImpl implements ITestingEngine {
   }
 
   public boolean hasSelectOptionValue(String selectName, int index, String optionValue) {
-    Select select = new Select(getWebElementByXPath("//select[@name=" + escapeQuotes(selectName) + "][" + (index + 1) + "]", true, true));
-    for (WebElement opt : select.getOptions()) {
-      if (opt.getAttribute("value").equals(optionValue)) {
+    for (String[] option : getOptions(getSelectElement(selectName, index))) {
+      if (option[OPTION_VALUE].equals(optionValue)) {
         return true;
       }
     }
@@ -817,7 +1024,7 @@ public class WebDriverTestingEngineImpl implements ITestingEngine {
 
   public InputStream getInputStream() {
     try {
-      return response.getRawResponse().getEntity().getContent();
+      return getPageResponse().getRawResponse().getEntity().getContent();
     } catch (Exception e) {
       throw new TestingEngineResponseException(e);
     }
@@ -835,36 +1042,55 @@ public class WebDriverTestingEngineImpl implements ITestingEngine {
     return getHtmlTable(tableSummaryNameOrId) != null;
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The whole table is read with a single script when Javascript is enabled.</p>
+   */
   public Table getTable(String tableSummaryNameOrId) {
-    WebElement table = getHtmlTable(tableSummaryNameOrId);
-    Table result = new Table();
-    List<WebElement> trs = table.findElements(By.xpath("tr | tbody/tr"));
-    for (int i = 0; i < trs.size(); i++) {
-      Row newRow = new Row();
-      WebElement tr = trs.get(i);
-      List<WebElement> tds = tr.findElements(By.xpath("td | th"));
-      for (WebElement td : tds) {
-        int colspan;
-        try {
-          colspan = Integer.valueOf(td.getAttribute("colspan"));
-        } catch (NumberFormatException e) {
-          colspan = 1;
-        }
-        int rowspan;
-        try {
-          rowspan = Integer.valueOf(td.getAttribute("rowspan"));
-        } catch (NumberFormatException e) {
-          rowspan = 1;
-        }
-        newRow.appendCell(new Cell(td.getText(),
-          colspan,
-          rowspan));
+    List<Row> rows = ScriptExtractor.readTable(driver, getHtmlTable(tableSummaryNameOrId));
+    if (rows != null) {
+      Table result = new Table();
+      for (Row row : rows) {
+        result.appendRow(row);
       }
-      result.appendRow(newRow);
+      return result;
+    }
+    StreamingTable table = getStreamingTable(tableSummaryNameOrId);
+    Table result = new Table();
+    for (int i = 0; i < table.getRowCount(); i++) {
+      result.appendRow(table.getRow(i));
     }
     return result;
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The rows are found with a single request to the driver, but the cells of a row are only read when the row
+   * is.</p>
+   */
+  public StreamingTable getStreamingTable(String tableSummaryNameOrId) {
+    WebElement table = getHtmlTable(tableSummaryNameOrId);
+    final List<WebElement> trs = table.findElements(By.xpath("tr | tbody/tr"));
+    return new StreamingTable() {
+      public int getRowCount() {
+        return trs.size();
+      }
+
+      public Row getRow(int index) {
+        Row newRow = new Row();
+        List<WebElement> tds = trs.get(index).findElements(By.xpath("td | th"));
+        for (WebElement td : tds) {
+          newRow.appendCell(new Cell(td.getText(),
+            ScriptExtractor.parseSpan(td.getAttribute("colspan")),
+            ScriptExtractor.parseSpan(td.getAttribute("rowspan"))));
+        }
+        return newRow;
+      }
+    };
+  }
+
   /**
    * Return the Webdriver WebElement object representing a specified table in the current response. Null is returned if a
    * parsing exception occurs looking for the table or no table with the id or summary could be found.
@@ -1018,16 +1244,7 @@ public class WebDriverTestingEngineImpl implements ITestingEngine {
    * @param regexp regexp to match.
    */
   private boolean isMatchInElement(WebElement element, String regexp) {
-    RE re = getRE(regexp);
-    return re.match(element.getText());
-  }
-
-  private RE getRE(String regexp) {
-    try {
-      return new RE(regexp, RE.MATCH_SINGLELINE);
-    } catch (RESyntaxException e) {
-      throw new RuntimeException(e);
-    }
+    return RegexpCache.match(regexp, element.getText());
   }
 
   public void setExpectedJavaScriptAlert(JavascriptAlert[] alerts) throws ExpectedJavascriptAlertException {
@@ -1068,16 +1285,16 @@ public class WebDriverTestingEngineImpl implements ITestingEngine {
   }
 
   public int getServerResponseCode() {
-    return response.getRawResponse().getStatusLine().getStatusCode();
+    return getStatusCode(getPageResponse());
   }
 
   public String getHeader(String name) {
-    return response.getHeader(name);
+    return getPageResponse().getHeader(name);
   }
 
   public Map<String, String> getAllHeaders() {
     Map<String, String> map = new java.util.HashMap<String, String>();
-    for (Header header : response.getRawResponse().getAllHeaders()) {
+    for (Header header : getPageResponse().getRawResponse().getAllHeaders()) {
       map.put(header.getName(), header.getValue());
     }
     return map;
@@ -1095,9 +1312,47 @@ public class WebDriverTestingEngineImpl implements ITestingEngine {
     throw new UnsupportedOperationException("Not supported yet.");
   }
 
+  public long waitForCondition(final Condition condition, long timeout) {
+    return waitFor(new ExpectedCondition<Boolean>() {
+      public Boolean apply(WebDriver input) {
+        return condition.isSatisfied(WebDriverTestingEngineImpl.this);
+      }
+    }, timeout);
+  }
+
+  public long waitForText(String text, long timeout) {
+    return waitFor(ExpectedConditions.textToBePresentInElementLocated(By.tagName("body"), text), timeout);
+  }
+
+  public long waitForElementByXPath(String xpath, long timeout) {
+    return waitFor(ExpectedConditions.presenceOfElementLocated(By.xpath(xpath)), timeout);
+  }
+
+  public ITestingEngine fork(TestContext testContext) {
+    // The state of the browser (open windows, DOM, form values) is not accessible through WebDriver
+    throw new UnsupportedOperationException("Forking a conversation is not supported by the WebDriver engine");
+  }
+
+  /**
+   * Wait using the native wait support of WebDriver.
+   *
+   * @return the time spent waiting in milliseconds, or -1 on timeout
+   */
+  private long waitFor(ExpectedCondition<?> condition, long timeout) {
+    long start = System.currentTimeMillis();
+    try {
+      new FluentWait<WebDriver>(driver).withTimeout(timeout, TimeUnit.MILLISECONDS)
+        .pollingEvery(WAIT_POLLING_INTERVAL, TimeUnit.MILLISECONDS).ignoring(NoSuchElementException.class)
+        .until(condition);
+      return System.currentTimeMillis() - start;
+    } catch (TimeoutException e) {
+      return -1;
+    }
+  }
+
   public List<HttpHeader> getResponseHeaders() {
     List<HttpHeader> result = new LinkedList<HttpHeader>();
-    for (Header header : response.getRawResponse().getAllHeaders()) {
+    for (Header header : getPageResponse().getRawResponse().getAllHeaders()) {
       result.add(new HttpHeader(header.getName(), header.getValue()));
     }
     return result;
@@ -21,6 +21,12 @@ package net.sourceforge.jwebunit.webdriver;
 import net.sourceforge.jwebunit.tests.ButtonAssertionsTest;
 import net.sourceforge.jwebunit.tests.CharsetTest;
 import net.sourceforge.jwebunit.tests.ConcurrentJWebUnitTest;
+import net.sourceforge.jwebunit.tests.ParallelRunnerTest;
+import net.sourceforge.jwebunit.tests.RequestFilterTest;
+import net.sourceforge.jwebunit.tests.RequestLogTest;
+import net.sourceforge.jwebunit.tests.WaitForTest;
+import net.sourceforge.jwebunit.tests.CheckpointTest;
+import net.sourceforge.jwebunit.tests.SimulatedUsersTest;
 import net.sourceforge.jwebunit.tests.CustomTesterTest;
 import net.sourceforge.jwebunit.tests.ExpectedTableAssertionsHtmlTest;
 import net.sourceforge.jwebunit.tests.ExpectedTableAssertionsXHtmlTest;
@@ -81,7 +87,13 @@ import org.junit.runners.Suite;
     IElementTest.class,
     ResponseServletTest.class,
     CustomTesterTest.class,
-    ConcurrentJWebUnitTest.class
+    ConcurrentJWebUnitTest.class,
+    ParallelRunnerTest.class,
+    SimulatedUsersTest.class,
+    RequestFilterTest.class,
+    RequestLogTest.class,
+    WaitForTest.class,
+    CheckpointTest.class
 })
 public class JWebUnitTest extends JettySetup {
     